@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.benchmarks;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.doitnext.http.router.typeconverters.ArrayConverter;
+import com.doitnext.http.router.typeconverters.StringConversionUtil;
+import com.doitnext.http.router.typeconverters.TypeConverter;
+
+/**
+ * <p>Measures the pieces of argument binding that {@link InvocationBenchmark} measures together: 
+ * converting a query or path value with {@link StringConversionUtil}, looking the converter up by
+ * type on each call (<code>convert</code>) or once beforehand as binding plans do 
+ * (<code>convertResolved</code>), and converting the five values of an array parameter
+ * (<code>convertArray</code>).  {@link QueryStringBenchmark} measures parsing the query string.</p>
+ * 
+ * <p>Run with <code>java -jar target/benchmarks.jar ConversionBenchmark -prof gc</code>, or through
+ * {@link #main(String[])} which adds the GC profiler.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ConversionBenchmark {
+	@Param({"int", "long", "boolean", "double", "String"})
+	public String type;
+
+	private StringConversionUtil converter;
+	private Class<?> classz;
+	private Class<?> arrayClass;
+	private String value;
+	private String values[];
+	private TypeConverter<String> typeConverter;
+	private ArrayConverter<String> arrayConverter;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		converter = new StringConversionUtil();
+		if(type.equals("int")) {
+			classz = int.class;
+			value = "12345";
+		} else if(type.equals("long")) {
+			classz = long.class;
+			value = "1234567890123";
+		} else if(type.equals("boolean")) {
+			classz = boolean.class;
+			value = "true";
+		} else if(type.equals("double")) {
+			classz = double.class;
+			value = "1234.5678";
+		} else if(type.equals("String")) {
+			classz = String.class;
+			value = "router";
+		} else {
+			throw new IllegalArgumentException(type);
+		}
+		values = new String[5];
+		Arrays.fill(values, value);
+		arrayClass = Array.newInstance(classz, 0).getClass();
+		typeConverter = converter.getConverter(classz);
+		arrayConverter = converter.getArrayConverter(arrayClass);
+	}
+
+	@Benchmark
+	public Object convert() throws Exception {
+		return converter.convert(value, classz);
+	}
+
+	@Benchmark
+	public Object convertResolved() throws Exception {
+		return StringConversionUtil.applyConverter(typeConverter, value, classz);
+	}
+
+	@Benchmark
+	public Object convertArray() throws Exception {
+		return StringConversionUtil.applyArrayConverter(arrayConverter, values, arrayClass);
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder()
+			.include(ConversionBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+}
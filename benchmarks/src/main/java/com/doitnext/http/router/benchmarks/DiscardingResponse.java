@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * A response that keeps its status and throws everything else away, so that it can be reused for
+ * every operation of a benchmark without adding to the allocation being measured.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class DiscardingResponse extends HttpServletResponseWrapper {
+	private static final ServletOutputStream DISCARD = new ServletOutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte b[], int off, int len) {
+		}
+	};
+
+	final private PrintWriter writer = new PrintWriter(new OutputStreamWriter(DISCARD));
+	private int status = SC_OK;
+	private long bytes = 0;
+
+	public DiscardingResponse() {
+		super(new MockHttpServletResponse());
+	}
+
+	/**
+	 * Readies the response for the next operation.
+	 */
+	@Override
+	public void reset() {
+		status = SC_OK;
+	}
+
+	@Override
+	public int getStatus() {
+		return status;
+	}
+
+	@Override
+	public void setStatus(int sc) {
+		status = sc;
+	}
+
+	@Override
+	@Deprecated
+	public void setStatus(int sc, String sm) {
+		status = sc;
+	}
+
+	@Override
+	public void sendError(int sc) {
+		status = sc;
+	}
+
+	@Override
+	public void sendError(int sc, String msg) {
+		status = sc;
+	}
+
+	@Override
+	public void setHeader(String name, String value) {
+	}
+
+	@Override
+	public void addHeader(String name, String value) {
+	}
+
+	@Override
+	public void setIntHeader(String name, int value) {
+	}
+
+	@Override
+	public void addIntHeader(String name, int value) {
+	}
+
+	@Override
+	public void setDateHeader(String name, long date) {
+	}
+
+	@Override
+	public void addDateHeader(String name, long date) {
+	}
+
+	@Override
+	public void setContentType(String type) {
+	}
+
+	@Override
+	public void setContentLength(int len) {
+		bytes += len;
+	}
+
+	@Override
+	public void setCharacterEncoding(String charset) {
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() throws IOException {
+		return DISCARD;
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		return writer;
+	}
+
+	@Override
+	public boolean isCommitted() {
+		return false;
+	}
+
+	@Override
+	public void flushBuffer() {
+	}
+
+	/**
+	 * @return the total of the content lengths set, showing that responses were written.
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.doitnext.http.router.DefaultInvoker;
+import com.doitnext.http.router.MethodHandleInvoker;
+import com.doitnext.http.router.MethodInvoker.InvokeResult;
+import com.doitnext.http.router.PathMatch;
+import com.doitnext.http.router.Route;
+import com.doitnext.http.router.annotations.enums.HttpMethod;
+import com.doitnext.http.router.argumentbinders.BindingContext;
+import com.doitnext.http.router.responsehandlers.DefaultErrorHandler;
+import com.doitnext.http.router.responsehandlers.DefaultSuccessHandler;
+import com.doitnext.pathutils.Path;
+import com.doitnext.pathutils.PathTemplateParser;
+
+/**
+ * <p>Measures the per request cost of calling a matched route's implementation method, for each
+ * {@link com.doitnext.http.router.MethodInvoker} and each shape of signature in 
+ * {@link InvocationCollection}.  <code>bind</code> measures binding the arguments alone: parsing 
+ * the query string, converting path and query values and deserializing the request body.  
+ * <code>invoke</code> measures {@link com.doitnext.http.router.MethodInvoker#invokeMethod} as the
+ * servlet calls it, binding, dispatch to the method and the success handler, so the difference 
+ * between the two is the cost of dispatch.  The methods return nothing, leaving serialization to 
+ * {@link RouteMatchingBenchmark}.</p>
+ * 
+ * <p>Run with <code>java -jar target/benchmarks.jar InvocationBenchmark -prof gc</code>, or through
+ * {@link #main(String[])} which adds the GC profiler, to report the bytes allocated per operation
+ * next to the time.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class InvocationBenchmark {
+	private static final String JSON = "application/json";
+
+	@Param({"default", "methodHandle"})
+	public String invoker;
+
+	@Param({"none", "primitives", "arrays", "body"})
+	public String signature;
+
+	private DefaultInvoker methodInvoker;
+	private HttpMethod httpMethod;
+	private PathMatch pathMatch;
+	private MockHttpServletRequest request;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		if(invoker.equals("default"))
+			methodInvoker = new DefaultInvoker();
+		else if(invoker.equals("methodHandle"))
+			methodInvoker = new MethodHandleInvoker();
+		else
+			throw new IllegalArgumentException(invoker);
+		InvocationCollection collection = new InvocationCollection();
+		HttpMethod method = HttpMethod.GET;
+		String requestFormat = "";
+		String template;
+		String path;
+		String query = null;
+		byte content[] = null;
+		if(signature.equals("none")) {
+			template = "/bench/ping";
+			path = template;
+		} else if(signature.equals("primitives")) {
+			template = "/bench/accounts/{account:[0-9]+:ACCOUNT}/versions/{version:[0-9]+:VERSION}";
+			path = "/bench/accounts/1234567/versions/12";
+			query = "limit=50&offset=1000&active=true&sort=name";
+		} else if(signature.equals("arrays")) {
+			template = "/bench/search";
+			path = template;
+			query = "id=101&id=102&id=103&id=104&id=105&tag=red&tag=green&tag=blue%20green";
+		} else if(signature.equals("body")) {
+			method = HttpMethod.POST;
+			requestFormat = JSON;
+			template = "/bench/orders/{account:[0-9]+:ACCOUNT}";
+			path = "/bench/orders/1234567";
+			content = ("{\"id\":98765,\"customer\":\"Ann Example\",\"quantity\":3,\"express\":true," +
+					"\"items\":[\"widget\",\"gadget\",\"sprocket\"]}").getBytes("UTF-8");
+		} else {
+			throw new IllegalArgumentException(signature);
+		}
+		Route route = new Route(method, "", "", requestFormat, JSON, new PathTemplateParser("/", "?").parse(template),
+				InvocationCollection.class, findMethod(signature), methodInvoker, collection, 
+				new DefaultSuccessHandler(), new DefaultErrorHandler(), false);
+		Path matchedPath = route.getPathTemplate().match(path);
+		if(matchedPath == null)
+			throw new IllegalStateException(String.format("%s does not match %s", path, template));
+		pathMatch = new PathMatch(route, matchedPath);
+		httpMethod = method;
+		request = new MockHttpServletRequest(method.name(), path);
+		request.setServletPath("");
+		request.setPathInfo(path);
+		request.setQueryString(query);
+		request.addHeader("Accept", JSON);
+		if(content != null) {
+			request.addHeader("Content-Type", JSON);
+			request.setContentType(JSON);
+			request.setContent(content);
+		}
+		// Every invocation must reach the method, a benchmark of binding failures would flatter the invoker
+		DiscardingResponse response = new DiscardingResponse();
+		int before = collection.getCount();
+		for(int x = 0; x < 2; x++) {
+			InvokeResult result = methodInvoker.invokeMethod(method, pathMatch, request, response);
+			if(result != InvokeResult.METHOD_SUCCESS && result != InvokeResult.METHOD_SUCCESS_UNHANDLED)
+				throw new IllegalStateException(String.format("%s %s returned %s", method, path, result));
+		}
+		if(!signature.equals("none") && collection.getCount() == before)
+			throw new IllegalStateException(String.format("%s %s bound no arguments", method, path));
+	}
+
+	private static Method findMethod(String name) {
+		for(Method method : InvocationCollection.class.getMethods()) {
+			if(method.getName().equals(name))
+				return method;
+		}
+		throw new IllegalArgumentException(name);
+	}
+
+	@State(Scope.Thread)
+	public static class Client {
+		final DiscardingResponse response = new DiscardingResponse();
+	}
+
+	@Benchmark
+	public Object[] bind(Client client) throws Exception {
+		return pathMatch.getRoute().getBindingPlan().bind(new BindingContext(pathMatch, request, client.response));
+	}
+
+	@Benchmark
+	public InvokeResult invoke(Client client) throws Exception {
+		client.response.reset();
+		return methodInvoker.invokeMethod(httpMethod, pathMatch, request, client.response);
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder()
+			.include(InvocationBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.benchmarks;
+
+import java.util.List;
+
+import com.doitnext.http.router.annotations.PathParameter;
+import com.doitnext.http.router.annotations.QueryParameter;
+import com.doitnext.http.router.annotations.RequestBody;
+import com.doitnext.http.router.annotations.RestCollection;
+import com.doitnext.http.router.annotations.RestMethod;
+import com.doitnext.http.router.annotations.enums.HttpMethod;
+
+/**
+ * The implementation methods measured by {@link InvocationBenchmark}, one for each shape of 
+ * signature: no arguments, path and query primitives, array query parameters and a request body.  
+ * They return nothing so that no response is serialized, and keep only what the benchmark
+ * checks to see that arguments were bound.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+@RestCollection(value = "invocationCollection", pathprefix = "/bench")
+public class InvocationCollection {
+	private int count;
+
+	public static class Order {
+		public long id;
+		public String customer;
+		public int quantity;
+		public boolean express;
+		public List<String> items;
+	}
+
+	@RestMethod(method = HttpMethod.GET, template = "/ping")
+	public void none() {
+		count++;
+	}
+
+	@RestMethod(method = HttpMethod.GET, template = "/accounts/{account:[0-9]+:ACCOUNT}/versions/{version:[0-9]+:VERSION}")
+	public void primitives(@PathParameter(name = "account") long account, @PathParameter(name = "version") int version,
+			@QueryParameter(name = "limit") int limit, @QueryParameter(name = "offset") long offset,
+			@QueryParameter(name = "active") boolean active) {
+		count += limit;
+	}
+
+	@RestMethod(method = HttpMethod.GET, template = "/search")
+	public void arrays(@QueryParameter(name = "id") long ids[], @QueryParameter(name = "tag") String tags[]) {
+		count += ids.length + tags.length;
+	}
+
+	@RestMethod(method = HttpMethod.POST, template = "/orders/{account:[0-9]+:ACCOUNT}", requestFormat = "application/json")
+	public void body(@PathParameter(name = "account") long account, @RequestBody Order order) {
+		count += order.items.size();
+	}
+
+	/**
+	 * @return the total, over all calls, of a count taken from the arguments of each.
+	 */
+	public int getCount() {
+		return count;
+	}
+}
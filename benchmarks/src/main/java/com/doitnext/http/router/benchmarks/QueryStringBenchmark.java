@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.doitnext.http.router.argumentbinders.QueryString;
+
+/**
+ * <p>Measures parsing a request's query string with {@link QueryString}, as each request binding
+ * query parameters does once, then decoding one value (<code>value</code>) or every value given 
+ * for a name (<code>values</code>).</p>
+ * 
+ * <p>Run with <code>java -jar target/benchmarks.jar QueryStringBenchmark -prof gc</code>, or through
+ * {@link #main(String[])} which adds the GC profiler.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class QueryStringBenchmark {
+	private static final String QUERY = "q=router%20benchmarks&limit=50&offset=1000&active=true" +
+			"&id=101&id=102&id=103&id=104&id=105&sort=name";
+
+	@Benchmark
+	public String value() {
+		return new QueryString(QUERY, StandardCharsets.UTF_8).getValue("offset");
+	}
+
+	@Benchmark
+	public String[] values() {
+		return new QueryString(QUERY, StandardCharsets.UTF_8).getValues("id");
+	}
+
+	@Benchmark
+	public String encodedValue() {
+		return new QueryString(QUERY, StandardCharsets.UTF_8).getValue("q");
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder()
+			.include(QueryStringBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.doitnext.http.router.DefaultInvoker;
+import com.doitnext.http.router.annotations.enums.HttpMethod;
+
+/**
+ * <p>Measures {@link com.doitnext.http.router.RestRouterServlet#routeRequest} end to end, from matching
+ * the path through content negotiation, binding and invocation to writing the response, over
+ * {@link SyntheticRoutes} of 10 to 10,000 routes.  Each operation routes the next of the API's
+ * requests so that every route is exercised.</p>
+ * 
+ * <p>Run with <code>java -jar target/benchmarks.jar RouteMatchingBenchmark -prof gc</code>, or through
+ * {@link #main(String[])} which adds the GC profiler, to report the allocation rate next to the
+ * throughput.  Set routeCacheSize to compare matching against the route resolution cache.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class RouteMatchingBenchmark {
+	@Param({"10", "100", "1000", "10000"})
+	public int routeCount;
+
+	@Param({"0"})
+	public int routeCacheSize;
+
+	private BenchmarkServlet servlet;
+	private HttpMethod[] methods;
+	private MockHttpServletRequest[] requests;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		DefaultInvoker invoker = new DefaultInvoker();
+		SyntheticRoutes api = new SyntheticRoutes(routeCount, 42, invoker);
+		servlet = new BenchmarkServlet();
+		servlet.setRestPackageRoot(SyntheticCollection.class.getPackage().getName());
+		servlet.setEndpointResolver(api);
+		servlet.setMethodInvoker(invoker);
+		servlet.setRouteCacheSize(routeCacheSize);
+		servlet.setMetricsEndpoint(false);
+		servlet.afterPropertiesSet();
+		List<MockHttpServletRequest> requestList = api.getRequests();
+		requests = requestList.toArray(new MockHttpServletRequest[requestList.size()]);
+		methods = new HttpMethod[requests.length];
+		for(int x = 0; x < requests.length; x++)
+			methods[x] = HttpMethod.valueOf(requests[x].getMethod());
+		// Every request must be routed, a benchmark of 404s would flatter the router
+		DiscardingResponse response = new DiscardingResponse();
+		for(int x = 0; x < requests.length; x++) {
+			response.reset();
+			servlet.route(methods[x], requests[x], response);
+			if(response.getStatus() != 200)
+				throw new IllegalStateException(String.format("%s %s returned %d", methods[x], 
+						requests[x].getPathInfo(), response.getStatus()));
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Client {
+		final DiscardingResponse response = new DiscardingResponse();
+		int next = 0;
+	}
+
+	@Benchmark
+	public boolean routeRequest(Client client) {
+		int index = client.next;
+		client.next = (index + 1 == requests.length) ? 0 : index + 1;
+		client.response.reset();
+		return servlet.route(methods[index], requests[index], client.response);
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder()
+			.include(RouteMatchingBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.benchmarks;
+
+import com.doitnext.http.router.annotations.PathParameter;
+import com.doitnext.http.router.annotations.RestCollection;
+import com.doitnext.http.router.annotations.RestMethod;
+import com.doitnext.http.router.annotations.enums.HttpMethod;
+
+/**
+ * The implementation methods behind the synthetic routes of {@link SyntheticRoutes}.  They do as
+ * little as possible so that the benchmarks measure the router rather than the methods.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+@RestCollection(value = "syntheticCollection", pathprefix = "/api")
+public class SyntheticCollection {
+	private static final Item ITEM = new Item("0", "item");
+
+	public static class Item {
+		public final String id;
+		public final String name;
+
+		public Item(String id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+	}
+
+	@RestMethod(method = HttpMethod.GET, template = "/items")
+	public Item list() {
+		return ITEM;
+	}
+
+	@RestMethod(method = HttpMethod.GET, template = "/items/{id:[0-9]+:ID}")
+	public Item get(@PathParameter(name = "id") String id) {
+		return ITEM;
+	}
+
+	@RestMethod(method = HttpMethod.GET, template = "/items/{id:[0-9]+:ID}/{name:[a-z]{2,20}:NAME}")
+	public Item getNamed(@PathParameter(name = "id") String id, @PathParameter(name = "name") String name) {
+		return ITEM;
+	}
+
+	@RestMethod(method = HttpMethod.GET, template = "/items/{id:[0-9a-z]+:ID}/{*:path}")
+	public Item getPath(@PathParameter(name = "id") String id, @PathParameter(name = "path") String path) {
+		return ITEM;
+	}
+
+	@RestMethod(method = HttpMethod.POST, template = "/items", requestFormat = "application/json")
+	public Item create() {
+		return ITEM;
+	}
+
+	@RestMethod(method = HttpMethod.PUT, template = "/items/{id:[0-9]+:ID}", requestFormat = "application/json")
+	public Item update(@PathParameter(name = "id") String id) {
+		return ITEM;
+	}
+
+	@RestMethod(method = HttpMethod.DELETE, template = "/items/{id:[0-9]+:ID}")
+	public Item delete(@PathParameter(name = "id") String id) {
+		return ITEM;
+	}
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.doitnext.http.router.EndpointResolver;
+import com.doitnext.http.router.MethodInvoker;
+import com.doitnext.http.router.Route;
+import com.doitnext.http.router.annotations.enums.HttpMethod;
+import com.doitnext.http.router.responsehandlers.DefaultErrorHandler;
+import com.doitnext.http.router.responsehandlers.DefaultSuccessHandler;
+import com.doitnext.http.router.responsehandlers.ResponseHandler;
+import com.doitnext.pathutils.PathTemplateParser;
+import com.google.common.collect.ImmutableSortedSet;
+
+/**
+ * <p>A synthetic API of a given number of routes together with a request for each route.</p>
+ * 
+ * <p>The routes are spread over collections of ten resources each, much as a real API is, and mix
+ * the kinds of template seen in practice: about half are literal paths, a third have regular
+ * expression identifiers, some two of them, and the rest end in a greedy path.  Most are GETs, of
+ * which some come in two models, a full one and a summary, that requests choose between with their
+ * Accept header.  The rest are POSTs, PUTs and DELETEs with request formats for negotiation by
+ * Content-Type.  Routes and requests are generated from a seed so every run sees the same API.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class SyntheticRoutes implements EndpointResolver {
+	private static final String JSON = "application/json";
+	private static final String[] ACCEPTS = {
+		JSON, 
+		"application/json, text/plain;q=0.5", 
+		"text/html, application/xhtml+xml, application/json;q=0.9, */*;q=0.8",
+		"*/*"
+	};
+
+	final private ImmutableSortedSet<Route> routes;
+	final private List<MockHttpServletRequest> requests;
+
+	/**
+	 * @param count the number of routes.
+	 * @param seed seeds the choice of routes and requests.
+	 * @param invoker the invoker of the routes.
+	 */
+	public SyntheticRoutes(int count, long seed, MethodInvoker invoker) throws Exception {
+		Random random = new Random(seed);
+		PathTemplateParser parser = new PathTemplateParser("/", "?");
+		SyntheticCollection collection = new SyntheticCollection();
+		ResponseHandler successHandler = new DefaultSuccessHandler();
+		ResponseHandler errorHandler = new DefaultErrorHandler();
+		TreeSet<Route> routeSet = new TreeSet<Route>();
+		List<MockHttpServletRequest> requestList = new ArrayList<MockHttpServletRequest>();
+		for(int resource = 0; routeSet.size() < count; resource++) {
+			String base = String.format("/api/c%d/r%d", resource / 10, resource);
+			double kind = random.nextDouble();
+			double verb = random.nextDouble();
+			String template;
+			String path;
+			String methodName;
+			HttpMethod httpMethod = HttpMethod.GET;
+			String requestFormat = "";
+			if(kind < 0.5) {
+				template = random.nextBoolean() ? base : base + "/items";
+				path = template;
+				methodName = "list";
+				if(verb > 0.85) {
+					httpMethod = HttpMethod.POST;
+					methodName = "create";
+					requestFormat = JSON;
+				}
+			} else if(kind < 0.85) {
+				int id = random.nextInt(100000);
+				if(random.nextBoolean()) {
+					template = base + "/{id:[0-9]+:ID}/{name:[a-z]{2,20}:NAME}";
+					path = String.format("%s/%d/name%s", base, id, (char)('a' + random.nextInt(26)));
+					methodName = "getNamed";
+				} else {
+					template = base + "/{id:[0-9]+:ID}";
+					path = String.format("%s/%d", base, id);
+					methodName = "get";
+					if(verb > 0.8) {
+						httpMethod = HttpMethod.PUT;
+						methodName = "update";
+						requestFormat = JSON;
+					} else if(verb > 0.65) {
+						httpMethod = HttpMethod.DELETE;
+						methodName = "delete";
+					}
+				}
+			} else {
+				template = base + "/{id:[0-9a-z]+:ID}/{*:path}";
+				path = String.format("%s/u%d/docs/%d/index.json", base, random.nextInt(1000), random.nextInt(1000));
+				methodName = "getPath";
+			}
+			Method implMethod = findMethod(methodName);
+			boolean summary = (httpMethod == HttpMethod.GET && random.nextDouble() < 0.3 && routeSet.size() + 1 < count);
+			routeSet.add(new Route(httpMethod, "", "", requestFormat, JSON, parser.parse(template), 
+					SyntheticCollection.class, implMethod, invoker, collection, successHandler, errorHandler, false));
+			if(summary) {
+				routeSet.add(new Route(httpMethod, "", "summary", requestFormat, JSON, parser.parse(template), 
+						SyntheticCollection.class, implMethod, invoker, collection, successHandler, errorHandler, false));
+			}
+			String accept = summary && random.nextBoolean() ? "application/json; model=summary, application/json;q=0.5" 
+					: ACCEPTS[random.nextInt(ACCEPTS.length)];
+			requestList.add(createRequest(httpMethod, path, accept, requestFormat.isEmpty() ? null : requestFormat));
+		}
+		Collections.shuffle(requestList, random);
+		this.routes = ImmutableSortedSet.copyOf(routeSet);
+		this.requests = Collections.unmodifiableList(requestList);
+	}
+
+	private static Method findMethod(String name) {
+		for(Method method : SyntheticCollection.class.getMethods()) {
+			if(method.getName().equals(name))
+				return method;
+		}
+		throw new IllegalArgumentException(name);
+	}
+
+	private static MockHttpServletRequest createRequest(HttpMethod method, String path, String accept, String contentType) {
+		MockHttpServletRequest request = new MockHttpServletRequest(method.name(), path);
+		request.setServletPath("");
+		request.setPathInfo(path);
+		request.addHeader("Accept", accept);
+		if(contentType != null) {
+			request.addHeader("Content-Type", contentType);
+			request.setContentType(contentType);
+			request.setContent("{}".getBytes());
+		}
+		return request;
+	}
+
+	@Override
+	public ImmutableSortedSet<Route> resolveEndpoints(String pathPrefix, String basePackage) {
+		return routes;
+	}
+
+	/**
+	 * @return the {@link #routes}
+	 */
+	public ImmutableSortedSet<Route> getRoutes() {
+		return routes;
+	}
+
+	/**
+	 * @return a request for each resource, in random order.
+	 */
+	public List<MockHttpServletRequest> getRequests() {
+		return requests;
+	}
+}
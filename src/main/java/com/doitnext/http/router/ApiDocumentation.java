@@ -246,6 +246,9 @@ public class ApiDocumentation {
 		Map<Class<?>, CollectionDocumentation> collDocs = new HashMap<Class<?>,CollectionDocumentation>();
 		
 		for(Route route : routes){
+			// The metrics route is operational rather than part of the API
+			if(route.getImplInstance() instanceof MetricsDumper)
+				continue;
 			Class<?> key = route.getImplClass();
 			if(!collDocs.containsKey(key)){
 				String collectionName = key.getName();
@@ -0,0 +1,292 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.doitnext.http.router.annotations.RestMethod;
+import com.doitnext.http.router.annotations.enums.HttpMethod;
+import com.doitnext.http.router.responsecache.CachedResponse;
+import com.doitnext.http.router.responsecache.CapturingResponse;
+
+/**
+ * <p>A {@link MethodInvoker} that coalesces concurrent identical GET requests into one invocation
+ * of another invoker.  Requests are identical when they resolve to the same {@link Route} with the
+ * same path, query string, Accept, Accept-Encoding, Authorization and Cookie headers.  The first such
+ * request invokes the route with its response captured in memory; requests arriving while it is in
+ * flight wait for it and are each sent the same serialized bytes.</p>
+ * 
+ * <p>Only '200 OK' responses are shared.  When the invocation produces anything else, or does not
+ * finish within the {@link #setWaitTimeout(long) wait timeout}, the waiting requests invoke the route
+ * themselves.</p>
+ * 
+ * <p>Coalescing is opt in twice over: by wrapping the invoker given to 
+ * {@link RestRouterServlet#setMethodInvoker(MethodInvoker)}, and for each route by setting
+ * {@link RestMethod#coalesce()}.  It is only correct for routes whose response depends on nothing but
+ * the attributes above.  Since credentials are part of the key, requests from different users are never
+ * sent each other's responses.</p>
+ * 
+ * <p>This class is thread safe.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class CoalescingInvoker implements MethodInvoker {
+	/**
+	 * The default time in milliseconds that a request waits for an identical request in flight.
+	 */
+	public static final long DEFAULT_WAIT_TIMEOUT = DefaultInvoker.DEFAULT_ASYNC_TIMEOUT;
+
+	final private MethodInvoker invoker;
+	final private ConcurrentMap<Key, Flight> inFlight = new ConcurrentHashMap<Key, Flight>();
+	/**
+	 * Whether requests of a method may be coalesced, by implementation method.
+	 */
+	final private ConcurrentMap<Method, Boolean> coalescible = new ConcurrentHashMap<Method, Boolean>();
+	final private AtomicLong invocations = new AtomicLong();
+	final private AtomicLong coalesced = new AtomicLong();
+	final private AtomicLong waitTimeouts = new AtomicLong();
+	final private AtomicInteger waiting = new AtomicInteger();
+	private volatile long waitTimeout = DEFAULT_WAIT_TIMEOUT;
+
+	/**
+	 * @param invoker the invoker of the routes.
+	 */
+	public CoalescingInvoker(MethodInvoker invoker) {
+		this.invoker = invoker;
+	}
+
+	/**
+	 * @return the invoker of the routes.
+	 */
+	public MethodInvoker getInvoker() {
+		return invoker;
+	}
+
+	/**
+	 * @return the time in milliseconds that a request waits for an identical request in flight.
+	 */
+	public long getWaitTimeout() {
+		return waitTimeout;
+	}
+
+	/**
+	 * @param waitTimeout the time in milliseconds that a request waits for an identical request in
+	 * flight before invoking its route itself.
+	 */
+	public void setWaitTimeout(long waitTimeout) {
+		this.waitTimeout = waitTimeout;
+	}
+
+	/**
+	 * @return the number of GET requests that invoked their route.
+	 */
+	public long getInvocations() {
+		return invocations.get();
+	}
+
+	/**
+	 * @return the number of GET requests sent the response of an identical request in flight.
+	 */
+	public long getCoalescedRequests() {
+		return coalesced.get();
+	}
+
+	/**
+	 * @return the number of requests that gave up waiting for an identical request in flight.
+	 */
+	public long getWaitTimeouts() {
+		return waitTimeouts.get();
+	}
+
+	/**
+	 * @return the number of requests currently waiting for an identical request in flight.
+	 */
+	public int getWaiting() {
+		return waiting.get();
+	}
+
+	/**
+	 * @return the fraction of GET requests sent the response of an identical request in flight
+	 * rather than invoking their route, or 0 if there have been none.
+	 */
+	public double getCoalescingRatio() {
+		long waited = coalesced.get();
+		long total = waited + invocations.get();
+		return (total == 0) ? 0 : (double)waited / total;
+	}
+
+	@Override
+	public InvokeResult invokeMethod(HttpMethod method, PathMatch pm,
+			HttpServletRequest req, HttpServletResponse resp) throws ServletException {
+		if(method != HttpMethod.GET || !isCoalescible(pm.getRoute().getImplMethod()))
+			return invoker.invokeMethod(method, pm, req, resp);
+		Key key = new Key(pm.getRoute(), req);
+		Flight flight = new Flight();
+		Flight leader = inFlight.putIfAbsent(key, flight);
+		if(leader == null)
+			return lead(key, flight, method, pm, req, resp);
+		InvokeResult result = follow(leader, resp);
+		if(result != null)
+			return result;
+		invocations.incrementAndGet();
+		return invoker.invokeMethod(method, pm, req, resp);
+	}
+
+	private boolean isCoalescible(Method implMethod) {
+		if(implMethod == null)
+			return false;
+		Boolean result = coalescible.get(implMethod);
+		if(result == null) {
+			RestMethod restMethod = implMethod.getAnnotation(RestMethod.class);
+			result = (restMethod != null) && restMethod.coalesce();
+			coalescible.put(implMethod, result);
+		}
+		return result;
+	}
+
+	private InvokeResult lead(Key key, Flight flight, HttpMethod method, PathMatch pm,
+			HttpServletRequest req, HttpServletResponse resp) throws ServletException {
+		invocations.incrementAndGet();
+		try {
+			CapturingResponse capture = new CapturingResponse(resp, true);
+			InvokeResult result = invoker.invokeMethod(method, pm, req, capture);
+			flight.result = result;
+			flight.response = capture.toCachedResponse();
+			// Let the waiting requests go before writing this one
+			complete(key, flight);
+			capture.writeBody();
+			return result;
+		} catch(IOException e) {
+			throw new ServletException(String.format("Error writing the response of %s", pm.getRoute()), e);
+		} finally {
+			complete(key, flight);
+		}
+	}
+
+	private void complete(Key key, Flight flight) {
+		if(inFlight.remove(key, flight))
+			flight.done.countDown();
+	}
+
+	/**
+	 * Waits for the request in flight and sends its response.
+	 * 
+	 * @return the result of the request in flight or null if its response cannot be shared or
+	 * did not come in time.
+	 */
+	private InvokeResult follow(Flight leader, HttpServletResponse resp) throws ServletException {
+		waiting.incrementAndGet();
+		try {
+			if(!leader.done.await(waitTimeout, TimeUnit.MILLISECONDS)) {
+				waitTimeouts.incrementAndGet();
+				return null;
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} finally {
+			waiting.decrementAndGet();
+		}
+		CachedResponse response = leader.response;
+		if(response == null)
+			return null;
+		coalesced.incrementAndGet();
+		try {
+			response.write(resp);
+		} catch(IOException e) {
+			throw new ServletException("Error writing a coalesced response", e);
+		}
+		return leader.result;
+	}
+
+	/**
+	 * An invocation in flight and, once it is done, its result and response.
+	 */
+	private static class Flight {
+		final CountDownLatch done = new CountDownLatch(1);
+		volatile InvokeResult result;
+		volatile CachedResponse response;
+	}
+
+	/**
+	 * The route and the request attributes that make requests identical.
+	 */
+	private static final class Key {
+		final private Route route;
+		final private String path;
+		final private String query;
+		final private String accept;
+		final private String acceptEncoding;
+		final private String authorization;
+		final private String cookie;
+		final private int hash;
+
+		Key(Route route, HttpServletRequest req) {
+			this.route = route;
+			this.path = req.getPathInfo();
+			this.query = req.getQueryString();
+			this.accept = req.getHeader("Accept");
+			this.acceptEncoding = req.getHeader("Accept-Encoding");
+			this.authorization = req.getHeader("Authorization");
+			this.cookie = req.getHeader("Cookie");
+			final int prime = 31;
+			int result = System.identityHashCode(route);
+			result = prime * result + ((path == null) ? 0 : path.hashCode());
+			result = prime * result + ((query == null) ? 0 : query.hashCode());
+			result = prime * result + ((accept == null) ? 0 : accept.hashCode());
+			result = prime * result + ((acceptEncoding == null) ? 0 : acceptEncoding.hashCode());
+			result = prime * result + ((authorization == null) ? 0 : authorization.hashCode());
+			result = prime * result + ((cookie == null) ? 0 : cookie.hashCode());
+			this.hash = result;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			Key other = (Key) obj;
+			return hash == other.hash && route == other.route
+					&& equalStrings(path, other.path)
+					&& equalStrings(query, other.query)
+					&& equalStrings(accept, other.accept)
+					&& equalStrings(acceptEncoding, other.acceptEncoding)
+					&& equalStrings(authorization, other.authorization)
+					&& equalStrings(cookie, other.cookie);
+		}
+
+		private static boolean equalStrings(String a, String b) {
+			return (a == null) ? b == null : a.equals(b);
+		}
+	}
+}
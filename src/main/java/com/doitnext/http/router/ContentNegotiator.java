@@ -0,0 +1,306 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router;
+
+import static com.doitnext.http.router.MediaTypeRegistry.ANY;
+import static com.doitnext.http.router.MediaTypeRegistry.NONE;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>Performs content negotiation over the routes of a {@link RouteIndex} using precomputed
+ * {@link BitSet} masks.  Candidate sets are the route ordinals of the index, typically as returned
+ * by {@link RouteIndex#matching(String)}.  Each negotiation step narrows the candidate set in place
+ * with a few mask operations, so no intermediate lists of {@link PathMatch} objects are built.</p>
+ *
+ * <p>The matching rules are those of {@link MediaRanges#acceptMatches(int, Route)} and
+ * {@link MediaRanges#contentTypeMatches(Route)}.</p>
+ *
+ * <p>This class is Immutable and thread safe.</p>
+ *
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class ContentNegotiator {
+	private static final BitSet EMPTY = new BitSet();
+
+	final private int size;
+	/**
+	 * Routes that return anything (return format and type are both '*&#47;*').
+	 */
+	final private BitSet wildcardReturns = new BitSet();
+	/**
+	 * Routes that consume anything (request format and type are both '*&#47;*').
+	 */
+	final private BitSet wildcardConsumers = new BitSet();
+	/**
+	 * Routes by the {@link MediaTypeRegistry} id of their return format, return type,
+	 * request format and request type.  Ids not used by any route map to null.
+	 */
+	final private BitSet byReturnFormat[];
+	final private BitSet byReturnType[];
+	final private BitSet byRequestFormat[];
+	final private BitSet byRequestType[];
+	/**
+	 * Ordinals in the order in which {@link #select(BitSet)} prefers them.
+	 */
+	final private int specificityOrder[];
+	/**
+	 * The {@link #specificity(Route)}, return format id and return type id of each route by ordinal.
+	 */
+	final private int ranks[];
+	final private int returnFormats[];
+	final private int returnTypes[];
+	/**
+	 * The id of the format preferred when the Accept header does not decide between routes.
+	 */
+	final private int preferredFormat;
+
+	/**
+	 * @param index the routes to negotiate over.
+	 */
+	public ContentNegotiator(RouteIndex index) {
+		this.size = index.size();
+		int ids = MediaTypeRegistry.getDefault().size();
+		byReturnFormat = new BitSet[ids];
+		byReturnType = new BitSet[ids];
+		byRequestFormat = new BitSet[ids];
+		byRequestType = new BitSet[ids];
+		List<Integer> order = new ArrayList<Integer>(size);
+		ranks = new int[size];
+		returnFormats = new int[size];
+		returnTypes = new int[size];
+		preferredFormat = MediaTypeRegistry.getDefault().intern("application/json");
+		for(int ordinal = 0; ordinal < size; ordinal++) {
+			Route route = index.getRoute(ordinal);
+			if(route.isWildcardReturn())
+				wildcardReturns.set(ordinal);
+			if(route.isWildcardConsumer())
+				wildcardConsumers.set(ordinal);
+			add(byReturnFormat, route.getReturnFormatId(), ordinal);
+			add(byReturnType, route.getReturnTypeId(), ordinal);
+			add(byRequestFormat, route.getRequestFormatId(), ordinal);
+			add(byRequestType, route.getRequestTypeId(), ordinal);
+			order.add(ordinal);
+			ranks[ordinal] = specificity(route);
+			returnFormats[ordinal] = route.getReturnFormatId();
+			returnTypes[ordinal] = route.getReturnTypeId();
+		}
+		// Collections.sort is stable so routes of equal specificity stay in route order
+		Collections.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return ranks[o2] - ranks[o1];
+			}
+		});
+		specificityOrder = new int[size];
+		for(int x = 0; x < size; x++)
+			specificityOrder[x] = order.get(x);
+	}
+
+	/**
+	 * Ranks a route by how specific its declared models are.  A route that declares a return model
+	 * is more specific than one that does not and, after that, a route that declares a request
+	 * model is more specific than one that does not.
+	 */
+	static int specificity(Route route) {
+		int rank = 0;
+		if(route.getReturnTypeId() != NONE)
+			rank += 2;
+		if(route.getRequestTypeId() != NONE)
+			rank += 1;
+		return rank;
+	}
+
+	/**
+	 * @return the number of routes negotiated over.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Narrows the candidates to the routes whose response is acceptable to at least one of the
+	 * ranges of an Accept header.  When a range names a format without a model the first typed
+	 * route of that format is then dropped so that untyped routes win for such a range.
+	 *
+	 * @param candidates the candidate ordinals, narrowed in place.
+	 * @param accept the parsed Accept header.
+	 * @return the candidates.
+	 */
+	public BitSet filterAcceptable(BitSet candidates, MediaRanges accept) {
+		BitSet accepted = new BitSet(size);
+		accepted.or(wildcardReturns);
+		for(int x = 0; x < accept.size(); x++) {
+			int format = accept.getFormat(x);
+			int model = accept.getModel(x);
+			if(format == ANY) {
+				if(model == NONE)
+					accepted.set(0, size);
+				else
+					accepted.or(get(byReturnType, model));
+			} else {
+				orAnd(accepted, get(byReturnFormat, format), get(byReturnType, model));
+			}
+		}
+		candidates.and(accepted);
+
+		// If a route exists with empty return type and the request has empty return
+		// type then remove routes that have non empty return types (except for wildcard returns)
+		BitSet untyped = get(byReturnType, NONE);
+		for(int x = 0; x < accept.size(); x++) {
+			if(accept.getModel(x) != NONE)
+				continue;
+			BitSet formatRoutes = get(byReturnFormat, accept.getFormat(x));
+			for(int ordinal = candidates.nextSetBit(0); ordinal >= 0; ordinal = candidates.nextSetBit(ordinal + 1)) {
+				if(formatRoutes.get(ordinal) && !untyped.get(ordinal) && !wildcardReturns.get(ordinal)) {
+					candidates.clear(ordinal);
+					break;
+				}
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Narrows the candidates to the routes that consume the request body described by a
+	 * Content-Type header.
+	 *
+	 * @param candidates the candidate ordinals, narrowed in place.
+	 * @param contentType the parsed Content-Type header.
+	 * @return the candidates.
+	 */
+	public BitSet filterConsumable(BitSet candidates, MediaRanges contentType) {
+		int format = (contentType.size() == 0) ? NONE : contentType.getFormat(0);
+		int model = (contentType.size() == 0) ? NONE : contentType.getModel(0);
+		BitSet consumed = new BitSet(size);
+		consumed.or(wildcardConsumers);
+		// Routes with no request format expect no body
+		if(format == NONE) {
+			consumed.or(get(byRequestFormat, NONE));
+		} else {
+			// Route matches all input formats
+			BitSet anyFormat = get(byRequestFormat, ANY);
+			if(model == NONE) {
+				orAnd(consumed, anyFormat, get(byRequestType, NONE));
+			} else {
+				orAnd(consumed, anyFormat, get(byRequestType, ANY));
+				orAnd(consumed, anyFormat, get(byRequestType, model));
+			}
+			if(format != ANY)
+				orAnd(consumed, get(byRequestFormat, format), get(byRequestType, model));
+		}
+		candidates.and(consumed);
+		return candidates;
+	}
+
+	/**
+	 * Picks the most specific candidate.  Candidates that declare a return model are preferred
+	 * over those that do not, then candidates that declare a request model.  Ties go to the
+	 * candidate that comes first in route order.
+	 *
+	 * @param candidates the candidate ordinals.
+	 * @return the selected ordinal or -1 if there are no candidates.
+	 */
+	public int select(BitSet candidates) {
+		int first = candidates.nextSetBit(0);
+		if(first < 0 || candidates.nextSetBit(first + 1) < 0)
+			return first;
+		for(int ordinal : specificityOrder) {
+			if(candidates.get(ordinal))
+				return ordinal;
+		}
+		return -1;
+	}
+
+	/**
+	 * Picks the candidate the client prefers.  As with {@link #select(BitSet)} candidates that declare
+	 * a return model, then a request model, come first.  After that the candidate whose response is
+	 * acceptable with the highest quality is preferred, then one whose return format the Accept header
+	 * names rather than matches with a wildcard, then one that returns 'application/json'.  Remaining
+	 * ties go to the candidate that comes first in route order.
+	 *
+	 * @param candidates the candidate ordinals, typically narrowed by
+	 * {@link #filterAcceptable(BitSet, MediaRanges)}.
+	 * @param accept the parsed Accept header.
+	 * @return the selected ordinal or -1 if there are no candidates.
+	 */
+	public int select(BitSet candidates, MediaRanges accept) {
+		int first = candidates.nextSetBit(0);
+		if(first < 0 || candidates.nextSetBit(first + 1) < 0)
+			return first;
+		int best = -1;
+		int bestScore = -1;
+		for(int ordinal : specificityOrder) {
+			if(!candidates.get(ordinal))
+				continue;
+			int score = score(ordinal, accept);
+			if(score > bestScore) {
+				best = ordinal;
+				bestScore = score;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Scores a route for {@link #select(BitSet, MediaRanges)}, higher is better.
+	 */
+	private int score(int ordinal, MediaRanges accept) {
+		int quality = 0;
+		int named = 0;
+		boolean wildcard = wildcardReturns.get(ordinal);
+		for(int x = 0; x < accept.size(); x++) {
+			int format = accept.getFormat(x);
+			if(!wildcard && !MediaRanges.acceptMatches(format, accept.getModel(x),
+					returnFormats[ordinal], returnTypes[ordinal]))
+				continue;
+			int rangeNamed = (!wildcard && format != ANY) ? 1 : 0;
+			int rangeQuality = accept.getQuality(x);
+			if(rangeQuality > quality || (rangeQuality == quality && rangeNamed > named)) {
+				quality = rangeQuality;
+				named = rangeNamed;
+			}
+		}
+		int preferred = (returnFormats[ordinal] == preferredFormat) ? 1 : 0;
+		return ((ranks[ordinal] * 1001 + quality) * 2 + named) * 2 + preferred;
+	}
+
+	private static void add(BitSet sets[], int id, int ordinal) {
+		if(sets[id] == null)
+			sets[id] = new BitSet();
+		sets[id].set(ordinal);
+	}
+
+	private static BitSet get(BitSet sets[], int id) {
+		if(id < 0 || id >= sets.length || sets[id] == null)
+			return EMPTY;
+		return sets[id];
+	}
+
+	/**
+	 * Sets the bits of target that are set in both a and b.
+	 */
+	private static void orAnd(BitSet target, BitSet a, BitSet b) {
+		for(int ordinal = a.nextSetBit(0); ordinal >= 0; ordinal = a.nextSetBit(ordinal + 1)) {
+			if(b.get(ordinal))
+				target.set(ordinal);
+		}
+	}
+}
@@ -16,7 +16,9 @@
 package com.doitnext.http.router;
 
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -38,6 +40,10 @@ import org.springframework.stereotype.Component;
 import com.doitnext.http.router.annotations.RestMethod;
 import com.doitnext.http.router.annotations.RestCollection;
 import com.doitnext.http.router.annotations.enums.HttpMethod;
+import com.doitnext.http.router.codecs.CodecRegistry;
+import com.doitnext.http.router.responseformatter.CborResponseFormatter;
+import com.doitnext.http.router.responseformatter.JacksonResponseFormatter;
+import com.doitnext.http.router.responseformatter.SmileResponseFormatter;
 import com.doitnext.http.router.responsehandlers.DefaultErrorHandler;
 import com.doitnext.http.router.responsehandlers.DefaultSuccessHandler;
 import com.doitnext.http.router.responsehandlers.ResponseHandler;
@@ -62,14 +68,25 @@ public class DefaultEndpointResolver implements EndpointResolver, ApplicationCon
 
 	private static Logger logger = LoggerFactory
 			.getLogger(DefaultEndpointResolver.class);
+	/**
+	 * The formats the metrics are served in: JSON and the Prometheus text format.
+	 */
+	private static final String[] METRICS_FORMATS = { "application/json", "text/plain" };
 	private MethodInvoker invoker;
 	private Map<MethodReturnKey, ResponseHandler> successHandlers;
 	private Map<MethodReturnKey, ResponseHandler> errorHandlers;
+	/**
+	 * The handlers of the binary JSON compatible formats by format.  They serve routes whatever their
+	 * return type when the success and error handlers, which may be replaced, have none of their own.
+	 */
+	final private Map<String, ResponseHandler> formatSuccessHandlers = new HashMap<String, ResponseHandler>();
+	final private Map<String, ResponseHandler> formatErrorHandlers = new HashMap<String, ResponseHandler>();
 	private DefaultErrorHandler defaultErrorHandler = new DefaultErrorHandler();
 	private DefaultSuccessHandler defaultSuccessHandler = new DefaultSuccessHandler();
 	private PathTemplateParser pathTemplateParser = new PathTemplateParser("/","?");
 	private ApplicationContext applicationContext;
 	private EndpointDumper endpointDumper;
+	private MetricsDumper metricsDumper;
 	
 	public DefaultEndpointResolver() {
 		MethodReturnKey defaultKey = new MethodReturnKey("", "application/json");
@@ -77,6 +94,13 @@ public class DefaultEndpointResolver implements EndpointResolver, ApplicationCon
 		successHandlers = new HashMap<MethodReturnKey, ResponseHandler>();
 		errorHandlers.put(defaultKey, defaultErrorHandler);
 		successHandlers.put(defaultKey, defaultSuccessHandler);
+		// Binary JSON compatible formats
+		JacksonResponseFormatter smileFormatter = new SmileResponseFormatter();
+		formatErrorHandlers.put(CodecRegistry.SMILE, new DefaultErrorHandler(CodecRegistry.SMILE, CodecRegistry.SMILE, smileFormatter));
+		formatSuccessHandlers.put(CodecRegistry.SMILE, new DefaultSuccessHandler(CodecRegistry.SMILE, CodecRegistry.SMILE, smileFormatter));
+		JacksonResponseFormatter cborFormatter = new CborResponseFormatter();
+		formatErrorHandlers.put(CodecRegistry.CBOR, new DefaultErrorHandler(CodecRegistry.CBOR, CodecRegistry.CBOR, cborFormatter));
+		formatSuccessHandlers.put(CodecRegistry.CBOR, new DefaultSuccessHandler(CodecRegistry.CBOR, CodecRegistry.CBOR, cborFormatter));
 	}
 
 	@Required
@@ -84,6 +108,13 @@ public class DefaultEndpointResolver implements EndpointResolver, ApplicationCon
 		this.invoker = invoker;
 	}
 
+	/**
+	 * @return the invoker given to the routes or null if none has been set.
+	 */
+	public MethodInvoker getMethodInvoker() {
+		return invoker;
+	}
+
 	@Required
 	public void setSuccessHandlers(
 			Map<MethodReturnKey, ResponseHandler> successHandlers) {
@@ -98,6 +129,10 @@ public class DefaultEndpointResolver implements EndpointResolver, ApplicationCon
 	public void setEndpointDumper(EndpointDumper endpointDumper){
 		this.endpointDumper = endpointDumper;
 	}
+	
+	public void setMetricsDumper(MetricsDumper metricsDumper){
+		this.metricsDumper = metricsDumper;
+	}
 
 	/*
 	 * (non-Javadoc)
@@ -142,20 +177,28 @@ public class DefaultEndpointResolver implements EndpointResolver, ApplicationCon
 			pathBuilder = new StringBuilder(resourcePathPrefix);
 			pathBuilder.append(methodImpl.template());
 			Object implInstance = applicationContext.getBean(resource.value(), classz);
-			RequestResponseContext rrCtx = 
-					new RequestResponseContext(new InheritableValue(resource.requestType(), methodImpl.requestType()),
-							new InheritableValue(resource.returnType(), methodImpl.returnType()),
-							new InheritableValue(resource.requestFormat(), methodImpl.requestFormat()),
-							new InheritableValue(resource.returnFormat(), methodImpl.returnFormat()));
-			
-			addMethodToRoutes(pathBuilder.toString(), implInstance, rrCtx, method, classz, methodImpl.method(), routes);
+			InheritableValue requestFormat = new InheritableValue(resource.requestFormat(), methodImpl.requestFormat());
+			InheritableValue returnFormat = new InheritableValue(resource.returnFormat(), methodImpl.returnFormat());
+			for(String requestFormatValue : formats(requestFormat.resolve(),
+					resource.alternateRequestFormats(), methodImpl.alternateRequestFormats())) {
+				for(String returnFormatValue : formats(returnFormat.resolve(),
+						resource.alternateReturnFormats(), methodImpl.alternateReturnFormats())) {
+					RequestResponseContext rrCtx = 
+							new RequestResponseContext(new InheritableValue(resource.requestType(), methodImpl.requestType()),
+									new InheritableValue(resource.returnType(), methodImpl.returnType()),
+									new InheritableValue(requestFormatValue, requestFormatValue),
+									new InheritableValue(returnFormatValue, returnFormatValue));
+					
+					addMethodToRoutes(pathBuilder.toString(), implInstance, rrCtx, method, classz, methodImpl.method(), routes);
+				}
+			}
 		}
 		
 		// Add dump routes to the set
 		if(endpointDumper != null) {
 			for(String returnFormat : endpointDumper.getReturnFormats()) {
 				pathBuilder = new StringBuilder("endpoints_");
-				Object implInstance = this;
+				Object implInstance = endpointDumper;
 				RequestResponseContext rrCtx = 
 						new RequestResponseContext(new InheritableValue("", ""),
 								new InheritableValue("", ""),
@@ -172,18 +215,68 @@ public class DefaultEndpointResolver implements EndpointResolver, ApplicationCon
 				}
 			}
 		}
+		
+		// Add the metrics routes next to the dump routes
+		if(metricsDumper != null) {
+			for(String returnFormat : METRICS_FORMATS) {
+				RequestResponseContext rrCtx = 
+						new RequestResponseContext(new InheritableValue("", ""),
+								new InheritableValue("", ""),
+								new InheritableValue("", ""),
+								new InheritableValue(returnFormat, returnFormat));
+				try {
+					Method method = metricsDumper.getClass().getMethod("dumpMetrics", HttpServletRequest.class, HttpServletResponse.class);
+					// The dumper writes the response itself so formats without a success handler are served too
+					addMethodToRoutes("metrics_", metricsDumper, rrCtx, method, 
+							metricsDumper.getClass(), HttpMethod.GET, routes, defaultSuccessHandler);		
+				} catch (SecurityException e) {
+					logger.error("Unable to add metrics dump", e);
+				} catch (NoSuchMethodException e) {
+					logger.error("Unable to add metrics dump", e);
+				}
+			}
+		}
 	}
 
 	
+	/**
+	 * @return the format followed by the method's alternate formats or, if the method declares none,
+	 * the collection's alternate formats.
+	 */
+	private static Set<String> formats(String format, String collectionAlternates[], String methodAlternates[]) {
+		Set<String> result = new LinkedHashSet<String>();
+		result.add(format);
+		result.addAll(Arrays.asList((methodAlternates.length > 0) ? methodAlternates : collectionAlternates));
+		return result;
+	}
+
 	private void addMethodToRoutes(String path, Object implInstance, RequestResponseContext rrCtx,
 			Method implMethod, Class<?> implClass, HttpMethod httpMethod,
 			TreeSet<Route> routes) {
+		addMethodToRoutes(path, implInstance, rrCtx, implMethod, implClass, httpMethod, routes, null);
+	}
+
+	/**
+	 * The handlers of a route are those for its return type and format in the success and error handlers
+	 * or, failing that, those of its format.
+	 * 
+	 * @param fallbackSuccessHandler the success handler of the route if there is none for its return
+	 * type or format, or null to not add such a route.
+	 */
+	private void addMethodToRoutes(String path, Object implInstance, RequestResponseContext rrCtx,
+			Method implMethod, Class<?> implClass, HttpMethod httpMethod,
+			TreeSet<Route> routes, ResponseHandler fallbackSuccessHandler) {
 		try {
 			PathTemplate pathTemplate = pathTemplateParser.parse(path);
 			MethodReturnKey acceptKey = new MethodReturnKey(rrCtx.responseType.resolve(),
 					rrCtx.responseFormat.resolve());
 
-			if (!successHandlers.containsKey(acceptKey)) {
+			ResponseHandler successHandler = successHandlers.get(acceptKey);
+			if (successHandler == null)
+				successHandler = formatSuccessHandlers.get(acceptKey.getReturnFormat());
+			if (successHandler == null)
+				successHandler = fallbackSuccessHandler;
+			if (successHandler == null) {
 				logger.error(String
 						.format("No response handler for method with %s in success handlers %s",
 								acceptKey, successHandlers));
@@ -191,13 +284,13 @@ public class DefaultEndpointResolver implements EndpointResolver, ApplicationCon
 					logger.debug(String.format("successHandlers = %s", successHandlers));		
 				return;
 			}
-			// If no error handler in errorHandlers use a 
+			// If no error handler in errorHandlers or for the format use a 
 			// default handler so we can handle errors.
-			ResponseHandler errorHandler = defaultErrorHandler;
-			if (errorHandlers.containsKey(acceptKey)) {
-				errorHandler = errorHandlers.get(acceptKey);
-			}
-			ResponseHandler successHandler = successHandlers.get(acceptKey);
+			ResponseHandler errorHandler = errorHandlers.get(acceptKey);
+			if (errorHandler == null)
+				errorHandler = formatErrorHandlers.get(acceptKey.getReturnFormat());
+			if (errorHandler == null)
+				errorHandler = defaultErrorHandler;
 			Route route = new Route(httpMethod,
 					rrCtx.requestType.resolve(), rrCtx.responseType.resolve(),
 					rrCtx.requestFormat.resolve(), rrCtx.responseFormat.resolve(),
@@ -16,15 +16,25 @@
 package com.doitnext.http.router;
 
 import java.lang.annotation.Annotation;
-import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -35,30 +45,75 @@ import org.slf4j.LoggerFactory;
 import com.doitnext.http.router.annotations.PathParameter;
 import com.doitnext.http.router.annotations.QueryParameter;
 import com.doitnext.http.router.annotations.RequestBody;
+import com.doitnext.http.router.annotations.RestMethod;
 import com.doitnext.http.router.annotations.Terminus;
 import com.doitnext.http.router.annotations.enums.HttpMethod;
+import com.doitnext.http.router.argumentbinders.ArgumentBinder;
+import com.doitnext.http.router.argumentbinders.BindingContext;
+import com.doitnext.http.router.argumentbinders.BindingPlan;
+import com.doitnext.http.router.argumentbinders.BindingPlanFactory;
+import com.doitnext.http.router.argumentbinders.FailingBinder;
+import com.doitnext.http.router.argumentbinders.NullBinder;
+import com.doitnext.http.router.argumentbinders.PathParameterBinder;
+import com.doitnext.http.router.argumentbinders.QueryParameterBinder;
+import com.doitnext.http.router.argumentbinders.RequestBinder;
+import com.doitnext.http.router.argumentbinders.RequestBodyBinder;
+import com.doitnext.http.router.argumentbinders.ResponseBinder;
+import com.doitnext.http.router.argumentbinders.TerminusBinder;
+import com.doitnext.http.router.codecs.CodecRegistry;
 import com.doitnext.http.router.exceptions.DeserializationException;
-import com.doitnext.http.router.exceptions.TypeConversionException;
+import com.doitnext.http.router.exceptions.Http503Exception;
 import com.doitnext.http.router.exceptions.UnsupportedConversionException;
+import com.doitnext.http.router.jfr.ArgumentBindingEvent;
+import com.doitnext.http.router.jfr.HandlerInvocationEvent;
+import com.doitnext.http.router.jfr.RouteMatchEvent;
+import com.doitnext.http.router.limits.ConcurrencyLimits.Permit;
+import com.doitnext.http.router.metrics.PhaseTimer;
+import com.doitnext.http.router.metrics.PhaseTimer.Phase;
+import com.doitnext.http.router.metrics.RouteMetrics;
+import com.doitnext.http.router.requestdeserializers.CborDeserializer;
 import com.doitnext.http.router.requestdeserializers.DefaultJsonDeserializer;
 import com.doitnext.http.router.requestdeserializers.RequestDeserializer;
+import com.doitnext.http.router.requestdeserializers.SmileDeserializer;
+import com.doitnext.http.router.responsecache.CapturingResponse;
 import com.doitnext.http.router.typeconverters.StringConversionUtil;
 import com.doitnext.http.router.typeconverters.TypeConversionUtil;
-import com.doitnext.pathutils.PathElement;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.doitnext.pathutils.LiteralTemplate;
+import com.doitnext.pathutils.PathTemplate;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.collect.MapMaker;
 
 /**
  * The default implementation for MethodInvoker.
  * 
+ * <p>Arguments are bound with a {@link BindingPlan} computed once per route.  Routes built with
+ * this invoker carry their plan (see {@link Route#getBindingPlan()}).  Plans for routes built with
+ * any other invoker are computed on first use and cached.  The plans capture the
+ * {@link #stringConverter}, {@link #requestDeserializers} and {@link #codecRegistry} in effect when they are created, so
+ * both should be configured before routes are resolved.</p>
+ * 
+ * <p>A route may return a {@link CompletionStage} (or a {@link Future}) of its response.  When the
+ * servlet is registered with async support the container thread is released and the response is
+ * written by the success or error handler when the stage completes, or a '503 Service Unavailable'
+ * error when it does not complete within the {@link #asyncTimeout}, in which case the stage is cancelled.</p>
+ * 
  * @author Steve Owens (steve@doitnext.com)
  *
  */
-public class DefaultInvoker implements MethodInvoker {
+public class DefaultInvoker implements MethodInvoker, BindingPlanFactory {
 	static Logger logger = LoggerFactory.getLogger(DefaultInvoker.class);
 	
-	private ObjectMapper objectMapper = new ObjectMapper();
+	private static final ArgumentBinder REQUEST_BINDER = new RequestBinder();
+	private static final ArgumentBinder RESPONSE_BINDER = new ResponseBinder();
+	private static final ArgumentBinder TERMINUS_BINDER = new TerminusBinder();
+	private static final ArgumentBinder NULL_BINDER = new NullBinder();
+	
+	/**
+	 * Supplies the writers kept by binding plans for the declared return types of routes that return
+	 * its format.  Routes returning another format use the built in registry for their format if
+	 * there is one (see {@link CodecRegistry#forFormat(String)}).
+	 */
+	private CodecRegistry codecRegistry = CodecRegistry.getDefault();
 	
 	/**
 	 * Converts path and query parameters into method argument types.
@@ -71,11 +126,30 @@ public class DefaultInvoker implements MethodInvoker {
 	 */
 	private List<RequestDeserializer> requestDeserializers = new ArrayList<RequestDeserializer>();
 	
+	/**
+	 * Binding plans for routes that were not built with this invoker, such as routes from an
+	 * {@link EndpointResolver} given another invoker.  Routes built with this invoker carry their
+	 * plans.  Routes are weakly referenced so that replaced dynamic routes can be collected.
+	 */
+	private final ConcurrentMap<Route, BindingPlan> foreignPlans = new MapMaker().weakKeys().makeMap();
+	
+	/**
+	 * The default time in milliseconds that a route returning a {@link CompletionStage} or {@link Future}
+	 * may take to complete it.
+	 */
+	public static final long DEFAULT_ASYNC_TIMEOUT = 30000;
+	
+	/**
+	 * The time in milliseconds that a route returning a {@link CompletionStage} or {@link Future} may take
+	 * to complete it, unless its {@link RestMethod#asyncTimeout()} says otherwise.  Zero means no timeout.
+	 */
+	private long asyncTimeout = DEFAULT_ASYNC_TIMEOUT;
+	
 	public DefaultInvoker() {
-		objectMapper.enable(DeserializationFeature.READ_ENUMS_USING_TO_STRING);
-		objectMapper.enable(SerializationFeature.WRITE_ENUMS_USING_TO_STRING);
 		// Start off with the known serializers
 		requestDeserializers.add(new DefaultJsonDeserializer());
+		requestDeserializers.add(new SmileDeserializer());
+		requestDeserializers.add(new CborDeserializer());
 	}
 
 	
@@ -92,6 +166,40 @@ public class DefaultInvoker implements MethodInvoker {
 	 */
 	public void setStringConverter(TypeConversionUtil<String> stringConverter) {
 		this.stringConverter = stringConverter;
+		foreignPlans.clear();
+	}
+
+
+	/**
+	 * @return the {@link #codecRegistry}
+	 */
+	public CodecRegistry getCodecRegistry() {
+		return codecRegistry;
+	}
+
+
+	/**
+	 * @param codecRegistry the {@link #codecRegistry} to set
+	 */
+	public void setCodecRegistry(CodecRegistry codecRegistry) {
+		this.codecRegistry = codecRegistry;
+		foreignPlans.clear();
+	}
+
+
+	/**
+	 * @return the {@link #asyncTimeout}
+	 */
+	public long getAsyncTimeout() {
+		return asyncTimeout;
+	}
+
+
+	/**
+	 * @param asyncTimeout the {@link #asyncTimeout} to set
+	 */
+	public void setAsyncTimeout(long asyncTimeout) {
+		this.asyncTimeout = asyncTimeout;
 	}
 
 
@@ -109,6 +217,7 @@ public class DefaultInvoker implements MethodInvoker {
 	public void setRequestDeserializers(
 			List<RequestDeserializer> requestDeserializers) {
 		this.requestDeserializers = requestDeserializers;
+		foreignPlans.clear();
 	}
 
 
@@ -116,142 +225,284 @@ public class DefaultInvoker implements MethodInvoker {
 	public InvokeResult invokeMethod(HttpMethod method, PathMatch pm,
 			HttpServletRequest req, HttpServletResponse resp) 
 					throws ServletException {
-		String terminus = pm.getMatchedPath().getTerminus();
-		
-		// Extract variables from the path
-		Map<String, PathElement> variableMatches = new HashMap<String,PathElement>();
-		for(int x = 0; x < pm.getMatchedPath().size(); x++) {
-			PathElement p = pm.getMatchedPath().get(x);
-			if(!p.getType().equalsIgnoreCase("LITERAL")) {
-				variableMatches.put(p.getName(), p);
-			}
-		}
-		
 		Route route = pm.getRoute();
-		
-		Method implMethod = route.getImplMethod();
-		
-		Annotation[][] parameterAnnotations = implMethod.getParameterAnnotations();
-		Class<?>[] parameterTypes = implMethod.getParameterTypes();
-		Object[] arguments = new Object[parameterTypes.length];
+		PhaseTimer timer = PhaseTimer.get(req);
 		try {	
-			// First map annotated parameters, and HttpServletRequest 
-			// and HttpServletResponse parameters to arguments.
-			mapParametersToArguments(parameterAnnotations, parameterTypes, variableMatches,
-					req, resp, terminus, pm, arguments);
+			if(timer != null)
+				timer.mark();
+			ArgumentBindingEvent bindingEvent = ArgumentBindingEvent.beginIfEnabled();
+			BindingPlan plan = getBindingPlan(route);
+			Object[] arguments = plan.bind(new BindingContext(pm, req, resp));
+			if(timer != null)
+				timer.lap(Phase.BIND);
+			if(bindingEvent != null && bindingEvent.shouldCommit()) {
+				bindingEvent.route = RouteMatchEvent.describe(route);
+				bindingEvent.arguments = arguments.length;
+				bindingEvent.commit();
+			}
 			if(logger.isDebugEnabled()) {
 				logger.debug(String.format("Invoking %s", route));
 			}
-			Object invocationResult = implMethod.invoke(route.getImplInstance(), arguments);
+			Object invocationResult;
+			HandlerInvocationEvent invocationEvent = HandlerInvocationEvent.beginIfEnabled();
+			boolean threw = true;
+			try {
+				invocationResult = invokeImplMethod(route, plan, arguments);
+				threw = false;
+			} finally {
+				if(timer != null)
+					timer.lap(Phase.INVOKE);
+				if(invocationEvent != null && invocationEvent.shouldCommit()) {
+					invocationEvent.route = RouteMatchEvent.describe(route);
+					invocationEvent.implMethod = String.format("%s.%s", route.getImplClass().getName(), route.getImplMethod().getName());
+					invocationEvent.threw = threw;
+					invocationEvent.commit();
+				}
+			}
+			if(invocationResult instanceof CompletionStage || invocationResult instanceof Future)
+				return completeLater(pm, req, resp, plan, invocationResult);
 			if(logger.isTraceEnabled()) {
-				logger.trace(String.format("Returned %s from %s", objectMapper.writeValueAsString(invocationResult),
+				logger.trace(String.format("Returned %s from %s", codecRegistry.getWriter().writeValueAsString(invocationResult),
 						route));
 			}
-			if(route.getSuccessHandler().handleResponse(pm, req, resp, invocationResult))
-				return InvokeResult.METHOD_SUCCESS;
-			else
-				return InvokeResult.METHOD_SUCCESS_UNHANDLED;
+			return handleSuccess(pm, req, resp, invocationResult);
 		} catch(InvocationTargetException ite) {
 			if(logger.isDebugEnabled()) {
 				logger.debug(String.format("Invocation threw a %s %s", ite.getCause().getClass().getSimpleName(), ite.getCause().getMessage()));
 			} 
-			if(route.getErrorHandler().handleResponse(pm, req, resp, ite.getCause()))
-				return InvokeResult.METHOD_ERROR;
-			else
-				return InvokeResult.METHOD_ERROR_UNHANDLED;
+			return handleError(pm, req, resp, ite.getCause());
 		} catch(Exception e) {
 			throw new ServletException(String.format("Error invoking %s", route), e);
 		}
 	}
 	
-	private Map<String,String[]> parseQueryArgs(HttpServletRequest req) {
-		Map<String,String[]> result = new HashMap<String,String[]>();
-		Map<String,String[]> parameterMap = req.getParameterMap();
-		String queryString = req.getQueryString();
-		
-		for(Entry<String,String[]> entry : parameterMap.entrySet()) {
-			if(queryString.contains(String.format("%s=",entry.getKey()))) {
-				result.put(entry.getKey(), entry.getValue());
-			} 
-		}
-		return result;
+	private static InvokeResult handleSuccess(PathMatch pm, HttpServletRequest req, HttpServletResponse resp, Object value) {
+		if(pm.getRoute().getSuccessHandler().handleResponse(pm, req, resp, value))
+			return InvokeResult.METHOD_SUCCESS;
+		else
+			return InvokeResult.METHOD_SUCCESS_UNHANDLED;
 	}
 	
+	private static InvokeResult handleError(PathMatch pm, HttpServletRequest req, HttpServletResponse resp, Throwable error) {
+		if(pm.getRoute().getErrorHandler().handleResponse(pm, req, resp, error))
+			return InvokeResult.METHOD_ERROR;
+		else
+			return InvokeResult.METHOD_ERROR_UNHANDLED;
+	}
 	
-	// Default scope for unit testing
-	void mapParametersToArguments(Annotation[][] parameterAnnotations,
-			Class<?>[] parameterTypes, Map<String, PathElement> variableMatches,
-		    HttpServletRequest req, HttpServletResponse resp, String terminus, 
-		    PathMatch pm, Object[] arguments) throws Exception {
-		Map<String,String[]> queryArgs = parseQueryArgs(req);
-		for(int x = 0; x < parameterTypes.length; x++){
-			if(parameterTypes[x].equals(HttpServletRequest.class)) {
-				arguments[x] = req;
-				continue;
+	/**
+	 * Responds with the eventual value of a {@link CompletionStage} or {@link Future} returned by a route.
+	 * A CompletionStage is completed asynchronously, releasing the container thread, when the request
+	 * supports it and is not already asynchronous.  The response is then written when the stage completes.
+	 * Otherwise, and always for a Future, the value is waited for.  Responses being captured, as by
+	 * {@link com.doitnext.http.router.responsecache.ResponseCache}, are always waited for since they
+	 * must be complete when the invoker returns.  A value that is not ready in time is cancelled.
+	 */
+	private InvokeResult completeLater(PathMatch pm, HttpServletRequest req, HttpServletResponse resp, 
+			BindingPlan plan, Object pending) throws Exception {
+		long timeout = (plan.getAsyncTimeout() >= 0) ? plan.getAsyncTimeout() : asyncTimeout;
+		if(pending instanceof CompletionStage && !(resp instanceof CapturingResponse) 
+				&& req.isAsyncSupported() && !req.isAsyncStarted()) {
+			@SuppressWarnings("unchecked")
+			CompletionStage<Object> stage = (CompletionStage<Object>)pending;
+			return completeAsync(pm, req, resp, stage, timeout);
+		}
+		Future<?> future = (pending instanceof Future) ? (Future<?>)pending : ((CompletionStage<?>)pending).toCompletableFuture();
+		Object value;
+		try {
+			value = (timeout > 0) ? future.get(timeout, TimeUnit.MILLISECONDS) : future.get();
+		} catch(ExecutionException e) {
+			return handleError(pm, req, resp, e.getCause());
+		} catch(TimeoutException e) {
+			future.cancel(true);
+			return handleTimeout(pm, req, resp, timeout);
+		}
+		return handleSuccess(pm, req, resp, value);
+	}
+	
+	private static InvokeResult completeAsync(final PathMatch pm, final HttpServletRequest req, final HttpServletResponse resp,
+			final CompletionStage<Object> stage, final long timeout) {
+		final AsyncContext asyncContext = req.startAsync(req, resp);
+		asyncContext.setTimeout(timeout);
+		// The request is recorded, and its permit released, when it completes rather than when the invoker returns
+		final Long started = RouteMetrics.claim(req);
+		final Permit permit = Permit.claim(req);
+		// Whichever of completion, timeout or error comes first owns the response
+		final AtomicBoolean done = new AtomicBoolean();
+		asyncContext.addListener(new AsyncListener() {
+			@Override
+			public void onTimeout(AsyncEvent event) {
+				if(done.compareAndSet(false, true)) {
+					try {
+						handleTimeout(pm, req, resp, timeout);
+					} finally {
+						asyncContext.complete();
+						stage.toCompletableFuture().cancel(true);
+					}
+				}
+			}
+			@Override
+			public void onError(AsyncEvent event) {
+				done.set(true);
+			}
+			@Override
+			public void onComplete(AsyncEvent event) {
+				if(permit != null)
+					permit.release();
+				if(started != null) {
+					RouteMetrics metrics = pm.getRoute().getMetrics();
+					metrics.record(resp.getStatus(), System.nanoTime() - started);
+					PhaseTimer timer = PhaseTimer.get(req);
+					if(timer != null)
+						metrics.recordPhases(timer);
+				}
 			}
-			if(parameterTypes[x].equals(HttpServletResponse.class)){
-				arguments[x] = resp;
-				continue;
+			@Override
+			public void onStartAsync(AsyncEvent event) {
 			}
-			if(parameterAnnotations[x].length > 0) {
-				for(int y = 0; y < parameterAnnotations[x].length; y++) {
-					Annotation annotation = parameterAnnotations[x][y];
-					if(annotation instanceof PathParameter) {
-						mapPathParameter((PathParameter)annotation, arguments, 
-								parameterTypes[x], variableMatches, x);
-						break;
-					} else if(annotation instanceof QueryParameter) {
-						mapQueryParameter((QueryParameter)annotation, arguments, 
-								parameterTypes[x], queryArgs, x);
-						break;
-					} else if(annotation instanceof Terminus) {
-						if(parameterTypes[x].isAssignableFrom(String.class)) {
-							arguments[x] = terminus;
-							break;
-						} else {
-							throw new UnsupportedConversionException(String.class, parameterTypes[x]);
-						}
-					} else if(annotation instanceof RequestBody) {
-						RequestDeserializer deserializer = selectDeserializer(pm);
-						Object argument = deserializer.deserialize(req.getInputStream(), parameterTypes[x],
-								pm.getRoute().getRequestType(), req.getCharacterEncoding());
-						arguments[x] = argument;
-						break;
+		});
+		stage.whenComplete(new BiConsumer<Object, Throwable>() {
+			@Override
+			public void accept(Object value, Throwable error) {
+				if(!done.compareAndSet(false, true))
+					return;
+				try {
+					if(error == null) {
+						handleSuccess(pm, req, resp, value);
+					} else {
+						if(error instanceof CompletionException && error.getCause() != null)
+							error = error.getCause();
+						handleError(pm, req, resp, error);
 					}
+				} catch(RuntimeException e) {
+					logger.error(String.format("Unable to complete the response of %s", pm.getRoute()), e);
+				} finally {
+					asyncContext.complete();
 				}
 			}
-		}
+		});
+		return InvokeResult.METHOD_SUCCESS;
 	}
 	
-	private RequestDeserializer selectDeserializer(PathMatch pm) throws DeserializationException {
-		for(RequestDeserializer deserializer : this.requestDeserializers) {
-			//TODO: Refine this logic to be more discriminating
-			if(pm.getRoute().getRequestFormat().equalsIgnoreCase(deserializer.getRequestFormat()))
-				return deserializer;
+	private static InvokeResult handleTimeout(PathMatch pm, HttpServletRequest req, HttpServletResponse resp, long timeout) {
+		resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+		return handleError(pm, req, resp, new Http503Exception(
+				String.format("The response was not ready within %d milliseconds.", timeout)));
+	}
+	
+	/**
+	 * Calls the route's implementation method.
+	 * 
+	 * @param route the route being invoked.
+	 * @param plan the binding plan that produced the arguments.
+	 * @param arguments the arguments.
+	 * @return the value returned by the implementation method.
+	 * @throws InvocationTargetException if the implementation method throws.
+	 * @throws Exception if the implementation method cannot be called.
+	 */
+	protected Object invokeImplMethod(Route route, BindingPlan plan, Object[] arguments) throws Exception {
+		return route.getImplMethod().invoke(route.getImplInstance(), arguments);
+	}
+	
+	// Default scope for unit testing
+	BindingPlan getBindingPlan(Route route) {
+		if(route.getInvoker() == this && route.getBindingPlan() != null)
+			return route.getBindingPlan();
+		BindingPlan plan = foreignPlans.get(route);
+		if(plan == null) {
+			plan = createBindingPlan(route);
+			foreignPlans.put(route, plan);
 		}
-		throw new DeserializationException(String.format("No deserializer for content type \"%s\"", pm.getRoute().getRequestFormat()));
+		return plan;
 	}
-	private void mapQueryParameter(QueryParameter parameterAnnotation, Object[] arguments, 
-			Class<?> parameterClass, Map<String,String[]> queryArgs, int paramIndex) throws TypeConversionException {
-		String queryArg[] = queryArgs.get(parameterAnnotation.name());
-		if(queryArg == null)
-			return;
-		if(!parameterClass.isArray()) {
-			if(queryArg.length > 0) {
-				arguments[paramIndex] = stringConverter.convert(queryArg[0], parameterClass);
-			}
-		} else {
-			Object queryParam = Array.newInstance(parameterClass.getComponentType(), queryArg.length);
-			for(int x = 0; x < queryArg.length; x++) {
-				Array.set(queryParam, x, stringConverter.convert(queryArg[x], parameterClass.getComponentType()));
+
+	/* (non-Javadoc)
+	 * @see com.doitnext.http.router.argumentbinders.BindingPlanFactory#createBindingPlan(com.doitnext.http.router.Route)
+	 */
+	@Override
+	public BindingPlan createBindingPlan(Route route) {
+		Method implMethod = route.getImplMethod();
+		Annotation[][] parameterAnnotations = implMethod.getParameterAnnotations();
+		Class<?>[] parameterTypes = implMethod.getParameterTypes();
+		ArgumentBinder binders[] = new ArgumentBinder[parameterTypes.length];
+		for(int x = 0; x < parameterTypes.length; x++) {
+			binders[x] = createArgumentBinder(route, parameterTypes[x], parameterAnnotations[x]);
+		}
+		Class<?> returnType = valueType(implMethod);
+		CodecRegistry returnCodecs = codecRegistry.getFormat().equalsIgnoreCase(route.getReturnFormat()) ?
+				codecRegistry : CodecRegistry.forFormat(route.getReturnFormat());
+		ObjectWriter returnWriter = null;
+		if(returnCodecs != null && !returnType.equals(void.class) && !returnType.equals(Object.class))
+			returnWriter = returnCodecs.getWriter(returnType);
+		RestMethod restMethod = implMethod.getAnnotation(RestMethod.class);
+		long methodTimeout = (restMethod != null) ? restMethod.asyncTimeout() : -1;
+		return new BindingPlan(binders, returnType, returnWriter, methodTimeout);
+	}
+
+	/**
+	 * @return the return type of a method or, for a method returning a {@link CompletionStage} or
+	 * {@link Future} of a class, that class.
+	 */
+	static Class<?> valueType(Method implMethod) {
+		Class<?> returnType = implMethod.getReturnType();
+		if(!CompletionStage.class.isAssignableFrom(returnType) && !Future.class.isAssignableFrom(returnType))
+			return returnType;
+		Type genericType = implMethod.getGenericReturnType();
+		if(genericType instanceof ParameterizedType) {
+			Type arguments[] = ((ParameterizedType)genericType).getActualTypeArguments();
+			if(arguments.length == 1 && arguments[0] instanceof Class)
+				return (Class<?>)arguments[0];
+		}
+		return Object.class;
+	}
+
+	private ArgumentBinder createArgumentBinder(Route route, Class<?> parameterType, Annotation annotations[]) {
+		if(parameterType.equals(HttpServletRequest.class))
+			return REQUEST_BINDER;
+		if(parameterType.equals(HttpServletResponse.class))
+			return RESPONSE_BINDER;
+		for(Annotation annotation : annotations) {
+			if(annotation instanceof PathParameter) {
+				String name = ((PathParameter)annotation).name();
+				return new PathParameterBinder(name, findVariable(route.getPathTemplate(), name),
+						parameterType, stringConverter);
+			} else if(annotation instanceof QueryParameter) {
+				return new QueryParameterBinder(((QueryParameter)annotation).name(), parameterType, stringConverter);
+			} else if(annotation instanceof Terminus) {
+				if(parameterType.isAssignableFrom(String.class))
+					return TERMINUS_BINDER;
+				return new FailingBinder(new UnsupportedConversionException(String.class, parameterType));
+			} else if(annotation instanceof RequestBody) {
+				try {
+					return new RequestBodyBinder(selectDeserializer(route), parameterType, route.getRequestType());
+				} catch(DeserializationException e) {
+					return new FailingBinder(e);
+				}
 			}
-			arguments[paramIndex] = queryParam;
-		}	
+		}
+		return NULL_BINDER;
 	}
 
-	private void mapPathParameter(PathParameter parameterAnnotation, Object[] arguments, 
-			Class<?> parameterClass, Map<String, PathElement> variableMatches, int paramIndex) throws TypeConversionException {
-		PathElement pe = variableMatches.get(parameterAnnotation.name());
-		arguments[paramIndex] = stringConverter.convert(pe.getValue(), parameterClass);
+	/**
+	 * @return the position of the named variable in the template or -1 if it is not found.
+	 */
+	private static int findVariable(PathTemplate template, String name) {
+		if(template == null)
+			return -1;
+		for(int x = 0; x < template.getLength(); x++) {
+			if(!(template.getMatcher(x) instanceof LiteralTemplate) 
+					&& name.equals(template.getMatcher(x).getName()))
+				return x;
+		}
+		return -1;
+	}
+	
+	private RequestDeserializer selectDeserializer(Route route) throws DeserializationException {
+		for(RequestDeserializer deserializer : this.requestDeserializers) {
+			//TODO: Refine this logic to be more discriminating
+			if(deserializer.getRequestFormat().equalsIgnoreCase(route.getRequestFormat()))
+				return deserializer;
+		}
+		throw new DeserializationException(String.format("No deserializer for content type \"%s\"", route.getRequestFormat()));
 	}
 }
@@ -0,0 +1,343 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router;
+
+import static com.doitnext.http.router.MediaTypeRegistry.ANY;
+import static com.doitnext.http.router.MediaTypeRegistry.NONE;
+
+/**
+ * <p>The media ranges of an Accept or Content-Type header resolved to {@link MediaTypeRegistry} ids.
+ * This is the allocation free counterpart of {@link AcceptKey} and {@link ContentTypeKey}: the header
+ * is scanned in place and each format and 'model' parameter is looked up in the registry without
+ * creating substrings.  An instance is meant to be reused by one thread for many requests;
+ * {@link #parseAccept(String)} and {@link #parseContentType(String)} reset it.</p>
+ *
+ * <p>Parameters may be separated by optional whitespace and parameter values may be quoted strings.
+ * The first 'model' parameter of a range is its model.  A 'q' parameter gives the quality of the
+ * range; ranges with a quality of 0 are not acceptable and are dropped.  Other parameters are
+ * ignored.</p>
+ *
+ * <p>This class is NOT thread safe.</p>
+ *
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class MediaRanges {
+	private static final int QUALITY_SCALE = 1000;
+
+	final private MediaTypeRegistry registry;
+	private int formats[] = new int[4];
+	private int models[] = new int[4];
+	private int qualities[] = new int[4];
+	private int count = 0;
+
+	// Scratch state of the range being parsed
+	private int pos;
+	private int model;
+	private int quality;
+
+	public MediaRanges() {
+		this(MediaTypeRegistry.getDefault());
+	}
+
+	/**
+	 * @param registry the registry used to resolve formats and models.
+	 */
+	public MediaRanges(MediaTypeRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * Parses an Accept header.  A missing or blank header yields a single range with neither a format
+	 * nor a model, which only matches routes that return nothing.
+	 *
+	 * @param header the value of the Accept header, may be null.
+	 * @return this object.
+	 */
+	public MediaRanges parseAccept(String header) {
+		parse(header, true);
+		return this;
+	}
+
+	/**
+	 * Parses a Content-Type header.  A missing or blank header yields a single range with neither
+	 * a format nor a model.
+	 *
+	 * @param header the value of the Content-Type header, may be null.
+	 * @return this object.
+	 */
+	public MediaRanges parseContentType(String header) {
+		parse(header, false);
+		return this;
+	}
+
+	/**
+	 * @return the number of acceptable ranges.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @param index the position of the range in the header.
+	 * @return the format id of the range.
+	 */
+	public int getFormat(int index) {
+		return formats[index];
+	}
+
+	/**
+	 * @param index the position of the range in the header.
+	 * @return the model id of the range.
+	 */
+	public int getModel(int index) {
+		return models[index];
+	}
+
+	/**
+	 * @param index the position of the range in the header.
+	 * @return the quality of the range in thousandths (1000 when no q parameter is given).
+	 */
+	public int getQuality(int index) {
+		return qualities[index];
+	}
+
+	/**
+	 * Matches a route's response against one range of an Accept header with the same rules
+	 * as {@link AcceptKey#matches(Route)}.
+	 *
+	 * @param index the position of the range.
+	 * @param route the route to match.
+	 * @return <code>true</code> if the route produces a response acceptable to the range.
+	 */
+	public boolean acceptMatches(int index, Route route) {
+		return acceptMatches(formats[index], models[index],
+				route.getReturnFormatId(), route.getReturnTypeId());
+	}
+
+	/**
+	 * Matches a route's request body against the first range of a Content-Type header with the same
+	 * rules as {@link ContentTypeKey#matches(Route)}.
+	 *
+	 * @param route the route to match.
+	 * @return <code>true</code> if the route consumes the request body.
+	 */
+	public boolean contentTypeMatches(Route route) {
+		int format = (count == 0) ? NONE : formats[0];
+		int model = (count == 0) ? NONE : models[0];
+		return contentTypeMatches(format, model, route.getRequestFormatId(), route.getRequestTypeId());
+	}
+
+	static boolean acceptMatches(int format, int model, int returnFormat, int returnType) {
+		// If route is a catch all route return true
+		if(returnFormat == ANY && returnType == ANY)
+			return true;
+		// If no accept header then no return is expected
+		if(format == NONE)
+			return returnFormat == NONE && returnType == NONE;
+		// If request accepts any format check for model match
+		if(format == ANY)
+			return model == NONE || model == returnType;
+		// If formats match check for model match
+		if(format == returnFormat)
+			return model == returnType;
+		return false;
+	}
+
+	static boolean contentTypeMatches(int format, int model, int requestFormat, int requestType) {
+		// Routes with no request format expect no body
+		if(requestFormat == NONE)
+			return format == NONE;
+		if(format == NONE)
+			return false;
+		// Route matches all input formats
+		if(requestFormat == ANY) {
+			if(model == NONE)
+				return requestType == NONE;
+			return requestType == ANY || model == requestType;
+		}
+		if(format == requestFormat)
+			return model == requestType;
+		return false;
+	}
+
+	private void parse(String header, boolean list) {
+		count = 0;
+		int length = (header == null) ? 0 : header.length();
+		pos = skipWhitespace(header, 0, length);
+		if(pos == length) {
+			add(NONE, NONE, QUALITY_SCALE);
+			return;
+		}
+		while(pos < length) {
+			int start = pos;
+			int end = scanToken(header, length, list);
+			int format = registry.lookup(header, start, trimEnd(header, start, end));
+			model = NONE;
+			quality = QUALITY_SCALE;
+			boolean hasModel = false;
+			while(pos < length && header.charAt(pos) == ';') {
+				pos++;
+				hasModel = parseParameter(header, length, list, hasModel);
+			}
+			if(end > start && quality > 0)
+				add(format, model, quality);
+			// Skip the list separator
+			if(pos < length)
+				pos = skipWhitespace(header, pos + 1, length);
+		}
+	}
+
+	/**
+	 * Parses one parameter starting at {@link #pos}, leaving {@link #pos} at the next ';', ',' or
+	 * the end of the header.
+	 *
+	 * @return <code>true</code> if the range now has a model.
+	 */
+	private boolean parseParameter(String header, int length, boolean list, boolean hasModel) {
+		int nameStart = skipWhitespace(header, pos, length);
+		int nameEnd = nameStart;
+		while(nameEnd < length) {
+			char c = header.charAt(nameEnd);
+			if(c == '=' || c == ';' || (list && c == ','))
+				break;
+			nameEnd++;
+		}
+		pos = nameEnd;
+		if(pos == length || header.charAt(pos) != '=')
+			return hasModel;
+		nameEnd = trimEnd(header, nameStart, nameEnd);
+		pos = skipWhitespace(header, pos + 1, length);
+		int valueStart;
+		int valueEnd;
+		if(pos < length && header.charAt(pos) == '"') {
+			valueStart = ++pos;
+			while(pos < length && header.charAt(pos) != '"') {
+				if(header.charAt(pos) == '\\')
+					pos++;
+				pos++;
+			}
+			valueEnd = Math.min(pos, length);
+			// Skip the closing quote and anything up to the next delimiter
+			scanToken(header, length, list);
+		} else {
+			valueStart = pos;
+			valueEnd = trimEnd(header, valueStart, scanToken(header, length, list));
+		}
+		if(!hasModel && isName(header, nameStart, nameEnd, "model")) {
+			model = registry.lookup(header, valueStart, valueEnd);
+			return true;
+		}
+		if(isName(header, nameStart, nameEnd, "q"))
+			quality = parseQuality(header, valueStart, valueEnd);
+		return hasModel;
+	}
+
+	/**
+	 * Advances {@link #pos} to the next ';' (or ',' within a list) or the end of the header.
+	 *
+	 * @return the new value of {@link #pos}.
+	 */
+	private int scanToken(String header, int length, boolean list) {
+		while(pos < length) {
+			char c = header.charAt(pos);
+			if(c == ';' || (list && c == ','))
+				break;
+			pos++;
+		}
+		return pos;
+	}
+
+	/**
+	 * Parses a qvalue (0, 1 or a decimal fraction with up to three digits) into thousandths.
+	 * A malformed qvalue is treated as 1 so that a sloppy client is not refused outright.
+	 */
+	static int parseQuality(CharSequence value, int start, int end) {
+		if(start == end)
+			return QUALITY_SCALE;
+		char first = value.charAt(start);
+		if(first != '0' && first != '1')
+			return QUALITY_SCALE;
+		int result = (first - '0') * QUALITY_SCALE;
+		if(start + 1 == end)
+			return result;
+		if(value.charAt(start + 1) != '.')
+			return QUALITY_SCALE;
+		int scale = QUALITY_SCALE / 10;
+		for(int x = start + 2; x < end && scale > 0; x++, scale /= 10) {
+			char c = value.charAt(x);
+			if(c < '0' || c > '9')
+				return QUALITY_SCALE;
+			result += (c - '0') * scale;
+		}
+		return Math.min(result, QUALITY_SCALE);
+	}
+
+	private static boolean isName(String header, int start, int end, String name) {
+		return end - start == name.length() && header.regionMatches(true, start, name, 0, name.length());
+	}
+
+	private static int skipWhitespace(String header, int start, int end) {
+		while(start < end && isWhitespace(header.charAt(start)))
+			start++;
+		return start;
+	}
+
+	private static int trimEnd(String header, int start, int end) {
+		while(end > start && isWhitespace(header.charAt(end - 1)))
+			end--;
+		return end;
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t';
+	}
+
+	private void add(int format, int model, int quality) {
+		if(count == formats.length) {
+			formats = grow(formats);
+			models = grow(models);
+			qualities = grow(qualities);
+		}
+		formats[count] = format;
+		models[count] = model;
+		qualities[count] = quality;
+		count++;
+	}
+
+	private static int[] grow(int values[]) {
+		int result[] = new int[values.length * 2];
+		System.arraycopy(values, 0, result, 0, values.length);
+		return result;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("MediaRanges [");
+		for(int x = 0; x < count; x++) {
+			if(x > 0)
+				builder.append(", ");
+			builder.append(registry.getName(formats[x]));
+			if(models[x] != NONE)
+				builder.append("; model=").append(registry.getName(models[x]));
+			if(qualities[x] != QUALITY_SCALE)
+				builder.append("; q=").append(qualities[x] / (double)QUALITY_SCALE);
+		}
+		return builder.append("]").toString();
+	}
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router;
+
+import java.util.Arrays;
+
+/**
+ * <p>Interns the formats (such as 'application/json') and models (such as '/mymodels/team/roster')
+ * declared by routes into small integer ids so that content negotiation can compare integers rather
+ * than strings.  Comparison is case insensitive, so 'application/JSON' and 'application/json'
+ * share an id.</p>
+ *
+ * <p>Ids are assigned when a {@link Route} is constructed.  Request headers are only ever looked up,
+ * never interned, so a client cannot grow the registry.  A value that no route declares looks up
+ * as {@link #UNKNOWN}, which matches nothing but wildcard routes.</p>
+ *
+ * <p>Lookups are lock free and allocation free against an immutable snapshot of the table.
+ * Interning copies the table under a lock.  This class is thread safe.</p>
+ *
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public final class MediaTypeRegistry {
+	/**
+	 * The id of a value that has not been interned.
+	 */
+	public static final int UNKNOWN = -1;
+	/**
+	 * The id of an empty or missing value.
+	 */
+	public static final int NONE = 0;
+	/**
+	 * The id of the wildcard value '*&#47;*'.
+	 */
+	public static final int ANY = 1;
+
+	private static final MediaTypeRegistry defaultRegistry = new MediaTypeRegistry();
+
+	private volatile Table table;
+
+	/**
+	 * Creates a registry containing only "" ({@link #NONE}) and "*&#47;*" ({@link #ANY}).
+	 */
+	public MediaTypeRegistry() {
+		this.table = new Table(new String[] {"", "*/*"}, 2);
+	}
+
+	/**
+	 * @return the registry used by {@link Route} and {@link RestRouterServlet}.
+	 */
+	public static MediaTypeRegistry getDefault() {
+		return defaultRegistry;
+	}
+
+	/**
+	 * Returns the id of a value, assigning a new one if the value has not been seen before.
+	 *
+	 * @param value a format or model, may be null.
+	 * @return the id of the value.  Null and empty values are {@link #NONE}.
+	 */
+	public int intern(String value) {
+		if(value == null)
+			return NONE;
+		int id = lookup(value);
+		if(id != UNKNOWN)
+			return id;
+		synchronized(this) {
+			Table current = table;
+			id = current.find(value, 0, value.length());
+			if(id == UNKNOWN) {
+				String names[] = new String[current.count + 1];
+				System.arraycopy(current.names, 0, names, 0, current.count);
+				id = current.count;
+				names[id] = value;
+				table = new Table(names, names.length);
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * @param value a format or model, may be null.
+	 * @return the id of the value or {@link #UNKNOWN} if the value has not been interned.
+	 */
+	public int lookup(CharSequence value) {
+		if(value == null)
+			return NONE;
+		return lookup(value, 0, value.length());
+	}
+
+	/**
+	 * Looks up a region of a character sequence without copying it.
+	 *
+	 * @param value the characters containing the format or model.
+	 * @param start the index of the first character of the region.
+	 * @param end the index after the last character of the region.
+	 * @return the id of the region or {@link #UNKNOWN} if it has not been interned.
+	 */
+	public int lookup(CharSequence value, int start, int end) {
+		return table.find(value, start, end);
+	}
+
+	/**
+	 * @param id an id issued by this registry.
+	 * @return the first value interned under the id, or null for {@link #UNKNOWN}.
+	 */
+	public String getName(int id) {
+		Table current = table;
+		if(id < 0 || id >= current.count)
+			return null;
+		return current.names[id];
+	}
+
+	/**
+	 * @return the number of ids issued, including {@link #NONE} and {@link #ANY}.
+	 */
+	public int size() {
+		return table.count;
+	}
+
+	/**
+	 * Folds a character the way {@link String#equalsIgnoreCase(String)} compares it.
+	 */
+	private static char fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	private static int hash(CharSequence value, int start, int end) {
+		int h = 0;
+		for(int x = start; x < end; x++)
+			h = 31 * h + fold(value.charAt(x));
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * An immutable open addressing hash table from folded names to ids.
+	 */
+	private static class Table {
+		final String names[];
+		final int count;
+		final int slots[];
+		final int mask;
+
+		Table(String names[], int count) {
+			this.names = names;
+			this.count = count;
+			int capacity = 8;
+			while(capacity < count * 2)
+				capacity <<= 1;
+			this.slots = new int[capacity];
+			this.mask = capacity - 1;
+			Arrays.fill(slots, UNKNOWN);
+			for(int id = 0; id < count; id++) {
+				int slot = hash(names[id], 0, names[id].length()) & mask;
+				while(slots[slot] != UNKNOWN)
+					slot = (slot + 1) & mask;
+				slots[slot] = id;
+			}
+		}
+
+		int find(CharSequence value, int start, int end) {
+			int length = end - start;
+			int slot = hash(value, start, end) & mask;
+			for(int id = slots[slot]; id != UNKNOWN; id = slots[slot]) {
+				if(equalsIgnoreCase(names[id], value, start, length))
+					return id;
+				slot = (slot + 1) & mask;
+			}
+			return UNKNOWN;
+		}
+
+		private static boolean equalsIgnoreCase(String name, CharSequence value, int start, int length) {
+			if(name.length() != length)
+				return false;
+			for(int x = 0; x < length; x++) {
+				char a = name.charAt(x);
+				char b = value.charAt(start + x);
+				if(a != b && fold(a) != fold(b))
+					return false;
+			}
+			return true;
+		}
+	}
+}
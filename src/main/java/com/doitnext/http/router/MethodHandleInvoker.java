@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import com.doitnext.http.router.argumentbinders.BindingPlan;
+import com.google.common.primitives.Primitives;
+
+/**
+ * <p>A {@link MethodInvoker} that calls implementation methods through a {@link MethodHandle}
+ * instead of {@link Method#invoke(Object, Object...)}.  When the binding plan of a route is created
+ * the implementation method is unreflected, bound to the implementation instance and adapted to take
+ * the argument array, so a request only pays for a single {@link MethodHandle#invokeExact} call.
+ * The JIT compiler can see through such a call where it cannot see through reflection.</p>
+ * 
+ * <p>Argument binding and response handling are inherited from {@link DefaultInvoker}.  If a method
+ * cannot be unreflected (for instance because it is not public, or because of a security manager)
+ * the route falls back to reflection.  Install it with {@link RestRouterServlet#setMethodInvoker(MethodInvoker)}
+ * and, so that handles are created when routes are built, with
+ * {@link DefaultEndpointResolver#setMethodInvoker(MethodInvoker)}.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class MethodHandleInvoker extends DefaultInvoker {
+	private static final MethodType DISPATCH_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+	/* (non-Javadoc)
+	 * @see com.doitnext.http.router.DefaultInvoker#createBindingPlan(com.doitnext.http.router.Route)
+	 */
+	@Override
+	public BindingPlan createBindingPlan(Route route) {
+		BindingPlan plan = super.createBindingPlan(route);
+		MethodHandle handle = createHandle(route.getImplMethod(), route.getImplInstance());
+		if(handle == null)
+			return plan;
+		return new MethodHandlePlan(plan, handle, route.getImplMethod().getParameterTypes());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.doitnext.http.router.DefaultInvoker#invokeImplMethod(com.doitnext.http.router.Route, com.doitnext.http.router.argumentbinders.BindingPlan, java.lang.Object[])
+	 */
+	@Override
+	protected Object invokeImplMethod(Route route, BindingPlan plan, Object[] arguments) throws Exception {
+		if(plan instanceof MethodHandlePlan)
+			return ((MethodHandlePlan)plan).invoke(arguments);
+		return super.invokeImplMethod(route, plan, arguments);
+	}
+
+	/**
+	 * @return a handle of type (Object[])Object that calls the method on the instance, or null
+	 * if the method cannot be unreflected.
+	 */
+	static MethodHandle createHandle(Method method, Object instance) {
+		try {
+			MethodHandle handle = MethodHandles.lookup().unreflect(method);
+			if(!Modifier.isStatic(method.getModifiers())) {
+				if(instance == null)
+					return null;
+				handle = handle.bindTo(instance);
+			}
+			return handle.asSpreader(Object[].class, method.getParameterTypes().length)
+					.asType(DISPATCH_TYPE);
+		} catch(IllegalAccessException e) {
+			logger.warn(String.format("Unable to unreflect %s, falling back to reflection.", method), e);
+			return null;
+		} catch(RuntimeException e) {
+			// Such as a SecurityException, or an InaccessibleObjectException from a module
+			logger.warn(String.format("Unable to unreflect %s, falling back to reflection.", method), e);
+			return null;
+		}
+	}
+
+	/**
+	 * A binding plan that carries the bound handle of the implementation method.
+	 */
+	static class MethodHandlePlan extends BindingPlan {
+		final private MethodHandle handle;
+		final private Class<?> parameterTypes[];
+		/**
+		 * The types the arguments must be instances of, wrappers for primitive parameters.
+		 */
+		final private Class<?> argumentTypes[];
+
+		MethodHandlePlan(BindingPlan plan, MethodHandle handle, Class<?> parameterTypes[]) {
+			super(plan);
+			this.handle = handle;
+			this.parameterTypes = parameterTypes;
+			argumentTypes = new Class<?>[parameterTypes.length];
+			for(int x = 0; x < parameterTypes.length; x++)
+				argumentTypes[x] = Primitives.wrap(parameterTypes[x]);
+		}
+
+		/**
+		 * Calls the method.  Arguments that reflection would reject cause an 
+		 * {@link IllegalArgumentException} before the method is entered, so that the handle's 
+		 * argument adaptation cannot fail.  Anything thrown by the method is wrapped in an
+		 * {@link InvocationTargetException} as {@link Method#invoke(Object, Object...)} would.
+		 */
+		Object invoke(Object arguments[]) throws InvocationTargetException {
+			checkArguments(arguments);
+			try {
+				return (Object)handle.invokeExact(arguments);
+			} catch(Throwable t) {
+				throw new InvocationTargetException(t);
+			}
+		}
+
+		private void checkArguments(Object arguments[]) {
+			if(arguments.length != argumentTypes.length)
+				throw new IllegalArgumentException(String.format("wrong number of arguments, %d for %d", 
+						arguments.length, argumentTypes.length));
+			for(int x = 0; x < argumentTypes.length; x++) {
+				Object argument = arguments[x];
+				if(argument == null) {
+					if(parameterTypes[x].isPrimitive())
+						throw new IllegalArgumentException(String.format("null passed for primitive parameter %d", x));
+				} else if(!argumentTypes[x].isInstance(argument)) {
+					throw new IllegalArgumentException(String.format("argument type mismatch, %s passed for %s parameter %d",
+							argument.getClass().getName(), parameterTypes[x].getName(), x));
+				}
+			}
+		}
+	}
+}
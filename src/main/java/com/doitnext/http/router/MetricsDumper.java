@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Used to dump the metrics of the routes in response to a metrics dump request.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public interface MetricsDumper {
+
+	/**
+	 * @param req the HttpServletRequest being responded to.  Prometheus text is written if the request
+	 * asks for it, either with format=prometheus in its query or by accepting text/plain, otherwise JSON.
+	 * @param resp the HttpServletResponse on which the metrics will be dumped.
+	 * @throws Exception 
+	 */
+	void dumpMetrics(HttpServletRequest req, HttpServletResponse resp) throws Exception;
+}
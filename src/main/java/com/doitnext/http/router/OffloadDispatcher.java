@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.doitnext.http.router.annotations.RestMethod;
+
+/**
+ * <p>Hands requests for routes whose {@link RestMethod#offload()} is set off from the container thread
+ * to an executor, so that methods that block do not hold container threads.  The request is put in
+ * asynchronous mode with an {@link AsyncContext} after routing and completed once the route has been
+ * invoked on the executor.</p>
+ * 
+ * <p>{@link #createDefault()} runs each request on its own virtual thread when the JVM has them (Java 21
+ * and later) and otherwise on a bounded pool of platform threads.  When the executor rejects a request
+ * it is run on the container thread instead.</p>
+ * 
+ * <p>The dispatcher measures how long requests wait for the executor and how long they then run.</p>
+ * 
+ * <p>This class is thread safe.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class OffloadDispatcher {
+	private static Logger logger = LoggerFactory.getLogger(OffloadDispatcher.class);
+
+	/**
+	 * The number of threads of the platform thread pool used when virtual threads are not available.
+	 */
+	public static final int DEFAULT_POOL_SIZE = 64;
+	/**
+	 * The number of requests that may wait for a thread of the platform thread pool.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+	final private ExecutorService executor;
+	final private boolean virtual;
+	final private ConcurrentMap<Method, Boolean> offloaded = new ConcurrentHashMap<Method, Boolean>();
+
+	final private AtomicLong dispatched = new AtomicLong();
+	final private AtomicLong ranInline = new AtomicLong();
+	final private AtomicLong queueNanos = new AtomicLong();
+	final private AtomicLong runNanos = new AtomicLong();
+	final private AtomicLong completed = new AtomicLong();
+
+	/**
+	 * @param executor the executor to run offloaded requests on.
+	 */
+	public OffloadDispatcher(ExecutorService executor) {
+		this(executor, false);
+	}
+
+	private OffloadDispatcher(ExecutorService executor, boolean virtual) {
+		this.executor = executor;
+		this.virtual = virtual;
+	}
+
+	/**
+	 * @return a dispatcher that runs each request on a new virtual thread if the JVM supports them,
+	 * otherwise on a pool of {@link #DEFAULT_POOL_SIZE} platform threads.
+	 */
+	public static OffloadDispatcher createDefault() {
+		ExecutorService executor = newVirtualThreadPerTaskExecutor();
+		if(executor != null)
+			return new OffloadDispatcher(executor, true);
+		return new OffloadDispatcher(newPlatformThreadPool(DEFAULT_POOL_SIZE, DEFAULT_QUEUE_CAPACITY), false);
+	}
+
+	/**
+	 * Looked up reflectively so that the router still builds for and runs on Java 8.
+	 * 
+	 * @return a virtual thread per task executor or null if the JVM has no virtual threads.
+	 */
+	static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService)factory.invoke(null);
+		} catch(Exception e) {
+			// Not available, or a preview feature that is not enabled
+			return null;
+		}
+	}
+
+	/**
+	 * @param poolSize the number of threads.
+	 * @param queueCapacity the number of requests that may wait for a thread.
+	 * @return a pool of daemon platform threads.
+	 */
+	public static ExecutorService newPlatformThreadPool(int poolSize, int queueCapacity) {
+		final AtomicInteger threadNumber = new AtomicInteger();
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, 
+				new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, String.format("router-offload-%d", threadNumber.incrementAndGet()));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	/**
+	 * @return <code>true</code> if requests run on virtual threads.
+	 */
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	/**
+	 * @param route a route.
+	 * @return <code>true</code> if requests for the route are offloaded.
+	 */
+	public boolean isOffloaded(Route route) {
+		Method implMethod = route.getImplMethod();
+		Boolean result = offloaded.get(implMethod);
+		if(result == null) {
+			RestMethod restMethod = implMethod.getAnnotation(RestMethod.class);
+			result = (restMethod != null) && restMethod.offload();
+			offloaded.put(implMethod, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Puts a request in asynchronous mode and runs its invocation on the executor, or on the calling
+	 * thread if the executor rejects it.  The request is completed after the invocation.
+	 * 
+	 * @param req the request.
+	 * @param resp the response.
+	 * @param invocation invokes the route of the request and writes the response.
+	 */
+	public void dispatch(HttpServletRequest req, HttpServletResponse resp, final Runnable invocation) {
+		final AsyncContext asyncContext = req.startAsync(req, resp);
+		// The invocation bounds the request just as it would on the container thread
+		asyncContext.setTimeout(0);
+		final long queued = System.nanoTime();
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				long started = System.nanoTime();
+				queueNanos.addAndGet(started - queued);
+				try {
+					invocation.run();
+				} catch(RuntimeException e) {
+					logger.error("Offloaded request failed.", e);
+				} finally {
+					runNanos.addAndGet(System.nanoTime() - started);
+					completed.incrementAndGet();
+					asyncContext.complete();
+				}
+			}
+		};
+		try {
+			executor.execute(task);
+			dispatched.incrementAndGet();
+		} catch(RejectedExecutionException e) {
+			ranInline.incrementAndGet();
+			task.run();
+		}
+	}
+
+	/**
+	 * Stops accepting requests.  Requests already dispatched still run.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * @return the number of requests handed to the executor.
+	 */
+	public long getDispatched() {
+		return dispatched.get();
+	}
+
+	/**
+	 * @return the number of requests run on the container thread because the executor rejected them.
+	 */
+	public long getRanInline() {
+		return ranInline.get();
+	}
+
+	/**
+	 * @return the number of offloaded requests that have finished running.
+	 */
+	public long getCompleted() {
+		return completed.get();
+	}
+
+	/**
+	 * @return the total time in nanoseconds that finished and running requests waited for the executor.
+	 */
+	public long getQueueNanos() {
+		return queueNanos.get();
+	}
+
+	/**
+	 * @return the total time in nanoseconds that finished requests ran.
+	 */
+	public long getRunNanos() {
+		return runNanos.get();
+	}
+}
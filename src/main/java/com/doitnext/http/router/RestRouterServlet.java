@@ -18,10 +18,10 @@ package com.doitnext.http.router;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Set;
 import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -35,20 +35,30 @@ import org.springframework.beans.factory.annotation.Required;
 import org.springframework.web.HttpRequestHandler;
 
 import com.doitnext.http.router.annotations.enums.HttpMethod;
+import com.doitnext.http.router.codecs.CodecRegistry;
 import com.doitnext.http.router.exceptions.Http404Exception;
 import com.doitnext.http.router.exceptions.Http405Exception;
 import com.doitnext.http.router.exceptions.Http406Exception;
 import com.doitnext.http.router.exceptions.Http415Exception;
+import com.doitnext.http.router.exceptions.Http429Exception;
 import com.doitnext.http.router.exceptions.Http500Exception;
+import com.doitnext.http.router.exceptions.Http503Exception;
+import com.doitnext.http.router.jfr.RouteMatchEvent;
+import com.doitnext.http.router.jfr.RoutingFailureEvent;
+import com.doitnext.http.router.limits.ConcurrencyLimits;
+import com.doitnext.http.router.limits.ConcurrencyLimits.Permit;
+import com.doitnext.http.router.limits.RateLimits;
+import com.doitnext.http.router.metrics.MetricsFormatter;
+import com.doitnext.http.router.metrics.PhaseTimer;
+import com.doitnext.http.router.metrics.PhaseTimer.Phase;
+import com.doitnext.http.router.metrics.RouteMetrics;
+import com.doitnext.http.router.responsecache.ResponseCache;
 import com.doitnext.http.router.responsehandlers.DefaultErrorHandler;
+import com.doitnext.http.router.responsehandlers.ResponseCompressor;
 import com.doitnext.http.router.responsehandlers.ResponseHandler;
-import com.doitnext.pathutils.Path;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.common.collect.ImmutableSortedSet;
 
-public class RestRouterServlet implements HttpRequestHandler, InitializingBean, EndpointDumper, DynamicRouteConsumer {
+public class RestRouterServlet implements HttpRequestHandler, InitializingBean, EndpointDumper, MetricsDumper, DynamicRouteConsumer {
 
 	/**
 	 * Serial version id for this servlet
@@ -58,10 +68,29 @@ public class RestRouterServlet implements HttpRequestHandler, InitializingBean,
 	
 	private static Logger logger = LoggerFactory
 			.getLogger(RestRouterServlet.class);
+
+	/**
+	 * Per thread scratch space for parsing the Accept and Content-Type headers.
+	 */
+	private static final ThreadLocal<MediaRanges> acceptRangesHolder = new ThreadLocal<MediaRanges>() {
+		@Override
+		protected MediaRanges initialValue() {
+			return new MediaRanges();
+		}
+	};
+	private static final ThreadLocal<MediaRanges> contentTypeRangesHolder = new ThreadLocal<MediaRanges>() {
+		@Override
+		protected MediaRanges initialValue() {
+			return new MediaRanges();
+		}
+	};
+
 	
-	
-	private volatile ImmutableSortedSet<Route> routes;
-	
+	/**
+	 * The routes and their compiled per method indexes.  Rebuilt and swapped as a
+	 * unit whenever the routes change.
+	 */
+	private volatile RouteTable routeTable = new RouteTable(ImmutableSortedSet.<Route>of());
 
 	// Spring Injected
 	private String restPackageRoot;
@@ -70,11 +99,17 @@ public class RestRouterServlet implements HttpRequestHandler, InitializingBean,
 	private MethodInvoker methodInvoker = new DefaultInvoker();
 	private EndpointResolver endpointResolver = new DefaultEndpointResolver();
 	private ResponseHandler errorHandler = new DefaultErrorHandler();
-	private ObjectMapper objectMapper = new ObjectMapper();
+	private int routeCacheSize = 0;
+	private ResponseCompressor responseCompressor = ResponseCompressor.getDefault();
+	private volatile ResponseCache responseCache = null;
+	private volatile OffloadDispatcher offloadDispatcher = null;
+	private volatile ConcurrencyLimits concurrencyLimits = null;
+	private volatile RateLimits rateLimits = null;
+	private boolean metricsEndpoint = true;
+	private volatile boolean phaseTiming = false;
+	private volatile boolean serverTiming = false;
 	
 	public RestRouterServlet() {
-		objectMapper.enable(DeserializationFeature.READ_ENUMS_USING_TO_STRING);
-		objectMapper.enable(SerializationFeature.WRITE_ENUMS_USING_TO_STRING);
 	}
 
 	@Required
@@ -102,13 +137,136 @@ public class RestRouterServlet implements HttpRequestHandler, InitializingBean,
 		this.errorHandler = errorHandler;
 	}
 	
+	/**
+	 * @param routeCacheSize the number of routing decisions to cache.  Zero (the default)
+	 * disables the route resolution cache.  Takes effect the next time the routes are built.
+	 */
+	public void setRouteCacheSize(int routeCacheSize) {
+		this.routeCacheSize = routeCacheSize;
+	}
+	
+	/**
+	 * @param responseCompressor compresses the endpoint dump or null to never compress it.
+	 */
+	public void setResponseCompressor(ResponseCompressor responseCompressor) {
+		this.responseCompressor = responseCompressor;
+	}
+	
+	/**
+	 * @param responseCache caches the responses of GET routes annotated with
+	 * {@link com.doitnext.http.router.annotations.Cached} or null (the default) to never cache them.
+	 */
+	public void setResponseCache(ResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
+	
+	/**
+	 * @param offloadDispatcher runs the routes whose {@link com.doitnext.http.router.annotations.RestMethod#offload()}
+	 * is set off the container thread, or null (the default) to run every route on the container thread.
+	 * The servlet must support async requests for routes to be offloaded.
+	 */
+	public void setOffloadDispatcher(OffloadDispatcher offloadDispatcher) {
+		this.offloadDispatcher = offloadDispatcher;
+	}
+	
+	/**
+	 * @param phaseTiming true to time the phases of each request, adding them to the metrics of its
+	 * route.  False by default.
+	 */
+	public void setPhaseTiming(boolean phaseTiming) {
+		this.phaseTiming = phaseTiming;
+	}
+
+	/**
+	 * @param serverTiming true to describe the phases of each request in a Server-Timing response
+	 * header.  Only takes effect with {@link #setPhaseTiming(boolean) phase timing}.  False by default.
+	 */
+	public void setServerTiming(boolean serverTiming) {
+		this.serverTiming = serverTiming;
+	}
+
+	/**
+	 * @param metricsEndpoint true (the default) to register this servlet as the
+	 * {@link MetricsDumper} of a {@link DefaultEndpointResolver}, serving the metrics of the routes
+	 * at metrics_.
+	 */
+	public void setMetricsEndpoint(boolean metricsEndpoint) {
+		this.metricsEndpoint = metricsEndpoint;
+	}
+
+	/**
+	 * @param rateLimits enforces the {@link com.doitnext.http.router.annotations.RateLimit}s of the routes
+	 * or null (the default) to not limit request rates.
+	 */
+	public void setRateLimits(RateLimits rateLimits) {
+		this.rateLimits = rateLimits;
+	}
+
+	/**
+	 * @return the rate limits or null if request rates are not limited.
+	 */
+	public RateLimits getRateLimits() {
+		return rateLimits;
+	}
+
+	/**
+	 * @param concurrencyLimits enforces the {@link com.doitnext.http.router.annotations.ConcurrencyLimit}s
+	 * of the routes, or null (the default) to not limit concurrency.  A route returning a CompletionStage
+	 * that is completed asynchronously holds its permits until the stage completes, so the round trip
+	 * time reported to an adaptive limit is that of the whole request.
+	 */
+	public void setConcurrencyLimits(ConcurrencyLimits concurrencyLimits) {
+		this.concurrencyLimits = concurrencyLimits;
+	}
+	
+	/**
+	 * @return the concurrency limits or null if concurrency is not limited.
+	 */
+	public ConcurrencyLimits getConcurrencyLimits() {
+		return concurrencyLimits;
+	}
+	
+	/**
+	 * @return the offload dispatcher or null if routes are not offloaded.
+	 */
+	public OffloadDispatcher getOffloadDispatcher() {
+		return offloadDispatcher;
+	}
+	
+	/**
+	 * @return the response cache or null if responses are not cached.
+	 */
+	public ResponseCache getResponseCache() {
+		return responseCache;
+	}
+	
+	/**
+	 * @return the cache of routing decisions for the current routes or null if
+	 * route caching is disabled.
+	 */
+	public RouteResolutionCache getRouteResolutionCache() {
+		return routeTable.getResolutionCache();
+	}
+	
 	public SortedSet<Route> getRoutes(){
-		return routes;
+		return routeTable.getRoutes();
 	}
 	
 	@Override
 	public void afterPropertiesSet() throws Exception {
-		routes = endpointResolver.resolveEndpoints(pathPrefix, restPackageRoot);
+		if(endpointResolver instanceof DefaultEndpointResolver) {
+			DefaultEndpointResolver resolver = (DefaultEndpointResolver)endpointResolver;
+			if(metricsEndpoint)
+				resolver.setMetricsDumper(this);
+			// Routes built with the invoker that will call them get their binding plans when they are built
+			if(resolver.getMethodInvoker() == null)
+				resolver.setMethodInvoker(routeInvoker(methodInvoker));
+		}
+		// Stale cached responses are refreshed off the request's thread where routes are offloaded
+		if(responseCache != null && offloadDispatcher != null && responseCache.getRefreshDispatcher() == null)
+			responseCache.setRefreshDispatcher(offloadDispatcher);
+		ImmutableSortedSet<Route> routes = endpointResolver.resolveEndpoints(pathPrefix, restPackageRoot);
+		routeTable = buildRouteTable(routes);
 		if (routes.isEmpty()) {
 			logger.warn("On init no routes established. This servlet will not respond to any requests while in this state.");
 		} else {
@@ -121,7 +279,7 @@ public class RestRouterServlet implements HttpRequestHandler, InitializingBean,
 	 */
 	public void fireUpdateRoutes() {
 		if (dynamicEndpointResolver != null) {
-			dynamicEndpointResolver.updateRoutes(this, routes);
+			dynamicEndpointResolver.updateRoutes(this, routeTable.getRoutes());
 		} else
 			throw new IllegalStateException("No dynamicEndpointResolver set.");
 	}
@@ -130,7 +288,40 @@ public class RestRouterServlet implements HttpRequestHandler, InitializingBean,
 	 * @see com.doitnext.http.router.DynamicRouteConsumer#routesUpdated(com.google.common.collect.ImmutableSortedSet)
 	 */
 	public void routesUpdated(ImmutableSortedSet<Route> newRoutes) {
-		this.routes = newRoutes;
+		this.routeTable = buildRouteTable(newRoutes);
+	}
+
+	/**
+	 * @return the invoker that makes the binding plans used by an invoker, looking through a
+	 * {@link CoalescingInvoker} to the invoker it calls.
+	 */
+	private static MethodInvoker routeInvoker(MethodInvoker invoker) {
+		while(invoker instanceof CoalescingInvoker)
+			invoker = ((CoalescingInvoker)invoker).getInvoker();
+		return invoker;
+	}
+
+	private RouteTable buildRouteTable(ImmutableSortedSet<Route> routes) {
+		// Cached responses belong to the routes they were produced by
+		ResponseCache responseCache = this.responseCache;
+		if(responseCache != null)
+			responseCache.invalidateAll();
+		RouteResolutionCache cache = null;
+		if(routeCacheSize > 0)
+			cache = new RouteResolutionCache(routeCacheSize);
+		return new RouteTable(routes, cache);
+	}
+
+	private static void recordRoutingFailure(HttpMethod method, HttpServletRequest req, int status) {
+		RoutingFailureEvent event = RoutingFailureEvent.createIfEnabled();
+		if(event != null) {
+			event.method = method.name();
+			event.path = req.getPathInfo();
+			event.status = status;
+			event.accept = req.getHeader("Accept");
+			event.contentType = req.getHeader("Content-Type");
+			event.commit();
+		}
 	}
 
 	protected boolean do404(HttpMethod method, HttpServletRequest req,
@@ -139,6 +330,7 @@ public class RestRouterServlet implements HttpRequestHandler, InitializingBean,
 			logger.trace(String.format("%s %s returns 404", method.name(), req.getRequestURI()));
 		}
 		resp.setStatus(404);
+		recordRoutingFailure(method, req, 404);
 		return errorHandler.handleResponse(null, req, resp,
 				new Http404Exception(req.getRequestURI()));
 	}
@@ -146,6 +338,7 @@ public class RestRouterServlet implements HttpRequestHandler, InitializingBean,
 	protected boolean do406(HttpMethod method, HttpServletRequest req,
 			HttpServletResponse resp) {
 		resp.setStatus(406);
+		recordRoutingFailure(method, req, 406);
 		return errorHandler.handleResponse(null, req, resp,
 				new Http406Exception());
 	}
@@ -153,6 +346,7 @@ public class RestRouterServlet implements HttpRequestHandler, InitializingBean,
 	protected boolean do415(HttpMethod method, HttpServletRequest req,
 			HttpServletResponse resp) {
 		resp.setStatus(415);
+		recordRoutingFailure(method, req, 415);
 		String contentType = req.getHeader("Content-Type");
 		return errorHandler.handleResponse(null, req, resp,
 				new Http415Exception(contentType));
@@ -161,10 +355,28 @@ public class RestRouterServlet implements HttpRequestHandler, InitializingBean,
 	protected boolean do405(HttpMethod method, List<String> allowedMethods,
 			HttpServletRequest req, HttpServletResponse resp) {
 		resp.setStatus(405);
+		recordRoutingFailure(method, req, 405);
+		resp.setHeader("Allow", StringUtils.join(allowedMethods, ", "));
 		return errorHandler.handleResponse(null, req, resp,
 				new Http405Exception(method, allowedMethods));
 	}
 
+	protected boolean do429(HttpMethod method, HttpServletRequest req,
+			HttpServletResponse resp, long retryAfterNanos) {
+		long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+		resp.setStatus(429);
+		resp.setHeader("Retry-After", Long.toString(retryAfterSeconds));
+		return errorHandler.handleResponse(null, req, resp,
+				new Http429Exception(retryAfterSeconds));
+	}
+
+	protected boolean do503(HttpMethod method, HttpServletRequest req,
+			HttpServletResponse resp, String reason) {
+		resp.setStatus(503);
+		return errorHandler.handleResponse(null, req, resp,
+				new Http503Exception(reason));
+	}
+
 	protected boolean do500(HttpMethod method, HttpServletRequest req,
 			HttpServletResponse resp, Throwable error) {
 		resp.setStatus(500);
@@ -172,151 +384,123 @@ public class RestRouterServlet implements HttpRequestHandler, InitializingBean,
 				new Http500Exception(error));
 	}
 
-	protected boolean routeRequest(HttpMethod method, HttpServletRequest req,
-			HttpServletResponse resp) {
-		SortedSet<Route> routes = this.routes;
-		List<PathMatch> pathMatches = new ArrayList<PathMatch>();
+	protected boolean routeRequest(final HttpMethod method, final HttpServletRequest req,
+			final HttpServletResponse resp) {
+		RouteTable routeTable = this.routeTable;
+		RouteResolutionCache resolutionCache = routeTable.getResolutionCache();
 		String pathString = req.getPathInfo();
-		for (Route route : routes) {
-			if(logger.isTraceEnabled()){
-				logger.trace(String.format("Trying to match path '%s' against '%s'",
-						pathString, route.toString() ));
-			}
-			Path path = route.getPathTemplate().match(pathString);
-			if (path != null) {
-				if(logger.isTraceEnabled()) {
-					logger.trace(String.format("Matched path '%s' against '%s'",
-							pathString, route ));
-				}
-				pathMatches.add(new PathMatch(route, path));
-			}
-		}
-		if (pathMatches.isEmpty())
-			return do404(method, req, resp); // Resource not found
-		else if(logger.isTraceEnabled())
-			logger.trace(String.format("There are %d routes that match by uri path.", pathMatches.size()));
-		
-		
-		List<PathMatch> pathMatchesByPathAndMethod = new ArrayList<PathMatch>();
-		Set<HttpMethod> allowedMethods = new TreeSet<HttpMethod>();
-		for (PathMatch pm : pathMatches) {
-			if (pm.getRoute().getHttpMethod().equals(method)){
-				pathMatchesByPathAndMethod.add(pm);
-				if(logger.isTraceEnabled()) {
-					logger.trace(String.format("Http request method: %s matches route %s", method.name(), pm.getRoute()));
-				}
-			} else {
-				allowedMethods.add(pm.getRoute().getHttpMethod());
-				if(logger.isTraceEnabled()) {
-					logger.trace(String.format("Http request method: %s does not match route %s.  This route will be excluded from further consideration.", method.name(), pm.getRoute()));
-				}				
-			}
-		}
-		
-		if(pathMatchesByPathAndMethod.isEmpty()) {
-			List<String> am = new ArrayList<String>();
-			for (HttpMethod m : allowedMethods)
-				am.add(m.name());
-			return do405(method, am, req, resp);
-		}
-			
 		String acceptTypes = req.getHeader("Accept");
-		String accepts[] = acceptTypes.split(",");
-		List<AcceptKey> acceptKeys = new ArrayList<AcceptKey>();
-		for (String accept : accepts) {
-			acceptKeys.add(new AcceptKey(accept.trim()));
-		}
-		List<PathMatch> pathMatchesByResponseType = new ArrayList<PathMatch>();
-		for (PathMatch pm : pathMatchesByPathAndMethod) {
-			// If this is a wildcard return method just add it 
-			if(pm.getRoute().isWildcardReturn()){
-				pathMatchesByResponseType.add(pm);
-			} else {
-				for (AcceptKey acceptKey : acceptKeys) {
-					if (acceptKey.matches(pm.getRoute())) {
-						pathMatchesByResponseType.add(pm);
-						if(logger.isTraceEnabled()) {
-							logger.trace(String.format("Accept key: %s matches route %s", acceptKey, pm.getRoute()));
-						}
-					} else if(logger.isTraceEnabled()) {
-						logger.trace(String.format("Accept key: %s does not match route %s.  This route will be excluded from further consideration.", acceptKey, pm.getRoute()));
-					}
-				}
-			}
+		String contentTypeHeader = req.getHeader("Content-Type");
+		RouteResolutionCache.Key cacheKey = null;
+		PathMatch selectedMatch = null;
+		PhaseTimer timer = phaseTiming ? PhaseTimer.start(req, serverTiming) : null;
+		RouteMatchEvent matchEvent = RouteMatchEvent.beginIfEnabled();
+		int candidateCount = 1;
+		if(resolutionCache != null) {
+			cacheKey = new RouteResolutionCache.Key(method, pathString, acceptTypes, contentTypeHeader);
+			selectedMatch = resolutionCache.get(cacheKey);
 		}
-		// If a route exists with empty return type and the request has empty return
-		// type then remove routes that have non empty return types (except for wildcard returns)
-		for(AcceptKey key : acceptKeys) {
-			if(StringUtils.isEmpty(key.getReturnType())){
-				for(PathMatch pm : pathMatchesByResponseType){
-					if(pm.getRoute().getReturnFormat().equalsIgnoreCase(key.getReturnFormat())
-						&& !StringUtils.isEmpty(pm.getRoute().getReturnType())
-						&& !pm.getRoute().isWildcardReturn()) {
-						pathMatchesByResponseType.remove(pm);
-						break;
-					}
-				}
+		boolean cached = (selectedMatch != null);
+		if(selectedMatch == null) {
+			RouteIndex index = routeTable.getIndex(method);
+			BitSet candidates = (index == null) ? new BitSet() : index.matching(pathString);
+			candidateCount = candidates.cardinality();
+			if(candidates.isEmpty()) {
+				List<String> allowedMethods = routeTable.getAllowedMethods(pathString);
+				if(allowedMethods.isEmpty())
+					return do404(method, req, resp); // Resource not found
+				return do405(method, allowedMethods, req, resp);
 			}
-		}
-		
-		if (pathMatchesByResponseType.isEmpty())
-			return do406(method, req, resp);
-		else if(logger.isTraceEnabled())
-			logger.trace(String.format("There are %d routes that match by response type.", pathMatchesByResponseType.size()));
+			if(timer != null)
+				timer.lap(Phase.MATCH);
+			if(logger.isTraceEnabled())
+				logger.trace(String.format("There are %d routes that match by uri path and method.", candidates.cardinality()));
 
-		List<PathMatch> pathMatchesByContentType = new ArrayList<PathMatch>();
-		String contentTypeHeader = req.getHeader("Content-Type");
-		ContentTypeKey contentTypeKey = new ContentTypeKey(contentTypeHeader);
-		for (PathMatch pm : pathMatchesByResponseType) {
-			Route route = pm.getRoute();
-			if(route.isWildcardConsumer())
-				pathMatchesByContentType.add(pm);
-			else if (contentTypeKey.matches(route)){
-				pathMatchesByContentType.add(pm);
-				if(logger.isTraceEnabled()) {
-					logger.trace(String.format("Content type key: %s matches route %s", contentTypeKey, pm.getRoute()));
-				} else if(logger.isTraceEnabled()) {
-					logger.trace(String.format("Content type key: %s does not match route %s.  This route will be excluded from further consideration.", contentTypeKey, pm.getRoute()));
-				}
-			}
-		}
-		if (pathMatchesByContentType.isEmpty())
-			return do415(method, req, resp);
-		else if(logger.isTraceEnabled()){
-			logger.trace(String.format("There are %d routes that match by request type.", pathMatchesByContentType.size()));
-		}
+			ContentNegotiator negotiator = routeTable.getNegotiator(method);
+			MediaRanges acceptRanges = acceptRangesHolder.get().parseAccept(acceptTypes);
+			if (negotiator.filterAcceptable(candidates, acceptRanges).isEmpty())
+				return do406(method, req, resp);
+			else if(logger.isTraceEnabled())
+				logger.trace(String.format("There are %d routes that match %s by response type.", candidates.cardinality(), acceptRanges));
 
-		List<PathMatch> pathMatchesFinalCandidates = pathMatchesByContentType;
-		
-		if(logger.isTraceEnabled()){
-			logger.trace(String.format("There are %d routes that match by all criteria selecting most specific route. Final candidates:", pathMatchesFinalCandidates.size()));
-			for(PathMatch pm : pathMatchesFinalCandidates)
-				logger.trace(String.format("Final candidate: ", pm.getRoute()));
+			MediaRanges contentTypeRanges = contentTypeRangesHolder.get().parseContentType(contentTypeHeader);
+			if (negotiator.filterConsumable(candidates, contentTypeRanges).isEmpty())
+				return do415(method, req, resp);
+			else if(logger.isTraceEnabled())
+				logger.trace(String.format("There are %d routes that match %s by request type.", candidates.cardinality(), contentTypeRanges));
+
+			Route route = index.getRoute(negotiator.select(candidates, acceptRanges));
+			selectedMatch = new PathMatch(route, route.getPathTemplate().match(pathString));
+			if(resolutionCache != null)
+				resolutionCache.put(cacheKey, selectedMatch);
+			if(timer != null)
+				timer.lap(Phase.NEGOTIATE);
+		} else if(timer != null) {
+			timer.lap(Phase.MATCH);
 		}
-		PathMatch selectedMatch = pathMatchesFinalCandidates.get(0);
-		for(PathMatch pm : pathMatchesFinalCandidates) {
-			PathMatch prelimSelection = selectedMatch;
-			if(pm != selectedMatch){
-				if(StringUtils.isEmpty(selectedMatch.getRoute().getReturnType())
-					&& !StringUtils.isEmpty(pm.getRoute().getReturnType())){
-					selectedMatch = pm;
-				} else if(StringUtils.isEmpty(selectedMatch.getRoute().getRequestType()) 
-						&& !StringUtils.isEmpty(pm.getRoute().getRequestType())) {
-						selectedMatch = pm;
-				}
-			}
-			if(logger.isTraceEnabled() && prelimSelection != selectedMatch){
-				logger.trace(String.format("Route %s is more specific than %s", selectedMatch, prelimSelection));
-			}
+		if(matchEvent != null && matchEvent.shouldCommit()) {
+			matchEvent.route = RouteMatchEvent.describe(selectedMatch.getRoute());
+			matchEvent.candidates = candidateCount;
+			matchEvent.cached = cached;
+			matchEvent.commit();
 		}
 		if(logger.isTraceEnabled())
 			logger.trace(String.format("Route chosen for invocation %s", selectedMatch));
+		RateLimits rateLimits = this.rateLimits;
+		if(rateLimits != null) {
+			long retryAfterNanos = rateLimits.tryAcquire(selectedMatch.getRoute(), req);
+			if(retryAfterNanos > 0)
+				return do429(method, req, resp, retryAfterNanos);
+		}
+		ConcurrencyLimits concurrencyLimits = this.concurrencyLimits;
+		Permit permit = null;
+		if(concurrencyLimits != null) {
+			permit = concurrencyLimits.tryAcquire(selectedMatch.getRoute());
+			if(permit == null)
+				return do503(method, req, resp, "Too many concurrent requests.");
+		}
+		OffloadDispatcher offloadDispatcher = this.offloadDispatcher;
+		if(offloadDispatcher != null && offloadDispatcher.isOffloaded(selectedMatch.getRoute()) && req.isAsyncSupported()) {
+			final PathMatch match = selectedMatch;
+			final Permit offloadedPermit = permit;
+			offloadDispatcher.dispatch(req, resp, new Runnable() {
+				@Override
+				public void run() {
+					if(!invoke(method, match, req, resp, offloadedPermit))
+						logger.error(String.format("Failed to handle offloaded %s request.", method.name()));
+				}
+			});
+			return true;
+		}
+		return invoke(method, selectedMatch, req, resp, permit);
+	}
+
+	private boolean invoke(HttpMethod method, PathMatch selectedMatch, HttpServletRequest req,
+			HttpServletResponse resp, Permit permit) {
+		RouteMetrics.start(req);
+		if(permit != null)
+			permit.hold(req);
 		try {
+			ResponseCache responseCache = this.responseCache;
+			if(responseCache != null)
+				return responseCache.handle(methodInvoker, method, selectedMatch, req, resp);
 			return methodInvoker.invokeMethod(method, selectedMatch, req, resp).handled;
 		} catch (Throwable t) {
 			return do500(method, req, resp, t);
+		} finally {
+			// Unless an asynchronous completion has claimed the request
+			Permit unreleased = Permit.claim(req);
+			if(unreleased != null)
+				unreleased.release();
+			Long started = RouteMetrics.claim(req);
+			if(started != null) {
+				RouteMetrics metrics = selectedMatch.getRoute().getMetrics();
+				metrics.record(resp.getStatus(), System.nanoTime() - started);
+				PhaseTimer timer = PhaseTimer.get(req);
+				if(timer != null)
+					metrics.recordPhases(timer);
+			}
 		}
-		
 	}
 
 	@Override
@@ -335,13 +519,38 @@ public class RestRouterServlet implements HttpRequestHandler, InitializingBean,
 	@Override
 	public void dumpEndpoints(HttpServletRequest req, HttpServletResponse resp) throws Exception {
 		List<String> endpointPaths = new ArrayList<String>();
-		for(Route route : this.routes) {
+		for(Route route : this.routeTable.getRoutes()) {
 			endpointPaths.add(route.getPathTemplate().getLexicalPath());
 		}
 		resp.setStatus(200);
-		byte bytes[] = objectMapper.writeValueAsBytes(endpointPaths);
-		resp.setContentLength(bytes.length);
+		byte bytes[] = CodecRegistry.getDefault().getWriter().writeValueAsBytes(endpointPaths);
 		resp.setContentType("application/json");
+		if(responseCompressor != null) {
+			responseCompressor.writeBody(null, req, resp, bytes);
+			return;
+		}
+		resp.setContentLength(bytes.length);
+		resp.getOutputStream().write(bytes);
+		resp.getOutputStream().close();
+	}
+
+	@Override
+	public void dumpMetrics(HttpServletRequest req, HttpServletResponse resp) throws Exception {
+		byte bytes[];
+		String accept = req.getHeader("Accept");
+		if("prometheus".equals(req.getParameter("format")) || (accept != null && accept.contains("text/plain"))) {
+			bytes = MetricsFormatter.toPrometheus(this.routeTable.getRoutes()).getBytes("UTF-8");
+			resp.setContentType(MetricsFormatter.PROMETHEUS_CONTENT_TYPE);
+		} else {
+			bytes = CodecRegistry.getDefault().getWriter().writeValueAsBytes(MetricsFormatter.toTree(this.routeTable.getRoutes()));
+			resp.setContentType("application/json");
+		}
+		resp.setStatus(200);
+		if(responseCompressor != null) {
+			responseCompressor.writeBody(null, req, resp, bytes);
+			return;
+		}
+		resp.setContentLength(bytes.length);
 		resp.getOutputStream().write(bytes);
 		resp.getOutputStream().close();
 	}
@@ -18,7 +18,10 @@ package com.doitnext.http.router;
 import java.lang.reflect.Method;
 
 import com.doitnext.http.router.annotations.RestMethod;
+import com.doitnext.http.router.argumentbinders.BindingPlan;
+import com.doitnext.http.router.argumentbinders.BindingPlanFactory;
 import com.doitnext.http.router.annotations.enums.HttpMethod;
+import com.doitnext.http.router.metrics.RouteMetrics;
 import com.doitnext.http.router.responsehandlers.ResponseHandler;
 import com.doitnext.pathutils.PathTemplate;
 
@@ -102,6 +105,27 @@ public class Route implements Comparable<Route> {
 	
 	final private String extendedHttpMethod;
 	
+	/**
+	 * The {@link MediaTypeRegistry} ids of {@link #requestType}, {@link #returnType},
+	 * {@link #requestFormat} and {@link #returnFormat} used during content negotiation.
+	 */
+	final private int requestTypeId;
+	final private int returnTypeId;
+	final private int requestFormatId;
+	final private int returnFormatId;
+	
+	/**
+	 * The argument binding plan for {@link #implMethod} created by {@link #invoker} if it is a
+	 * {@link BindingPlanFactory}, otherwise null.
+	 */
+	final private BindingPlan bindingPlan;
+	
+	/**
+	 * The measurements of the requests handled by this route.  Though they change, recording is
+	 * thread safe and they play no part in the identity of the route.
+	 */
+	final private RouteMetrics metrics = new RouteMetrics();
+	
 	/**
 	 * @param httpMethod - The HTTP method associated with the route
 	 * @param responseType - the negotiated request type this type is given in the request Content-Type header
@@ -136,6 +160,11 @@ public class Route implements Comparable<Route> {
 		this.successHandler = successHandler;
 		this.errorHandler = errorHandler;
 		this.dynamic = dynamic;
+		MediaTypeRegistry registry = MediaTypeRegistry.getDefault();
+		this.requestTypeId = registry.intern(requestType);
+		this.returnTypeId = registry.intern(returnType);
+		this.requestFormatId = registry.intern(requestFormat);
+		this.returnFormatId = registry.intern(returnFormat);
 		// Ensure that pathTemplate is frozen thus making this class immutable
 		if(this.pathTemplate != null)
 			this.pathTemplate.freeze();
@@ -146,6 +175,10 @@ public class Route implements Comparable<Route> {
 		} else
 			extendedHttpMethod = null;
 		
+		if(invoker instanceof BindingPlanFactory && implMethod != null)
+			bindingPlan = ((BindingPlanFactory)invoker).createBindingPlan(this);
+		else
+			bindingPlan = null;
 	}
 
 	public boolean isWildcardReturn() {
@@ -196,6 +229,34 @@ public class Route implements Comparable<Route> {
 		return returnFormat;
 	}
 
+	/**
+	 * @return the {@link MediaTypeRegistry} id of {@link #requestType}
+	 */
+	public int getRequestTypeId() {
+		return requestTypeId;
+	}
+
+	/**
+	 * @return the {@link MediaTypeRegistry} id of {@link #returnType}
+	 */
+	public int getReturnTypeId() {
+		return returnTypeId;
+	}
+
+	/**
+	 * @return the {@link MediaTypeRegistry} id of {@link #requestFormat}
+	 */
+	public int getRequestFormatId() {
+		return requestFormatId;
+	}
+
+	/**
+	 * @return the {@link MediaTypeRegistry} id of {@link #returnFormat}
+	 */
+	public int getReturnFormatId() {
+		return returnFormatId;
+	}
+
 	/**
 	 * @return the {@link #pathTemplate}
 	 * @see #Route
@@ -220,6 +281,20 @@ public class Route implements Comparable<Route> {
 		return implMethod;
 	}
 
+	/**
+	 * @return the {@link #bindingPlan}
+	 */
+	public BindingPlan getBindingPlan() {
+		return bindingPlan;
+	}
+
+	/**
+	 * @return the {@link #metrics}
+	 */
+	public RouteMetrics getMetrics() {
+		return metrics;
+	}
+
 	/**
 	 * @return the {@link #invoker}
 	 */
@@ -0,0 +1,249 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.doitnext.pathutils.GreedyTemplate;
+import com.doitnext.pathutils.IdentifierTemplate;
+import com.doitnext.pathutils.LiteralTemplate;
+import com.doitnext.pathutils.Path;
+import com.doitnext.pathutils.PathElementTemplate;
+import com.doitnext.pathutils.PathTemplate;
+
+/**
+ * <p>A compiled, segment level index over a set of {@link Route} objects.  The index is a
+ * trie keyed on the literal segments of each route's {@link PathTemplate}.  Identifier
+ * segments ({@link IdentifierTemplate}) hang off each node as a single segment child edge
+ * and greedy segments ({@link GreedyTemplate}) terminate the route at the node where they
+ * occur.</p>
+ *
+ * <p>A lookup walks the trie once per request path, so the cost is proportional to the
+ * depth of the path rather than to the number of routes.  The trie only narrows the
+ * candidate set; each surviving candidate is still confirmed by
+ * {@link PathTemplate#match(String)} so the resulting {@link PathMatch} list is exactly
+ * the list a linear scan over the routes would produce, in the same order.</p>
+ *
+ * <p>This class is Immutable and thread safe.</p>
+ *
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class RouteIndex {
+	private static final String PATH_SEPARATOR = "/";
+	private static final char PATH_SEPARATOR_CHAR = '/';
+	private static final char TERMINUS_SEPARATOR = '?';
+
+	/**
+	 * The indexed routes in the order in which they were given.  The position of a
+	 * route in this array is its ordinal within the index.
+	 */
+	final private Route routes[];
+	/**
+	 * The root node of the trie.
+	 */
+	final private Node root = new Node();
+	/**
+	 * Ordinals of routes whose templates could not be indexed.  These are tried on every lookup.
+	 */
+	final private BitSet unindexed = new BitSet();
+
+	/**
+	 * @param routes the routes to index.  The iteration order of this argument is the
+	 * order in which matches are returned by {@link #match(String)}.
+	 */
+	public RouteIndex(Iterable<Route> routes) {
+		List<Route> routeList = new ArrayList<Route>();
+		for(Route route : routes)
+			routeList.add(route);
+		this.routes = routeList.toArray(new Route[routeList.size()]);
+		for(int ordinal = 0; ordinal < this.routes.length; ordinal++)
+			insert(ordinal, this.routes[ordinal].getPathTemplate());
+	}
+
+	/**
+	 * @return the number of routes in this index.
+	 */
+	public int size() {
+		return routes.length;
+	}
+
+	/**
+	 * @param ordinal the position of the route in this index.
+	 * @return the route at the given position.
+	 */
+	public Route getRoute(int ordinal) {
+		return routes[ordinal];
+	}
+
+	/**
+	 * Identifies the routes that could possibly match a path.  The result is a superset of the
+	 * routes whose template actually matches the path.
+	 *
+	 * @param pathString the request path (possibly including a terminus).
+	 * @return the ordinals of the candidate routes.
+	 */
+	public BitSet candidates(String pathString) {
+		BitSet result = new BitSet(routes.length);
+		result.or(unindexed);
+		if(pathString != null) {
+			List<String> segments = splitSegments(pathString);
+			collect(root, segments, 0, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Matches a path against the indexed routes.
+	 *
+	 * @param pathString the request path (possibly including a terminus).
+	 * @return the list of {@link PathMatch} objects for the routes that match the path
+	 * in index order.  The list is empty if no route matches.
+	 */
+	public List<PathMatch> match(String pathString) {
+		BitSet candidates = candidates(pathString);
+		if(candidates.isEmpty())
+			return Collections.emptyList();
+		List<PathMatch> result = new ArrayList<PathMatch>(candidates.cardinality());
+		for(int ordinal = candidates.nextSetBit(0); ordinal >= 0; ordinal = candidates.nextSetBit(ordinal + 1)) {
+			Route route = routes[ordinal];
+			Path path = route.getPathTemplate().match(pathString);
+			if(path != null)
+				result.add(new PathMatch(route, path));
+		}
+		return result;
+	}
+
+	/**
+	 * Identifies the routes whose templates match a path without building {@link PathMatch}
+	 * objects for them.
+	 *
+	 * @param pathString the request path (possibly including a terminus).
+	 * @return the ordinals of the routes that match the path.
+	 */
+	public BitSet matching(String pathString) {
+		BitSet result = candidates(pathString);
+		for(int ordinal = result.nextSetBit(0); ordinal >= 0; ordinal = result.nextSetBit(ordinal + 1)) {
+			if(routes[ordinal].getPathTemplate().match(pathString) == null)
+				result.clear(ordinal);
+		}
+		return result;
+	}
+
+	private void insert(int ordinal, PathTemplate template) {
+		if(template == null) {
+			unindexed.set(ordinal);
+			return;
+		}
+		Node node = root;
+		for(int x = 0; x < template.getLength(); x++) {
+			PathElementTemplate element = template.getMatcher(x);
+			if(element instanceof LiteralTemplate) {
+				node = node.literalChild(element.getName());
+			} else if(element instanceof IdentifierTemplate) {
+				node = node.identifierChild();
+			} else if(element instanceof GreedyTemplate) {
+				// A greedy element swallows the remainder of the path so any elements
+				// following it are left for PathTemplate.match to sort out.
+				node.greedyRoutes.set(ordinal);
+				return;
+			} else {
+				unindexed.set(ordinal);
+				return;
+			}
+		}
+		node.terminalRoutes.set(ordinal);
+	}
+
+	private void collect(Node node, List<String> segments, int depth, BitSet result) {
+		result.or(node.greedyRoutes);
+		if(depth == segments.size()) {
+			result.or(node.terminalRoutes);
+			return;
+		}
+		if(node.literalChildren != null) {
+			Node child = node.literalChildren.get(segments.get(depth));
+			if(child != null)
+				collect(child, segments, depth + 1, result);
+		}
+		if(node.identifierChild != null)
+			collect(node.identifierChild, segments, depth + 1, result);
+	}
+
+	/**
+	 * Splits a request path into its non empty segments, ignoring any terminus.
+	 */
+	static List<String> splitSegments(String pathString) {
+		int end = pathString.indexOf(TERMINUS_SEPARATOR);
+		if(end < 0)
+			end = pathString.length();
+		List<String> segments = new ArrayList<String>();
+		int start = 0;
+		while(start < end) {
+			int next = pathString.indexOf(PATH_SEPARATOR_CHAR, start);
+			if(next < 0 || next > end)
+				next = end;
+			if(next > start)
+				segments.add(pathString.substring(start, next));
+			start = next + PATH_SEPARATOR.length();
+		}
+		return segments;
+	}
+
+	/**
+	 * A node in the segment trie.
+	 */
+	private static class Node {
+		/**
+		 * Literal segment edges.  Literal comparison is case insensitive so that the index
+		 * never rejects a path that the template itself would accept.
+		 */
+		Map<String, Node> literalChildren;
+		/**
+		 * The single segment edge shared by every identifier element at this depth.
+		 */
+		Node identifierChild;
+		/**
+		 * Routes whose templates end at this node.
+		 */
+		final BitSet terminalRoutes = new BitSet();
+		/**
+		 * Routes whose templates have a greedy element at this node.
+		 */
+		final BitSet greedyRoutes = new BitSet();
+
+		Node literalChild(String segment) {
+			if(literalChildren == null)
+				literalChildren = new TreeMap<String, Node>(String.CASE_INSENSITIVE_ORDER);
+			Node child = literalChildren.get(segment);
+			if(child == null) {
+				child = new Node();
+				literalChildren.put(segment, child);
+			}
+			return child;
+		}
+
+		Node identifierChild() {
+			if(identifierChild == null)
+				identifierChild = new Node();
+			return identifierChild;
+		}
+	}
+}
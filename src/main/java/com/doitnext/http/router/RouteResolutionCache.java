@@ -0,0 +1,191 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.doitnext.http.router.annotations.enums.HttpMethod;
+
+/**
+ * <p>A bounded cache of routing decisions.  Maps the normalized request tuple
+ * (method, path, Accept, Content-Type) to the {@link PathMatch} selected by
+ * {@link RestRouterServlet#routeRequest}, which carries both the selected {@link Route}
+ * and the path variables extracted from the request path.</p>
+ *
+ * <p>Eviction uses the CLOCK (second chance) policy.  Lookups never lock; they only set
+ * the reference bit of the entry they hit.  Insertions are serialized on the clock hand.</p>
+ *
+ * <p>A cache instance belongs to exactly one {@link RouteTable} so replacing the route table
+ * atomically discards every decision made against the old routes.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class RouteResolutionCache {
+	final private ConcurrentMap<Key, Entry> entries;
+	final private Entry slots[];
+	final private AtomicLong hits = new AtomicLong();
+	final private AtomicLong misses = new AtomicLong();
+	private int hand = 0;
+
+	/**
+	 * @param capacity the maximum number of routing decisions to hold.
+	 */
+	public RouteResolutionCache(int capacity) {
+		if(capacity < 1)
+			throw new IllegalArgumentException(String.format("Invalid cache capacity %d", capacity));
+		this.slots = new Entry[capacity];
+		this.entries = new ConcurrentHashMap<Key, Entry>(capacity);
+	}
+
+	/**
+	 * @param key the request tuple.
+	 * @return the cached decision or null if there is none.
+	 */
+	public PathMatch get(Key key) {
+		Entry entry = entries.get(key);
+		if(entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		entry.referenced = true;
+		hits.incrementAndGet();
+		return entry.value;
+	}
+
+	/**
+	 * Caches a routing decision evicting the first unreferenced entry under the clock hand
+	 * if the cache is full.
+	 *
+	 * @param key the request tuple.
+	 * @param value the decision.
+	 */
+	public synchronized void put(Key key, PathMatch value) {
+		if(entries.containsKey(key))
+			return;
+		while(slots[hand] != null && slots[hand].referenced) {
+			slots[hand].referenced = false;
+			hand = (hand + 1) % slots.length;
+		}
+		if(slots[hand] != null)
+			entries.remove(slots[hand].key);
+		Entry entry = new Entry(key, value);
+		slots[hand] = entry;
+		entries.put(key, entry);
+		hand = (hand + 1) % slots.length;
+	}
+
+	/**
+	 * @return the number of decisions currently cached.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the maximum number of decisions this cache will hold.
+	 */
+	public int getCapacity() {
+		return slots.length;
+	}
+
+	/**
+	 * @return the number of lookups that found a cached decision.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of lookups that did not find a cached decision.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	private static class Entry {
+		final Key key;
+		final PathMatch value;
+		volatile boolean referenced;
+
+		Entry(Key key, PathMatch value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * The request attributes that determine a routing decision.
+	 */
+	public static final class Key {
+		final private HttpMethod method;
+		final private String path;
+		final private String accept;
+		final private String contentType;
+		final private int hash;
+
+		/**
+		 * @param method the request method.
+		 * @param path the request path info.
+		 * @param accept the Accept header (may be null).
+		 * @param contentType the Content-Type header (may be null).
+		 */
+		public Key(HttpMethod method, String path, String accept, String contentType) {
+			this.method = method;
+			this.path = path;
+			this.accept = accept;
+			this.contentType = contentType;
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + ((method == null) ? 0 : method.hashCode());
+			result = prime * result + ((path == null) ? 0 : path.hashCode());
+			result = prime * result + ((accept == null) ? 0 : accept.hashCode());
+			result = prime * result + ((contentType == null) ? 0 : contentType.hashCode());
+			this.hash = result;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			Key other = (Key) obj;
+			return hash == other.hash && method == other.method
+					&& equalStrings(path, other.path)
+					&& equalStrings(accept, other.accept)
+					&& equalStrings(contentType, other.contentType);
+		}
+
+		private static boolean equalStrings(String a, String b) {
+			return (a == null) ? b == null : a.equals(b);
+		}
+	}
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.doitnext.http.router.annotations.enums.HttpMethod;
+import com.doitnext.pathutils.IdentifierTemplate;
+import com.doitnext.pathutils.PathElementTemplate;
+import com.doitnext.pathutils.PathTemplate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+
+/**
+ * <p>The compiled form of a set of routes used by {@link RestRouterServlet} to route requests.</p>
+ *
+ * <p>Routes are partitioned by {@link HttpMethod} with one {@link RouteIndex} per method so
+ * that a request is only ever matched against routes that handle its method.  The allowed
+ * methods of each distinct path template are computed up front so that a 405 response
+ * can be produced by matching the path once against the distinct templates rather than
+ * against every route of every other method.</p>
+ *
+ * <p>This class is Immutable and thread safe.  A new instance is built whenever the
+ * routes change.</p>
+ *
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class RouteTable {
+	/**
+	 * The routes this table was built from.
+	 */
+	final private ImmutableSortedSet<Route> routes;
+	/**
+	 * One index per {@link HttpMethod} containing only the routes for that method.
+	 */
+	final private Map<HttpMethod, RouteIndex> indexesByMethod =
+			new EnumMap<HttpMethod, RouteIndex>(HttpMethod.class);
+	/**
+	 * One content negotiator per {@link HttpMethod} over the routes of {@link #indexesByMethod}.
+	 */
+	final private Map<HttpMethod, ContentNegotiator> negotiatorsByMethod =
+			new EnumMap<HttpMethod, ContentNegotiator>(HttpMethod.class);
+	/**
+	 * An index containing one representative route for each distinct path template.
+	 */
+	final private RouteIndex templateIndex;
+	/**
+	 * The allowed methods for each template in {@link #templateIndex} by ordinal.
+	 */
+	final private List<List<String>> allowedMethods = new ArrayList<List<String>>();
+	/**
+	 * The allowed method sets for each template in {@link #templateIndex} by ordinal.
+	 */
+	final private List<Set<HttpMethod>> allowedMethodSets = new ArrayList<Set<HttpMethod>>();
+	/**
+	 * The optional cache of routing decisions made against this table.
+	 */
+	final private RouteResolutionCache resolutionCache;
+
+	/**
+	 * @param routes the routes from which to build the table.
+	 */
+	public RouteTable(ImmutableSortedSet<Route> routes) {
+		this(routes, null);
+	}
+
+	/**
+	 * @param routes the routes from which to build the table.
+	 * @param resolutionCache an empty cache for routing decisions made against this table or
+	 * null to disable caching.
+	 */
+	public RouteTable(ImmutableSortedSet<Route> routes, RouteResolutionCache resolutionCache) {
+		this.routes = routes;
+		this.resolutionCache = resolutionCache;
+		Map<HttpMethod, List<Route>> routesByMethod = new EnumMap<HttpMethod, List<Route>>(HttpMethod.class);
+		Map<String, Route> representatives = new LinkedHashMap<String, Route>();
+		Map<String, Set<HttpMethod>> methodsByTemplate = new LinkedHashMap<String, Set<HttpMethod>>();
+		for(Route route : routes) {
+			List<Route> methodRoutes = routesByMethod.get(route.getHttpMethod());
+			if(methodRoutes == null) {
+				methodRoutes = new ArrayList<Route>();
+				routesByMethod.put(route.getHttpMethod(), methodRoutes);
+			}
+			methodRoutes.add(route);
+
+			String key = templateKey(route.getPathTemplate());
+			Set<HttpMethod> methods = methodsByTemplate.get(key);
+			if(methods == null) {
+				methods = new TreeSet<HttpMethod>();
+				methodsByTemplate.put(key, methods);
+				representatives.put(key, route);
+			}
+			methods.add(route.getHttpMethod());
+		}
+		for(Map.Entry<HttpMethod, List<Route>> entry : routesByMethod.entrySet()) {
+			RouteIndex index = new RouteIndex(entry.getValue());
+			indexesByMethod.put(entry.getKey(), index);
+			negotiatorsByMethod.put(entry.getKey(), new ContentNegotiator(index));
+		}
+		templateIndex = new RouteIndex(representatives.values());
+		for(Set<HttpMethod> methods : methodsByTemplate.values()) {
+			allowedMethodSets.add(Collections.unmodifiableSet(methods));
+			allowedMethods.add(toNames(methods));
+		}
+	}
+
+	/**
+	 * @return the routes this table was built from.
+	 */
+	public ImmutableSortedSet<Route> getRoutes() {
+		return routes;
+	}
+
+	/**
+	 * @return the cache of routing decisions or null if caching is disabled.
+	 */
+	public RouteResolutionCache getResolutionCache() {
+		return resolutionCache;
+	}
+
+	/**
+	 * @param method the http method of the request.
+	 * @return the index of the routes for the method or null if there are no routes
+	 * for the method.
+	 */
+	public RouteIndex getIndex(HttpMethod method) {
+		return indexesByMethod.get(method);
+	}
+
+	/**
+	 * @param method the http method of the request.
+	 * @return the content negotiator over the routes of {@link #getIndex(HttpMethod)} or null if
+	 * there are no routes for the method.
+	 */
+	public ContentNegotiator getNegotiator(HttpMethod method) {
+		return negotiatorsByMethod.get(method);
+	}
+
+	/**
+	 * Matches a path against the routes for a given method.
+	 *
+	 * @param method the http method of the request.
+	 * @param pathString the request path.
+	 * @return the path matches for the method in route order.
+	 */
+	public List<PathMatch> match(HttpMethod method, String pathString) {
+		RouteIndex index = indexesByMethod.get(method);
+		if(index == null)
+			return Collections.emptyList();
+		return index.match(pathString);
+	}
+
+	/**
+	 * Identifies the methods allowed on a path.  This is used to distinguish a 405 from a
+	 * 404 after {@link #match(HttpMethod, String)} finds nothing for the request method.
+	 *
+	 * @param pathString the request path.
+	 * @return the names of the methods that have routes matching the path, in
+	 * {@link HttpMethod} order.  The list is empty if no route matches the path.
+	 */
+	public List<String> getAllowedMethods(String pathString) {
+		BitSet templateMatches = templateIndex.matching(pathString);
+		int first = templateMatches.nextSetBit(0);
+		if(first < 0)
+			return Collections.emptyList();
+		int next = templateMatches.nextSetBit(first + 1);
+		if(next < 0)
+			return allowedMethods.get(first);
+		Set<HttpMethod> methods = new TreeSet<HttpMethod>();
+		for(int ordinal = first; ordinal >= 0; ordinal = templateMatches.nextSetBit(ordinal + 1))
+			methods.addAll(allowedMethodSets.get(ordinal));
+		return toNames(methods);
+	}
+
+	private static List<String> toNames(Set<HttpMethod> methods) {
+		List<String> names = new ArrayList<String>();
+		for(HttpMethod m : methods)
+			names.add(m.name());
+		return ImmutableList.copyOf(names);
+	}
+
+	/**
+	 * Builds a key that is identical for templates that match the same paths.
+	 */
+	static String templateKey(PathTemplate template) {
+		if(template == null)
+			return "";
+		StringBuilder sb = new StringBuilder();
+		for(int x = 0; x < template.getLength(); x++) {
+			PathElementTemplate element = template.getMatcher(x);
+			sb.append('/').append(element.getClass().getSimpleName())
+				.append(':').append(element.getName());
+			if(element instanceof IdentifierTemplate) {
+				sb.append(':').append(((IdentifierTemplate)element).getMatcher());
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Marks a GET method annotated with {@link RestMethod} whose successful responses may be served
+ * from the router's response cache (see com.doitnext.http.router.responsecache.ResponseCache).
+ * <p>Responses are cached by route, request path, the named query parameters and the negotiated
+ * format and content coding.  Any other input to the method, such as other query parameters or
+ * headers, must not change its response.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Cached {
+	/**
+	 * @return how long a cached response is fresh, in {@link #unit()}s.
+	 */
+	long ttl();
+	
+	/**
+	 * @return how long after it expires a cached response may still be served while it is
+	 * refreshed, in {@link #unit()}s.
+	 * <p>The default value is 0 meaning an expired response is never served.</p>
+	 */
+	long staleWhileRevalidate() default 0;
+	
+	/**
+	 * @return the unit of {@link #ttl()} and {@link #staleWhileRevalidate()}.
+	 * <p>The default value is {@link TimeUnit#SECONDS}</p>
+	 */
+	TimeUnit unit() default TimeUnit.SECONDS;
+	
+	/**
+	 * @return the names of the query parameters whose values select the cached response.
+	 * <p>The default value is {} meaning query parameters do not change the response.</p>
+	 */
+	String[] queryParameters() default {};
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Bounds the number of requests that may be handled at once by a method annotated with
+ * {@link RestMethod} or, on a class annotated with {@link RestCollection}, by all of the methods of
+ * the collection together.  Requests over the limit are rejected at once with a
+ * '503 Service Unavailable' error.  The limits are enforced by the router's
+ * com.doitnext.http.router.limits.ConcurrencyLimits.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ConcurrencyLimit {
+	/**
+	 * @return the maximum number of requests handled at once.
+	 */
+	int value();
+	
+	/**
+	 * @return whether the limit adapts to the latency of the requests.
+	 * <p>An adaptive limit starts at {@link #value()} and shrinks when requests take longer than they
+	 * usually do, which is a sign of queueing downstream, and grows back, up to {@link #value()}, when
+	 * they speed up again.</p>
+	 * <p>The default value is false meaning the limit is fixed.</p>
+	 */
+	boolean adaptive() default false;
+	
+	/**
+	 * @return the smallest limit an adaptive limit may shrink to.
+	 * <p>The default value is 1.</p>
+	 */
+	int minimum() default 1;
+}
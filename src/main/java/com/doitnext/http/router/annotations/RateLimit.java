@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how often each client may call a method annotated with {@link RestMethod}.  Each client
+ * gets a bucket of {@link #burst()} tokens that refills at {@link #value()} tokens per
+ * {@link #period()}, and each request takes one token.  Requests finding the bucket empty are
+ * rejected with a '429 Too Many Requests' error telling the client when to retry.  Clients are told
+ * apart by the router's com.doitnext.http.router.limits.ClientKeyExtractor and the limits are enforced
+ * by its com.doitnext.http.router.limits.RateLimits.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RateLimit {
+	/**
+	 * @return the number of requests allowed each {@link #period()}.
+	 */
+	int value();
+	
+	/**
+	 * @return the length of the period in {@link #unit()}s.
+	 * <p>The default value is 1.</p>
+	 */
+	long period() default 1;
+	
+	/**
+	 * @return the unit of {@link #period()}.
+	 * <p>The default value is SECONDS.</p>
+	 */
+	TimeUnit unit() default TimeUnit.SECONDS;
+	
+	/**
+	 * @return the number of requests a client that has been idle may make at once.
+	 * <p>The default value is 0 meaning the same as {@link #value()}.</p>
+	 */
+	int burst() default 0;
+}
@@ -84,4 +84,19 @@ public @interface RestCollection {
 	 * <p>The returnFormat would be 'application/json'</p>
 	 */
 	String returnFormat() default "application/json";
+	/**
+	 * @return further request formats, besides the requestFormat, that apply to any method that does not declare its own.
+	 * <p>A route is created for each request format.  For example a method that reads 'application/json'
+	 * can also read 'application/cbor' request bodies.</p>
+	 * <p>The default value is {} meaning only the requestFormat.</p>
+	 */
+	String[] alternateRequestFormats() default {};
+	/**
+	 * @return further return formats, besides the returnFormat, that apply to any method that does not declare its own.
+	 * <p>A route is created for each return format and the format is chosen by the "Accept:" header of
+	 * the request.  For example a method that returns 'application/json' can also return
+	 * 'application/x-jackson-smile' or 'application/cbor'.</p>
+	 * <p>The default value is {} meaning only the returnFormat.</p>
+	 */
+	String[] alternateReturnFormats() default {};
 }
@@ -96,4 +96,48 @@ public @interface RestMethod {
 	 * <p>The default value is 'application/json'</p>
 	 */
 	String returnFormat() default "application/json";
+	/**
+	 * @return further request formats, besides the requestFormat, that apply to this method.
+	 * <p>A route is created for each request format.  For example a method that reads 'application/json'
+	 * can also read 'application/cbor' request bodies.</p>
+	 * <p>The default value is {} meaning only the requestFormat.</p>
+	 */
+	String[] alternateRequestFormats() default {};
+	/**
+	 * @return further return formats, besides the returnFormat, that apply to this method.
+	 * <p>A route is created for each return format and the format is chosen by the "Accept:" header of
+	 * the request.  For example a method that returns 'application/json' can also return
+	 * 'application/x-jackson-smile' or 'application/cbor'.</p>
+	 * <p>The default value is {} meaning only the returnFormat.</p>
+	 */
+	String[] alternateReturnFormats() default {};
+	/**
+	 * @return whether responses from this method may be compressed.
+	 * <p>Set this to false for methods whose responses are already compressed or that are so small
+	 * or so latency sensitive that compressing them does not pay.</p>
+	 * <p>The default value is true, meaning responses are compressed when the "Accept-Encoding:"
+	 * header of the request allows it.</p>
+	 */
+	boolean compress() default true;
+	/**
+	 * @return how long, in milliseconds, a method that returns a CompletionStage may take to complete it.
+	 * <p>A response that is not complete in time is answered with a '503 Service Unavailable' error.</p>
+	 * <p>The default value is -1 meaning the default timeout of the invoker.</p>
+	 */
+	long asyncTimeout() default -1;
+	/**
+	 * @return whether this method is run on the router's offload executor rather than on the container thread.
+	 * <p>Set this to true for methods that block, for example on a database, so that container threads stay
+	 * free for I/O.  It only has an effect when the router has an offload dispatcher.</p>
+	 * <p>The default value is false.</p>
+	 */
+	boolean offload() default false;
+	/**
+	 * @return whether concurrent identical GET requests for this method may share one invocation.
+	 * <p>Set this to true only for methods whose response depends on nothing but the path, the query
+	 * string and the negotiated format, since identical requests are all sent the one response.  It only
+	 * has an effect when the router's invoker is a {@link com.doitnext.http.router.CoalescingInvoker}.</p>
+	 * <p>The default value is false.</p>
+	 */
+	boolean coalesce() default false;
 }
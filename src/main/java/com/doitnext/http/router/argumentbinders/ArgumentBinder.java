@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.argumentbinders;
+
+/**
+ * Produces the value of a single handler method argument for a request.  One binder is
+ * selected for each parameter of a handler method when its {@link com.doitnext.http.router.Route}
+ * is built so that nothing about the parameter has to be rediscovered per request.
+ * 
+ * <p>Implementations must be Immutable and thread safe.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public interface ArgumentBinder {
+	/**
+	 * @param context the request being dispatched.
+	 * @return the argument value.
+	 * @throws Exception if the argument cannot be produced.
+	 */
+	Object bind(BindingContext context) throws Exception;
+}
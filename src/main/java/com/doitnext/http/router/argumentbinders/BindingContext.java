@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.argumentbinders;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.doitnext.http.router.PathMatch;
+
+/**
+ * The per request state available to {@link ArgumentBinder} implementations.  Anything
+ * derived from the request that more than one binder may need is computed lazily
+ * and at most once.
+ * 
+ * <p>This class is NOT thread safe. It is used by a single request thread.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class BindingContext {
+	final private PathMatch pathMatch;
+	final private HttpServletRequest request;
+	final private HttpServletResponse response;
+	private QueryString queryString;
+
+	/**
+	 * @param pathMatch the route and matched path of the request.
+	 * @param request the request.
+	 * @param response the response.
+	 */
+	public BindingContext(PathMatch pathMatch, HttpServletRequest request, HttpServletResponse response) {
+		this.pathMatch = pathMatch;
+		this.request = request;
+		this.response = response;
+	}
+
+	/**
+	 * @return the {@link #pathMatch}
+	 */
+	public PathMatch getPathMatch() {
+		return pathMatch;
+	}
+
+	/**
+	 * @return the {@link #request}
+	 */
+	public HttpServletRequest getRequest() {
+		return request;
+	}
+
+	/**
+	 * @return the {@link #response}
+	 */
+	public HttpServletResponse getResponse() {
+		return response;
+	}
+
+	/**
+	 * @return the parsed query string of the request.
+	 */
+	public QueryString getQueryString() {
+		if(queryString == null)
+			queryString = new QueryString(request.getQueryString(), getCharset());
+		return queryString;
+	}
+
+	private Charset getCharset() {
+		String encoding = request.getCharacterEncoding();
+		if(encoding != null) {
+			try {
+				return Charset.forName(encoding);
+			} catch(IllegalArgumentException e) {
+				// Fall through to the default
+			}
+		}
+		return StandardCharsets.UTF_8;
+	}
+}
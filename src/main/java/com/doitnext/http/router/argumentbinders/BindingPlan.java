@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.argumentbinders;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * The precomputed recipe for building the argument array of a handler method.  There is one
+ * {@link ArgumentBinder} per method parameter, in parameter order.  A plan may also carry a
+ * writer resolved for the method's declared return type and the method's own async timeout.
+ * 
+ * <p>This class is Immutable and thread safe.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class BindingPlan {
+	final private ArgumentBinder binders[];
+	final private Class<?> returnType;
+	final private ObjectWriter returnWriter;
+	final private long asyncTimeout;
+
+	/**
+	 * @param binders one binder per method parameter.
+	 */
+	public BindingPlan(ArgumentBinder binders[]) {
+		this(binders, null, null);
+	}
+
+	/**
+	 * @param binders one binder per method parameter.
+	 * @param returnType the declared return type of the method.
+	 * @param returnWriter a writer for values of exactly the return type or null if there is none.
+	 */
+	public BindingPlan(ArgumentBinder binders[], Class<?> returnType, ObjectWriter returnWriter) {
+		this(binders, returnType, returnWriter, -1);
+	}
+
+	/**
+	 * @param binders one binder per method parameter.
+	 * @param returnType the declared return type of the method.
+	 * @param returnWriter a writer for values of exactly the return type or null if there is none.
+	 * @param asyncTimeout the method's async timeout in milliseconds or a negative value if the
+	 * invoker's default applies.
+	 */
+	public BindingPlan(ArgumentBinder binders[], Class<?> returnType, ObjectWriter returnWriter, long asyncTimeout) {
+		this.binders = binders.clone();
+		this.returnType = returnType;
+		this.returnWriter = returnWriter;
+		this.asyncTimeout = asyncTimeout;
+	}
+
+	/**
+	 * Allows subclasses to extend a plan with invoker specific state.
+	 * 
+	 * @param plan the plan whose binders are to be used.
+	 */
+	protected BindingPlan(BindingPlan plan) {
+		this.binders = plan.binders;
+		this.returnType = plan.returnType;
+		this.returnWriter = plan.returnWriter;
+		this.asyncTimeout = plan.asyncTimeout;
+	}
+
+	/**
+	 * @return the number of arguments this plan binds.
+	 */
+	public int getArgumentCount() {
+		return binders.length;
+	}
+
+	/**
+	 * @param index the parameter position.
+	 * @return the binder for the parameter.
+	 */
+	public ArgumentBinder getBinder(int index) {
+		return binders[index];
+	}
+
+	/**
+	 * @param value a value returned by the method.
+	 * @return the plan's writer if the value is exactly of the declared return type, otherwise null
+	 * (the value is then written by its runtime type).
+	 */
+	public ObjectWriter getReturnWriter(Object value) {
+		if(returnWriter != null && value != null && value.getClass() == returnType)
+			return returnWriter;
+		return null;
+	}
+
+	/**
+	 * @return the method's async timeout in milliseconds or a negative value if the invoker's
+	 * default applies.
+	 */
+	public long getAsyncTimeout() {
+		return asyncTimeout;
+	}
+
+	/**
+	 * Runs every binder of the plan.
+	 * 
+	 * @param context the request being dispatched.
+	 * @return the arguments for the handler method.
+	 * @throws Exception if any argument cannot be produced.
+	 */
+	public Object[] bind(BindingContext context) throws Exception {
+		Object arguments[] = new Object[binders.length];
+		for(int x = 0; x < binders.length; x++)
+			arguments[x] = binders[x].bind(context);
+		return arguments;
+	}
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.argumentbinders;
+
+import com.doitnext.http.router.Route;
+
+/**
+ * Implemented by {@link com.doitnext.http.router.MethodInvoker} implementations that bind
+ * arguments with a {@link BindingPlan}.  A {@link Route} whose invoker implements this
+ * interface asks it for a plan when the route is constructed.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public interface BindingPlanFactory {
+	/**
+	 * @param route the route.  Only the route's immutable description (implementation method,
+	 * path template, request format and request type) may be used; the plan is requested from
+	 * the route's constructor.
+	 * @return the plan for the route's implementation method.
+	 */
+	BindingPlan createBindingPlan(Route route);
+}
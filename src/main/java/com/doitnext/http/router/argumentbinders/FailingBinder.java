@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.argumentbinders;
+
+/**
+ * Stands in for a parameter that cannot be bound.  Configuration problems found while the
+ * plan is built are reported when the route is invoked, as they were before binding plans
+ * existed, so that a single bad handler method does not prevent the other routes from loading.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class FailingBinder implements ArgumentBinder {
+	final private Exception error;
+
+	/**
+	 * @param error the exception to throw when the parameter is bound.
+	 */
+	public FailingBinder(Exception error) {
+		this.error = error;
+	}
+
+	@Override
+	public Object bind(BindingContext context) throws Exception {
+		throw error;
+	}
+}
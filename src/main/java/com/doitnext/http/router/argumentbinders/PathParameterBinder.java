@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.argumentbinders;
+
+import com.doitnext.http.router.typeconverters.StringConversionUtil;
+import com.doitnext.http.router.typeconverters.TypeConversionUtil;
+import com.doitnext.http.router.typeconverters.TypeConverter;
+import com.doitnext.pathutils.Path;
+import com.doitnext.pathutils.PathElement;
+
+/**
+ * Binds a variable of the matched path to a {@link com.doitnext.http.router.annotations.PathParameter}
+ * parameter.  The position of the variable in the path template is resolved when the plan is built,
+ * so the element is normally fetched by index.  The name is still checked and the path is searched
+ * by name if the element at that index is not the variable.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class PathParameterBinder implements ArgumentBinder {
+	private static final String LITERAL = "LITERAL";
+
+	final private String name;
+	final private int elementIndex;
+	final private Class<?> parameterType;
+	final private TypeConversionUtil<String> converter;
+	/**
+	 * The converter for parameterType resolved by the converter when the binder is created, or
+	 * null if values must be converted with {@link TypeConversionUtil#convert(Object, Class)}.
+	 */
+	final private TypeConverter<String> valueConverter;
+
+	/**
+	 * @param name the name of the path variable.
+	 * @param elementIndex the position of the variable in the path template or -1 if unknown.
+	 * @param parameterType the type of the method parameter.
+	 * @param converter converts the variable value to the parameter type.
+	 */
+	public PathParameterBinder(String name, int elementIndex, Class<?> parameterType,
+			TypeConversionUtil<String> converter) {
+		this.name = name;
+		this.elementIndex = elementIndex;
+		this.parameterType = parameterType;
+		this.converter = converter;
+		this.valueConverter = converter.resolveConverter(parameterType);
+	}
+
+	@Override
+	public Object bind(BindingContext context) throws Exception {
+		PathElement pe = findElement(context.getPathMatch().getMatchedPath());
+		if(pe == null)
+			throw new IllegalArgumentException(String.format("No path variable named %s", name));
+		if(valueConverter != null)
+			return StringConversionUtil.applyConverter(valueConverter, pe.getValue(), parameterType);
+		return converter.convert(pe.getValue(), parameterType);
+	}
+
+	private PathElement findElement(Path path) {
+		if(elementIndex >= 0 && elementIndex < path.size()) {
+			PathElement pe = path.get(elementIndex);
+			if(isVariable(pe))
+				return pe;
+		}
+		for(int x = 0; x < path.size(); x++) {
+			PathElement pe = path.get(x);
+			if(isVariable(pe))
+				return pe;
+		}
+		return null;
+	}
+
+	private boolean isVariable(PathElement pe) {
+		return name.equals(pe.getName()) && !LITERAL.equalsIgnoreCase(pe.getType());
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.argumentbinders;
+
+import java.lang.reflect.Array;
+
+import com.doitnext.http.router.typeconverters.ArrayConverter;
+import com.doitnext.http.router.typeconverters.StringConversionUtil;
+import com.doitnext.http.router.typeconverters.TypeConversionUtil;
+import com.doitnext.http.router.typeconverters.TypeConverter;
+
+/**
+ * Binds a query string argument to a {@link com.doitnext.http.router.annotations.QueryParameter}
+ * parameter.  Only the values of the declared name are decoded.  Array parameters receive every
+ * value given for the name, other parameters receive the first value.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class QueryParameterBinder implements ArgumentBinder {
+	final private String name;
+	final private Class<?> parameterType;
+	final private Class<?> componentType;
+	final private TypeConversionUtil<String> converter;
+	/**
+	 * Converters resolved by the converter when the binder is created, or null if values
+	 * must be converted with {@link TypeConversionUtil#convert(Object, Class)}.
+	 */
+	final private TypeConverter<String> valueConverter;
+	final private ArrayConverter<String> arrayConverter;
+
+	/**
+	 * @param name the name of the query argument.
+	 * @param parameterType the type of the method parameter.
+	 * @param converter converts argument values to the parameter (or component) type.
+	 */
+	public QueryParameterBinder(String name, Class<?> parameterType, TypeConversionUtil<String> converter) {
+		this.name = name;
+		this.parameterType = parameterType;
+		this.componentType = parameterType.getComponentType();
+		this.converter = converter;
+		this.valueConverter = (componentType == null) ? converter.resolveConverter(parameterType) : null;
+		this.arrayConverter = (componentType == null) ? null : converter.resolveArrayConverter(parameterType);
+	}
+
+	@Override
+	public Object bind(BindingContext context) throws Exception {
+		if(componentType == null) {
+			String queryArg = context.getQueryString().getValue(name);
+			if(queryArg == null)
+				return null;
+			if(valueConverter != null)
+				return StringConversionUtil.applyConverter(valueConverter, queryArg, parameterType);
+			return converter.convert(queryArg, parameterType);
+		}
+		String queryArg[] = context.getQueryString().getValues(name);
+		if(queryArg == null)
+			return null;
+		if(arrayConverter != null)
+			return StringConversionUtil.applyArrayConverter(arrayConverter, queryArg, parameterType);
+		Object queryParam = Array.newInstance(componentType, queryArg.length);
+		for(int x = 0; x < queryArg.length; x++) {
+			Array.set(queryParam, x, converter.convert(queryArg[x], componentType));
+		}
+		return queryParam;
+	}
+}
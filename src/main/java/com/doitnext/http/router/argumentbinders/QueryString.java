@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.argumentbinders;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>A parsed application/x-www-form-urlencoded query string.  The query string is scanned once
+ * when the object is created, recording only the offsets of each name and value.  Nothing is
+ * decoded until a value is asked for, and then only the values of the requested name.</p>
+ * 
+ * <p>Only pairs of the form <code>name=value</code> are arguments; a name without an '=' is ignored.
+ * Names and values are percent decoded, with '+' decoding to a space.  A malformed escape is
+ * left as it is.</p>
+ * 
+ * <p>This class is NOT thread safe.  It is used by a single request thread.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class QueryString {
+	private static final int FIELDS = 4;
+
+	final private String queryString;
+	final private Charset charset;
+	/**
+	 * Name start, name end, value start and value end of each pair.
+	 */
+	private int offsets[];
+	private int count;
+
+	/**
+	 * @param queryString the raw query string (without the '?'), may be null.
+	 * @param charset the character set of escaped octets.
+	 */
+	public QueryString(String queryString, Charset charset) {
+		this.queryString = (queryString == null) ? "" : queryString;
+		this.charset = (charset == null) ? StandardCharsets.UTF_8 : charset;
+		this.offsets = new int[FIELDS * 4];
+		parse();
+	}
+
+	/**
+	 * @return the number of arguments in the query string.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @param name the decoded argument name.
+	 * @return the decoded values given for the name in query string order, or null if the
+	 * name does not appear.
+	 */
+	public String[] getValues(String name) {
+		int matches = 0;
+		for(int x = 0; x < count; x++) {
+			if(nameEquals(x, name))
+				matches++;
+		}
+		if(matches == 0)
+			return null;
+		String values[] = new String[matches];
+		matches = 0;
+		for(int x = 0; x < count; x++) {
+			if(nameEquals(x, name))
+				values[matches++] = decode(offsets[x * FIELDS + 2], offsets[x * FIELDS + 3]);
+		}
+		return values;
+	}
+
+	/**
+	 * @param name the decoded argument name.
+	 * @return the first decoded value given for the name, or null if the name does not appear.
+	 */
+	public String getValue(String name) {
+		for(int x = 0; x < count; x++) {
+			if(nameEquals(x, name))
+				return decode(offsets[x * FIELDS + 2], offsets[x * FIELDS + 3]);
+		}
+		return null;
+	}
+
+	/**
+	 * Finds the pairs in one pass, so that the time taken is linear in the length of the query string
+	 * however many pairs lack an '='.
+	 */
+	private void parse() {
+		int length = queryString.length();
+		int start = 0;
+		int equals = -1;
+		for(int x = 0; x <= length; x++) {
+			char c = (x < length) ? queryString.charAt(x) : '&';
+			if(c == '&') {
+				if(equals > start)
+					add(start, equals, equals + 1, x);
+				start = x + 1;
+				equals = -1;
+			} else if(c == '=' && equals < 0) {
+				equals = x;
+			}
+		}
+	}
+
+	private void add(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+		if((count + 1) * FIELDS > offsets.length) {
+			int grown[] = new int[offsets.length * 2];
+			System.arraycopy(offsets, 0, grown, 0, offsets.length);
+			offsets = grown;
+		}
+		int base = count * FIELDS;
+		offsets[base] = nameStart;
+		offsets[base + 1] = nameEnd;
+		offsets[base + 2] = valueStart;
+		offsets[base + 3] = valueEnd;
+		count++;
+	}
+
+	private boolean nameEquals(int pair, String name) {
+		int start = offsets[pair * FIELDS];
+		int end = offsets[pair * FIELDS + 1];
+		if(!needsDecoding(start, end))
+			return end - start == name.length() && queryString.regionMatches(start, name, 0, name.length());
+		return name.equals(decode(start, end));
+	}
+
+	private boolean needsDecoding(int start, int end) {
+		for(int x = start; x < end; x++) {
+			char c = queryString.charAt(x);
+			if(c == '%' || c == '+')
+				return true;
+		}
+		return false;
+	}
+
+	private String decode(int start, int end) {
+		if(!needsDecoding(start, end))
+			return queryString.substring(start, end);
+		StringBuilder result = new StringBuilder(end - start);
+		ByteArrayOutputStream octets = null;
+		int x = start;
+		while(x < end) {
+			char c = queryString.charAt(x);
+			if(c == '%' && isEscape(x, end)) {
+				if(octets == null)
+					octets = new ByteArrayOutputStream();
+				octets.reset();
+				while(x < end && queryString.charAt(x) == '%' && isEscape(x, end)) {
+					octets.write((hex(queryString.charAt(x + 1)) << 4) | hex(queryString.charAt(x + 2)));
+					x += 3;
+				}
+				result.append(new String(octets.toByteArray(), charset));
+			} else {
+				result.append(c == '+' ? ' ' : c);
+				x++;
+			}
+		}
+		return result.toString();
+	}
+
+	private boolean isEscape(int x, int end) {
+		return x + 2 < end && hex(queryString.charAt(x + 1)) >= 0 && hex(queryString.charAt(x + 2)) >= 0;
+	}
+
+	private static int hex(char c) {
+		if(c >= '0' && c <= '9')
+			return c - '0';
+		if(c >= 'a' && c <= 'f')
+			return c - 'a' + 10;
+		if(c >= 'A' && c <= 'F')
+			return c - 'A' + 10;
+		return -1;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return queryString;
+	}
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.argumentbinders;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.doitnext.http.router.requestdeserializers.DefaultJsonDeserializer;
+import com.doitnext.http.router.requestdeserializers.RequestDeserializer;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Binds the deserialized request body to a {@link com.doitnext.http.router.annotations.RequestBody}
+ * parameter using the deserializer selected for the route's request format.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class RequestBodyBinder implements ArgumentBinder {
+	final private RequestDeserializer deserializer;
+	final private Class<?> parameterType;
+	final private String requestType;
+	/**
+	 * The reader for parameterType resolved by the deserializer when the binder is created, or
+	 * null if bodies must be read with {@link RequestDeserializer#deserialize}.
+	 */
+	final private ObjectReader reader;
+
+	/**
+	 * @param deserializer the deserializer for the route's request format.
+	 * @param parameterType the type of the method parameter.
+	 * @param requestType the route's request type (model).
+	 */
+	public RequestBodyBinder(RequestDeserializer deserializer, Class<?> parameterType, String requestType) {
+		this.deserializer = deserializer;
+		this.parameterType = parameterType;
+		this.requestType = requestType;
+		this.reader = deserializer.resolveReader(parameterType, requestType);
+	}
+
+	/**
+	 * @return the {@link #deserializer}
+	 */
+	public RequestDeserializer getDeserializer() {
+		return deserializer;
+	}
+
+	@Override
+	public Object bind(BindingContext context) throws Exception {
+		HttpServletRequest req = context.getRequest();
+		if(reader != null)
+			return DefaultJsonDeserializer.deserialize(reader, req.getInputStream());
+		return deserializer.deserialize(req.getInputStream(), parameterType,
+				requestType, req.getCharacterEncoding());
+	}
+}
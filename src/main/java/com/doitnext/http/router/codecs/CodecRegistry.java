@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.codecs;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * <p>The Jackson configuration shared by the router for one format.  Holds one {@link ObjectMapper} and hands out
+ * {@link ObjectWriter} and {@link ObjectReader} instances bound to a root type.  Typed writers and
+ * readers resolve their root serializer or deserializer once when they are created, so callers that
+ * keep them (such as a route's {@link com.doitnext.http.router.argumentbinders.BindingPlan}) skip
+ * Jackson's per call root type lookup.</p>
+ *
+ * <p>The mapper is configured when the registry is created and never modified afterwards.</p>
+ *
+ * <p>Built in registries exist for JSON, Smile and CBOR; all three are configured alike.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class CodecRegistry {
+	public static final String JSON = "application/json";
+	public static final String SMILE = "application/x-jackson-smile";
+	public static final String CBOR = "application/cbor";
+
+	private static final CodecRegistry defaultRegistry = new CodecRegistry(createDefaultMapper());
+	private static final CodecRegistry smileRegistry = new CodecRegistry(SMILE, createDefaultMapper(new SmileFactory()));
+	private static final CodecRegistry cborRegistry = new CodecRegistry(CBOR, createDefaultMapper(new CBORFactory()));
+
+	final private String format;
+	final private ObjectMapper objectMapper;
+	final private ObjectWriter writer;
+	final private ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<Class<?>, ObjectWriter>();
+	final private ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<Class<?>, ObjectReader>();
+
+	/**
+	 * @param objectMapper a fully configured JSON mapper.  The registry takes ownership of it; it must
+	 * not be modified by anyone once the registry is in use.
+	 */
+	public CodecRegistry(ObjectMapper objectMapper) {
+		this(JSON, objectMapper);
+	}
+
+	/**
+	 * @param format the media type the mapper reads and writes.
+	 * @param objectMapper a fully configured mapper.  The registry takes ownership of it; it must not
+	 * be modified by anyone once the registry is in use.
+	 */
+	public CodecRegistry(String format, ObjectMapper objectMapper) {
+		this.format = format;
+		this.objectMapper = objectMapper;
+		this.writer = objectMapper.writer();
+	}
+
+	/**
+	 * @return the registry shared by the router's default components.
+	 */
+	public static CodecRegistry getDefault() {
+		return defaultRegistry;
+	}
+
+	/**
+	 * @param format a media type.
+	 * @return the built in registry for the format (ignoring case) or null if there is none.
+	 */
+	public static CodecRegistry forFormat(String format) {
+		if(JSON.equalsIgnoreCase(format))
+			return defaultRegistry;
+		if(SMILE.equalsIgnoreCase(format))
+			return smileRegistry;
+		if(CBOR.equalsIgnoreCase(format))
+			return cborRegistry;
+		return null;
+	}
+
+	/**
+	 * @return a new mapper configured the way the router reads and writes JSON by default.
+	 */
+	public static ObjectMapper createDefaultMapper() {
+		return createDefaultMapper(new JsonFactory());
+	}
+
+	/**
+	 * @param factory the factory for the format to be read and written.
+	 * @return a new mapper for the format configured the way the router configures JSON by default.
+	 */
+	public static ObjectMapper createDefaultMapper(JsonFactory factory) {
+		ObjectMapper objectMapper = new ObjectMapper(factory);
+		objectMapper.enable(DeserializationFeature.READ_ENUMS_USING_TO_STRING);
+		objectMapper.enable(SerializationFeature.WRITE_ENUMS_USING_TO_STRING);
+		return objectMapper;
+	}
+
+	/**
+	 * @return the media type this registry reads and writes.
+	 */
+	public String getFormat() {
+		return format;
+	}
+
+	/**
+	 * @return a writer that serializes values by their runtime type.
+	 */
+	public ObjectWriter getWriter() {
+		return writer;
+	}
+
+	/**
+	 * @param type the declared type of the values to write.
+	 * @return a writer that serializes values as instances of the type.
+	 */
+	public ObjectWriter getWriter(Class<?> type) {
+		ObjectWriter result = writers.get(type);
+		if(result == null) {
+			result = objectMapper.writerWithType(type);
+			ObjectWriter existing = writers.putIfAbsent(type, result);
+			if(existing != null)
+				result = existing;
+		}
+		return result;
+	}
+
+	/**
+	 * @param type the type of the values to read.
+	 * @return a reader that deserializes instances of the type.
+	 */
+	public ObjectReader getReader(Class<?> type) {
+		ObjectReader result = readers.get(type);
+		if(result == null) {
+			result = objectMapper.reader(type);
+			ObjectReader existing = readers.putIfAbsent(type, result);
+			if(existing != null)
+				result = existing;
+		}
+		return result;
+	}
+}
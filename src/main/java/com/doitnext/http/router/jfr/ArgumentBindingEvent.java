@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when the arguments of an implementation method have been bound, including
+ * deserializing the request body.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+@Name("com.doitnext.http.router.ArgumentBinding")
+@Label("Argument Binding")
+@Category({"HTTP Request Router"})
+@Description("Binding the arguments of an implementation method from a request")
+@StackTrace(false)
+public class ArgumentBindingEvent extends Event {
+	/**
+	 * Asked whether argument binding is being recorded before an event is allocated for a request.
+	 */
+	private static final ArgumentBindingEvent PROBE = new ArgumentBindingEvent();
+
+	@Label("Route")
+	public String route;
+
+	@Label("Arguments")
+	public int arguments;
+
+	/**
+	 * @return a new event whose timing has begun, or null if no recording is enabled for it.
+	 */
+	public static ArgumentBindingEvent beginIfEnabled() {
+		if(!PROBE.isEnabled())
+			return null;
+		ArgumentBindingEvent event = new ArgumentBindingEvent();
+		event.begin();
+		return event;
+	}
+}
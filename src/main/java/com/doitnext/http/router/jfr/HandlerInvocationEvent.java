@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when an implementation method returns or throws.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+@Name("com.doitnext.http.router.HandlerInvocation")
+@Label("Handler Invocation")
+@Category({"HTTP Request Router"})
+@Description("Running the implementation method of a route")
+@StackTrace(false)
+public class HandlerInvocationEvent extends Event {
+	/**
+	 * Tells whether invocations are being recorded, so none are allocated while they are not.
+	 */
+	private static final HandlerInvocationEvent PROBE = new HandlerInvocationEvent();
+
+	@Label("Route")
+	public String route;
+
+	@Label("Implementation Method")
+	public String implMethod;
+
+	@Label("Threw")
+	@Description("Whether the implementation method threw an exception")
+	public boolean threw;
+
+	/**
+	 * @return a new event whose timing has begun, or null if no recording is enabled for it.
+	 */
+	public static HandlerInvocationEvent beginIfEnabled() {
+		if(!PROBE.isEnabled())
+			return null;
+		HandlerInvocationEvent event = new HandlerInvocationEvent();
+		event.begin();
+		return event;
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when a success or error handler has serialized and written a response.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+@Name("com.doitnext.http.router.ResponseSerialization")
+@Label("Response Serialization")
+@Category({"HTTP Request Router"})
+@Description("Serializing and writing the response of a route")
+@StackTrace(false)
+public class ResponseSerializationEvent extends Event {
+	/**
+	 * Tells the success and error handlers whether any recording wants serialization events.
+	 */
+	private static final ResponseSerializationEvent PROBE = new ResponseSerializationEvent();
+
+	@Label("Route")
+	public String route;
+
+	@Label("Content Type")
+	public String contentType;
+
+	@Label("Error")
+	@Description("Whether an error was serialized")
+	public boolean error;
+
+	@Label("Bytes")
+	@Description("The size of the serialized body before any compression")
+	@DataAmount
+	public long bytes;
+
+	/**
+	 * @return a new event whose timing has begun, or null if no recording is enabled for it.
+	 */
+	public static ResponseSerializationEvent beginIfEnabled() {
+		if(!PROBE.isEnabled())
+			return null;
+		ResponseSerializationEvent event = new ResponseSerializationEvent();
+		event.begin();
+		return event;
+	}
+}
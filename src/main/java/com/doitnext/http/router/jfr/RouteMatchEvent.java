@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.jfr;
+
+import com.doitnext.http.router.Route;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when the router has chosen the route of a request, lasting from the start of matching
+ * the path to the end of content negotiation.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+@Name("com.doitnext.http.router.RouteMatch")
+@Label("Route Match")
+@Category({"HTTP Request Router"})
+@Description("Choosing the route of a request by its path and content types")
+@StackTrace(false)
+public class RouteMatchEvent extends Event {
+	/**
+	 * Tells whether a recording is enabled for route matches, which happen on every request.
+	 */
+	private static final RouteMatchEvent PROBE = new RouteMatchEvent();
+
+	@Label("Route")
+	public String route;
+
+	@Label("Candidates")
+	@Description("The number of routes matching the path and method")
+	public int candidates;
+
+	@Label("Cached")
+	@Description("Whether the route came from the route resolution cache")
+	public boolean cached;
+
+	/**
+	 * @return the route of an event, its method and path template.
+	 */
+	public static String describe(Route route) {
+		return String.format("%s %s", route.getHttpMethod().name(), route.getPathTemplate().getLexicalPath());
+	}
+
+	/**
+	 * @return a new event whose timing has begun, or null if no recording is enabled for it.
+	 */
+	public static RouteMatchEvent beginIfEnabled() {
+		if(!PROBE.isEnabled())
+			return null;
+		RouteMatchEvent event = new RouteMatchEvent();
+		event.begin();
+		return event;
+	}
+}
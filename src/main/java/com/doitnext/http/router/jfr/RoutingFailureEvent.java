@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when no route can handle a request: 404 when no route matches the path, 405 when
+ * routes match the path but not the method, 406 when none produces an acceptable format and 415
+ * when none consumes the request's format.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+@Name("com.doitnext.http.router.RoutingFailure")
+@Label("Routing Failure")
+@Category({"HTTP Request Router"})
+@Description("A request that no route can handle")
+@StackTrace(false)
+public class RoutingFailureEvent extends Event {
+	/**
+	 * Tells whether a recording is enabled for these events, so that clients probing for missing
+	 * paths cause no allocation while none is.
+	 */
+	private static final RoutingFailureEvent PROBE = new RoutingFailureEvent();
+
+	@Label("Method")
+	public String method;
+
+	@Label("Path")
+	public String path;
+
+	@Label("Status")
+	public int status;
+
+	@Label("Accept")
+	public String accept;
+
+	@Label("Content Type")
+	public String contentType;
+
+	/**
+	 * @return a new event, or null if no recording is enabled for it.
+	 */
+	public static RoutingFailureEvent createIfEnabled() {
+		return PROBE.isEnabled() ? new RoutingFailureEvent() : null;
+	}
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.limits;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Limits the number of requests in flight with a lock-free permit counter.  Acquiring a permit is
+ * a compare and set on the in flight count, so rejected requests never wait.</p>
+ * 
+ * <p>An adaptive limiter adjusts its limit from the latency of completed requests with a gradient
+ * algorithm: the ratio of the long term average latency to the recent average latency.  While latency
+ * holds steady the gradient is 1 and the limit grows by its square root, up to the maximum, each time
+ * it is updated.  When recent requests take longer than usual the gradient drops below 1 and the limit
+ * shrinks, down to the minimum.  The limit moves towards each new estimate gradually.  Samples arriving
+ * while another thread updates the limit are skipped rather than waited for.</p>
+ * 
+ * <p>This class is thread safe.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class ConcurrencyLimiter {
+	/**
+	 * The number of samples averaged by the long term and recent latencies.
+	 */
+	private static final double LONG_WINDOW = 600;
+	private static final double SHORT_WINDOW = 10;
+	/**
+	 * How much slower than usual recent requests may be before the limit shrinks.
+	 */
+	private static final double TOLERANCE = 1.5;
+	/**
+	 * How far the limit moves towards each new estimate.
+	 */
+	private static final double SMOOTHING = 0.2;
+
+	final private String name;
+	final private int maximum;
+	final private int minimum;
+	final private boolean adaptive;
+	final private AtomicInteger inFlight = new AtomicInteger();
+	final private AtomicLong accepted = new AtomicLong();
+	final private AtomicLong rejected = new AtomicLong();
+	private volatile int limit;
+
+	/**
+	 * Adaptive state, only touched by the thread holding {@link #updating}.
+	 */
+	final private AtomicBoolean updating = new AtomicBoolean();
+	private double estimatedLimit;
+	private double longRtt = 0;
+	private double shortRtt = 0;
+
+	/**
+	 * @param name identifies what is limited.
+	 * @param maximum the limit, or the largest limit if adaptive.
+	 * @param minimum the smallest limit if adaptive.
+	 * @param adaptive <code>true</code> to adapt the limit to latency.
+	 */
+	public ConcurrencyLimiter(String name, int maximum, int minimum, boolean adaptive) {
+		if(maximum < 1 || minimum < 1 || minimum > maximum)
+			throw new IllegalArgumentException(String.format("Invalid concurrency limit %d..%d for %s", minimum, maximum, name));
+		this.name = name;
+		this.maximum = maximum;
+		this.minimum = minimum;
+		this.adaptive = adaptive;
+		this.limit = maximum;
+		this.estimatedLimit = maximum;
+	}
+
+	/**
+	 * @return <code>true</code> if a permit was acquired, which must then be {@link #release(long)}d.
+	 */
+	public boolean tryAcquire() {
+		while(true) {
+			int current = inFlight.get();
+			if(current >= limit) {
+				rejected.incrementAndGet();
+				return false;
+			}
+			if(inFlight.compareAndSet(current, current + 1)) {
+				accepted.incrementAndGet();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @param rttNanos how long the request holding the permit took.
+	 */
+	public void release(long rttNanos) {
+		int current = inFlight.getAndDecrement();
+		if(adaptive)
+			sample(rttNanos, current);
+	}
+
+	private void sample(long rttNanos, int inFlightAtRelease) {
+		if(rttNanos <= 0 || !updating.compareAndSet(false, true))
+			return;
+		try {
+			if(longRtt == 0) {
+				longRtt = rttNanos;
+				shortRtt = rttNanos;
+			} else {
+				longRtt += (rttNanos - longRtt) / LONG_WINDOW;
+				shortRtt += (rttNanos - shortRtt) / SHORT_WINDOW;
+			}
+			double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+			double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+			// Do not grow a limit that the load is not reaching
+			if(newLimit > estimatedLimit && inFlightAtRelease < estimatedLimit / 2)
+				return;
+			estimatedLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+			estimatedLimit = Math.max(minimum, Math.min(maximum, estimatedLimit));
+			limit = (int)estimatedLimit;
+		} finally {
+			updating.set(false);
+		}
+	}
+
+	/**
+	 * @return the {@link #name}
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the current limit.
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * @return the {@link #maximum}
+	 */
+	public int getMaximum() {
+		return maximum;
+	}
+
+	/**
+	 * @return the {@link #minimum}
+	 */
+	public int getMinimum() {
+		return minimum;
+	}
+
+	/**
+	 * @return the {@link #adaptive}
+	 */
+	public boolean isAdaptive() {
+		return adaptive;
+	}
+
+	/**
+	 * @return the number of permits currently held.
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * @return the number of permits acquired.
+	 */
+	public long getAccepted() {
+		return accepted.get();
+	}
+
+	/**
+	 * @return the number of requests rejected.
+	 */
+	public long getRejected() {
+		return rejected.get();
+	}
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.limits;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.doitnext.http.router.Route;
+import com.doitnext.http.router.annotations.ConcurrencyLimit;
+
+/**
+ * <p>The bulkheads of the routes: a {@link ConcurrencyLimiter} for each implementation method and each
+ * collection class annotated with {@link ConcurrencyLimit}.  A request needs a permit from the limiter
+ * of its collection, if there is one, and then from the limiter of its method, if there is one.</p>
+ * 
+ * <p>This class is thread safe.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class ConcurrencyLimits {
+	/**
+	 * Stands for no limiter in {@link #limiters}.
+	 */
+	private static final ConcurrencyLimiter UNLIMITED = new ConcurrencyLimiter("unlimited", 1, 1, false);
+
+	/**
+	 * The permit of requests to routes without limits.
+	 */
+	private static final Permit UNLIMITED_PERMIT = new Permit(null, null, 0);
+
+	final private ConcurrentMap<AnnotatedElement, ConcurrencyLimiter> limiters = 
+			new ConcurrentHashMap<AnnotatedElement, ConcurrencyLimiter>();
+
+	/**
+	 * @param route the route of a request.
+	 * @return the permit to handle the request, which must be {@link Permit#release()}d, or null if the
+	 * request is rejected.
+	 */
+	public Permit tryAcquire(Route route) {
+		ConcurrencyLimiter collectionLimiter = getLimiter(route.getImplClass());
+		ConcurrencyLimiter methodLimiter = getLimiter(route.getImplMethod());
+		if(collectionLimiter == null && methodLimiter == null)
+			return UNLIMITED_PERMIT;
+		if(collectionLimiter != null && !collectionLimiter.tryAcquire())
+			return null;
+		if(methodLimiter != null && !methodLimiter.tryAcquire()) {
+			if(collectionLimiter != null)
+				collectionLimiter.release(0);
+			return null;
+		}
+		return new Permit(collectionLimiter, methodLimiter, System.nanoTime());
+	}
+
+	private ConcurrencyLimiter getLimiter(AnnotatedElement element) {
+		ConcurrencyLimiter limiter = limiters.get(element);
+		if(limiter == null) {
+			ConcurrencyLimit limit = element.getAnnotation(ConcurrencyLimit.class);
+			limiter = (limit == null) ? UNLIMITED : 
+				new ConcurrencyLimiter(name(element), limit.value(), limit.minimum(), limit.adaptive());
+			ConcurrencyLimiter existing = limiters.putIfAbsent(element, limiter);
+			if(existing != null)
+				limiter = existing;
+		}
+		return (limiter == UNLIMITED) ? null : limiter;
+	}
+
+	private static String name(AnnotatedElement element) {
+		if(element instanceof Method) {
+			Method method = (Method)element;
+			return String.format("%s.%s", method.getDeclaringClass().getName(), method.getName());
+		}
+		return ((Class<?>)element).getName();
+	}
+
+	/**
+	 * @return the limiters created so far, one for each limited collection or method that has been requested.
+	 */
+	public List<ConcurrencyLimiter> getLimiters() {
+		List<ConcurrencyLimiter> result = new ArrayList<ConcurrencyLimiter>();
+		for(ConcurrencyLimiter limiter : limiters.values()) {
+			if(limiter != UNLIMITED)
+				result.add(limiter);
+		}
+		return result;
+	}
+
+	/**
+	 * The permits held by one request.
+	 */
+	public static class Permit {
+		/**
+		 * The request attribute that holds the permit of a request while it is being handled.
+		 */
+		public static final String ATTRIBUTE = Permit.class.getName();
+
+		final private ConcurrencyLimiter collectionLimiter;
+		final private ConcurrencyLimiter methodLimiter;
+		final private long acquired;
+
+		Permit(ConcurrencyLimiter collectionLimiter, ConcurrencyLimiter methodLimiter, long acquired) {
+			this.collectionLimiter = collectionLimiter;
+			this.methodLimiter = methodLimiter;
+			this.acquired = acquired;
+		}
+
+		/**
+		 * Attaches the permit to the request it was acquired for, so that whichever thread completes
+		 * the request can {@link #claim(HttpServletRequest)} it.
+		 * 
+		 * @param req the request.
+		 */
+		public void hold(HttpServletRequest req) {
+			req.setAttribute(ATTRIBUTE, this);
+		}
+
+		/**
+		 * Takes responsibility for releasing the permit of a request, which is handed from the thread that
+		 * acquired it to whichever thread completes the request.
+		 * 
+		 * @param req the request.
+		 * @return the permit of the request, or null if it holds none or it has already been claimed.
+		 */
+		public static Permit claim(HttpServletRequest req) {
+			Object permit = req.getAttribute(ATTRIBUTE);
+			if(!(permit instanceof Permit))
+				return null;
+			req.removeAttribute(ATTRIBUTE);
+			return (Permit)permit;
+		}
+
+		/**
+		 * Gives the permits back, reporting how long the request took.  Must be called exactly once.
+		 */
+		public void release() {
+			if(collectionLimiter == null && methodLimiter == null)
+				return;
+			long rtt = System.nanoTime() - acquired;
+			if(methodLimiter != null)
+				methodLimiter.release(rtt);
+			if(collectionLimiter != null)
+				collectionLimiter.release(rtt);
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.limits;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>The token buckets of one rate limited route, one bucket per client.</p>
+ * 
+ * <p>Each bucket is a single {@link AtomicLong} holding the time at which it will be full again, the
+ * generic cell rate form of a token bucket.  Taking a token moves that time one
+ * {@link #getInterval() interval} later, refilling and taking in one compare and set, so requests
+ * from the same client never wait on a lock.</p>
+ * 
+ * <p>A bucket that is full again holds nothing worth keeping, a new bucket would behave the same.
+ * When there are more than {@link #getMaxBuckets()} buckets, the full ones are dropped and, if that is
+ * not enough, others are dropped as well, which lets the clients of those buckets start again with
+ * a full bucket.</p>
+ * 
+ * <p>This class is thread safe.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class RateLimiter {
+	final private String name;
+	final private long interval;
+	final private long tolerance;
+	final private int maxBuckets;
+	final private ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<String, AtomicLong>();
+	final private AtomicInteger bucketCount = new AtomicInteger();
+	final private AtomicBoolean evicting = new AtomicBoolean();
+	final private AtomicLong accepted = new AtomicLong();
+	final private AtomicLong rejected = new AtomicLong();
+	final private AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * @param name identifies what is limited.
+	 * @param requests the number of requests allowed each period.
+	 * @param periodNanos the length of the period.
+	 * @param burst the number of tokens in a full bucket.
+	 * @param maxBuckets the number of clients to keep buckets for.
+	 */
+	public RateLimiter(String name, int requests, long periodNanos, int burst, int maxBuckets) {
+		if(requests < 1 || periodNanos < 1 || burst < 1 || maxBuckets < 1)
+			throw new IllegalArgumentException(String.format("Invalid rate limit %d per %dns, burst %d, %d buckets for %s", 
+					requests, periodNanos, burst, maxBuckets, name));
+		this.name = name;
+		this.interval = Math.max(1, periodNanos / requests);
+		this.tolerance = interval * (burst - 1);
+		this.maxBuckets = maxBuckets;
+	}
+
+	/**
+	 * @param clientKey the client making a request.
+	 * @param now the current {@link System#nanoTime()}.
+	 * @return 0 if the request may proceed having taken a token, otherwise how many nanoseconds until
+	 * the client's bucket has a token.
+	 */
+	public long tryAcquire(String clientKey, long now) {
+		AtomicLong bucket = getBucket(clientKey, now);
+		while(true) {
+			long fullAt = bucket.get();
+			long start = (fullAt - now < 0) ? now : fullAt;
+			long wait = start - now - tolerance;
+			if(wait > 0) {
+				rejected.incrementAndGet();
+				return wait;
+			}
+			if(bucket.compareAndSet(fullAt, start + interval)) {
+				accepted.incrementAndGet();
+				return 0;
+			}
+		}
+	}
+
+	private AtomicLong getBucket(String clientKey, long now) {
+		AtomicLong bucket = buckets.get(clientKey);
+		if(bucket != null)
+			return bucket;
+		if(bucketCount.get() >= maxBuckets)
+			evict(now);
+		bucket = new AtomicLong(now);
+		AtomicLong existing = buckets.putIfAbsent(clientKey, bucket);
+		if(existing != null)
+			return existing;
+		bucketCount.incrementAndGet();
+		return bucket;
+	}
+
+	/**
+	 * Drops buckets until there are no more than three quarters of {@link #maxBuckets}, the full
+	 * buckets first.  Only one thread evicts at a time, others carry on without waiting.
+	 */
+	private void evict(long now) {
+		if(!evicting.compareAndSet(false, true))
+			return;
+		try {
+			int target = maxBuckets - maxBuckets / 4 - 1;
+			for(int pass = 0; pass < 2 && bucketCount.get() > target; pass++) {
+				Iterator<Map.Entry<String, AtomicLong>> iter = buckets.entrySet().iterator();
+				while(iter.hasNext() && bucketCount.get() > target) {
+					Map.Entry<String, AtomicLong> entry = iter.next();
+					if(pass == 0 && entry.getValue().get() - now > 0)
+						continue;
+					if(buckets.remove(entry.getKey(), entry.getValue())) {
+						bucketCount.decrementAndGet();
+						evictions.incrementAndGet();
+					}
+				}
+			}
+		} finally {
+			evicting.set(false);
+		}
+	}
+
+	/**
+	 * @return the {@link #name}
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the nanoseconds it takes a bucket to gain a token.
+	 */
+	public long getInterval() {
+		return interval;
+	}
+
+	/**
+	 * @return the {@link #maxBuckets}
+	 */
+	public int getMaxBuckets() {
+		return maxBuckets;
+	}
+
+	/**
+	 * @return the number of clients buckets are kept for.
+	 */
+	public int getBucketCount() {
+		return bucketCount.get();
+	}
+
+	/**
+	 * @return the number of requests allowed.
+	 */
+	public long getAccepted() {
+		return accepted.get();
+	}
+
+	/**
+	 * @return the number of requests rejected.
+	 */
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	/**
+	 * @return the number of buckets dropped to stay within {@link #maxBuckets}.
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+}
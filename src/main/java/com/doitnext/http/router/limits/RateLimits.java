@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.limits;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.doitnext.http.router.Route;
+import com.doitnext.http.router.annotations.RateLimit;
+
+/**
+ * <p>The rate limits of the routes: a {@link RateLimiter} for each implementation method annotated
+ * with {@link RateLimit}, holding a token bucket for each client of the method as told apart by the
+ * {@link ClientKeyExtractor}.</p>
+ * 
+ * <p>This class is thread safe.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class RateLimits {
+	/**
+	 * The number of clients buckets are kept for on each route unless set otherwise.
+	 */
+	public static final int DEFAULT_MAX_BUCKETS = 10000;
+
+	/**
+	 * Stands for no limiter in {@link #limiters}.
+	 */
+	private static final RateLimiter UNLIMITED = new RateLimiter("unlimited", 1, 1, 1, 1);
+
+	final private ConcurrentMap<Method, RateLimiter> limiters = new ConcurrentHashMap<Method, RateLimiter>();
+	private volatile ClientKeyExtractor clientKeyExtractor = new RemoteAddressKeyExtractor();
+	private volatile int maxBuckets = DEFAULT_MAX_BUCKETS;
+
+	/**
+	 * @param route the route of a request.
+	 * @param req the request.
+	 * @return 0 if the request may proceed, otherwise how many nanoseconds until the client may
+	 * make the request.
+	 */
+	public long tryAcquire(Route route, HttpServletRequest req) {
+		RateLimiter limiter = getLimiter(route.getImplMethod());
+		if(limiter == null)
+			return 0;
+		return limiter.tryAcquire(clientKeyExtractor.getClientKey(req), System.nanoTime());
+	}
+
+	private RateLimiter getLimiter(Method implMethod) {
+		RateLimiter limiter = limiters.get(implMethod);
+		if(limiter == null) {
+			RateLimit limit = implMethod.getAnnotation(RateLimit.class);
+			if(limit == null) {
+				limiter = UNLIMITED;
+			} else {
+				String name = String.format("%s.%s", implMethod.getDeclaringClass().getName(), implMethod.getName());
+				int burst = (limit.burst() > 0) ? limit.burst() : limit.value();
+				limiter = new RateLimiter(name, limit.value(), limit.unit().toNanos(limit.period()), burst, maxBuckets);
+			}
+			RateLimiter existing = limiters.putIfAbsent(implMethod, limiter);
+			if(existing != null)
+				limiter = existing;
+		}
+		return (limiter == UNLIMITED) ? null : limiter;
+	}
+
+	/**
+	 * @param clientKeyExtractor tells the clients apart.  By default clients are keyed by their address.
+	 */
+	public void setClientKeyExtractor(ClientKeyExtractor clientKeyExtractor) {
+		this.clientKeyExtractor = clientKeyExtractor;
+	}
+
+	/**
+	 * @return the {@link #clientKeyExtractor}
+	 */
+	public ClientKeyExtractor getClientKeyExtractor() {
+		return clientKeyExtractor;
+	}
+
+	/**
+	 * @param maxBuckets the number of clients to keep buckets for on each route.  Applies to the limiters
+	 * created afterwards.
+	 */
+	public void setMaxBuckets(int maxBuckets) {
+		this.maxBuckets = maxBuckets;
+	}
+
+	/**
+	 * @return the {@link #maxBuckets}
+	 */
+	public int getMaxBuckets() {
+		return maxBuckets;
+	}
+
+	/**
+	 * @return the limiters created so far, one for each limited method that has been requested.
+	 */
+	public List<RateLimiter> getLimiters() {
+		List<RateLimiter> result = new ArrayList<RateLimiter>();
+		for(RateLimiter limiter : limiters.values()) {
+			if(limiter != UNLIMITED)
+				result.add(limiter);
+		}
+		return result;
+	}
+}
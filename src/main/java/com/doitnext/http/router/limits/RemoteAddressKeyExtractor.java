@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.limits;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Keys clients by their address.  When the router is behind a proxy the address may be taken from
+ * a header set by the proxy, such as X-Forwarded-For, instead.  Only do so when the proxy can be
+ * trusted to set the header, as clients are otherwise free to choose their own key.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class RemoteAddressKeyExtractor implements ClientKeyExtractor {
+	final private String forwardedForHeader;
+
+	/**
+	 * Keys clients by the address of the connection.
+	 */
+	public RemoteAddressKeyExtractor() {
+		this(null);
+	}
+
+	/**
+	 * @param forwardedForHeader the header holding the client address, the first one listed being
+	 * used, or null to use the address of the connection.
+	 */
+	public RemoteAddressKeyExtractor(String forwardedForHeader) {
+		this.forwardedForHeader = forwardedForHeader;
+	}
+
+	@Override
+	public String getClientKey(HttpServletRequest req) {
+		if(forwardedForHeader != null) {
+			String forwardedFor = req.getHeader(forwardedForHeader);
+			if(!StringUtils.isBlank(forwardedFor)) {
+				int comma = forwardedFor.indexOf(',');
+				return (comma < 0 ? forwardedFor : forwardedFor.substring(0, comma)).trim();
+			}
+		}
+		String address = req.getRemoteAddr();
+		return (address == null) ? "" : address;
+	}
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>A latency histogram in the style of HdrHistogram: values are counted in buckets whose width
+ * grows with the value, so every value is known to within about 3% from a microsecond to hours
+ * with a fixed, small number of buckets.</p>
+ * 
+ * <p>Each power of two range of nanoseconds is split into {@link #SUB_BUCKETS} equal buckets.
+ * Values below {@link #SUB_BUCKETS} nanoseconds have a bucket each and values beyond
+ * {@link #getHighestTrackableValue()} are counted in the last bucket.</p>
+ * 
+ * <p>Recording is a few bit operations and an atomic increment, so any number of threads may
+ * record at once without locking.  Reading while values are being recorded gives a consistent
+ * enough picture for monitoring, though not an atomic snapshot.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/**
+	 * The highest power of two tracked, 2^42 nanoseconds being over an hour.
+	 */
+	private static final int HIGHEST_EXPONENT = 42;
+	private static final int BUCKETS = SUB_BUCKETS + (HIGHEST_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	final private AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	final private LongAdder count = new LongAdder();
+	final private LongAdder sum = new LongAdder();
+	final private AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param nanos a latency, negative values being counted as 0.
+	 */
+	public void record(long nanos) {
+		if(nanos < 0)
+			nanos = 0;
+		counts.incrementAndGet(indexOf(nanos));
+		count.increment();
+		sum.add(nanos);
+		long current = max.get();
+		while(nanos > current && !max.compareAndSet(current, nanos))
+			current = max.get();
+	}
+
+	static int indexOf(long value) {
+		if(value < SUB_BUCKETS)
+			return (int)value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if(exponent > HIGHEST_EXPONENT)
+			return BUCKETS - 1;
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (int)(value >>> shift) & (SUB_BUCKETS - 1);
+		return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * @return the largest value counted in the bucket at index.
+	 */
+	static long highestValueAt(int index) {
+		if(index < SUB_BUCKETS)
+			return index;
+		int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+		int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+		return ((((long)SUB_BUCKETS + subBucket) << shift) + (1L << shift)) - 1;
+	}
+
+	/**
+	 * @return the number of values recorded.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return the sum of the values recorded in nanoseconds.
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * @return the largest value recorded in nanoseconds.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return the largest value the buckets tell apart.
+	 */
+	public long getHighestTrackableValue() {
+		return highestValueAt(BUCKETS - 1);
+	}
+
+	/**
+	 * @param percentile from 0 to 100.
+	 * @return the value, in nanoseconds, that percentile of the values recorded are at or below.  Given
+	 * as the top of its bucket but never more than {@link #getMax()}.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long total = 0;
+		long[] snapshot = new long[BUCKETS];
+		for(int x = 0; x < BUCKETS; x++) {
+			snapshot[x] = counts.get(x);
+			total += snapshot[x];
+		}
+		if(total == 0)
+			return 0;
+		long rank = Math.max(1, (long)Math.ceil(total * Math.min(100.0, percentile) / 100.0));
+		long seen = 0;
+		for(int x = 0; x < BUCKETS; x++) {
+			seen += snapshot[x];
+			if(seen >= rank)
+				return Math.min(highestValueAt(x), getMax());
+		}
+		return getMax();
+	}
+
+	/**
+	 * @param nanos a latency.
+	 * @return the number of values recorded at or below nanos, to within the bucket of nanos.
+	 */
+	public long getCountAtOrBelow(long nanos) {
+		if(nanos < 0)
+			return 0;
+		int last = indexOf(nanos);
+		long result = 0;
+		for(int x = 0; x <= last; x++)
+			result += counts.get(x);
+		return result;
+	}
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.doitnext.http.router.Route;
+import com.doitnext.http.router.metrics.PhaseTimer.Phase;
+
+/**
+ * Renders the {@link RouteMetrics} of routes as a JSON compatible tree or as Prometheus text.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class MetricsFormatter {
+	/**
+	 * The Content-Type of the Prometheus text format.
+	 */
+	public static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	/**
+	 * The upper bounds, in seconds, of the Prometheus latency buckets.
+	 */
+	private static final double[] BUCKET_BOUNDS = {
+		0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+	};
+	private static final String[] STATUS_CLASSES = { "other", "1xx", "2xx", "3xx", "4xx", "5xx" };
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+	private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+	private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+	/**
+	 * Stands for the latencies of routes that have not been requested.  Nothing is recorded in it.
+	 */
+	private static final LatencyHistogram NO_LATENCIES = new LatencyHistogram();
+
+	private MetricsFormatter() {
+	}
+
+	/**
+	 * @param routes the routes to report on.
+	 * @return a tree of maps and lists to be written as JSON, latencies being in milliseconds.
+	 */
+	public static Map<String, Object> toTree(Collection<Route> routes) {
+		List<Object> routeList = new ArrayList<Object>();
+		for(Route route : routes) {
+			RouteMetrics metrics = route.getMetrics();
+			Map<String, Object> node = new LinkedHashMap<String, Object>();
+			node.putAll(labels(route));
+			node.put("requests", metrics.getRequests());
+			Map<String, Object> statuses = new LinkedHashMap<String, Object>();
+			for(int x = 1; x <= STATUS_CLASSES.length; x++) {
+				int statusClass = x % STATUS_CLASSES.length;
+				statuses.put(STATUS_CLASSES[statusClass], metrics.getStatusClassCount(statusClass));
+			}
+			node.put("statuses", statuses);
+			node.put("latencyMillis", summary(latencies(metrics)));
+			if(metrics.getPhaseLatencies(Phase.MATCH) != null) {
+				Map<String, Object> phases = new LinkedHashMap<String, Object>();
+				for(Phase phase : Phase.values()) {
+					LatencyHistogram latencies = metrics.getPhaseLatencies(phase);
+					if(latencies != null)
+						phases.put(phase.metricName, summary(latencies));
+				}
+				node.put("phaseMillis", phases);
+			}
+			routeList.add(node);
+		}
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put("routes", routeList);
+		return result;
+	}
+
+	private static Map<String, Object> summary(LatencyHistogram latencies) {
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		long count = latencies.getCount();
+		result.put("count", count);
+		result.put("mean", (count == 0) ? 0.0 : latencies.getSum() / NANOS_PER_MILLI / count);
+		for(double percentile : PERCENTILES)
+			result.put(String.format("p%s", format(percentile)), latencies.getValueAtPercentile(percentile) / NANOS_PER_MILLI);
+		result.put("max", latencies.getMax() / NANOS_PER_MILLI);
+		return result;
+	}
+
+	/**
+	 * @param routes the routes to report on.
+	 * @return the Prometheus text exposition of the routes' metrics.
+	 */
+	public static String toPrometheus(Collection<Route> routes) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("# HELP http_router_requests_total Requests handled by each route by status class.\n");
+		sb.append("# TYPE http_router_requests_total counter\n");
+		for(Route route : routes) {
+			String labels = prometheusLabels(route);
+			for(int x = 1; x <= STATUS_CLASSES.length; x++) {
+				int statusClass = x % STATUS_CLASSES.length;
+				sb.append("http_router_requests_total{").append(labels).append(",status=\"")
+					.append(STATUS_CLASSES[statusClass]).append("\"} ")
+					.append(route.getMetrics().getStatusClassCount(statusClass)).append('\n');
+			}
+		}
+		sb.append("# HELP http_router_request_duration_seconds Time taken to handle requests to each route.\n");
+		sb.append("# TYPE http_router_request_duration_seconds histogram\n");
+		for(Route route : routes)
+			appendHistogram(sb, "http_router_request_duration_seconds", prometheusLabels(route), latencies(route.getMetrics()));
+		boolean described = false;
+		for(Route route : routes) {
+			RouteMetrics metrics = route.getMetrics();
+			if(metrics.getPhaseLatencies(Phase.MATCH) == null)
+				continue;
+			if(!described) {
+				sb.append("# HELP http_router_phase_duration_seconds Time taken by each phase of handling requests to each route.\n");
+				sb.append("# TYPE http_router_phase_duration_seconds histogram\n");
+				described = true;
+			}
+			String labels = prometheusLabels(route);
+			for(Phase phase : Phase.values()) {
+				LatencyHistogram latencies = metrics.getPhaseLatencies(phase);
+				if(latencies != null) {
+					appendHistogram(sb, "http_router_phase_duration_seconds", 
+							String.format("%s,phase=\"%s\"", labels, phase.metricName), latencies);
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	private static void appendHistogram(StringBuilder sb, String name, String labels, LatencyHistogram latencies) {
+		for(double bound : BUCKET_BOUNDS) {
+			sb.append(name).append("_bucket{").append(labels).append(",le=\"")
+				.append(format(bound)).append("\"} ")
+				.append(latencies.getCountAtOrBelow((long)(bound * NANOS_PER_SECOND))).append('\n');
+		}
+		long count = latencies.getCount();
+		sb.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(count).append('\n');
+		sb.append(name).append("_sum{").append(labels).append("} ")
+			.append(format(latencies.getSum() / NANOS_PER_SECOND)).append('\n');
+		sb.append(name).append("_count{").append(labels).append("} ").append(count).append('\n');
+	}
+
+	private static LatencyHistogram latencies(RouteMetrics metrics) {
+		LatencyHistogram latencies = metrics.getLatencies();
+		return (latencies == null) ? NO_LATENCIES : latencies;
+	}
+
+	/**
+	 * @return labels that tell every route apart, as two series with the same labels are invalid.
+	 */
+	private static Map<String, String> labels(Route route) {
+		Map<String, String> result = new LinkedHashMap<String, String>();
+		result.put("method", route.getHttpMethod().name());
+		result.put("path", route.getPathTemplate().getLexicalPath());
+		result.put("requestType", route.getRequestType() == null ? "" : route.getRequestType());
+		result.put("returnType", route.getReturnType() == null ? "" : route.getReturnType());
+		result.put("consumes", route.getRequestFormat() == null ? "" : route.getRequestFormat());
+		result.put("produces", route.getReturnFormat() == null ? "" : route.getReturnFormat());
+		return result;
+	}
+
+	private static String prometheusLabels(Route route) {
+		StringBuilder sb = new StringBuilder();
+		for(Map.Entry<String, String> label : labels(route).entrySet()) {
+			if(sb.length() > 0)
+				sb.append(',');
+			sb.append(label.getKey()).append("=\"");
+			String value = label.getValue();
+			for(int x = 0; x < value.length(); x++) {
+				char c = value.charAt(x);
+				if(c == '\\' || c == '"')
+					sb.append('\\').append(c);
+				else if(c == '\n')
+					sb.append("\\n");
+				else
+					sb.append(c);
+			}
+			sb.append('"');
+		}
+		return sb.toString();
+	}
+
+	private static String format(double value) {
+		if(value == Math.rint(value) && !Double.isInfinite(value))
+			return Long.toString((long)value);
+		return Double.toString(value);
+	}
+}
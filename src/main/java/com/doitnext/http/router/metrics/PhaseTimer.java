@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * <p>Splits the time taken by one request between the phases of the routing pipeline.  Each
+ * {@link #lap(Phase)} adds the time since the previous lap, or {@link #mark()}, to a phase.</p>
+ * 
+ * <p>The timer travels with the request as the {@link #ATTRIBUTE} request attribute.  Until some router
+ * enables phase timing {@link #get(HttpServletRequest)} does not even look for it, so the pipeline
+ * pays a single volatile read per phase.</p>
+ * 
+ * <p>This class is not thread safe.  A request is handled by one thread at a time, an asynchronous
+ * completion taking over from the thread that started the request.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class PhaseTimer {
+	/**
+	 * The request attribute holding the timer of the request.
+	 */
+	public static final String ATTRIBUTE = PhaseTimer.class.getName();
+
+	/**
+	 * The phases of the routing pipeline, each named as in the Server-Timing header.
+	 */
+	public enum Phase {
+		/** Matching the path to the candidate routes. */
+		MATCH("match"),
+		/** Choosing a route by its request and response formats. */
+		NEGOTIATE("negotiate"),
+		/** Binding the arguments, including deserializing the request body. */
+		BIND("bind"),
+		/** Running the implementation method. */
+		INVOKE("invoke"),
+		/** Serializing and writing the response in the success or error handler. */
+		SERIALIZE("serialize");
+
+		public final String metricName;
+
+		private Phase(String metricName) {
+			this.metricName = metricName;
+		}
+	}
+
+	private static final Phase[] PHASES = Phase.values();
+	private static volatile boolean enabled = false;
+
+	final private long[] nanos = new long[PHASES.length];
+	final private boolean serverTiming;
+	private long mark;
+
+	private PhaseTimer(boolean serverTiming) {
+		this.serverTiming = serverTiming;
+		this.mark = System.nanoTime();
+	}
+
+	/**
+	 * Starts timing a request.
+	 * 
+	 * @param req the request.
+	 * @param serverTiming true to describe the phases in a Server-Timing response header.
+	 * @return the timer of the request.
+	 */
+	public static PhaseTimer start(HttpServletRequest req, boolean serverTiming) {
+		enabled = true;
+		PhaseTimer timer = new PhaseTimer(serverTiming);
+		req.setAttribute(ATTRIBUTE, timer);
+		return timer;
+	}
+
+	/**
+	 * @return the timer of the request or null if the request is not being timed.
+	 */
+	public static PhaseTimer get(HttpServletRequest req) {
+		if(!enabled || req == null)
+			return null;
+		Object timer = req.getAttribute(ATTRIBUTE);
+		return (timer instanceof PhaseTimer) ? (PhaseTimer)timer : null;
+	}
+
+	/**
+	 * Starts the next phase now, leaving the time since the last lap out of every phase.
+	 */
+	public void mark() {
+		mark = System.nanoTime();
+	}
+
+	/**
+	 * Ends a phase, adding the time since the last lap or mark to it.
+	 */
+	public void lap(Phase phase) {
+		long now = System.nanoTime();
+		nanos[phase.ordinal()] += now - mark;
+		mark = now;
+	}
+
+	/**
+	 * @return the nanoseconds spent in the phase so far.
+	 */
+	public long getNanos(Phase phase) {
+		return nanos[phase.ordinal()];
+	}
+
+	/**
+	 * Marks the start of writing the response and, if asked for, adds a Server-Timing header with the
+	 * phases so far.  Serializing has not happened yet so it is left out of the header.
+	 */
+	public void beginResponse(HttpServletResponse resp) {
+		if(serverTiming && !resp.isCommitted())
+			resp.setHeader("Server-Timing", toServerTiming());
+		mark();
+	}
+
+	/**
+	 * @return the phases that have taken time as a Server-Timing header value, durations being in
+	 * milliseconds.
+	 */
+	public String toServerTiming() {
+		StringBuilder sb = new StringBuilder();
+		for(Phase phase : PHASES) {
+			long phaseNanos = nanos[phase.ordinal()];
+			if(phaseNanos <= 0)
+				continue;
+			if(sb.length() > 0)
+				sb.append(", ");
+			sb.append(phase.metricName).append(";dur=")
+				.append(String.format(Locale.ROOT, "%.3f", phaseNanos / (double)TimeUnit.MILLISECONDS.toNanos(1)));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.metrics;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.doitnext.http.router.metrics.PhaseTimer.Phase;
+
+/**
+ * <p>The measurements of one {@link com.doitnext.http.router.Route}: how many requests it has handled,
+ * how many of those ended with each class of status and how long they took.</p>
+ * 
+ * <p>The counters are striped {@link LongAdder}s and the latencies a {@link LatencyHistogram}, so
+ * requests are recorded from any number of threads without locking or contending on one value.  The
+ * histograms are only created when the first request is recorded, since many routes of a large
+ * application are never requested.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class RouteMetrics {
+	/**
+	 * The request attribute holding the {@link System#nanoTime()} a request started being handled
+	 * until its latency is recorded.
+	 */
+	public static final String START_ATTRIBUTE = RouteMetrics.class.getName() + ".start";
+
+	final private LongAdder requests = new LongAdder();
+	/**
+	 * Indexed by status / 100, index 0 counting responses whose status is not known.
+	 */
+	final private LongAdder[] statusClasses = new LongAdder[6];
+	/**
+	 * The latencies of the requests, created when the first request is recorded.
+	 */
+	final private AtomicReference<LatencyHistogram> latencies = new AtomicReference<LatencyHistogram>();
+	/**
+	 * The latencies of each {@link Phase}, created when a request to the route is first timed.
+	 */
+	final private AtomicReferenceArray<LatencyHistogram> phaseLatencies = 
+			new AtomicReferenceArray<LatencyHistogram>(Phase.values().length);
+
+	public RouteMetrics() {
+		for(int x = 0; x < statusClasses.length; x++)
+			statusClasses[x] = new LongAdder();
+	}
+
+	/**
+	 * Marks the start of handling a request.
+	 */
+	public static void start(HttpServletRequest req) {
+		req.setAttribute(START_ATTRIBUTE, System.nanoTime());
+	}
+
+	/**
+	 * Takes responsibility for recording a request, which is handed from the thread that started it to
+	 * whichever thread completes it.
+	 * 
+	 * @return the {@link System#nanoTime()} the request started, or null if it was not started or has
+	 * already been claimed.
+	 */
+	public static Long claim(HttpServletRequest req) {
+		Object start = req.getAttribute(START_ATTRIBUTE);
+		if(!(start instanceof Long))
+			return null;
+		req.removeAttribute(START_ATTRIBUTE);
+		return (Long)start;
+	}
+
+	/**
+	 * @param status the status of the response.
+	 * @param nanos how long the request took.
+	 */
+	public void record(int status, long nanos) {
+		requests.increment();
+		int statusClass = status / 100;
+		statusClasses[(statusClass > 0 && statusClass < statusClasses.length) ? statusClass : 0].increment();
+		LatencyHistogram histogram = latencies.get();
+		if(histogram == null) {
+			latencies.compareAndSet(null, new LatencyHistogram());
+			histogram = latencies.get();
+		}
+		histogram.record(nanos);
+	}
+
+	/**
+	 * @param timer the phases of a request.
+	 */
+	public void recordPhases(PhaseTimer timer) {
+		for(Phase phase : Phase.values()) {
+			LatencyHistogram histogram = phaseLatencies.get(phase.ordinal());
+			if(histogram == null) {
+				phaseLatencies.compareAndSet(phase.ordinal(), null, new LatencyHistogram());
+				histogram = phaseLatencies.get(phase.ordinal());
+			}
+			histogram.record(timer.getNanos(phase));
+		}
+	}
+
+	/**
+	 * @return the number of requests handled.
+	 */
+	public long getRequests() {
+		return requests.sum();
+	}
+
+	/**
+	 * @param statusClass 1 for 1xx statuses through 5 for 5xx statuses, or 0 for unknown statuses.
+	 * @return the number of responses with a status in the class.
+	 */
+	public long getStatusClassCount(int statusClass) {
+		return statusClasses[statusClass].sum();
+	}
+
+	/**
+	 * @return the {@link #latencies} or null if no request to the route has been recorded.
+	 */
+	public LatencyHistogram getLatencies() {
+		return latencies.get();
+	}
+
+	/**
+	 * @return the latencies of the phase or null if no request to the route has been timed.
+	 */
+	public LatencyHistogram getPhaseLatencies(Phase phase) {
+		return phaseLatencies.get(phase.ordinal());
+	}
+}
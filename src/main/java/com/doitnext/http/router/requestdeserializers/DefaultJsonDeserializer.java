@@ -19,11 +19,14 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.doitnext.http.router.codecs.CodecRegistry;
 import com.doitnext.http.router.exceptions.DeserializationException;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 /**
+ * Deserializes request bodies with Jackson.  The request format is that of the
+ * {@link CodecRegistry} given to the constructor, JSON by default.
+ * 
  * @author Steve Owens (steve@doitnext.com)
  *
  */
@@ -31,11 +34,51 @@ public class DefaultJsonDeserializer implements RequestDeserializer {
 
 	private List<String> requestTypes = new ArrayList<String>();
 	private List<Class<?>> allowedSuperTypes = new ArrayList<Class<?>>();
-	private ObjectMapper objectMapper = new ObjectMapper();
-	private String requestFormat = "application/json";
+	final private String requestFormat;
+	final private CodecRegistry codecRegistry;
+	/**
+	 * True when a subclass reads bodies its own way, so that no reader may be resolved.
+	 */
+	final private boolean overridesDeserialize;
 	
 	public DefaultJsonDeserializer(){
-		objectMapper.enable(DeserializationFeature.READ_ENUMS_USING_TO_STRING);
+		this(CodecRegistry.getDefault());
+	}
+
+	/**
+	 * @param codecRegistry supplies the readers for request bodies and the request format.
+	 */
+	public DefaultJsonDeserializer(CodecRegistry codecRegistry){
+		this.codecRegistry = codecRegistry;
+		this.requestFormat = codecRegistry.getFormat();
+		this.overridesDeserialize = overridesDeserialize(getClass());
+	}
+
+	private static boolean overridesDeserialize(Class<?> classz) {
+		try {
+			return classz.getMethod("deserialize", InputStream.class, Class.class, String.class, String.class)
+					.getDeclaringClass() != DefaultJsonDeserializer.class;
+		} catch(NoSuchMethodException e) {
+			return true;
+		}
+	}
+
+	/**
+	 * @param returnType the type of the request body.
+	 * @return a reader for request bodies of the type, suitable for keeping in a binding plan.
+	 */
+	public ObjectReader getReader(Class<?> returnType) {
+		return codecRegistry.getReader(returnType);
+	}
+	
+	/**
+	 * Resolves the reader from {@link #getReader(Class)}.  A subclass overriding 
+	 * {@link #deserialize(InputStream, Class, String, String)} resolves nothing, so that its
+	 * deserialize reads every body.
+	 */
+	@Override
+	public ObjectReader resolveReader(Class<?> returnType, String requestType) {
+		return overridesDeserialize ? null : getReader(returnType);
 	}
 	
 	@Override
@@ -56,8 +99,24 @@ public class DefaultJsonDeserializer implements RequestDeserializer {
 	@Override
 	public Object deserialize(InputStream inputStream, Class<?> returnType,
 			String requestType, String encoding) throws DeserializationException {
+		ObjectReader reader;
+		try {
+			reader = getReader(returnType);
+		} catch(Exception e) {
+			throw new DeserializationException(e);
+		}
+		return deserialize(reader, inputStream);
+	}
+
+	/**
+	 * @param reader a reader obtained from {@link #getReader(Class)}.
+	 * @param inputStream input stream containing the bytes to be read.
+	 * @return the deserialized request body.
+	 * @throws DeserializationException if the body cannot be read.
+	 */
+	public static Object deserialize(ObjectReader reader, InputStream inputStream) throws DeserializationException {
 		try {
-			return objectMapper.readValue(inputStream, returnType);
+			return reader.readValue(inputStream);
 		} catch(Exception e) {
 			throw new DeserializationException(e);
 		}
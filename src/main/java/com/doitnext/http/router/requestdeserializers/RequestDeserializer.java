@@ -19,6 +19,7 @@ import java.io.InputStream;
 import java.util.List;
 
 import com.doitnext.http.router.exceptions.DeserializationException;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 /**
  * Interface for request deserializers.  Request deserializers read HttpRequest bodies and return
@@ -68,5 +69,18 @@ public interface RequestDeserializer {
 	 * @throws DeserializationException 
 	 */
 	Object deserialize(InputStream inputStream, Class<?> returnType, String requestType, String encoding) throws DeserializationException;
-		
+
+	/**
+	 * Resolves a reader of request bodies of a type once, for callers that read many bodies of
+	 * the same type such as a route's binding plan.  The reader returned must read bodies exactly
+	 * as {@link #deserialize(InputStream, Class, String, String)} would.
+	 * 
+	 * @param returnType the class of the request body.
+	 * @param requestType the domain model of the request body.
+	 * @return a reader of request bodies or null (the default) if bodies must be read with
+	 * {@link #deserialize(InputStream, Class, String, String)}.
+	 */
+	default ObjectReader resolveReader(Class<?> returnType, String requestType) {
+		return null;
+	}
 }
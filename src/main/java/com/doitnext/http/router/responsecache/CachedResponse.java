@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.responsecache;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * <p>A serialized response that can be written to any number of requests.  Its entity tag is
+ * derived from the bytes of the body, so identical bodies have identical tags.  The tag is computed
+ * when it is first needed.</p>
+ * 
+ * <p>This class is Immutable and thread safe.  The body array is owned by the instance and is
+ * never modified.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class CachedResponse {
+	private static final char HEX[] = "0123456789abcdef".toCharArray();
+
+	final private int status;
+	final private String contentType;
+	final private String contentEncoding;
+	final private String vary;
+	final private byte body[];
+	private volatile String etag;
+
+	/**
+	 * @param status the status of the response.
+	 * @param contentType the Content-Type of the response or null.
+	 * @param contentEncoding the Content-Encoding of the response or null.
+	 * @param vary the Vary header of the response or null.
+	 * @param body the body of the response, owned by the new instance.
+	 */
+	public CachedResponse(int status, String contentType, String contentEncoding, String vary, byte body[]) {
+		this.status = status;
+		this.contentType = contentType;
+		this.contentEncoding = contentEncoding;
+		this.vary = vary;
+		this.body = body;
+	}
+
+	private static String etag(byte body[]) {
+		try {
+			byte digest[] = MessageDigest.getInstance("MD5").digest(body);
+			StringBuilder sb = new StringBuilder(34);
+			sb.append('"');
+			for(byte b : digest) {
+				sb.append(HEX[(b >> 4) & 0xf]);
+				sb.append(HEX[b & 0xf]);
+			}
+			return sb.append('"').toString();
+		} catch(NoSuchAlgorithmException e) {
+			// Every Java platform implements MD5
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return the {@link #status}
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return the {@link #contentType}
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * @return the {@link #contentEncoding}
+	 */
+	public String getContentEncoding() {
+		return contentEncoding;
+	}
+
+	/**
+	 * @return the quoted entity tag of the response.
+	 */
+	public String getETag() {
+		// Racing threads compute the same tag
+		String result = etag;
+		if(result == null) {
+			result = etag(body);
+			etag = result;
+		}
+		return result;
+	}
+
+	/**
+	 * @return the length of the body.
+	 */
+	public int getLength() {
+		return body.length;
+	}
+
+	/**
+	 * @param ifNoneMatch the If-None-Match header of a request or null.
+	 * @return <code>true</code> if the header names the entity tag of this response.
+	 */
+	public boolean matches(String ifNoneMatch) {
+		if(ifNoneMatch == null)
+			return false;
+		for(String tag : ifNoneMatch.split(",")) {
+			tag = tag.trim();
+			if(tag.startsWith("W/"))
+				tag = tag.substring(2);
+			if(tag.equals("*") || tag.equals(getETag()))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Writes this response and closes the output stream, or commits '304 Not Modified' when the
+	 * request's If-None-Match header names its entity tag.
+	 * 
+	 * @param request the request.
+	 * @param response the response to write.
+	 * @throws IOException if the response cannot be written.
+	 */
+	public void write(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		response.setHeader("ETag", getETag());
+		if(vary != null)
+			response.setHeader("Vary", vary);
+		if(matches(request.getHeader("If-None-Match"))) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			response.flushBuffer();
+			return;
+		}
+		write(response);
+	}
+
+	/**
+	 * Writes this response unconditionally and closes the output stream.
+	 * 
+	 * @param response the response to write.
+	 * @throws IOException if the response cannot be written.
+	 */
+	public void write(HttpServletResponse response) throws IOException {
+		response.setStatus(status);
+		if(contentType != null)
+			response.setContentType(contentType);
+		if(contentEncoding != null)
+			response.setHeader("Content-Encoding", contentEncoding);
+		if(vary != null)
+			response.setHeader("Vary", vary);
+		response.setContentLength(body.length);
+		ServletOutputStream out = response.getOutputStream();
+		out.write(body);
+		out.flush();
+		out.close();
+	}
+}
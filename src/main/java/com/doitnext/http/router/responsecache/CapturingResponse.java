@@ -0,0 +1,273 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.responsecache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * <p>Captures the body written to a response in memory, together with the status and the headers
+ * needed to replay it, so that the response can be cached or shared.</p>
+ * 
+ * <p>An attached capture passes the status and headers through to the wrapped response and only
+ * holds back the body, which the caller writes out afterwards (see {@link #writeBody()}).  A detached
+ * capture passes nothing through; it is used to produce a response for nobody in particular, such as
+ * when refreshing a cache entry after the client has already been answered.</p>
+ * 
+ * <p>This class is NOT thread safe.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class CapturingResponse extends HttpServletResponseWrapper {
+	final private boolean attached;
+	final private ByteArrayOutputStream body = new ByteArrayOutputStream();
+	private ServletOutputStream outputStream;
+	private PrintWriter writer;
+	private int status = SC_OK;
+	private boolean error = false;
+	private String contentType;
+	private String characterEncoding = "ISO-8859-1";
+	private String contentEncoding;
+	private String vary;
+
+	/**
+	 * @param response the response to capture for.
+	 * @param attached <code>true</code> to pass the status and headers through to the response.
+	 */
+	public CapturingResponse(HttpServletResponse response, boolean attached) {
+		super(response);
+		this.attached = attached;
+	}
+
+	/**
+	 * @return the captured response or null if it is not a complete '200 OK' response.
+	 */
+	public CachedResponse toCachedResponse() {
+		if(error || status != SC_OK)
+			return null;
+		flushWriter();
+		return new CachedResponse(status, contentType, contentEncoding, vary, body.toByteArray());
+	}
+
+	/**
+	 * Writes the captured body to the wrapped response with its Content-Length.  The status and
+	 * headers of an attached capture have already been passed through.
+	 * 
+	 * @throws IOException if the body cannot be written.
+	 */
+	public void writeBody() throws IOException {
+		if(error)
+			return;
+		flushWriter();
+		HttpServletResponse response = (HttpServletResponse)getResponse();
+		response.setContentLength(body.size());
+		ServletOutputStream out = response.getOutputStream();
+		body.writeTo(out);
+		out.flush();
+		out.close();
+	}
+
+	private void flushWriter() {
+		if(writer != null)
+			writer.flush();
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() {
+		if(outputStream == null) {
+			outputStream = new ServletOutputStream() {
+				@Override
+				public void write(int b) {
+					body.write(b);
+				}
+				@Override
+				public void write(byte b[], int off, int len) {
+					body.write(b, off, len);
+				}
+			};
+		}
+		return outputStream;
+	}
+
+	@Override
+	public PrintWriter getWriter() throws UnsupportedEncodingException {
+		if(writer == null)
+			writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), characterEncoding));
+		return writer;
+	}
+
+	@Override
+	public void setContentLength(int len) {
+		// The length is set when the body is written out
+	}
+
+	@Override
+	public void setBufferSize(int size) {
+		// The whole body is buffered
+	}
+
+	@Override
+	public void flushBuffer() {
+		// Nothing is sent until the capture completes
+	}
+
+	@Override
+	public boolean isCommitted() {
+		return error || (attached && super.isCommitted());
+	}
+
+	@Override
+	public void resetBuffer() {
+		body.reset();
+	}
+
+	@Override
+	public void reset() {
+		body.reset();
+		status = SC_OK;
+		contentEncoding = null;
+		vary = null;
+		if(attached)
+			super.reset();
+	}
+
+	@Override
+	public int getStatus() {
+		return status;
+	}
+
+	@Override
+	public void setStatus(int sc) {
+		status = sc;
+		if(attached)
+			super.setStatus(sc);
+	}
+
+	@Override
+	@Deprecated
+	public void setStatus(int sc, String sm) {
+		status = sc;
+		if(attached)
+			super.setStatus(sc, sm);
+	}
+
+	@Override
+	public void sendError(int sc) throws IOException {
+		status = sc;
+		error = true;
+		if(attached)
+			super.sendError(sc);
+	}
+
+	@Override
+	public void sendError(int sc, String msg) throws IOException {
+		status = sc;
+		error = true;
+		if(attached)
+			super.sendError(sc, msg);
+	}
+
+	@Override
+	public void sendRedirect(String location) throws IOException {
+		status = SC_FOUND;
+		error = true;
+		if(attached)
+			super.sendRedirect(location);
+	}
+
+	@Override
+	public String getContentType() {
+		return contentType;
+	}
+
+	@Override
+	public void setContentType(String type) {
+		contentType = type;
+		if(type != null) {
+			int charset = type.toLowerCase().indexOf("charset=");
+			if(charset >= 0)
+				characterEncoding = type.substring(charset + 8).trim();
+		}
+		if(attached)
+			super.setContentType(type);
+	}
+
+	@Override
+	public String getCharacterEncoding() {
+		return characterEncoding;
+	}
+
+	@Override
+	public void setCharacterEncoding(String charset) {
+		characterEncoding = charset;
+		if(attached)
+			super.setCharacterEncoding(charset);
+	}
+
+	@Override
+	public void setHeader(String name, String value) {
+		record(name, value, false);
+		if(attached)
+			super.setHeader(name, value);
+	}
+
+	@Override
+	public void addHeader(String name, String value) {
+		record(name, value, true);
+		if(attached)
+			super.addHeader(name, value);
+	}
+
+	@Override
+	public void setIntHeader(String name, int value) {
+		if(attached)
+			super.setIntHeader(name, value);
+	}
+
+	@Override
+	public void addIntHeader(String name, int value) {
+		if(attached)
+			super.addIntHeader(name, value);
+	}
+
+	@Override
+	public void setDateHeader(String name, long date) {
+		if(attached)
+			super.setDateHeader(name, date);
+	}
+
+	@Override
+	public void addDateHeader(String name, long date) {
+		if(attached)
+			super.addDateHeader(name, date);
+	}
+
+	private void record(String name, String value, boolean add) {
+		if("Content-Encoding".equalsIgnoreCase(name))
+			contentEncoding = value;
+		else if("Content-Type".equalsIgnoreCase(name))
+			contentType = value;
+		else if("Vary".equalsIgnoreCase(name))
+			vary = (add && vary != null) ? vary + ", " + value : value;
+	}
+}
@@ -0,0 +1,431 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.responsecache;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.doitnext.http.router.MethodInvoker;
+import com.doitnext.http.router.OffloadDispatcher;
+import com.doitnext.http.router.PathMatch;
+import com.doitnext.http.router.Route;
+import com.doitnext.http.router.annotations.Cached;
+import com.doitnext.http.router.annotations.enums.HttpMethod;
+import com.doitnext.http.router.argumentbinders.QueryString;
+import com.doitnext.http.router.responsehandlers.ResponseCompressor;
+
+/**
+ * <p>Caches the serialized responses of GET routes whose implementation method is annotated with
+ * {@link Cached}.  A response is cached by route, which implies the negotiated format, request path,
+ * the values of the query parameters named by the annotation and the content coding negotiated from
+ * the Accept-Encoding header.  Only '200 OK' responses are cached.</p>
+ * 
+ * <p>Cached responses carry an entity tag so a request whose If-None-Match header names it is answered
+ * with '304 Not Modified'.  A response that has expired but is still within its stale-while-revalidate
+ * window is served as is, and other requests keep getting it while the first request to find it so
+ * refreshes it.  The refresh starts once the stale response has been committed.  It runs on the
+ * {@link #setRefreshDispatcher(OffloadDispatcher) refresh dispatcher}, when there is one and the request
+ * can be made asynchronous, releasing the request's thread; otherwise it runs on the request's thread.</p>
+ * 
+ * <p>The cache holds at most {@link #getMaxBytes()} bytes of responses.  Eviction uses the CLOCK (second
+ * chance) policy weighted by response size.  Lookups never lock; insertions, evictions and
+ * invalidations are serialized on the clock.</p>
+ * 
+ * <p>This class is thread safe.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class ResponseCache {
+	private static Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+
+	/**
+	 * The bytes charged to each entry in addition to its body and key.
+	 */
+	private static final int ENTRY_OVERHEAD = 256;
+	private static final CachePolicy NOT_CACHED = new CachePolicy(0, 0, new String[] {});
+
+	final private long maxBytes;
+	final private ConcurrentMap<Key, Slot> slots = new ConcurrentHashMap<Key, Slot>();
+	final private ConcurrentMap<Method, CachePolicy> policies = new ConcurrentHashMap<Method, CachePolicy>();
+	final private ArrayDeque<Slot> clock = new ArrayDeque<Slot>();
+	private long weight = 0;
+	private volatile OffloadDispatcher refreshDispatcher = null;
+
+	final private AtomicLong hits = new AtomicLong();
+	final private AtomicLong staleHits = new AtomicLong();
+	final private AtomicLong misses = new AtomicLong();
+	final private AtomicLong refreshes = new AtomicLong();
+	final private AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * @param maxBytes the maximum number of bytes of responses to hold.
+	 */
+	public ResponseCache(long maxBytes) {
+		if(maxBytes < 1)
+			throw new IllegalArgumentException(String.format("Invalid cache size %d", maxBytes));
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * @param refreshDispatcher runs the refreshes of stale responses off the request's thread, or null
+	 * (the default) to refresh on the request's thread after its response has been committed.
+	 */
+	public void setRefreshDispatcher(OffloadDispatcher refreshDispatcher) {
+		this.refreshDispatcher = refreshDispatcher;
+	}
+
+	/**
+	 * @return the dispatcher running refreshes of stale responses or null if they run on the request's thread.
+	 */
+	public OffloadDispatcher getRefreshDispatcher() {
+		return refreshDispatcher;
+	}
+
+	/**
+	 * Answers a request from the cache if its route is cached and a fresh (or stale but revalidatable)
+	 * response is held, otherwise invokes the route and caches its response.
+	 * 
+	 * @param invoker the invoker of the route.
+	 * @param method the request method.
+	 * @param pathMatch the selected route and matched path.
+	 * @param request the request.
+	 * @param response the response.
+	 * @return <code>true</code> if the request was handled.
+	 * @throws ServletException if the invoker fails.
+	 * @throws IOException if the response cannot be written.
+	 */
+	public boolean handle(MethodInvoker invoker, HttpMethod method, PathMatch pathMatch,
+			HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		Route route = pathMatch.getRoute();
+		CachePolicy policy = (method == HttpMethod.GET) ? getPolicy(route.getImplMethod()) : NOT_CACHED;
+		if(policy == NOT_CACHED)
+			return invoker.invokeMethod(method, pathMatch, request, response).handled;
+
+		Key key = policy.key(route, request);
+		Slot slot = slots.get(key);
+		Entry entry = (slot == null) ? null : slot.entry;
+		if(entry != null) {
+			slot.referenced = true;
+			long now = System.nanoTime();
+			if(now - entry.expires < 0) {
+				hits.incrementAndGet();
+				entry.response.write(request, response);
+				return true;
+			}
+			if(now - entry.staleUntil < 0) {
+				staleHits.incrementAndGet();
+				entry.response.write(request, response);
+				if(entry.refreshing.compareAndSet(false, true))
+					startRefresh(invoker, method, pathMatch, request, response, key, policy, entry);
+				return true;
+			}
+		}
+
+		misses.incrementAndGet();
+		CapturingResponse capture = new CapturingResponse(response, true);
+		boolean handled = invoker.invokeMethod(method, pathMatch, request, capture).handled;
+		CachedResponse cached = capture.toCachedResponse();
+		if(cached == null) {
+			capture.writeBody();
+			return handled;
+		}
+		put(key, cached, policy);
+		cached.write(request, response);
+		return handled;
+	}
+
+	/**
+	 * Refreshes a stale entry whose response has been written, on the refresh dispatcher if possible.
+	 */
+	private void startRefresh(final MethodInvoker invoker, final HttpMethod method, final PathMatch pathMatch,
+			final HttpServletRequest request, final HttpServletResponse response, final Key key, 
+			final CachePolicy policy, final Entry stale) throws IOException {
+		try {
+			// The client is answered before the route is invoked again
+			response.flushBuffer();
+		} catch(IOException e) {
+			stale.refreshing.set(false);
+			throw e;
+		}
+		OffloadDispatcher dispatcher = this.refreshDispatcher;
+		if(dispatcher != null && request.isAsyncSupported() && !request.isAsyncStarted()) {
+			dispatcher.dispatch(request, response, new Runnable() {
+				@Override
+				public void run() {
+					refresh(invoker, method, pathMatch, request, response, key, policy, stale);
+				}
+			});
+		} else {
+			refresh(invoker, method, pathMatch, request, response, key, policy, stale);
+		}
+	}
+
+	/**
+	 * Invokes the route again for nobody in particular and replaces the stale entry.  The client's
+	 * response has already been completed so only the request is reused.
+	 */
+	private void refresh(MethodInvoker invoker, HttpMethod method, PathMatch pathMatch,
+			HttpServletRequest request, HttpServletResponse response, Key key, CachePolicy policy, Entry stale) {
+		try {
+			CapturingResponse capture = new CapturingResponse(response, false);
+			invoker.invokeMethod(method, pathMatch, request, capture);
+			CachedResponse cached = capture.toCachedResponse();
+			if(cached != null) {
+				put(key, cached, policy);
+				refreshes.incrementAndGet();
+			}
+		} catch(Exception e) {
+			logger.warn(String.format("Unable to refresh the cached response of %s", pathMatch.getRoute()), e);
+		} finally {
+			stale.refreshing.set(false);
+		}
+	}
+
+	/**
+	 * @param implMethod the implementation method of a route.
+	 * @return the cache policy of the method.
+	 */
+	private CachePolicy getPolicy(Method implMethod) {
+		CachePolicy policy = policies.get(implMethod);
+		if(policy == null) {
+			Cached cached = implMethod.getAnnotation(Cached.class);
+			policy = (cached == null) ? NOT_CACHED : new CachePolicy(cached.unit().toNanos(cached.ttl()),
+					cached.unit().toNanos(cached.staleWhileRevalidate()), cached.queryParameters());
+			policies.put(implMethod, policy);
+		}
+		return policy;
+	}
+
+	private synchronized void put(Key key, CachedResponse response, CachePolicy policy) {
+		long entryWeight = response.getLength() + 2L * key.variant.length() + ENTRY_OVERHEAD;
+		if(entryWeight > maxBytes)
+			return;
+		long now = System.nanoTime();
+		Entry entry = new Entry(response, now + policy.ttl, now + policy.ttl + policy.stale, entryWeight);
+		Slot slot = slots.get(key);
+		if(slot != null) {
+			weight -= slot.entry.weight;
+		} else {
+			slot = new Slot(key);
+			slots.put(key, slot);
+			clock.add(slot);
+		}
+		slot.entry = entry;
+		weight += entryWeight;
+		while(weight > maxBytes) {
+			Slot victim = clock.poll();
+			// The new entry fits on its own so the loop ends before it is the only one left
+			if(victim == slot || victim.referenced) {
+				victim.referenced = false;
+				clock.add(victim);
+				continue;
+			}
+			slots.remove(victim.key);
+			weight -= victim.entry.weight;
+			evictions.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Drops the cached responses of the routes implemented by a collection.
+	 * 
+	 * @param collection the class annotated with RestCollection.
+	 */
+	public synchronized void invalidate(Class<?> collection) {
+		Iterator<Slot> iterator = clock.iterator();
+		while(iterator.hasNext()) {
+			Slot slot = iterator.next();
+			if(slot.key.route.getImplClass() == collection) {
+				iterator.remove();
+				slots.remove(slot.key);
+				weight -= slot.entry.weight;
+			}
+		}
+	}
+
+	/**
+	 * Drops every cached response.
+	 */
+	public synchronized void invalidateAll() {
+		clock.clear();
+		slots.clear();
+		weight = 0;
+	}
+
+	/**
+	 * @return the number of responses currently cached.
+	 */
+	public int size() {
+		return slots.size();
+	}
+
+	/**
+	 * @return the number of bytes charged to the responses currently cached.
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	/**
+	 * @return the maximum number of bytes of responses this cache will hold.
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * @return the number of requests answered with a fresh cached response.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of requests answered with a stale cached response.
+	 */
+	public long getStaleHits() {
+		return staleHits.get();
+	}
+
+	/**
+	 * @return the number of requests to cached routes that invoked the route.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of stale responses replaced after being served.
+	 */
+	public long getRefreshes() {
+		return refreshes.get();
+	}
+
+	/**
+	 * @return the number of responses evicted to make room for others.
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * How the responses of one implementation method are cached.
+	 */
+	private static class CachePolicy {
+		final long ttl;
+		final long stale;
+		final String queryParameters[];
+
+		CachePolicy(long ttl, long stale, String queryParameters[]) {
+			this.ttl = ttl;
+			this.stale = stale;
+			this.queryParameters = queryParameters;
+		}
+
+		Key key(Route route, HttpServletRequest request) {
+			StringBuilder sb = new StringBuilder();
+			sb.append(request.getPathInfo());
+			if(queryParameters.length > 0) {
+				QueryString queryString = new QueryString(request.getQueryString(), StandardCharsets.UTF_8);
+				for(String name : queryParameters) {
+					sb.append('\u0000').append(name);
+					String values[] = queryString.getValues(name);
+					if(values != null) {
+						for(String value : values)
+							sb.append('\u0001').append(value);
+					}
+				}
+			}
+			sb.append('\u0000').append(ResponseCompressor.selectEncoding(request.getHeader("Accept-Encoding")));
+			return new Key(route, sb.toString());
+		}
+	}
+
+	/**
+	 * A cached response and when it goes stale and expires, in {@link System#nanoTime()}.
+	 */
+	private static class Entry {
+		final CachedResponse response;
+		final long expires;
+		final long staleUntil;
+		final long weight;
+		final AtomicBoolean refreshing = new AtomicBoolean();
+
+		Entry(CachedResponse response, long expires, long staleUntil, long weight) {
+			this.response = response;
+			this.expires = expires;
+			this.staleUntil = staleUntil;
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * The position of a key on the clock.  A refreshed response replaces the entry in place.
+	 */
+	private static class Slot {
+		final Key key;
+		volatile Entry entry;
+		volatile boolean referenced;
+
+		Slot(Key key) {
+			this.key = key;
+		}
+	}
+
+	/**
+	 * The route and the request attributes that select a cached response.
+	 */
+	private static final class Key {
+		final private Route route;
+		final private String variant;
+		final private int hash;
+
+		Key(Route route, String variant) {
+			this.route = route;
+			this.variant = variant;
+			this.hash = 31 * System.identityHashCode(route) + variant.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			Key other = (Key) obj;
+			return hash == other.hash && route == other.route && variant.equals(other.variant);
+		}
+	}
+}
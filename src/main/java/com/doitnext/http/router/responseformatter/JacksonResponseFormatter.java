@@ -15,19 +15,24 @@
  */
 package com.doitnext.http.router.responseformatter;
 
+import java.io.OutputStream;
 import java.net.URI;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.doitnext.http.router.codecs.CodecRegistry;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 /**
  * Used to format an object into JSON a simple POJO.  This particular implementation
  * disregards the schemaUri and templateUri arguments to {@link ResponseFormatter#formatResponse(Object, URI, URI)}
  * 
+ * <p>The format written is that of the {@link CodecRegistry} given to the constructor.  Binary
+ * formats such as Smile and CBOR cannot be formatted to a String.</p>
+ * 
  * <p>This class is thread safe</p>
  * 
  * @author Steve Owens (steve@doitnext.com)
@@ -36,21 +41,55 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 public class JacksonResponseFormatter implements ResponseFormatter {
 	Logger logger = LoggerFactory.getLogger(JacksonResponseFormatter.class);
 	
-	private static final ObjectMapper objectMapper = new ObjectMapper();
+	final private CodecRegistry codecRegistry;
 	 
 	public JacksonResponseFormatter() {
-		objectMapper.enable(DeserializationFeature.READ_ENUMS_USING_TO_STRING);
-		objectMapper.enable(SerializationFeature.WRITE_ENUMS_USING_TO_STRING);
+		this(CodecRegistry.getDefault());
+	}
+
+	/**
+	 * @param codecRegistry supplies the writers used to format responses.
+	 */
+	public JacksonResponseFormatter(CodecRegistry codecRegistry) {
+		this.codecRegistry = codecRegistry;
 	}
 
 	@Override
 	public String formatResponse(Object response, URI schemaUri, URI templateUri) throws Exception {
-		return objectMapper.writeValueAsString(response);
+		return codecRegistry.getWriter().writeValueAsString(response);
 	}
 
 	@Override
 	public byte[] formatResponseUtf8(Object response, URI schemaUri, URI templateUri) throws Exception {
-		return objectMapper.writeValueAsBytes(response);
+		return codecRegistry.getWriter().writeValueAsBytes(response);
+	}
+
+	@Override
+	public void formatResponseUtf8(Object response, URI schemaUri, URI templateUri, OutputStream out) throws Exception {
+		writeResponse(response, null, out);
+	}
+
+	/**
+	 * Writes the representation of a response in this formatter's format (UTF-8 for JSON) to a stream.
+	 * 
+	 * @param response the object model containing the data for the response.
+	 * @param writer the writer to use, typically one kept by a route's binding plan, or null
+	 * to write the response by its runtime type.  A writer for a different format than this
+	 * formatter's is ignored.
+	 * @param out the stream to write to.  The stream is flushed but not closed.
+	 * @throws Exception
+	 */
+	public void writeResponse(Object response, ObjectWriter writer, OutputStream out) throws Exception {
+		if(writer == null || writer.getFactory() != codecRegistry.getWriter().getFactory())
+			writer = codecRegistry.getWriter();
+		JsonGenerator generator = writer.getFactory().createGenerator(out, JsonEncoding.UTF8);
+		// The caller owns the stream, it decides what a failed write means for the response
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		try {
+			writer.writeValue(generator, response);
+		} finally {
+			generator.close();
+		}
 	}
 
 }
@@ -15,6 +15,7 @@
  */
 package com.doitnext.http.router.responseformatter;
 
+import java.io.OutputStream;
 import java.net.URI;
 
 /**
@@ -60,4 +61,23 @@ public interface ResponseFormatter {
 	 * @throws Exception 
 	 */
 	byte[] formatResponseUtf8(Object response, URI schemaUri, URI templateUri) throws Exception;
+
+	/**
+	 * Formats a java object to a specific format with amplifying details provided by a 
+	 * schema resource, writing the UTF-8 representation to a stream as it is produced rather than
+	 * materializing it.
+	 * @param response 
+	 * the object model containing the data for the response.
+	 * @param schemaUri 
+	 * a URI that identifies a resource that the ResponseFormatter
+	 * implementation can use verify that the {@link #response} conforms to a pre-determined
+	 * set of constraints.
+	 * @param templateUri 
+	 * a URI that identifies a resource that the ResponseFormatter can use to 
+	 * template the response for output.
+	 * @param out
+	 * the stream to write to.  The stream is flushed but not closed.
+	 * @throws Exception 
+	 */
+	void formatResponseUtf8(Object response, URI schemaUri, URI templateUri, OutputStream out) throws Exception;
 }
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.responsehandlers;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of equally sized byte buffers so that buffering a response does not allocate a new
+ * buffer per request.  At most a fixed number of idle buffers are retained; buffers released
+ * beyond that are left to the garbage collector.
+ * 
+ * <p>This class is thread safe.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class BufferPool {
+	final private int bufferSize;
+	final private int maxIdle;
+	final private Queue<byte[]> idle = new ConcurrentLinkedQueue<byte[]>();
+	final private AtomicInteger idleCount = new AtomicInteger();
+
+	/**
+	 * @param bufferSize the size in bytes of each buffer.
+	 * @param maxIdle the maximum number of idle buffers to retain.
+	 */
+	public BufferPool(int bufferSize, int maxIdle) {
+		if(bufferSize < 0)
+			throw new IllegalArgumentException("bufferSize must not be negative");
+		this.bufferSize = bufferSize;
+		this.maxIdle = maxIdle;
+	}
+
+	/**
+	 * @return the size in bytes of each buffer.
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * @return an idle buffer or a new one if none are idle.
+	 */
+	public byte[] acquire() {
+		byte buffer[] = idle.poll();
+		if(buffer == null)
+			return new byte[bufferSize];
+		idleCount.decrementAndGet();
+		return buffer;
+	}
+
+	/**
+	 * @param buffer a buffer obtained from {@link #acquire()} that the caller no longer uses.
+	 */
+	public void release(byte buffer[]) {
+		if(buffer.length != bufferSize)
+			throw new IllegalArgumentException("Buffer was not acquired from this pool");
+		if(idleCount.incrementAndGet() > maxIdle) {
+			idleCount.decrementAndGet();
+			return;
+		}
+		idle.offer(buffer);
+	}
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.responsehandlers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses a response body with a {@link Deflater} borrowed from a {@link ResponseCompressor}, writing
+ * either the 'gzip' or the 'deflate' content coding.  Closing the stream finishes the body, records it
+ * in the statistics of the compressor, closes the underlying stream and returns the deflater.  A body
+ * that cannot be finished must be {@link #abandon() abandoned} to return the deflater.
+ * 
+ * <p>This class is NOT thread safe.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class CompressingOutputStream extends OutputStream {
+	private static final byte GZIP_HEADER[] = {0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte)0xff};
+
+	final private OutputStream out;
+	final private ResponseCompressor compressor;
+	final private ResponseCompressor.Codec codec;
+	final private Deflater deflater;
+	final private byte buffer[];
+	final private CRC32 crc;
+	private long written = 0;
+	private long compressed = 0;
+	private long nanos = 0;
+	private boolean closed = false;
+
+	/**
+	 * @param out the stream to write the compressed body to.
+	 * @param compressor the compressor to record statistics in.
+	 * @param codec a reset codec acquired from the compressor, which the stream returns.
+	 * @throws IOException if the gzip header cannot be written.
+	 */
+	CompressingOutputStream(OutputStream out, ResponseCompressor compressor, ResponseCompressor.Codec codec) 
+			throws IOException {
+		this.out = out;
+		this.compressor = compressor;
+		this.codec = codec;
+		this.deflater = codec.deflater;
+		this.buffer = codec.buffer;
+		this.crc = codec.crc;
+		if(crc != null) {
+			out.write(GZIP_HEADER);
+			compressed += GZIP_HEADER.length;
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] {(byte)b}, 0, 1);
+	}
+
+	@Override
+	public void write(byte b[], int off, int len) throws IOException {
+		if(closed)
+			throw new IOException("Stream closed");
+		if(len == 0)
+			return;
+		long start = System.nanoTime();
+		if(crc != null)
+			crc.update(b, off, len);
+		written += len;
+		deflater.setInput(b, off, len);
+		while(!deflater.needsInput())
+			deflate(Deflater.NO_FLUSH);
+		nanos += System.nanoTime() - start;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if(closed)
+			return;
+		long start = System.nanoTime();
+		deflate(Deflater.SYNC_FLUSH);
+		nanos += System.nanoTime() - start;
+		out.flush();
+	}
+
+	/**
+	 * Finishes the compressed body and closes the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed)
+			return;
+		closed = true;
+		try {
+			long start = System.nanoTime();
+			deflater.finish();
+			while(!deflater.finished())
+				deflate(Deflater.NO_FLUSH);
+			if(crc != null) {
+				writeInt((int)crc.getValue());
+				writeInt((int)written);
+				compressed += 8;
+			}
+			nanos += System.nanoTime() - start;
+		} finally {
+			compressor.release(codec);
+		}
+		compressor.record(written, compressed, nanos);
+		out.flush();
+		out.close();
+	}
+
+	/**
+	 * Abandons the body, leaving it incomplete, and returns the deflater.  The underlying stream
+	 * is not closed.
+	 */
+	public void abandon() {
+		if(closed)
+			return;
+		closed = true;
+		compressor.release(codec);
+	}
+
+	private void deflate(int flush) throws IOException {
+		int count;
+		while((count = deflater.deflate(buffer, 0, buffer.length, flush)) > 0) {
+			out.write(buffer, 0, count);
+			compressed += count;
+			if(count < buffer.length && flush == Deflater.NO_FLUSH)
+				break;
+		}
+	}
+
+	private void writeInt(int value) throws IOException {
+		out.write(value & 0xff);
+		out.write((value >> 8) & 0xff);
+		out.write((value >> 16) & 0xff);
+		out.write((value >> 24) & 0xff);
+	}
+}
@@ -29,20 +29,54 @@ import com.doitnext.http.router.PathMatch;
 import com.doitnext.http.router.annotations.ExceptionHandler;
 import com.doitnext.http.router.annotations.OnException;
 import com.doitnext.http.router.exceptions.FieldValidationException;
+import com.doitnext.http.router.jfr.ResponseSerializationEvent;
+import com.doitnext.http.router.jfr.RouteMatchEvent;
+import com.doitnext.http.router.metrics.PhaseTimer;
+import com.doitnext.http.router.metrics.PhaseTimer.Phase;
 import com.doitnext.http.router.responseformatter.JacksonResponseFormatter;
 import com.google.common.collect.ImmutableList;
 
 public class DefaultErrorHandler implements ResponseHandler {
 	private static Logger logger = LoggerFactory.getLogger(DefaultErrorHandler.class);
 	
-	private static JacksonResponseFormatter jacksonResponseFormatter = new JacksonResponseFormatter();
-	private static final List<String> responseFormats =
-			ImmutableList.copyOf(Arrays.asList(new String[] {"application/json"}));
+	private static JacksonResponseFormatter defaultResponseFormatter = new JacksonResponseFormatter();
+
+	final private JacksonResponseFormatter jacksonResponseFormatter;
+	final private List<String> responseFormats;
+	final private String contentType;
+			
+	private volatile ResponseCompressor responseCompressor = ResponseCompressor.getDefault();
 			
 	private static final List<String> responseTypes = 
 			ImmutableList.copyOf(Arrays.asList(new String[] {"http://com.doitnext.http.router/exception"}));
 	
 	public DefaultErrorHandler() {
+		this("application/json", "application/json;charset=UTF-8", defaultResponseFormatter);
+	}
+
+	/**
+	 * @param responseFormat the format of the error responses.
+	 * @param contentType the Content-Type of the error responses.
+	 * @param responseFormatter formats the error responses in the format.
+	 */
+	public DefaultErrorHandler(String responseFormat, String contentType, JacksonResponseFormatter responseFormatter) {
+		this.responseFormats = ImmutableList.copyOf(Arrays.asList(new String[] {responseFormat}));
+		this.contentType = contentType;
+		this.jacksonResponseFormatter = responseFormatter;
+	}
+
+	/**
+	 * @return the compressor of the error responses or null if they are not compressed.
+	 */
+	public ResponseCompressor getResponseCompressor() {
+		return responseCompressor;
+	}
+
+	/**
+	 * @param responseCompressor the compressor of the error responses or null to never compress them.
+	 */
+	public void setResponseCompressor(ResponseCompressor responseCompressor) {
+		this.responseCompressor = responseCompressor;
 	}
 
 	@Override
@@ -73,6 +107,21 @@ public class DefaultErrorHandler implements ResponseHandler {
 	public boolean handleResponse(PathMatch pathMatch,
 			HttpServletRequest request, HttpServletResponse response,
 			Object responseData) {
+		PhaseTimer timer = PhaseTimer.get(request);
+		if(timer == null)
+			return writeResponse(pathMatch, request, response, responseData);
+		timer.beginResponse(response);
+		try {
+			return writeResponse(pathMatch, request, response, responseData);
+		} finally {
+			timer.lap(Phase.SERIALIZE);
+		}
+	}
+
+	private boolean writeResponse(PathMatch pathMatch,
+			HttpServletRequest request, HttpServletResponse response,
+			Object responseData) {
+		ResponseSerializationEvent event = ResponseSerializationEvent.beginIfEnabled();
 		try {
 			OnException oe = null;
 			if(response.getStatus() < 400) {
@@ -94,11 +143,23 @@ public class DefaultErrorHandler implements ResponseHandler {
 			 * return UTF-8 encoding.
 			 */
 			byte responseBytes[] = jacksonResponseFormatter.formatResponseUtf8(error, null, null);
-			response.setContentType("application/json;charset=UTF-8");
-			response.setContentLength(responseBytes.length);
-			response.getOutputStream().write(responseBytes);
-			response.getOutputStream().flush();
-			response.getOutputStream().close();
+			response.setContentType(contentType);
+			ResponseCompressor compressor = responseCompressor;
+			if(compressor != null) {
+				compressor.writeBody(pathMatch, request, response, responseBytes);
+			} else {
+				response.setContentLength(responseBytes.length);
+				response.getOutputStream().write(responseBytes);
+				response.getOutputStream().flush();
+				response.getOutputStream().close();
+			}
+			if(event != null && event.shouldCommit()) {
+				event.route = (pathMatch == null) ? null : RouteMatchEvent.describe(pathMatch.getRoute());
+				event.contentType = contentType;
+				event.error = true;
+				event.bytes = responseBytes.length;
+				event.commit();
+			}
 			return true;
 		} catch(Exception e) {
 			logger.error("Unable to handle response.", e);
@@ -27,20 +27,81 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.doitnext.http.router.PathMatch;
+import com.doitnext.http.router.argumentbinders.BindingPlan;
+import com.doitnext.http.router.jfr.ResponseSerializationEvent;
+import com.doitnext.http.router.jfr.RouteMatchEvent;
+import com.doitnext.http.router.metrics.PhaseTimer;
+import com.doitnext.http.router.metrics.PhaseTimer.Phase;
 import com.doitnext.http.router.responseformatter.JacksonResponseFormatter;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.google.common.collect.ImmutableList;
 
 public class DefaultSuccessHandler implements ResponseHandler {
 	private static Logger logger = LoggerFactory.getLogger(DefaultSuccessHandler.class);
 	
-	private static JacksonResponseFormatter jacksonResponseFormatter = new JacksonResponseFormatter();
-	private static final List<String> responseFormats =
-			ImmutableList.copyOf(Arrays.asList(new String[] {"application/json"}));
+	private static JacksonResponseFormatter defaultResponseFormatter = new JacksonResponseFormatter();
+
+	final private JacksonResponseFormatter jacksonResponseFormatter;
+	final private List<String> responseFormats;
+	final private String contentType;
 			
 	private static List<String> responseTypes = 
 			ImmutableList.copyOf(new ArrayList<String>());
 	
+	/**
+	 * The default size in bytes of the largest response sent with a Content-Length.
+	 */
+	public static final int DEFAULT_STREAMING_THRESHOLD = 64 * 1024;
+	private static final int MAX_IDLE_BUFFERS = 64;
+
+	private volatile BufferPool bufferPool = new BufferPool(DEFAULT_STREAMING_THRESHOLD, MAX_IDLE_BUFFERS);
+	private volatile ResponseCompressor responseCompressor = ResponseCompressor.getDefault();
+
 	public DefaultSuccessHandler() {
+		this("application/json", "application/json;charset=UTF-8", defaultResponseFormatter);
+	}
+
+	/**
+	 * @param responseFormat the format of the responses.
+	 * @param contentType the Content-Type of the responses.
+	 * @param responseFormatter formats the responses in the format.
+	 */
+	public DefaultSuccessHandler(String responseFormat, String contentType, JacksonResponseFormatter responseFormatter) {
+		this.responseFormats = ImmutableList.copyOf(Arrays.asList(new String[] {responseFormat}));
+		this.contentType = contentType;
+		this.jacksonResponseFormatter = responseFormatter;
+	}
+
+	/**
+	 * Responses are serialized straight to the response through a pooled buffer of this size.
+	 * Responses that fit in the buffer are sent with a Content-Length, larger responses are
+	 * streamed chunked.
+	 * 
+	 * @param streamingThreshold the size in bytes of the largest response sent with a Content-Length.
+	 */
+	public void setStreamingThreshold(int streamingThreshold) {
+		this.bufferPool = new BufferPool(streamingThreshold, MAX_IDLE_BUFFERS);
+	}
+
+	/**
+	 * @return the size in bytes of the largest response sent with a Content-Length.
+	 */
+	public int getStreamingThreshold() {
+		return bufferPool.getBufferSize();
+	}
+
+	/**
+	 * @return the compressor of the responses or null if responses are not compressed.
+	 */
+	public ResponseCompressor getResponseCompressor() {
+		return responseCompressor;
+	}
+
+	/**
+	 * @param responseCompressor the compressor of the responses or null to never compress them.
+	 */
+	public void setResponseCompressor(ResponseCompressor responseCompressor) {
+		this.responseCompressor = responseCompressor;
 	}
 
 	@Override
@@ -57,6 +118,20 @@ public class DefaultSuccessHandler implements ResponseHandler {
 	public boolean handleResponse(PathMatch pathMatch,
 			HttpServletRequest request, HttpServletResponse response,
 			Object responseData) {
+		PhaseTimer timer = PhaseTimer.get(request);
+		if(timer == null)
+			return writeResponse(pathMatch, request, response, responseData);
+		timer.beginResponse(response);
+		try {
+			return writeResponse(pathMatch, request, response, responseData);
+		} finally {
+			timer.lap(Phase.SERIALIZE);
+		}
+	}
+
+	private boolean writeResponse(PathMatch pathMatch,
+			HttpServletRequest request, HttpServletResponse response,
+			Object responseData) {
 		try {
 			if(responseData != null) {
 				/*TODO: This code could be improved quite a bit.  Ideally it should 
@@ -66,15 +141,30 @@ public class DefaultSuccessHandler implements ResponseHandler {
 				 * should be in a field contained in the Path subobject.  For now we will just
 				 * return UTF-8 encoding.
 				 */
-				byte responseBytes[] = jacksonResponseFormatter.formatResponseUtf8(responseData, null, null);
-				response.setContentType("application/json;charset=UTF-8");
-				response.setContentLength(responseBytes.length);
-				response.getOutputStream().write(responseBytes);
-				response.getOutputStream().flush();
-				response.getOutputStream().close();
+				response.setContentType(contentType);
+				ResponseCompressor compressor = responseCompressor;
+				String encoding = (compressor == null) ? null : compressor.negotiate(pathMatch, request, response);
+				ResponseSerializationEvent event = ResponseSerializationEvent.beginIfEnabled();
+				ThresholdOutputStream out = new ThresholdOutputStream(response, bufferPool, compressor, encoding);
+				try {
+					BindingPlan plan = (pathMatch == null) ? null : pathMatch.getRoute().getBindingPlan();
+					ObjectWriter writer = (plan == null) ? null : plan.getReturnWriter(responseData);
+					jacksonResponseFormatter.writeResponse(responseData, writer, out);
+					out.close();
+					if(event != null && event.shouldCommit()) {
+						event.route = (pathMatch == null) ? null : RouteMatchEvent.describe(pathMatch.getRoute());
+						event.contentType = contentType;
+						event.bytes = out.getBytesWritten();
+						event.commit();
+					}
+				} finally {
+					out.discard();
+				}
 			}
 		} catch(Exception e) {
 			logger.error("Unable to handle response.", e);
+			if(response.isCommitted())
+				return true; // Part of the body is already on its way, the client sees it cut short
 			try {
 				response.sendError(500);
 			} catch (IOException e1) {
@@ -0,0 +1,392 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.responsehandlers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.doitnext.http.router.PathMatch;
+import com.doitnext.http.router.annotations.RestMethod;
+
+/**
+ * <p>Compresses response bodies with the 'gzip' or 'deflate' content coding chosen from the
+ * Accept-Encoding header of the request.  Bodies shorter than the {@link #minimumSize} are sent
+ * uncompressed since compressing them saves little or nothing.  Routes whose {@link RestMethod}
+ * sets compress to false are never compressed.</p>
+ * 
+ * <p>{@link Deflater}s are pooled, reset between responses, so that compressing a response does not
+ * allocate one (and its native memory) per request.  A stream returns its deflater to the pool when it
+ * is closed or abandoned.  At most {@link #getMaxIdleCodecs()} idle deflaters of each coding are kept;
+ * those returned beyond that are ended, freeing their native memory at once.  Unlike deflaters kept
+ * per thread, the pool does not grow with the number of threads, such as when requests run on
+ * virtual threads.</p>
+ * 
+ * <p>The compressor counts the responses it compresses, the bytes before and after compression
+ * and the time spent compressing.</p>
+ * 
+ * <p>This class is thread safe.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class ResponseCompressor {
+	public static final String GZIP = "gzip";
+	public static final String DEFLATE = "deflate";
+	/**
+	 * The default size in bytes of the smallest body that is compressed.
+	 */
+	public static final int DEFAULT_MINIMUM_SIZE = 1024;
+	private static final int SCRATCH_SIZE = 8 * 1024;
+	/**
+	 * The default maximum number of idle deflaters of each coding kept for reuse.
+	 */
+	public static final int DEFAULT_MAX_IDLE_CODECS = 2 * Runtime.getRuntime().availableProcessors();
+
+	private static final ResponseCompressor defaultCompressor = new ResponseCompressor();
+
+	private volatile int minimumSize = DEFAULT_MINIMUM_SIZE;
+	private volatile int level = Deflater.DEFAULT_COMPRESSION;
+
+	final private AtomicLong compressedResponses = new AtomicLong();
+	final private AtomicLong uncompressedBytes = new AtomicLong();
+	final private AtomicLong compressedBytes = new AtomicLong();
+	final private AtomicLong compressionNanos = new AtomicLong();
+
+	/**
+	 * Whether responses of a method may be compressed, by implementation method.
+	 */
+	final private ConcurrentMap<Method, Boolean> compressible = new ConcurrentHashMap<Method, Boolean>();
+
+	final private int maxIdleCodecs;
+	final private Queue<Codec> idleGzip = new ConcurrentLinkedQueue<Codec>();
+	final private Queue<Codec> idleDeflate = new ConcurrentLinkedQueue<Codec>();
+	final private AtomicInteger idleGzipCount = new AtomicInteger();
+	final private AtomicInteger idleDeflateCount = new AtomicInteger();
+
+	/**
+	 * A deflater of one coding with its scratch space, used by one stream at a time.
+	 */
+	static final class Codec {
+		final boolean gzip;
+		final Deflater deflater;
+		final CRC32 crc;
+		final byte buffer[] = new byte[SCRATCH_SIZE];
+
+		Codec(boolean gzip) {
+			this.gzip = gzip;
+			this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, gzip);
+			this.crc = gzip ? new CRC32() : null;
+		}
+	}
+
+	public ResponseCompressor() {
+		this(DEFAULT_MAX_IDLE_CODECS);
+	}
+
+	/**
+	 * @param maxIdleCodecs the maximum number of idle deflaters of each coding kept for reuse.
+	 */
+	public ResponseCompressor(int maxIdleCodecs) {
+		this.maxIdleCodecs = maxIdleCodecs;
+	}
+
+	/**
+	 * @return the compressor shared by the default response handlers.
+	 */
+	public static ResponseCompressor getDefault() {
+		return defaultCompressor;
+	}
+
+	/**
+	 * @return the maximum number of idle deflaters of each coding kept for reuse.
+	 */
+	public int getMaxIdleCodecs() {
+		return maxIdleCodecs;
+	}
+
+	/**
+	 * @return the number of idle deflaters, of both codings, kept for reuse.
+	 */
+	public int getIdleCodecs() {
+		return idleGzipCount.get() + idleDeflateCount.get();
+	}
+
+	/**
+	 * @return the size in bytes of the smallest body that is compressed.
+	 */
+	public int getMinimumSize() {
+		return minimumSize;
+	}
+
+	/**
+	 * @param minimumSize the size in bytes of the smallest body that is compressed.
+	 */
+	public void setMinimumSize(int minimumSize) {
+		this.minimumSize = minimumSize;
+	}
+
+	/**
+	 * @param fastMode <code>true</code> to compress at {@link Deflater#BEST_SPEED}, trading some
+	 * compression for much less time spent compressing, <code>false</code> for the default level.
+	 */
+	public void setFastMode(boolean fastMode) {
+		this.level = fastMode ? Deflater.BEST_SPEED : Deflater.DEFAULT_COMPRESSION;
+	}
+
+	/**
+	 * @return <code>true</code> if compressing at {@link Deflater#BEST_SPEED}.
+	 */
+	public boolean isFastMode() {
+		return level == Deflater.BEST_SPEED;
+	}
+
+	/**
+	 * @return the number of responses compressed.
+	 */
+	public long getCompressedResponses() {
+		return compressedResponses.get();
+	}
+
+	/**
+	 * @return the number of bytes of response bodies before compression.
+	 */
+	public long getUncompressedBytes() {
+		return uncompressedBytes.get();
+	}
+
+	/**
+	 * @return the number of bytes of response bodies after compression.
+	 */
+	public long getCompressedBytes() {
+		return compressedBytes.get();
+	}
+
+	/**
+	 * @return the time in nanoseconds spent compressing.
+	 */
+	public long getCompressionNanos() {
+		return compressionNanos.get();
+	}
+
+	/**
+	 * @return the size of compressed bodies relative to their size before compression or 1 if
+	 * nothing has been compressed.
+	 */
+	public double getCompressionRatio() {
+		long uncompressed = uncompressedBytes.get();
+		if(uncompressed == 0)
+			return 1.0;
+		return (double)compressedBytes.get() / uncompressed;
+	}
+
+	void record(long uncompressed, long compressed, long nanos) {
+		compressedResponses.incrementAndGet();
+		uncompressedBytes.addAndGet(uncompressed);
+		compressedBytes.addAndGet(compressed);
+		compressionNanos.addAndGet(nanos);
+	}
+
+	/**
+	 * Picks the content coding of a response.  When the route may be compressed the response gets a
+	 * 'Vary: Accept-Encoding' header, whichever coding is picked, since its body depends on that header.
+	 * 
+	 * @param pathMatch the route being responded from or null if there is none.
+	 * @param request the request or null.
+	 * @param response the response.
+	 * @return {@link #GZIP}, {@link #DEFLATE} or null to send the body uncompressed.
+	 */
+	public String negotiate(PathMatch pathMatch, HttpServletRequest request, HttpServletResponse response) {
+		if(pathMatch != null && !isCompressible(pathMatch.getRoute().getImplMethod()))
+			return null;
+		response.addHeader("Vary", "Accept-Encoding");
+		return (request == null) ? null : selectEncoding(request.getHeader("Accept-Encoding"));
+	}
+
+	private boolean isCompressible(Method implMethod) {
+		if(implMethod == null)
+			return true;
+		Boolean result = compressible.get(implMethod);
+		if(result == null) {
+			RestMethod restMethod = implMethod.getAnnotation(RestMethod.class);
+			result = (restMethod == null) || restMethod.compress();
+			compressible.put(implMethod, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Picks the content coding with the highest quality in an Accept-Encoding header.  Ties go to
+	 * 'gzip', and '*' stands for both codings when they are not listed themselves.
+	 * 
+	 * @param acceptEncoding the Accept-Encoding header or null.
+	 * @return {@link #GZIP}, {@link #DEFLATE} or null if neither is acceptable.
+	 */
+	public static String selectEncoding(String acceptEncoding) {
+		if(acceptEncoding == null || acceptEncoding.isEmpty())
+			return null;
+		float gzip = -1;
+		float deflate = -1;
+		float any = -1;
+		for(String element : acceptEncoding.split(",")) {
+			String coding = element;
+			float quality = 1;
+			int semicolon = element.indexOf(';');
+			if(semicolon >= 0) {
+				coding = element.substring(0, semicolon);
+				quality = parseQuality(element.substring(semicolon + 1));
+			}
+			coding = coding.trim();
+			if(coding.equalsIgnoreCase(GZIP) || coding.equalsIgnoreCase("x-gzip"))
+				gzip = Math.max(gzip, quality);
+			else if(coding.equalsIgnoreCase(DEFLATE))
+				deflate = Math.max(deflate, quality);
+			else if(coding.equals("*"))
+				any = Math.max(any, quality);
+		}
+		if(gzip < 0)
+			gzip = any;
+		if(deflate < 0)
+			deflate = any;
+		if(gzip > 0 && gzip >= deflate)
+			return GZIP;
+		if(deflate > 0)
+			return DEFLATE;
+		return null;
+	}
+
+	private static float parseQuality(String parameters) {
+		for(String parameter : parameters.split(";")) {
+			parameter = parameter.trim();
+			if(parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+				try {
+					return Float.parseFloat(parameter.substring(2).trim());
+				} catch(NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+		return 1;
+	}
+
+	/**
+	 * Starts a compressed body.  The caller sets the Content-Encoding header.  The stream borrows
+	 * a deflater from the pool until it is closed or {@link CompressingOutputStream#abandon() abandoned}.
+	 * 
+	 * @param out the stream to write the compressed body to.
+	 * @param encoding {@link #GZIP} or {@link #DEFLATE}.
+	 * @return a stream that compresses what is written to it into out.
+	 * @throws IOException if the stream cannot be started.
+	 */
+	public CompressingOutputStream open(OutputStream out, String encoding) throws IOException {
+		Codec codec = acquire(GZIP.equals(encoding));
+		codec.deflater.setLevel(level);
+		try {
+			return new CompressingOutputStream(out, this, codec);
+		} catch(IOException e) {
+			release(codec);
+			throw e;
+		}
+	}
+
+	/**
+	 * @return a reset idle codec or a new one if none are idle.
+	 */
+	private Codec acquire(boolean gzip) {
+		Codec codec = gzip ? idleGzip.poll() : idleDeflate.poll();
+		if(codec == null)
+			return new Codec(gzip);
+		(gzip ? idleGzipCount : idleDeflateCount).decrementAndGet();
+		codec.deflater.reset();
+		if(codec.crc != null)
+			codec.crc.reset();
+		return codec;
+	}
+
+	/**
+	 * Returns a codec to the pool, or ends its deflater if the pool is full.
+	 * 
+	 * @param codec a codec acquired from this compressor that is no longer used.
+	 */
+	void release(Codec codec) {
+		AtomicInteger count = codec.gzip ? idleGzipCount : idleDeflateCount;
+		if(count.incrementAndGet() > maxIdleCodecs) {
+			count.decrementAndGet();
+			codec.deflater.end();
+			return;
+		}
+		(codec.gzip ? idleGzip : idleDeflate).offer(codec);
+	}
+
+	/**
+	 * Writes a complete body, compressed when it is at least {@link #minimumSize} bytes long and a
+	 * coding was negotiated, with its Content-Length.
+	 * 
+	 * @param pathMatch the route being responded from or null if there is none.
+	 * @param request the request or null.
+	 * @param response the response, whose Content-Type is already set.
+	 * @param body the uncompressed body.
+	 * @throws IOException if the body cannot be written.
+	 */
+	public void writeBody(PathMatch pathMatch, HttpServletRequest request, HttpServletResponse response,
+			byte body[]) throws IOException {
+		writeBody(response, negotiate(pathMatch, request, response), body, 0, body.length);
+	}
+
+	/**
+	 * Writes a complete body with its Content-Length, compressed with the encoding when it is at least
+	 * {@link #minimumSize} bytes long.  The servlet output stream is closed afterwards.
+	 * 
+	 * @param response the response, whose Content-Type is already set.
+	 * @param encoding {@link #GZIP}, {@link #DEFLATE} or null.
+	 * @param body holds the uncompressed body.
+	 * @param offset the offset of the body in body.
+	 * @param length the length of the body.
+	 * @throws IOException if the body cannot be written.
+	 */
+	void writeBody(HttpServletResponse response, String encoding, byte body[], int offset, int length) throws IOException {
+		if(encoding != null && length >= minimumSize) {
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4 + 32);
+			CompressingOutputStream out = open(compressed, encoding);
+			try {
+				out.write(body, offset, length);
+				out.close();
+			} finally {
+				out.abandon();
+			}
+			response.setHeader("Content-Encoding", encoding);
+			body = compressed.toByteArray();
+			offset = 0;
+			length = body.length;
+		}
+		response.setContentLength(length);
+		OutputStream out = response.getOutputStream();
+		out.write(body, offset, length);
+		out.flush();
+		out.close();
+	}
+}
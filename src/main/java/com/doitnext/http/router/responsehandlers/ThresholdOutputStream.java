@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.responsehandlers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * <p>Writes a response body, buffering it in a pooled buffer until it either completes or outgrows
+ * the buffer.  A body that fits in the buffer is sent with an exact Content-Length when the stream is
+ * closed.  Once a body outgrows the buffer the buffered bytes are written to the servlet output stream
+ * without a Content-Length, so the container sends the body chunked, and the rest of the body is
+ * streamed through as it is written.</p>
+ * 
+ * <p>A body may also be compressed, see {@link ResponseCompressor}.  A buffered body is compressed
+ * on close if it is long enough and is then sent with the compressed Content-Length.  A body that outgrows
+ * the buffer is compressed as it is streamed.</p>
+ * 
+ * <p>Nothing reaches the client until the body is closed or outgrows the buffer, so a caller that
+ * fails before then can still {@link #discard()} the body and send an error instead.</p>
+ * 
+ * <p>This class is NOT thread safe.</p>
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class ThresholdOutputStream extends OutputStream {
+	final private HttpServletResponse response;
+	final private BufferPool pool;
+	final private ResponseCompressor compressor;
+	final private String encoding;
+	private byte buffer[];
+	private int count = 0;
+	private long written = 0;
+	private OutputStream out = null;
+	private boolean closed = false;
+
+	/**
+	 * @param response the response to write the body of.
+	 * @param pool the pool to take the buffer from.  Its buffer size is the largest body sent with a
+	 * Content-Length.
+	 */
+	public ThresholdOutputStream(HttpServletResponse response, BufferPool pool) {
+		this(response, pool, null, null);
+	}
+
+	/**
+	 * @param response the response to write the body of.
+	 * @param pool the pool to take the buffer from.  Its buffer size is the largest body sent with a
+	 * Content-Length.
+	 * @param compressor compresses the body or null.
+	 * @param encoding the content coding negotiated by the compressor or null to send the body
+	 * uncompressed.
+	 */
+	public ThresholdOutputStream(HttpServletResponse response, BufferPool pool, 
+			ResponseCompressor compressor, String encoding) {
+		this.response = response;
+		this.pool = pool;
+		this.compressor = compressor;
+		this.encoding = (compressor == null) ? null : encoding;
+		this.buffer = pool.acquire();
+	}
+
+	/**
+	 * @return <code>true</code> if the body outgrew the buffer and is being streamed.
+	 */
+	public boolean isStreaming() {
+		return out != null;
+	}
+
+	/**
+	 * @return the number of bytes written to this stream, before any compression.
+	 */
+	public long getBytesWritten() {
+		return written;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		written++;
+		if(out == null && count == buffer.length)
+			startStreaming();
+		if(out != null)
+			out.write(b);
+		else
+			buffer[count++] = (byte)b;
+	}
+
+	@Override
+	public void write(byte b[], int off, int len) throws IOException {
+		ensureOpen();
+		written += len;
+		if(out == null && count + len > buffer.length)
+			startStreaming();
+		if(out != null) {
+			out.write(b, off, len);
+		} else {
+			System.arraycopy(b, off, buffer, count, len);
+			count += len;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		// A buffered body is only flushed by close so that its length is known
+		if(out != null)
+			out.flush();
+	}
+
+	/**
+	 * Completes the body, setting the Content-Length if the body was buffered, and closes the
+	 * servlet output stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed)
+			return;
+		try {
+			if(out == null) {
+				if(compressor != null) {
+					compressor.writeBody(response, encoding, buffer, 0, count);
+					return;
+				}
+				response.setContentLength(count);
+				out = response.getOutputStream();
+				out.write(buffer, 0, count);
+			}
+			out.flush();
+			out.close();
+		} finally {
+			release();
+		}
+	}
+
+	/**
+	 * Abandons the body.  Whatever was buffered is dropped; a body that is already being streamed
+	 * is left incomplete.
+	 */
+	public void discard() {
+		if(out instanceof CompressingOutputStream)
+			((CompressingOutputStream)out).abandon();
+		release();
+	}
+
+	private void startStreaming() throws IOException {
+		if(encoding != null) {
+			response.setHeader("Content-Encoding", encoding);
+			out = compressor.open(response.getOutputStream(), encoding);
+		} else
+			out = response.getOutputStream();
+		out.write(buffer, 0, count);
+		count = 0;
+	}
+
+	private void release() {
+		if(!closed) {
+			closed = true;
+			pool.release(buffer);
+			buffer = null;
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if(closed)
+			throw new IOException("Stream closed");
+	}
+}
@@ -0,0 +1,34 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.typeconverters;
+
+/**
+ * Interface for converting an array of values into an array of another type in one call.
+ * Implementations for primitive component types fill the primitive array directly so that
+ * no element is boxed.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ * @param <T> the from type that this converter supports
+ */
+public interface ArrayConverter<T> {
+	/**
+	 * @param values the input values to be converted.
+	 * @return an array (such as an int[]) holding the converted values in the same order.
+	 * @throws Exception if any value cannot be converted.
+	 */
+	Object convertArray(T values[]) throws Exception;
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.typeconverters;
+
+/**
+ * Converts single character strings to char values without boxing them.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class CharConverter implements TypeConverter<String>, ArrayConverter<String> {
+
+	/**
+	 * @param value the value to convert.
+	 * @return the only character of the value.
+	 * @throws IndexOutOfBoundsException if the value is not exactly one character long.
+	 */
+	public char convertChar(String value) {
+		if(value.length() != 1)
+			throw new IndexOutOfBoundsException(String.format("'%s' not convertible to char", value));
+		return value.charAt(0);
+	}
+
+	@Override
+	public Object convert(String value) {
+		return convertChar(value);
+	}
+
+	@Override
+	public char[] convertArray(String values[]) {
+		char result[] = new char[values.length];
+		for(int x = 0; x < values.length; x++)
+			result[x] = convertChar(values[x]);
+		return result;
+	}
+}
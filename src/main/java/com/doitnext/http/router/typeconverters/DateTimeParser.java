@@ -0,0 +1,308 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.typeconverters;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * <p>Parses date and time strings.  ISO-8601 strings (<code>2013-06-01</code>,
+ * <code>2013-06-01T12:30</code>, <code>2013-06-01T12:30:15.250+02:00</code> and so on) are
+ * recognized by their shape and parsed directly.  Anything else is matched against the date, time
+ * and date time patterns of {@link DateFormat} for the locale, trying only the patterns that begin
+ * the same way (with a digit or not) as the string and without throwing an exception for each
+ * pattern that does not match.</p>
+ *
+ * <p>Strings without an offset or time zone are in the zone given to the constructor.  Strings
+ * without a date are on 1970-01-01 and strings without a time are at midnight, as they are for
+ * {@link DateFormat}.</p>
+ *
+ * <p>This class is Immutable and thread safe.</p>
+ *
+ * @author Steve Owens (steve@doitnext.com)
+ */
+public class DateTimeParser {
+	private static final int STYLES[] = {DateFormat.FULL, DateFormat.LONG, DateFormat.MEDIUM, DateFormat.SHORT};
+
+	final private ZoneId zone;
+	/**
+	 * The locale's formats in {@link DateFormat} order split by whether their text
+	 * starts with a digit.
+	 */
+	final private DateTimeFormatter numericFormats[];
+	final private DateTimeFormatter textFormats[];
+
+	/**
+	 * Parses using the default locale and the system default time zone.
+	 */
+	public DateTimeParser() {
+		this(Locale.getDefault(), ZoneId.systemDefault());
+	}
+
+	/**
+	 * @param locale the locale of the non ISO-8601 formats.
+	 * @param zone the zone of strings that have no offset or time zone.
+	 */
+	public DateTimeParser(Locale locale, ZoneId zone) {
+		this.zone = zone;
+		Set<String> dateTimePatterns = new LinkedHashSet<String>();
+		Set<String> datePatterns = new LinkedHashSet<String>();
+		Set<String> timePatterns = new LinkedHashSet<String>();
+		for(int dateStyle : STYLES) {
+			for(int timeStyle : STYLES)
+				dateTimePatterns.add(toPattern(DateFormat.getDateTimeInstance(dateStyle, timeStyle, locale)));
+		}
+		for(int style : STYLES) {
+			datePatterns.add(toPattern(DateFormat.getDateInstance(style, locale)));
+			timePatterns.add(toPattern(DateFormat.getTimeInstance(style, locale)));
+		}
+		List<DateTimeFormatter> numeric = new ArrayList<DateTimeFormatter>();
+		List<DateTimeFormatter> text = new ArrayList<DateTimeFormatter>();
+		for(String pattern : dateTimePatterns)
+			addFormat(createFormat(pattern, locale, null), numeric, text);
+		for(String pattern : datePatterns)
+			addFormat(createFormat(pattern, locale, ChronoField.NANO_OF_DAY), numeric, text);
+		for(String pattern : timePatterns)
+			addFormat(createFormat(pattern, locale, ChronoField.EPOCH_DAY), numeric, text);
+		numericFormats = numeric.toArray(new DateTimeFormatter[numeric.size()]);
+		textFormats = text.toArray(new DateTimeFormatter[text.size()]);
+	}
+
+	private static String toPattern(DateFormat format) {
+		return ((SimpleDateFormat)format).toPattern();
+	}
+
+	/**
+	 * Builds a case insensitive formatter for a {@link SimpleDateFormat} pattern.  Two digit years
+	 * are resolved to within 80 years before and 20 years after now like {@link SimpleDateFormat} does.
+	 *
+	 * @param defaulted a field missing from the pattern that is defaulted to 0 or null.
+	 */
+	private DateTimeFormatter createFormat(String pattern, Locale locale, ChronoField defaulted) {
+		DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder().parseCaseInsensitive();
+		int year = pattern.indexOf("yy");
+		if(year >= 0 && !pattern.startsWith("yyy", year)) {
+			builder.appendPattern(pattern.substring(0, year));
+			builder.appendValueReduced(ChronoField.YEAR_OF_ERA, 2, 2, LocalDate.now(zone).minusYears(80));
+			builder.appendPattern(pattern.substring(year + 2));
+		} else {
+			builder.appendPattern(pattern);
+		}
+		if(defaulted != null)
+			builder.parseDefaulting(defaulted, 0);
+		return builder.toFormatter(locale).withZone(zone);
+	}
+
+	private void addFormat(DateTimeFormatter format, List<DateTimeFormatter> numeric, List<DateTimeFormatter> text) {
+		String sample = format.format(ZonedDateTime.of(2013, 12, 25, 13, 45, 30, 0, zone));
+		if(!sample.isEmpty() && Character.isDigit(sample.charAt(0)))
+			numeric.add(format);
+		else
+			text.add(format);
+	}
+
+	/**
+	 * @param value the string to parse.
+	 * @return the date and time with the offset given in the string or else the offset of this
+	 * parser's zone at that date and time.
+	 * @throws ParseException if the string is not in a recognized format or is not a valid date.
+	 */
+	public OffsetDateTime parse(String value) throws ParseException {
+		String text = value.trim();
+		OffsetDateTime result = parseIso(text);
+		if(result != null)
+			return result;
+		DateTimeFormatter candidates[] = (!text.isEmpty() && Character.isDigit(text.charAt(0))) ?
+				numericFormats : textFormats;
+		for(DateTimeFormatter format : candidates) {
+			ParsePosition position = new ParsePosition(0);
+			if(format.parseUnresolved(text, position) == null || position.getIndex() != text.length())
+				continue;
+			try {
+				TemporalAccessor parsed = format.parse(text);
+				return ZonedDateTime.from(parsed).toOffsetDateTime();
+			} catch(DateTimeException e) {
+				throw parseException(value, 0, e);
+			}
+		}
+		throw new ParseException(String.format("Unable to parse '%s' as a date", value), 0);
+	}
+
+	/**
+	 * @param value the string to parse.
+	 * @return the date of the string.  ISO-8601 dates (<code>2013-06-01</code>) take the fast path,
+	 * anything else is parsed by {@link #parse(String)}.
+	 * @throws ParseException if the string is not in a recognized format or is not a valid date.
+	 */
+	public LocalDate parseLocalDate(String value) throws ParseException {
+		String text = value.trim();
+		if(text.length() == 10) {
+			int year = digits(text, 0, 4);
+			int month = digits(text, 5, 2);
+			int day = digits(text, 8, 2);
+			if(year >= 0 && month >= 0 && day >= 0 && text.charAt(4) == '-' && text.charAt(7) == '-') {
+				try {
+					return LocalDate.of(year, month, day);
+				} catch(DateTimeException e) {
+					throw parseException(value, 0, e);
+				}
+			}
+		}
+		return parse(value).toLocalDate();
+	}
+
+	/**
+	 * Parses the ISO-8601 extended formats <code>yyyy-MM-dd</code> and
+	 * <code>yyyy-MM-dd'T'HH:mm[:ss[.fraction]][Z|&#177;HH[[:]mm]]</code>.  A space may separate
+	 * the date and the time.
+	 *
+	 * @return the date and time or null if the text is not shaped like an ISO-8601 date.
+	 * @throws ParseException if the text is shaped like an ISO-8601 date but is not valid.
+	 */
+	OffsetDateTime parseIso(String text) throws ParseException {
+		int length = text.length();
+		if(length < 10 || text.charAt(4) != '-' || text.charAt(7) != '-')
+			return null;
+		int year = digits(text, 0, 4);
+		int month = digits(text, 5, 2);
+		int day = digits(text, 8, 2);
+		if(year < 0 || month < 0 || day < 0)
+			return null;
+		int hour = 0;
+		int minute = 0;
+		int second = 0;
+		int nano = 0;
+		ZoneOffset offset = null;
+		int pos = 10;
+		if(pos < length) {
+			char separator = text.charAt(pos);
+			if((separator != 'T' && separator != 't' && separator != ' ') || pos + 6 > length
+					|| text.charAt(pos + 3) != ':')
+				return null;
+			hour = digits(text, pos + 1, 2);
+			minute = digits(text, pos + 4, 2);
+			if(hour < 0 || minute < 0)
+				return null;
+			pos += 6;
+			if(pos < length && text.charAt(pos) == ':') {
+				second = digits(text, pos + 1, 2);
+				if(second < 0)
+					return null;
+				pos += 3;
+				if(pos < length && (text.charAt(pos) == '.' || text.charAt(pos) == ',')) {
+					int start = ++pos;
+					while(pos < length && pos - start < 9 && isDigit(text.charAt(pos))) {
+						nano = nano * 10 + (text.charAt(pos) - '0');
+						pos++;
+					}
+					if(pos == start)
+						return null;
+					for(int x = pos - start; x < 9; x++)
+						nano *= 10;
+				}
+			}
+			if(pos < length) {
+				offset = parseOffset(text, pos);
+				if(offset == null)
+					return null;
+			}
+		}
+		try {
+			LocalDateTime dateTime = LocalDateTime.of(year, month, day, hour, minute, second, nano);
+			if(offset == null)
+				offset = zone.getRules().getOffset(dateTime);
+			return OffsetDateTime.of(dateTime, offset);
+		} catch(DateTimeException e) {
+			throw parseException(text, 0, e);
+		}
+	}
+
+	/**
+	 * Parses the offset at the end of an ISO-8601 date time.
+	 *
+	 * @return the offset or null if the rest of the text is not an offset.
+	 */
+	private static ZoneOffset parseOffset(String text, int pos) throws ParseException {
+		int length = text.length();
+		char sign = text.charAt(pos);
+		if(sign == 'Z' || sign == 'z')
+			return (pos + 1 == length) ? ZoneOffset.UTC : null;
+		if(sign != '+' && sign != '-')
+			return null;
+		int hours = digits(text, pos + 1, 2);
+		int minutes = 0;
+		pos += 3;
+		if(pos < length && text.charAt(pos) == ':')
+			pos++;
+		if(pos < length) {
+			minutes = digits(text, pos, 2);
+			pos += 2;
+		}
+		if(hours < 0 || minutes < 0 || pos != length)
+			return null;
+		try {
+			return (sign == '-') ? ZoneOffset.ofHoursMinutes(-hours, -minutes)
+					: ZoneOffset.ofHoursMinutes(hours, minutes);
+		} catch(DateTimeException e) {
+			throw parseException(text, pos, e);
+		}
+	}
+
+	/**
+	 * @return the value of count decimal digits starting at start or -1 if there are not count
+	 * digits there.
+	 */
+	private static int digits(String text, int start, int count) {
+		if(start + count > text.length())
+			return -1;
+		int result = 0;
+		for(int x = start; x < start + count; x++) {
+			char c = text.charAt(x);
+			if(!isDigit(c))
+				return -1;
+			result = result * 10 + (c - '0');
+		}
+		return result;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static ParseException parseException(String value, int offset, DateTimeException cause) {
+		ParseException result = new ParseException(String.format("Unable to parse '%s' as a date", value), offset);
+		result.initCause(cause);
+		return result;
+	}
+}
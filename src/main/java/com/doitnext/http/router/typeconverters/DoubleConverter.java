@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.typeconverters;
+
+/**
+ * Converts strings to double values without boxing them.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class DoubleConverter implements TypeConverter<String>, ArrayConverter<String> {
+
+	/**
+	 * @param value the value to convert.
+	 * @return the value as a double.
+	 */
+	public double convertDouble(String value) {
+		return Double.parseDouble(value);
+	}
+
+	@Override
+	public Object convert(String value) {
+		return convertDouble(value);
+	}
+
+	@Override
+	public double[] convertArray(String values[]) {
+		double result[] = new double[values.length];
+		for(int x = 0; x < values.length; x++)
+			result[x] = convertDouble(values[x]);
+		return result;
+	}
+}
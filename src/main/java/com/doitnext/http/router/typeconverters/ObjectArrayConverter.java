@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.typeconverters;
+
+import java.lang.reflect.Array;
+
+/**
+ * Converts an array of values into an array of a reference type using the element converter
+ * for that type.  The array is created once and filled directly rather than element by element
+ * through {@link Array#set(Object, int, Object)}.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ * @param <T> the from type that this converter supports
+ */
+public class ObjectArrayConverter<T> implements ArrayConverter<T> {
+	final private Class<?> componentType;
+	final private TypeConverter<T> converter;
+
+	/**
+	 * @param componentType the (non primitive) component type of the result.
+	 * @param converter converts a single value to the component type.
+	 */
+	public ObjectArrayConverter(Class<?> componentType, TypeConverter<T> converter) {
+		if(componentType.isPrimitive())
+			throw new IllegalArgumentException(String.format("%s is a primitive type", componentType.getName()));
+		this.componentType = componentType;
+		this.converter = converter;
+	}
+
+	@Override
+	public Object[] convertArray(T values[]) throws Exception {
+		Object result[] = (Object[])Array.newInstance(componentType, values.length);
+		for(int x = 0; x < values.length; x++)
+			result[x] = converter.convert(values[x]);
+		return result;
+	}
+}
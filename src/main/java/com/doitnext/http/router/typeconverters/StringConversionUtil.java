@@ -15,8 +15,11 @@
  */
 package com.doitnext.http.router.typeconverters;
 
-import java.text.DateFormat;
 import java.text.ParseException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -32,106 +35,54 @@ import com.doitnext.http.router.exceptions.UnsupportedConversionException;
  */
 public class StringConversionUtil implements TypeConversionUtil<String> {
 
-	Map<Class<?>, TypeConverter<String>> converters = new HashMap<Class<?>,TypeConverter<String>>();
+	final private Map<Class<?>, TypeConverter<String>> converters = new HashMap<Class<?>,TypeConverter<String>>();
+	final private DateTimeParser dateTimeParser;
+
 	public StringConversionUtil() {
-		converters.put(int.class, new TypeConverter<String>(){
-			@Override
-			public Object convert(String value) {
-				return Integer.parseInt(value);
-			}
-		});
-		converters.put(long.class, new TypeConverter<String>(){
-			@Override
-			public Object convert(String value) {
-				return Long.parseLong(value);
-			}
-		});
-		converters.put(boolean.class, new TypeConverter<String>(){
-			@Override
-			public Object convert(String value) {
-				return Boolean.parseBoolean(value);
-			}
-		});
-		converters.put(byte.class, new TypeConverter<String>(){
-			@Override
-			public Object convert(String value) {
-				return Byte.parseByte(value);
-			}
-		});
+		this(new DateTimeParser());
+	}
 
-		converters.put(short.class, new TypeConverter<String>(){
-			@Override
-			public Object convert(String value) {
-				return Short.parseShort(value);
-			}
-		});
-		converters.put(float.class, new TypeConverter<String>(){
+	/**
+	 * @param dateTimeParser parses values converted to Date, Instant, OffsetDateTime and LocalDate.
+	 */
+	public StringConversionUtil(DateTimeParser dateTimeParser) {
+		this.dateTimeParser = dateTimeParser;
+		converters.put(int.class, new IntConverter());
+		converters.put(long.class, new LongConverter());
+		converters.put(boolean.class, new BooleanConverter());
+		converters.put(byte.class, new ByteConverter());
+		converters.put(short.class, new ShortConverter());
+		converters.put(float.class, new FloatConverter());
+		converters.put(double.class, new DoubleConverter());
+		converters.put(char.class, new CharConverter());
+		converters.put(String.class, new TypeConverter<String>(){
 			@Override
-			public Object convert(String value) {
-				return Float.parseFloat(value);
+			public Object convert(String value) throws ParseException {
+				return value;
 			}
 		});
-		converters.put(double.class, new TypeConverter<String>(){
+		converters.put(Date.class, new TypeConverter<String>(){
 			@Override
-			public Object convert(String value) {
-				return Double.parseDouble(value);
+			public Object convert(String value) throws ParseException {
+				return Date.from(dateTimeParser.parse(value).toInstant());
 			}
 		});
-		converters.put(char.class, new TypeConverter<String>(){
+		converters.put(Instant.class, new TypeConverter<String>(){
 			@Override
-			public Object convert(String value) {
-				if(value.length() != 1)
-					throw new IndexOutOfBoundsException(String.format("'%s' not convertible to char", value));
-				return value.charAt(0);
+			public Object convert(String value) throws ParseException {
+				return dateTimeParser.parse(value).toInstant();
 			}
 		});
-		converters.put(String.class, new TypeConverter<String>(){
+		converters.put(OffsetDateTime.class, new TypeConverter<String>(){
 			@Override
 			public Object convert(String value) throws ParseException {
-				return value;
+				return dateTimeParser.parse(value);
 			}
 		});
-		converters.put(Date.class, new TypeConverter<String>(){
-			DateFormat formats[] = {
-					DateFormat.getDateTimeInstance(DateFormat.FULL, DateFormat.FULL),
-					DateFormat.getDateTimeInstance(DateFormat.FULL, DateFormat.LONG),
-					DateFormat.getDateTimeInstance(DateFormat.FULL, DateFormat.MEDIUM),
-					DateFormat.getDateTimeInstance(DateFormat.FULL, DateFormat.SHORT),
-					
-					DateFormat.getDateTimeInstance(DateFormat.LONG, DateFormat.FULL),
-					DateFormat.getDateTimeInstance(DateFormat.LONG, DateFormat.LONG),
-					DateFormat.getDateTimeInstance(DateFormat.LONG, DateFormat.MEDIUM),
-					DateFormat.getDateTimeInstance(DateFormat.LONG, DateFormat.SHORT),
-					
-					DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.FULL),
-					DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.LONG),
-					DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.MEDIUM),
-					DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT),
-
-					DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.FULL),
-					DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.LONG),
-					DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.MEDIUM),
-					DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT),
-
-					DateFormat.getDateInstance(DateFormat.FULL),
-					DateFormat.getDateInstance(DateFormat.LONG),
-					DateFormat.getDateInstance(DateFormat.MEDIUM),
-					DateFormat.getDateInstance(DateFormat.SHORT),
-					
-					DateFormat.getTimeInstance(DateFormat.FULL),
-					DateFormat.getTimeInstance(DateFormat.LONG),
-					DateFormat.getTimeInstance(DateFormat.MEDIUM),
-					DateFormat.getTimeInstance(DateFormat.SHORT)
-				};
+		converters.put(LocalDate.class, new TypeConverter<String>(){
 			@Override
 			public Object convert(String value) throws ParseException {
-				for(int x = 0; x < formats.length; x++) {
-					try {
-						return formats[x].parse(value);
-					} 
-					catch(ParseException pe){}
-				}
-				throw new ParseException(String.format("Unable to parse '%s' as Date", value), 0);
+				return dateTimeParser.parseLocalDate(value);
 			}
 		});
 
@@ -141,16 +92,26 @@ public class StringConversionUtil implements TypeConversionUtil<String> {
 	 * @see com.doitnext.http.router.typeconverters.TypeConversionUtil#convert(java.lang.String, java.lang.Class)
 	 */
 	public Object convert(String value, Class<?> classz) throws TypeConversionException {
-		if(converters.containsKey(classz)) {
-			try {
-				return converters.get(classz).convert(value);
-			} catch (Exception e) {
-				throw new TypeConversionException(String.format("Unable to convert value '%s' into %s",
-						value, classz.getName()), e);
-			}
-		} else {
+		TypeConverter<String> converter = converters.get(classz);
+		if(converter == null)
 			throw new UnsupportedConversionException(String.class, classz);
-		}
+		return applyConverter(converter, value, classz);
+	}
+
+	/**
+	 * Converts an array of strings into an array of the given type.  Arrays of primitives are
+	 * filled directly without boxing each element.
+	 * 
+	 * @param values the values to convert.
+	 * @param arrayClass the array type to convert to, e.g. int[].class.
+	 * @return an instance of arrayClass holding the converted values.
+	 * @throws TypeConversionException if any value cannot be converted.
+	 */
+	public Object convertArray(String values[], Class<?> arrayClass) throws TypeConversionException {
+		ArrayConverter<String> converter = getArrayConverter(arrayClass);
+		if(converter == null)
+			throw new UnsupportedConversionException(String.class, arrayClass);
+		return applyArrayConverter(converter, values, arrayClass);
 	}
 
 	@Override
@@ -158,4 +119,94 @@ public class StringConversionUtil implements TypeConversionUtil<String> {
 		return converters.containsKey(classz);
 	}
 
+	/**
+	 * Looks up the converter for a type so that callers converting many values to the same
+	 * type (such as a route's binding plan) can resolve it once.  Converters for primitive
+	 * types also have primitive returning methods, e.g. {@link IntConverter#convertInt(String)}.
+	 * 
+	 * @param classz the type to convert to.
+	 * @return the converter for the type or null if the type is not supported.
+	 */
+	public TypeConverter<String> getConverter(Class<?> classz) {
+		return converters.get(classz);
+	}
+
+	/**
+	 * @param arrayClass the array type to convert to, e.g. int[].class.
+	 * @return a converter that fills arrays of that type or null if the array's component type
+	 * is not supported.
+	 */
+	@SuppressWarnings("unchecked")
+	public ArrayConverter<String> getArrayConverter(Class<?> arrayClass) {
+		Class<?> componentType = arrayClass.getComponentType();
+		if(componentType == null)
+			return null;
+		TypeConverter<String> converter = converters.get(componentType);
+		if(converter == null)
+			return null;
+		if(converter instanceof ArrayConverter)
+			return (ArrayConverter<String>)converter;
+		return new ObjectArrayConverter<String>(componentType, converter);
+	}
+
+	/**
+	 * Resolves the converter for a type from {@link #getConverter(Class)}.  A subclass resolves
+	 * nothing, so that values are converted by its {@link #convert(String, Class)}, unless it 
+	 * overrides this method.
+	 */
+	@Override
+	public TypeConverter<String> resolveConverter(Class<?> classz) {
+		return (getClass() == StringConversionUtil.class) ? getConverter(classz) : null;
+	}
+
+	/**
+	 * Resolves the array converter for a type from {@link #getArrayConverter(Class)}.  A subclass
+	 * resolves nothing, so that values are converted by its {@link #convert(String, Class)}, unless
+	 * it overrides this method.
+	 */
+	@Override
+	public ArrayConverter<String> resolveArrayConverter(Class<?> arrayClass) {
+		return (getClass() == StringConversionUtil.class) ? getArrayConverter(arrayClass) : null;
+	}
+
+	/**
+	 * Applies a converter obtained from {@link #getConverter(Class)}, reporting failures the same
+	 * way as {@link #convert(String, Class)}.
+	 * 
+	 * @param converter the converter.
+	 * @param value the value to convert.
+	 * @param classz the type the converter converts to.
+	 * @return the converted value.
+	 * @throws TypeConversionException if the value cannot be converted.
+	 */
+	public static Object applyConverter(TypeConverter<String> converter, String value, Class<?> classz) 
+			throws TypeConversionException {
+		try {
+			return converter.convert(value);
+		} catch (Exception e) {
+			throw new TypeConversionException(String.format("Unable to convert value '%s' into %s",
+					value, classz.getName()), e);
+		}
+	}
+
+	/**
+	 * Applies a converter obtained from {@link #getArrayConverter(Class)}, reporting failures the
+	 * same way as {@link #convertArray(String[], Class)}.
+	 * 
+	 * @param converter the converter.
+	 * @param values the values to convert.
+	 * @param arrayClass the array type the converter converts to.
+	 * @return the converted values.
+	 * @throws TypeConversionException if any value cannot be converted.
+	 */
+	public static Object applyArrayConverter(ArrayConverter<String> converter, String values[], 
+			Class<?> arrayClass) throws TypeConversionException {
+		try {
+			return converter.convertArray(values);
+		} catch (Exception e) {
+			throw new TypeConversionException(String.format("Unable to convert values %s into %s",
+					Arrays.toString(values), arrayClass.getComponentType().getName()), e);
+		}
+	}
+
 }
@@ -50,4 +50,29 @@ public interface TypeConversionUtil<T> {
 	 * @return true if the implementation supports conversions to this type
 	 */
 	public boolean supports(Class<?> classz);
+
+	/**
+	 * Resolves the conversion of values to a type once, for callers that convert many values to
+	 * the same type such as a route's binding plan.  The converter returned must convert exactly
+	 * as {@link #convert(Object, Class)} would.
+	 * 
+	 * @param classz the type to convert to.
+	 * @return a converter to classz or null (the default) if values must be converted with 
+	 * {@link #convert(Object, Class)}.
+	 */
+	public default TypeConverter<T> resolveConverter(Class<?> classz) {
+		return null;
+	}
+
+	/**
+	 * Resolves the conversion of values to an array type once, as {@link #resolveConverter(Class)}
+	 * does for single values.
+	 * 
+	 * @param arrayClass the array type to convert to, e.g. int[].class.
+	 * @return a converter filling arrays of arrayClass or null (the default) if each value must
+	 * be converted to the component type with {@link #convert(Object, Class)}.
+	 */
+	public default ArrayConverter<T> resolveArrayConverter(Class<?> arrayClass) {
+		return null;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.doitnext.http.router.annotations.RestMethod;
+import com.doitnext.http.router.annotations.enums.HttpMethod;
+import com.doitnext.http.router.exampleclasses.TestCollectionImpl;
+
+/**
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class CoalescingInvokerTest {
+	private ExecutorService executor = Executors.newFixedThreadPool(8);
+
+	/**
+	 * Answers with the number of the invocation once released.
+	 */
+	private static class BlockingInvoker implements MethodInvoker {
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger calls = new AtomicInteger();
+		volatile int status = 200;
+
+		@Override
+		public InvokeResult invokeMethod(HttpMethod method, PathMatch pm,
+				HttpServletRequest req, HttpServletResponse resp) throws ServletException {
+			int call = calls.incrementAndGet();
+			entered.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new ServletException(e);
+			}
+			resp.setStatus(status);
+			pm.getRoute().getSuccessHandler().handleResponse(pm, req, resp, "call-" + call);
+			return InvokeResult.METHOD_SUCCESS;
+		}
+	}
+
+	/**
+	 * A resource whose method opts in to coalescing.
+	 */
+	public static class CoalescedTeams {
+		@RestMethod(method = HttpMethod.GET, template = "/teams", coalesce = true)
+		public String getTeams() {
+			return "teams";
+		}
+	}
+
+	@After
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testConcurrentRequestsShareOneInvocation() throws Exception {
+		BlockingInvoker delegate = new BlockingInvoker();
+		CoalescingInvoker invoker = new CoalescingInvoker(delegate);
+		Assert.assertSame(delegate, invoker.getInvoker());
+		PathMatch pm = pathMatch();
+		List<Future<MockHttpServletResponse>> responses = new ArrayList<Future<MockHttpServletResponse>>();
+		responses.add(executor.submit(get(invoker, pm, "q=1")));
+		delegate.entered.await();
+		for(int x = 0; x < 5; x++)
+			responses.add(executor.submit(get(invoker, pm, "q=1")));
+		while(invoker.getWaiting() < 5)
+			Thread.sleep(1);
+		delegate.release.countDown();
+		for(Future<MockHttpServletResponse> response : responses) {
+			Assert.assertEquals("\"call-1\"", response.get().getContentAsString());
+			Assert.assertEquals("application/json;charset=UTF-8", response.get().getContentType());
+		}
+		Assert.assertEquals(1, delegate.calls.get());
+		Assert.assertEquals(1, invoker.getInvocations());
+		Assert.assertEquals(5, invoker.getCoalescedRequests());
+		Assert.assertEquals(5.0 / 6, invoker.getCoalescingRatio(), 0.0001);
+		Assert.assertEquals(0, invoker.getWaiting());
+
+		// Once the invocation is done the next request invokes the route again
+		Assert.assertEquals("\"call-2\"", get(invoker, pm, "q=1").call().getContentAsString());
+		// Different queries are not coalesced
+		Assert.assertEquals("\"call-3\"", get(invoker, pm, "q=2").call().getContentAsString());
+	}
+
+	@Test
+	public void testFailedResponsesAreNotShared() throws Exception {
+		BlockingInvoker delegate = new BlockingInvoker();
+		delegate.status = 503;
+		CoalescingInvoker invoker = new CoalescingInvoker(delegate);
+		PathMatch pm = pathMatch();
+		Future<MockHttpServletResponse> first = executor.submit(get(invoker, pm, null));
+		delegate.entered.await();
+		Future<MockHttpServletResponse> second = executor.submit(get(invoker, pm, null));
+		while(invoker.getWaiting() < 1)
+			Thread.sleep(1);
+		delegate.release.countDown();
+		Assert.assertEquals(503, first.get().getStatus());
+		Assert.assertEquals("\"call-1\"", first.get().getContentAsString());
+		Assert.assertEquals("\"call-2\"", second.get().getContentAsString());
+		Assert.assertEquals(2, invoker.getInvocations());
+		Assert.assertEquals(0, invoker.getCoalescedRequests());
+		Assert.assertEquals(0, invoker.getCoalescingRatio(), 0);
+	}
+
+	@Test
+	public void testOtherMethodsAreNotCoalesced() throws Exception {
+		BlockingInvoker delegate = new BlockingInvoker();
+		delegate.release.countDown();
+		CoalescingInvoker invoker = new CoalescingInvoker(delegate);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		invoker.invokeMethod(HttpMethod.POST, pathMatch(), new MockHttpServletRequest("POST", "/teams"), response);
+		Assert.assertEquals("\"call-1\"", response.getContentAsString());
+		Assert.assertEquals(0, invoker.getInvocations());
+	}
+
+	@Test
+	public void testRoutesNotOptedInAreNotCoalesced() throws Exception {
+		BlockingInvoker delegate = new BlockingInvoker();
+		CoalescingInvoker invoker = new CoalescingInvoker(delegate);
+		Method implMethod = TestCollectionImpl.class.getMethod("getTeams", String.class, String.class, String[].class);
+		PathMatch pm = pathMatch(new TestCollectionImpl(), implMethod);
+		Future<MockHttpServletResponse> first = executor.submit(get(invoker, pm, null));
+		delegate.entered.await();
+		Future<MockHttpServletResponse> second = executor.submit(get(invoker, pm, null));
+		while(delegate.calls.get() < 2)
+			Thread.sleep(1);
+		delegate.release.countDown();
+		Assert.assertNotEquals(first.get().getContentAsString(), second.get().getContentAsString());
+		Assert.assertEquals(0, invoker.getInvocations());
+		Assert.assertEquals(0, invoker.getWaiting());
+	}
+
+	@Test
+	public void testDifferentCredentialsAreNotCoalesced() throws Exception {
+		BlockingInvoker delegate = new BlockingInvoker();
+		CoalescingInvoker invoker = new CoalescingInvoker(delegate);
+		PathMatch pm = pathMatch();
+		Future<MockHttpServletResponse> first = executor.submit(get(invoker, pm, null, "Basic YTph", null));
+		delegate.entered.await();
+		Future<MockHttpServletResponse> second = executor.submit(get(invoker, pm, null, "Basic Yjpi", null));
+		Future<MockHttpServletResponse> third = executor.submit(get(invoker, pm, null, "Basic YTph", "session=b"));
+		while(delegate.calls.get() < 3)
+			Thread.sleep(1);
+		delegate.release.countDown();
+		first.get();
+		second.get();
+		third.get();
+		Assert.assertEquals(3, invoker.getInvocations());
+		Assert.assertEquals(0, invoker.getCoalescedRequests());
+	}
+
+	@Test
+	public void testWaitingRequestsInvokeAfterTimeout() throws Exception {
+		BlockingInvoker delegate = new BlockingInvoker();
+		CoalescingInvoker invoker = new CoalescingInvoker(delegate);
+		Assert.assertEquals(CoalescingInvoker.DEFAULT_WAIT_TIMEOUT, invoker.getWaitTimeout());
+		invoker.setWaitTimeout(10);
+		PathMatch pm = pathMatch();
+		Future<MockHttpServletResponse> first = executor.submit(get(invoker, pm, null));
+		delegate.entered.await();
+		Future<MockHttpServletResponse> second = executor.submit(get(invoker, pm, null));
+		while(delegate.calls.get() < 2)
+			Thread.sleep(1);
+		Assert.assertEquals(1, invoker.getWaitTimeouts());
+		Assert.assertEquals(0, invoker.getWaiting());
+		delegate.release.countDown();
+		Assert.assertEquals("\"call-1\"", first.get().getContentAsString());
+		Assert.assertEquals("\"call-2\"", second.get().getContentAsString());
+		Assert.assertEquals(0, invoker.getCoalescedRequests());
+	}
+
+	private static Callable<MockHttpServletResponse> get(final CoalescingInvoker invoker, final PathMatch pm, 
+			final String queryString) {
+		return get(invoker, pm, queryString, null, null);
+	}
+
+	private static Callable<MockHttpServletResponse> get(final CoalescingInvoker invoker, final PathMatch pm, 
+			final String queryString, final String authorization, final String cookie) {
+		return new Callable<MockHttpServletResponse>() {
+			@Override
+			public MockHttpServletResponse call() throws Exception {
+				MockHttpServletRequest request = new MockHttpServletRequest("GET", "/teams");
+				request.setPathInfo("/teams");
+				request.setQueryString(queryString);
+				if(authorization != null)
+					request.addHeader("Authorization", authorization);
+				if(cookie != null)
+					request.addHeader("Cookie", cookie);
+				MockHttpServletResponse response = new MockHttpServletResponse();
+				invoker.invokeMethod(HttpMethod.GET, pm, request, response);
+				return response;
+			}
+		};
+	}
+
+	private static PathMatch pathMatch() throws Exception {
+		return pathMatch(new CoalescedTeams(), CoalescedTeams.class.getMethod("getTeams"));
+	}
+
+	private static PathMatch pathMatch(Object impl, Method implMethod) throws Exception {
+		return TestRoutes.pathMatch("/teams", impl, implMethod, new DefaultInvoker());
+	}
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.doitnext.http.router.annotations.enums.HttpMethod;
+import com.doitnext.http.router.exampleclasses.TestCollectionImpl;
+import com.doitnext.http.router.responsehandlers.DefaultErrorHandler;
+import com.doitnext.http.router.responsehandlers.DefaultSuccessHandler;
+import com.doitnext.pathutils.PathTemplate;
+import com.doitnext.pathutils.PathTemplateParser;
+
+public class ContentNegotiatorTest {
+	/**
+	 * Route declarations: return format, return type, request format, request type.
+	 */
+	private static final String declarations[][] = {
+		{"application/json", null, null, null},              // 0
+		{"application/json", "T", null, null},               // 1
+		{"application/xml", "T", null, null},                // 2
+		{"application/json", null, "application/json", null},// 3
+		{"application/json", null, "application/json", "T"},// 4
+		{"application/json", null, "*/*", null},             // 5
+		{"*/*", "*/*", "*/*", "*/*"},                        // 6
+	};
+	private RouteIndex index;
+	private ContentNegotiator negotiator;
+	private MediaRanges ranges = new MediaRanges();
+
+	@Before
+	public void init() throws Exception {
+		PathTemplate pt = new PathTemplateParser("/", "?").parse("/teams");
+		Method implMethod = TestCollectionImpl.class.getMethod("getTeam", String.class,
+				String.class, String.class);
+		List<Route> routes = new ArrayList<Route>();
+		for(String declaration[] : declarations) {
+			routes.add(new Route(HttpMethod.POST, declaration[3], declaration[1], declaration[2], declaration[0],
+					pt, TestCollectionImpl.class, implMethod, new DefaultInvoker(), new TestCollectionImpl(),
+					new DefaultSuccessHandler(), new DefaultErrorHandler(), false));
+		}
+		index = new RouteIndex(routes);
+		negotiator = new ContentNegotiator(index);
+	}
+
+	@Test
+	public void testFilterAcceptableAgreesWithMediaRanges() {
+		String headers[] = {"application/json", "application/json; model=T", "application/xml",
+				"*/*", "*/*; model=T", "text/plain", "", "application/xml;q=0, application/json"};
+		for(String header : headers) {
+			ranges.parseAccept(header);
+			BitSet expected = new BitSet();
+			for(int ordinal = 0; ordinal < index.size(); ordinal++) {
+				Route route = index.getRoute(ordinal);
+				for(int x = 0; x < ranges.size(); x++) {
+					if(route.isWildcardReturn() || ranges.acceptMatches(x, route))
+						expected.set(ordinal);
+				}
+			}
+			BitSet actual = all();
+			negotiator.filterAcceptable(actual, ranges);
+			Assert.assertTrue(header, expected.equals(actual) || isSubsetMinusOne(actual, expected));
+		}
+	}
+
+	@Test
+	public void testTypedRoutesDroppedForUntypedRange() {
+		ranges.parseAccept("*/*, application/json");
+		BitSet candidates = all();
+		negotiator.filterAcceptable(candidates, ranges);
+		Assert.assertFalse(candidates.get(1));
+		Assert.assertTrue(candidates.get(2));
+	}
+
+	@Test
+	public void testFilterConsumable() {
+		BitSet candidates = all();
+		negotiator.filterConsumable(candidates, ranges.parseContentType(null));
+		Assert.assertEquals(bits(0, 1, 2, 6), candidates);
+
+		candidates = all();
+		negotiator.filterConsumable(candidates, ranges.parseContentType("application/json"));
+		Assert.assertEquals(bits(3, 5, 6), candidates);
+
+		candidates = all();
+		negotiator.filterConsumable(candidates, ranges.parseContentType("application/json; model=T"));
+		Assert.assertEquals(bits(4, 6), candidates);
+
+		candidates = all();
+		negotiator.filterConsumable(candidates, ranges.parseContentType("text/plain"));
+		Assert.assertEquals(bits(5, 6), candidates);
+	}
+
+	@Test
+	public void testSelect() {
+		Assert.assertEquals(-1, negotiator.select(new BitSet()));
+		Assert.assertEquals(3, negotiator.select(bits(3)));
+		Assert.assertEquals(1, negotiator.select(bits(0, 1, 2)));
+		Assert.assertEquals(4, negotiator.select(bits(0, 3, 4, 5)));
+		Assert.assertEquals(1, negotiator.select(bits(4, 1)));
+		Assert.assertEquals(6, negotiator.select(bits(0, 6)));
+	}
+
+	@Test
+	public void testSelectByAccept() throws Exception {
+		PathTemplate pt = new PathTemplateParser("/", "?").parse("/teams");
+		Method implMethod = TestCollectionImpl.class.getMethod("getTeams", String.class, String.class, String[].class);
+		String formats[] = {"application/cbor", "application/json", "application/x-jackson-smile"};
+		List<Route> routes = new ArrayList<Route>();
+		for(String format : formats) {
+			routes.add(new Route(HttpMethod.GET, null, null, null, format,
+					pt, TestCollectionImpl.class, implMethod, new DefaultInvoker(), new TestCollectionImpl(),
+					new DefaultSuccessHandler(), new DefaultErrorHandler(), false));
+		}
+		RouteIndex formatIndex = new RouteIndex(routes);
+		ContentNegotiator formatNegotiator = new ContentNegotiator(formatIndex);
+		String cases[][] = {
+			{"*/*", "application/json"},
+			{"application/cbor", "application/cbor"},
+			{"application/cbor, application/json", "application/json"},
+			{"application/cbor, application/json;q=0.5", "application/cbor"},
+			{"*/*;q=0.1, application/x-jackson-smile", "application/x-jackson-smile"},
+			{"*/*, application/x-jackson-smile", "application/x-jackson-smile"},
+			{"application/json;q=0.2, application/cbor;q=0.3", "application/cbor"},
+		};
+		for(String testCase[] : cases) {
+			ranges.parseAccept(testCase[0]);
+			BitSet candidates = new BitSet();
+			candidates.set(0, formatIndex.size());
+			formatNegotiator.filterAcceptable(candidates, ranges);
+			int selected = formatNegotiator.select(candidates, ranges);
+			Assert.assertEquals(testCase[0], testCase[1], formatIndex.getRoute(selected).getReturnFormat());
+		}
+		Assert.assertEquals(-1, formatNegotiator.select(new BitSet(), ranges));
+	}
+
+	private BitSet all() {
+		BitSet result = new BitSet();
+		result.set(0, index.size());
+		return result;
+	}
+
+	private static BitSet bits(int... ordinals) {
+		BitSet result = new BitSet();
+		for(int ordinal : ordinals)
+			result.set(ordinal);
+		return result;
+	}
+
+	/**
+	 * The untyped range rule may drop one typed route per untyped range.
+	 */
+	private boolean isSubsetMinusOne(BitSet actual, BitSet expected) {
+		BitSet missing = (BitSet)expected.clone();
+		missing.andNot(actual);
+		BitSet extra = (BitSet)actual.clone();
+		extra.andNot(expected);
+		return extra.isEmpty() && missing.cardinality() <= ranges.size();
+	}
+}
@@ -18,6 +18,7 @@ package com.doitnext.http.router;
 
 import static org.mockito.Mockito.*;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.SortedSet;
@@ -28,7 +29,9 @@ import org.junit.Test;
 
 import org.springframework.context.ApplicationContext;
 
+import com.doitnext.http.router.codecs.CodecRegistry;
 import com.doitnext.http.router.exampleclasses.TestCollectionImpl;
+import com.doitnext.http.router.formatclasses.ScoresCollection;
 import com.doitnext.http.router.responsehandlers.ResponseHandler;
 
 public class DefaultEndpointResolverTest {
@@ -69,4 +72,41 @@ public class DefaultEndpointResolverTest {
 		Assert.assertNotNull(routes);
 		Assert.assertFalse(routes.isEmpty());
 	}
+
+	@Test
+	public void testAlternateFormatHandlers() {
+		DefaultEndpointResolver resolver = new DefaultEndpointResolver();
+		ApplicationContext applicationContext = mock(ApplicationContext.class);
+		resolver.setApplicationContext(applicationContext);
+		when(applicationContext.getBean("scoresCollection", ScoresCollection.class)).thenReturn(new ScoresCollection());
+
+		// Handlers set as in a Spring configuration, which know nothing of the binary formats
+		ResponseHandler errorHandlerJson = mock(ResponseHandler.class);
+		ResponseHandler successHandlerJson = mock(ResponseHandler.class);
+		Map<MethodReturnKey, ResponseHandler> errorHandlers = new HashMap<MethodReturnKey, ResponseHandler>();
+		Map<MethodReturnKey, ResponseHandler> successHandlers = new HashMap<MethodReturnKey, ResponseHandler>();
+		errorHandlers.put(new MethodReturnKey("", "application/json"), errorHandlerJson);
+		successHandlers.put(new MethodReturnKey("", "application/json"), successHandlerJson);
+		successHandlers.put(new MethodReturnKey("score", "application/json"), successHandlerJson);
+		resolver.setErrorHandlers(errorHandlers);
+		resolver.setSuccessHandlers(successHandlers);
+		resolver.setMethodInvoker(mock(MethodInvoker.class));
+
+		SortedSet<Route> routes = resolver.resolveEndpoints("/gigi", "com.doitnext.http.router.formatclasses");
+		int binaryRoutes = 0;
+		for(Route route : routes) {
+			if(route.getReturnFormat().equals("application/json")) {
+				Assert.assertSame(successHandlerJson, route.getSuccessHandler());
+			} else {
+				Assert.assertTrue(route.toString(), route.getReturnFormat().equals(CodecRegistry.SMILE) 
+						|| route.getReturnFormat().equals(CodecRegistry.CBOR));
+				Assert.assertEquals(Arrays.asList(route.getReturnFormat()), route.getSuccessHandler().getResponseFormats());
+				Assert.assertEquals(Arrays.asList(route.getReturnFormat()), route.getErrorHandler().getResponseFormats());
+				binaryRoutes++;
+			}
+		}
+		// Both methods, including the one returning a model, in both binary formats
+		Assert.assertEquals(4, binaryRoutes);
+		Assert.assertEquals(6, routes.size());
+	}
 }
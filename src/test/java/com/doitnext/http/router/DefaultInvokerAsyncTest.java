@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.doitnext.http.router.MethodInvoker.InvokeResult;
+import com.doitnext.http.router.annotations.ConcurrencyLimit;
+import com.doitnext.http.router.annotations.RestMethod;
+import com.doitnext.http.router.annotations.enums.HttpMethod;
+import com.doitnext.http.router.exampleclasses.TestTeamPojo;
+import com.doitnext.http.router.limits.ConcurrencyLimiter;
+import com.doitnext.http.router.limits.ConcurrencyLimits;
+import com.doitnext.http.router.limits.ConcurrencyLimits.Permit;
+import com.doitnext.http.router.responsecache.CapturingResponse;
+
+/**
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class DefaultInvokerAsyncTest {
+
+	public static class AsyncCollection {
+		CompletableFuture<TestTeamPojo> pending = new CompletableFuture<TestTeamPojo>();
+		// Never run
+		FutureTask<TestTeamPojo> slow = new FutureTask<TestTeamPojo>(new Runnable() {
+			@Override
+			public void run() {
+			}
+		}, null);
+
+		@RestMethod(method = HttpMethod.GET, template = "")
+		@ConcurrencyLimit(1)
+		public CompletionStage<TestTeamPojo> getTeam() {
+			return pending;
+		}
+
+		@RestMethod(method = HttpMethod.GET, template = "", asyncTimeout = 1)
+		public Future<TestTeamPojo> getSlowTeam() {
+			return slow;
+		}
+
+		@RestMethod(method = HttpMethod.GET, template = "")
+		public CompletableFuture<List<String>> getNames() {
+			return null;
+		}
+	}
+
+	private DefaultInvoker invoker = new DefaultInvoker();
+	private AsyncCollection collection = new AsyncCollection();
+	private HttpServletRequest request = mock(HttpServletRequest.class);
+	private AsyncContext asyncContext = mock(AsyncContext.class);
+	private MockHttpServletResponse response = new MockHttpServletResponse();
+
+	@Before
+	public void init() {
+		when(request.isAsyncSupported()).thenReturn(true);
+		when(request.startAsync(request, response)).thenReturn(asyncContext);
+	}
+
+	@Test
+	public void testValueType() throws Exception {
+		Assert.assertEquals(TestTeamPojo.class, DefaultInvoker.valueType(AsyncCollection.class.getMethod("getTeam")));
+		Assert.assertEquals(TestTeamPojo.class, DefaultInvoker.valueType(AsyncCollection.class.getMethod("getSlowTeam")));
+		Assert.assertEquals(Object.class, DefaultInvoker.valueType(AsyncCollection.class.getMethod("getNames")));
+		Assert.assertEquals(String.class, DefaultInvoker.valueType(Object.class.getMethod("toString")));
+	}
+
+	@Test
+	public void testCompletesAsynchronously() throws Exception {
+		PathMatch pm = pathMatch("getTeam");
+		Assert.assertEquals(InvokeResult.METHOD_SUCCESS, invoker.invokeMethod(HttpMethod.GET, pm, request, response));
+		verify(asyncContext).setTimeout(DefaultInvoker.DEFAULT_ASYNC_TIMEOUT);
+		Assert.assertEquals(0, response.getContentAsByteArray().length);
+		verify(asyncContext, never()).complete();
+
+		collection.pending.complete(new TestTeamPojo(TestTeamPojo.Type.SWIM, "Sharks"));
+		Assert.assertTrue(response.getContentAsString().contains("Sharks"));
+		verify(asyncContext).complete();
+
+		// A timeout after completion does not touch the response
+		timeOut();
+		Assert.assertEquals(200, response.getStatus());
+	}
+
+	@Test
+	public void testPermitReleasedOnCompletion() throws Exception {
+		PathMatch pm = pathMatch("getTeam");
+		ConcurrencyLimits limits = new ConcurrencyLimits();
+		Permit permit = limits.tryAcquire(pm.getRoute());
+		ConcurrencyLimiter limiter = limits.getLimiters().get(0);
+		when(request.getAttribute(Permit.ATTRIBUTE)).thenReturn(permit);
+		invoker.invokeMethod(HttpMethod.GET, pm, request, response);
+		verify(request).removeAttribute(Permit.ATTRIBUTE);
+		// The permit is held past the return of the invoker
+		Assert.assertEquals(1, limiter.getInFlight());
+
+		collection.pending.complete(new TestTeamPojo(TestTeamPojo.Type.SWIM, "Sharks"));
+		ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+		verify(asyncContext).addListener(listener.capture());
+		listener.getValue().onComplete(new AsyncEvent(asyncContext));
+		Assert.assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	public void testCompletesExceptionally() throws Exception {
+		PathMatch pm = pathMatch("getTeam");
+		invoker.invokeMethod(HttpMethod.GET, pm, request, response);
+		collection.pending.completeExceptionally(new IllegalStateException("No sharks"));
+		Assert.assertEquals(500, response.getStatus());
+		Assert.assertTrue(response.getContentAsString().contains("No sharks"));
+		verify(asyncContext).complete();
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		invoker.setAsyncTimeout(5000);
+		Assert.assertEquals(5000, invoker.getAsyncTimeout());
+		PathMatch pm = pathMatch("getTeam");
+		invoker.invokeMethod(HttpMethod.GET, pm, request, response);
+		verify(asyncContext).setTimeout(5000);
+		timeOut();
+		Assert.assertEquals(503, response.getStatus());
+		Assert.assertTrue(response.getContentAsString().contains("HTTP 503"));
+		verify(asyncContext).complete();
+		// The pending value is no longer wanted
+		Assert.assertTrue(collection.pending.isCancelled());
+
+		// Completing late does not touch the response
+		collection.pending.complete(new TestTeamPojo(TestTeamPojo.Type.SWIM, "Sharks"));
+		Assert.assertFalse(response.getContentAsString().contains("Sharks"));
+	}
+
+	@Test
+	public void testWaitsWithoutAsyncSupport() throws Exception {
+		when(request.isAsyncSupported()).thenReturn(false);
+		collection.pending.complete(new TestTeamPojo(TestTeamPojo.Type.SWIM, "Sharks"));
+		invoker.invokeMethod(HttpMethod.GET, pathMatch("getTeam"), request, response);
+		Assert.assertTrue(response.getContentAsString().contains("Sharks"));
+
+		// Captured responses must be complete when the invoker returns
+		when(request.isAsyncSupported()).thenReturn(true);
+		CapturingResponse capture = new CapturingResponse(response, false);
+		invoker.invokeMethod(HttpMethod.GET, pathMatch("getTeam"), request, capture);
+		Assert.assertNotNull(capture.toCachedResponse());
+		verify(request, never()).startAsync(any(HttpServletRequest.class), any(HttpServletResponse.class));
+	}
+
+	@Test
+	public void testFutureTimeout() throws Exception {
+		PathMatch pm = pathMatch("getSlowTeam");
+		// The method's timeout is resolved once, into its plan
+		Assert.assertEquals(1, invoker.getBindingPlan(pm.getRoute()).getAsyncTimeout());
+		Assert.assertEquals(-1, invoker.getBindingPlan(pathMatch("getTeam").getRoute()).getAsyncTimeout());
+		invoker.invokeMethod(HttpMethod.GET, pm, request, response);
+		Assert.assertEquals(503, response.getStatus());
+		Assert.assertTrue(collection.slow.isCancelled());
+	}
+
+	private void timeOut() throws Exception {
+		ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+		verify(asyncContext).addListener(listener.capture());
+		listener.getValue().onTimeout(new AsyncEvent(asyncContext));
+	}
+
+	private PathMatch pathMatch(String methodName) throws Exception {
+		return TestRoutes.pathMatch("/teams", collection, AsyncCollection.class.getMethod(methodName), invoker);
+	}
+}
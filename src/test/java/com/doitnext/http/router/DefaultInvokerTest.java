@@ -44,6 +44,13 @@ import org.springframework.mock.web.MockHttpServletResponse;
 
 import com.doitnext.http.router.MethodInvoker.InvokeResult;
 import com.doitnext.http.router.annotations.enums.HttpMethod;
+import com.doitnext.http.router.argumentbinders.BindingPlan;
+import com.doitnext.http.router.argumentbinders.FailingBinder;
+import com.doitnext.http.router.argumentbinders.NullBinder;
+import com.doitnext.http.router.argumentbinders.PathParameterBinder;
+import com.doitnext.http.router.argumentbinders.RequestBinder;
+import com.doitnext.http.router.argumentbinders.RequestBodyBinder;
+import com.doitnext.http.router.argumentbinders.ResponseBinder;
 import com.doitnext.http.router.exampleclasses.TestCollectionImpl;
 import com.doitnext.http.router.exampleclasses.TestTeamPojo;
 import com.doitnext.http.router.responsehandlers.DefaultSuccessHandler;
@@ -141,7 +148,7 @@ public class DefaultInvokerTest {
 				applicationContext.getBean("testCollection1",
 						TestCollectionImpl.class)).thenReturn(testCollectionImpl);
 
-		invoker = new DefaultInvoker();
+		invoker = createInvoker();
 
 		Map<MethodReturnKey, ResponseHandler> errorHandlers = new HashMap<MethodReturnKey, ResponseHandler>();
 		Map<MethodReturnKey, ResponseHandler> successHandlers = new HashMap<MethodReturnKey, ResponseHandler>();
@@ -206,6 +213,10 @@ public class DefaultInvokerTest {
 		}
 	}
 
+	protected MethodInvoker createInvoker() {
+		return new DefaultInvoker();
+	}
+
 	@Test
 	public void testGettersAndSetters() {
 		DefaultInvoker defaultInvoker = new DefaultInvoker();
@@ -296,6 +307,52 @@ public class DefaultInvokerTest {
 		Assert.assertEquals("{\"storePath\":\"a/b/c\",\"userId\":\"user1\"}", content);
 	}
 
+	@Test
+	public void testQueryParamsWithoutQueryString() throws Exception {
+		Route route = routesByName.get("getTeams");
+		PathMatch pm = new PathMatch(route, route.getPathTemplate().match("/sports-api/teams"));
+		MockHttpServletRequest req = new MockHttpServletRequest();
+		req.setMethod("GET");
+		// A form parameter is not a query parameter
+		req.addParameter("city", "Dallas");
+		InvokeResult result = invoker.invokeMethod(HttpMethod.GET, pm, req, new MockHttpServletResponse());
+		Assert.assertTrue(result.success);
+		Assert.assertEquals("getTeams", testCollectionImpl.getLastMethodCalled());
+	}
+
+	@Test
+	public void testBindingPlans() throws Exception {
+		DefaultInvoker defaultInvoker = (DefaultInvoker)invoker;
+		Route route = routesByName.get("getFavoritesForUser");
+		BindingPlan plan = route.getBindingPlan();
+		Assert.assertNotNull(plan);
+		Assert.assertSame(plan, defaultInvoker.getBindingPlan(route));
+		Assert.assertEquals(2, plan.getArgumentCount());
+		Assert.assertTrue(plan.getBinder(0) instanceof PathParameterBinder);
+		Assert.assertTrue(plan.getBinder(1) instanceof PathParameterBinder);
+
+		plan = routesByName.get("rawCall").getBindingPlan();
+		Assert.assertTrue(plan.getBinder(0) instanceof RequestBinder);
+		Assert.assertTrue(plan.getBinder(1) instanceof ResponseBinder);
+		Assert.assertTrue(routesByName.get("addTeam").getBindingPlan().getBinder(0) instanceof RequestBodyBinder);
+		Assert.assertTrue(routesByName.get("badTerminusArg").getBindingPlan().getBinder(0) instanceof FailingBinder);
+		Assert.assertTrue(routesByName.get("unannotatedParameter").getBindingPlan().getBinder(0) instanceof NullBinder);
+
+		// Plans keep a writer for the declared return type, used only for values of exactly that type
+		plan = routesByName.get("addTeam").getBindingPlan();
+		TestTeamPojo team = new TestTeamPojo(TestTeamPojo.Type.SWIM, "Sharks");
+		Assert.assertSame(defaultInvoker.getCodecRegistry().getWriter(TestTeamPojo.class), plan.getReturnWriter(team));
+		Assert.assertNull(plan.getReturnWriter(new TestTeamPojo(TestTeamPojo.Type.SWIM, "Sharks") {}));
+		Assert.assertNull(plan.getReturnWriter(null));
+		Assert.assertNull(routesByName.get("rawCall").getBindingPlan().getReturnWriter("void"));
+
+		// Routes built by another invoker get a cached plan of their own
+		DefaultInvoker other = new DefaultInvoker();
+		BindingPlan otherPlan = other.getBindingPlan(route);
+		Assert.assertNotSame(route.getBindingPlan(), otherPlan);
+		Assert.assertSame(otherPlan, other.getBindingPlan(route));
+	}
+
 	private String createPathMatchTestCaseId(PathMatch pm) {
 		return String.format("%s %s --> %s.%s", pm.getRoute().getHttpMethod().name(),
 				pm.getMatchedPath().getGivenPath(), pm.getRoute()
@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router;
+
+import static com.doitnext.http.router.MediaTypeRegistry.ANY;
+import static com.doitnext.http.router.MediaTypeRegistry.NONE;
+import static com.doitnext.http.router.MediaTypeRegistry.UNKNOWN;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MediaRangesTest {
+	private MediaTypeRegistry registry;
+	private int json;
+	private int xml;
+	private int schema1;
+
+	@Before
+	public void init() {
+		registry = new MediaTypeRegistry();
+		json = registry.intern("application/json");
+		xml = registry.intern("application/xml");
+		schema1 = registry.intern("http://schemas.of.mine/schema1");
+	}
+
+	@Test
+	public void testRegistry() {
+		Assert.assertEquals(NONE, registry.intern(""));
+		Assert.assertEquals(NONE, registry.intern(null));
+		Assert.assertEquals(ANY, registry.intern("*/*"));
+		Assert.assertEquals(json, registry.intern("Application/JSON"));
+		Assert.assertEquals(json, registry.lookup("xx application/json xx", 3, 19));
+		Assert.assertEquals(UNKNOWN, registry.lookup("application/yaml"));
+		Assert.assertEquals(5, registry.size());
+		Assert.assertEquals("application/xml", registry.getName(xml));
+		Assert.assertNull(registry.getName(UNKNOWN));
+		for(int x = 0; x < 100; x++)
+			Assert.assertEquals(registry.intern("model" + x), registry.lookup("MODEL" + x));
+	}
+
+	@Test
+	public void testParseAccept() {
+		MediaRanges ranges = new MediaRanges(registry);
+		ranges.parseAccept(" application/json; encoding=UTF-8; model=http://schemas.of.mine/schema1, application/xml");
+		Assert.assertEquals(2, ranges.size());
+		Assert.assertEquals(json, ranges.getFormat(0));
+		Assert.assertEquals(schema1, ranges.getModel(0));
+		Assert.assertEquals(xml, ranges.getFormat(1));
+		Assert.assertEquals(NONE, ranges.getModel(1));
+
+		ranges.parseAccept("application/json ; model = \"http://schemas.of.mine/schema1\" ;q=0.5");
+		Assert.assertEquals(1, ranges.size());
+		Assert.assertEquals(schema1, ranges.getModel(0));
+		Assert.assertEquals(500, ranges.getQuality(0));
+
+		ranges.parseAccept("application/json;  model=;encoding=UTF-8; model=http://schemas.of.mine/schema1");
+		Assert.assertEquals(NONE, ranges.getModel(0));
+
+		ranges.parseAccept("application/xml;q=0, application/json;model=\"a,b\", text/plain");
+		Assert.assertEquals(2, ranges.size());
+		Assert.assertEquals(json, ranges.getFormat(0));
+		Assert.assertEquals(UNKNOWN, ranges.getModel(0));
+		Assert.assertEquals(UNKNOWN, ranges.getFormat(1));
+
+		ranges.parseAccept("a/a, b/b, c/c, d/d, */*;q=0.1");
+		Assert.assertEquals(5, ranges.size());
+		Assert.assertEquals(ANY, ranges.getFormat(4));
+		Assert.assertEquals(100, ranges.getQuality(4));
+
+		ranges.parseAccept(null);
+		Assert.assertEquals(1, ranges.size());
+		Assert.assertEquals(NONE, ranges.getFormat(0));
+		ranges.parseAccept("  ");
+		Assert.assertEquals(1, ranges.size());
+		Assert.assertEquals(NONE, ranges.getFormat(0));
+	}
+
+	@Test
+	public void testParseContentType() {
+		MediaRanges ranges = new MediaRanges(registry);
+		ranges.parseContentType("application/json; charset=UTF-8; model=http://schemas.of.mine/schema1");
+		Assert.assertEquals(1, ranges.size());
+		Assert.assertEquals(json, ranges.getFormat(0));
+		Assert.assertEquals(schema1, ranges.getModel(0));
+		ranges.parseContentType(null);
+		Assert.assertEquals(NONE, ranges.getFormat(0));
+	}
+
+	@Test
+	public void testParseQuality() {
+		Assert.assertEquals(1000, MediaRanges.parseQuality("1", 0, 1));
+		Assert.assertEquals(1000, MediaRanges.parseQuality("1.000", 0, 5));
+		Assert.assertEquals(0, MediaRanges.parseQuality("0", 0, 1));
+		Assert.assertEquals(0, MediaRanges.parseQuality("0.000", 0, 5));
+		Assert.assertEquals(750, MediaRanges.parseQuality("0.75", 0, 4));
+		Assert.assertEquals(1000, MediaRanges.parseQuality("bogus", 0, 5));
+		Assert.assertEquals(1000, MediaRanges.parseQuality("1.5", 0, 3));
+	}
+
+	@Test
+	public void testAcceptMatchesAgreesWithAcceptKey() {
+		String headers[] = {null, "", "*/*", "*/*; model=G", "application/json",
+				"application/json; model=T", "Application/JSON; model=t", "application/xml; model=T",
+				"text/plain"};
+		String routeValues[][] = {{null, null}, {"application/json", null}, {null, "T"},
+				{"application/json", "T"}, {"application/json", "G"}, {"application/xml", "T"},
+				{"*/*", "*/*"}, {"*/*", "T"}};
+		MediaRanges ranges = new MediaRanges(registry);
+		for(String header : headers) {
+			ranges.parseAccept(intern(header));
+			AcceptKey key = new AcceptKey(header);
+			for(String values[] : routeValues) {
+				boolean expected = key.matches(values[0], values[1]);
+				boolean actual = MediaRanges.acceptMatches(ranges.getFormat(0), ranges.getModel(0),
+						registry.intern(values[0]), registry.intern(values[1]));
+				Assert.assertEquals(header + " " + values[0] + " " + values[1], expected, actual);
+			}
+		}
+	}
+
+	@Test
+	public void testContentTypeMatches() {
+		int t = registry.intern("T");
+		Assert.assertTrue(MediaRanges.contentTypeMatches(NONE, NONE, NONE, NONE));
+		Assert.assertFalse(MediaRanges.contentTypeMatches(json, NONE, NONE, NONE));
+		Assert.assertFalse(MediaRanges.contentTypeMatches(NONE, NONE, json, NONE));
+		Assert.assertTrue(MediaRanges.contentTypeMatches(json, NONE, json, NONE));
+		Assert.assertFalse(MediaRanges.contentTypeMatches(json, NONE, json, t));
+		Assert.assertTrue(MediaRanges.contentTypeMatches(json, t, json, t));
+		Assert.assertFalse(MediaRanges.contentTypeMatches(xml, t, json, t));
+		Assert.assertTrue(MediaRanges.contentTypeMatches(xml, NONE, ANY, NONE));
+		Assert.assertTrue(MediaRanges.contentTypeMatches(xml, t, ANY, ANY));
+		Assert.assertTrue(MediaRanges.contentTypeMatches(UNKNOWN, t, ANY, t));
+		Assert.assertFalse(MediaRanges.contentTypeMatches(UNKNOWN, UNKNOWN, ANY, t));
+	}
+
+	private String intern(String header) {
+		// Make sure the header's own format and model are known to the registry
+		AcceptKey key = new AcceptKey(header);
+		registry.intern(key.getReturnFormat());
+		registry.intern(key.getReturnType());
+		return header;
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.InvocationTargetException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.doitnext.http.router.MethodHandleInvoker.MethodHandlePlan;
+import com.doitnext.http.router.exampleclasses.TestCollectionImpl;
+
+/**
+ * Runs the {@link DefaultInvokerTest} cases against {@link MethodHandleInvoker}.
+ */
+public class MethodHandleInvokerTest extends DefaultInvokerTest {
+
+	@Override
+	protected MethodInvoker createInvoker() {
+		return new MethodHandleInvoker();
+	}
+
+	@Test
+	public void testRoutesCarryMethodHandles() {
+		for(Route route : routes)
+			Assert.assertTrue(route.toString(), route.getBindingPlan() instanceof MethodHandlePlan);
+	}
+
+	@Test
+	public void testExceptionsAreWrapped() throws Throwable {
+		MethodHandle handle = MethodHandleInvoker.createHandle(
+				Integer.class.getMethod("parseInt", String.class), null);
+		Assert.assertEquals(42, handle.invoke(new Object[] {"42"}));
+		Route route = routesByName.get("getTeam");
+		MethodHandlePlan plan = (MethodHandlePlan)route.getBindingPlan();
+		try {
+			plan.invoke(new Object[] {"ACROBATIC", "Bears", null});
+			Assert.fail("Expected InvocationTargetException");
+		} catch(InvocationTargetException e) {
+			Assert.assertNotNull(e.getCause());
+		}
+	}
+
+	@Test
+	public void testArgumentMismatchIsNotWrapped() throws Throwable {
+		Route route = routesByName.get("getTeam");
+		MethodHandlePlan plan = (MethodHandlePlan)route.getBindingPlan();
+		Object badArguments[][] = {
+			{"ACROBATIC", 42, "terminus"},
+			{"ACROBATIC", "Bears"}
+		};
+		for(Object arguments[] : badArguments) {
+			try {
+				plan.invoke(arguments);
+				Assert.fail("Expected IllegalArgumentException");
+			} catch(IllegalArgumentException e) {
+				Assert.assertNotNull(e.getMessage());
+			}
+		}
+		MethodHandle handle = MethodHandleInvoker.createHandle(
+				Long.class.getMethod("valueOf", long.class), null);
+		MethodHandlePlan valueOf = new MethodHandlePlan(plan, handle, new Class<?>[] {long.class});
+		Assert.assertEquals(42L, valueOf.invoke(new Object[] {42L}));
+		try {
+			valueOf.invoke(new Object[] {"42"});
+			Assert.fail("Expected IllegalArgumentException");
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(e.getMessage().contains("long"));
+		}
+	}
+
+	@SuppressWarnings("unused")
+	private static String hidden() {
+		return "hidden";
+	}
+
+	@Test
+	public void testInaccessibleMethodFallsBack() throws Exception {
+		Assert.assertNull(MethodHandleInvoker.createHandle(
+				MethodHandleInvokerTest.class.getDeclaredMethod("hidden"), null));
+	}
+
+	@Test
+	public void testUnboundInstanceMethod() throws Exception {
+		Assert.assertNull(MethodHandleInvoker.createHandle(
+				TestCollectionImpl.class.getMethod("getLastMethodCalled"), null));
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.doitnext.http.router.annotations.RestMethod;
+import com.doitnext.http.router.annotations.enums.HttpMethod;
+
+/**
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class OffloadDispatcherTest {
+
+	public static class Blocking {
+		@RestMethod(method = HttpMethod.GET, template = "", offload = true)
+		public String getSlow() {
+			return "slow";
+		}
+
+		@RestMethod(method = HttpMethod.GET, template = "")
+		public String getFast() {
+			return "fast";
+		}
+	}
+
+	private HttpServletRequest request = mock(HttpServletRequest.class);
+	private HttpServletResponse response = mock(HttpServletResponse.class);
+	private AsyncContext asyncContext = mock(AsyncContext.class);
+	private ExecutorService executor = OffloadDispatcher.newPlatformThreadPool(1, 1);
+	private OffloadDispatcher dispatcher = new OffloadDispatcher(executor);
+
+	@Before
+	public void init() {
+		when(request.startAsync(request, response)).thenReturn(asyncContext);
+	}
+
+	@After
+	public void shutdown() {
+		dispatcher.shutdown();
+	}
+
+	@Test
+	public void testCreateDefault() {
+		OffloadDispatcher defaultDispatcher = OffloadDispatcher.createDefault();
+		ExecutorService virtual = OffloadDispatcher.newVirtualThreadPerTaskExecutor();
+		Assert.assertEquals(virtual != null, defaultDispatcher.isVirtual());
+		Assert.assertFalse(dispatcher.isVirtual());
+		defaultDispatcher.shutdown();
+		if(virtual != null)
+			virtual.shutdown();
+	}
+
+	@Test
+	public void testIsOffloaded() throws Exception {
+		Assert.assertTrue(dispatcher.isOffloaded(route("getSlow")));
+		Assert.assertFalse(dispatcher.isOffloaded(route("getFast")));
+		Assert.assertTrue(dispatcher.isOffloaded(route("getSlow")));
+	}
+
+	@Test
+	public void testDispatch() throws Exception {
+		final CountDownLatch ran = new CountDownLatch(1);
+		final Thread caller = Thread.currentThread();
+		final Thread worker[] = new Thread[1];
+		dispatcher.dispatch(request, response, new Runnable() {
+			@Override
+			public void run() {
+				worker[0] = Thread.currentThread();
+				ran.countDown();
+			}
+		});
+		Assert.assertTrue(ran.await(5, TimeUnit.SECONDS));
+		verify(asyncContext, timeout(5000)).complete();
+		verify(asyncContext).setTimeout(0);
+		Assert.assertNotSame(caller, worker[0]);
+		Assert.assertEquals(1, dispatcher.getDispatched());
+		Assert.assertEquals(1, dispatcher.getCompleted());
+		Assert.assertEquals(0, dispatcher.getRanInline());
+		Assert.assertTrue(dispatcher.getQueueNanos() > 0);
+		Assert.assertTrue(dispatcher.getRunNanos() > 0);
+	}
+
+	@Test
+	public void testRejectedRunsInline() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		Runnable blocked = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		// Occupy the only thread and the only queue slot
+		executor.execute(blocked);
+		executor.execute(blocked);
+		final Thread worker[] = new Thread[1];
+		dispatcher.dispatch(request, response, new Runnable() {
+			@Override
+			public void run() {
+				worker[0] = Thread.currentThread();
+				throw new IllegalStateException("Logged, not thrown");
+			}
+		});
+		release.countDown();
+		Assert.assertSame(Thread.currentThread(), worker[0]);
+		verify(asyncContext).complete();
+		Assert.assertEquals(1, dispatcher.getRanInline());
+		Assert.assertEquals(0, dispatcher.getDispatched());
+	}
+
+	private Route route(String methodName) throws Exception {
+		return TestRoutes.route("/slow", new Blocking(), Blocking.class.getMethod(methodName), new DefaultInvoker());
+	}
+}
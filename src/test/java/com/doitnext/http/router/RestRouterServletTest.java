@@ -15,11 +15,18 @@
  */
 package com.doitnext.http.router;
 
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -31,12 +38,23 @@ import org.springframework.mock.web.MockHttpServletResponse;
 import com.doitnext.http.router.annotations.enums.HttpMethod;
 import com.doitnext.http.router.exampleclasses.TestCollectionImpl;
 import com.doitnext.http.router.exampleclasses.TestTeamPojo;
+import com.doitnext.http.router.jfr.RouteMatchEvent;
+import com.doitnext.http.router.jfr.RoutingFailureEvent;
+import com.doitnext.http.router.limits.ConcurrencyLimits;
+import com.doitnext.http.router.limits.RateLimits;
+import com.doitnext.http.router.metrics.MetricsFormatter;
 import com.doitnext.http.router.responsehandlers.DefaultErrorHandler;
 import com.doitnext.http.router.responsehandlers.DefaultSuccessHandler;
 import com.doitnext.http.router.responsehandlers.ResponseHandler;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.collect.ImmutableSortedSet;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 public class RestRouterServletTest {
 
@@ -161,6 +179,284 @@ public class RestRouterServletTest {
 		}
 	}
 
+	@Test
+	public void testConcurrencyLimitRejects() throws Exception {
+		RestRouterServlet servlet = new RestRouterServlet();
+		servlet.setPathPrefix("/sports-api");
+		servlet.setRestPackageRoot("com.doitnext.http.router.exampleclasses");
+		servlet.setEndpointResolver(endpointResolver);
+		servlet.setMethodInvoker(methodInvoker);
+		servlet.setErrorHandler(errorHandler);
+		ConcurrencyLimits limits = mock(ConcurrencyLimits.class);
+		servlet.setConcurrencyLimits(limits);
+		Assert.assertSame(limits, servlet.getConcurrencyLimits());
+		servlet.afterPropertiesSet();
+		
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		setUpRequest(new Object[] {"GET", "/mocker", "/sports-api/teams/queryAndTerminus?item1=foo&item2=bar", "item1=foo", "application/json", "application/xml", "application/json", null}, request);
+		servlet.handleRequest(request, response);
+		Assert.assertEquals(503, response.getStatus());
+	}
+
+	@Test
+	public void testRateLimitRejects() throws Exception {
+		RestRouterServlet servlet = new RestRouterServlet();
+		servlet.setPathPrefix("/sports-api");
+		servlet.setRestPackageRoot("com.doitnext.http.router.exampleclasses");
+		servlet.setEndpointResolver(endpointResolver);
+		servlet.setMethodInvoker(methodInvoker);
+		servlet.setErrorHandler(errorHandler);
+		RateLimits limits = mock(RateLimits.class);
+		when(limits.tryAcquire(any(Route.class), any(HttpServletRequest.class))).thenReturn(1500000000L);
+		servlet.setRateLimits(limits);
+		Assert.assertSame(limits, servlet.getRateLimits());
+		servlet.afterPropertiesSet();
+		
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		setUpRequest(new Object[] {"GET", "/mocker", "/sports-api/teams/queryAndTerminus?item1=foo&item2=bar", "item1=foo", "application/json", "application/xml", "application/json", null}, request);
+		servlet.handleRequest(request, response);
+		Assert.assertEquals(429, response.getStatus());
+		Assert.assertEquals("2", response.getHeader("Retry-After"));
+	}
+
+	@Test
+	public void testMetricsEndpoint() throws Exception {
+		RestRouterServlet servlet = new RestRouterServlet();
+		servlet.setPathPrefix("/sports-api");
+		servlet.setRestPackageRoot("com.doitnext.http.router.exampleclasses");
+		servlet.setEndpointResolver(endpointResolver);
+		servlet.setMethodInvoker(methodInvoker);
+		servlet.setErrorHandler(errorHandler);
+		servlet.afterPropertiesSet();
+		
+		for(int x = 0; x < 2; x++) {
+			MockHttpServletRequest request = new MockHttpServletRequest();
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			setUpRequest(new Object[] {"GET", "/mocker", "/sports-api/teams", "city=Atlanta", "application/json", null, null}, request);
+			servlet.handleRequest(request, response);
+			Assert.assertEquals(200, response.getStatus());
+		}
+		
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		setUpRequest(new Object[] {"GET", "/mocker", "/metrics_", "", "application/json", null, null}, request);
+		servlet.handleRequest(request, response);
+		Assert.assertEquals(200, response.getStatus());
+		Assert.assertEquals("application/json", response.getContentType());
+		JsonNode teams = null;
+		for(JsonNode route : objectMapper.readTree(response.getContentAsByteArray()).get("routes")) {
+			if(route.get("method").asText().equals("GET") && route.get("path").asText().equals("/sports-api/teams"))
+				teams = route;
+		}
+		Assert.assertNotNull(teams);
+		Assert.assertEquals(2, teams.get("requests").asLong());
+		Assert.assertEquals(2, teams.get("statuses").get("2xx").asLong());
+		Assert.assertEquals(2, teams.get("latencyMillis").get("count").asLong());
+
+		request = new MockHttpServletRequest();
+		response = new MockHttpServletResponse();
+		setUpRequest(new Object[] {"GET", "/mocker", "/metrics_", "format=prometheus", "*/*", null, null}, request);
+		servlet.handleRequest(request, response);
+		Assert.assertEquals(200, response.getStatus());
+		String text = response.getContentAsString();
+		Assert.assertTrue(text, text.contains("http_router_requests_total{method=\"GET\",path=\"/sports-api/teams\",requestType=\"\",returnType=\"\",consumes=\"\",produces=\"application/json\",status=\"2xx\"} 2\n"));
+		Assert.assertTrue(text, text.contains("http_router_request_duration_seconds_count{method=\"GET\",path=\"/sports-api/teams\",requestType=\"\",returnType=\"\",consumes=\"\",produces=\"application/json\"} 2\n"));
+		// Every series is unique
+		Set<String> series = new HashSet<String>();
+		for(String line : text.split("\n")) {
+			if(!line.startsWith("#"))
+				Assert.assertTrue(line, series.add(line.substring(0, line.lastIndexOf(' '))));
+		}
+
+		// The Prometheus text is also served to clients accepting text/plain
+		request = new MockHttpServletRequest();
+		response = new MockHttpServletResponse();
+		setUpRequest(new Object[] {"GET", "/mocker", "/metrics_", "", "text/plain", null, null}, request);
+		servlet.handleRequest(request, response);
+		Assert.assertEquals(200, response.getStatus());
+		Assert.assertEquals(MetricsFormatter.PROMETHEUS_CONTENT_TYPE, response.getContentType());
+		Assert.assertTrue(response.getContentAsString().startsWith("# HELP"));
+
+		// Routes that have not been requested have no latency histogram
+		for(Route route : servlet.getRoutes()) {
+			if(route.getMetrics().getRequests() == 0)
+				Assert.assertNull(route.toString(), route.getMetrics().getLatencies());
+		}
+	}
+
+	@Test
+	public void testPhaseTiming() throws Exception {
+		RestRouterServlet servlet = new RestRouterServlet();
+		servlet.setPathPrefix("/sports-api");
+		servlet.setRestPackageRoot("com.doitnext.http.router.exampleclasses");
+		servlet.setEndpointResolver(endpointResolver);
+		servlet.setMethodInvoker(methodInvoker);
+		servlet.setErrorHandler(errorHandler);
+		servlet.setPhaseTiming(true);
+		servlet.setServerTiming(true);
+		servlet.afterPropertiesSet();
+		
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		setUpRequest(new Object[] {"GET", "/mocker", "/sports-api/teams", "city=Atlanta", "application/json", null, null}, request);
+		servlet.handleRequest(request, response);
+		Assert.assertEquals(200, response.getStatus());
+		String header = (String)response.getHeader("Server-Timing");
+		Assert.assertNotNull(header);
+		Assert.assertTrue(header, header.contains("match;dur="));
+		Assert.assertTrue(header, header.contains("invoke;dur="));
+
+		request = new MockHttpServletRequest();
+		response = new MockHttpServletResponse();
+		setUpRequest(new Object[] {"GET", "/mocker", "/metrics_", "", "application/json", null, null}, request);
+		servlet.handleRequest(request, response);
+		JsonNode teams = null;
+		for(JsonNode route : objectMapper.readTree(response.getContentAsByteArray()).get("routes")) {
+			if(route.get("method").asText().equals("GET") && route.get("path").asText().equals("/sports-api/teams"))
+				teams = route;
+		}
+		Assert.assertNotNull(teams);
+		for(String phase : new String[] {"match", "negotiate", "bind", "invoke", "serialize"})
+			Assert.assertEquals(1, teams.get("phaseMillis").get(phase).get("count").asLong());
+	}
+
+	@Test
+	public void testFlightRecorderEvents() throws Exception {
+		RestRouterServlet servlet = new RestRouterServlet();
+		servlet.setPathPrefix("/sports-api");
+		servlet.setRestPackageRoot("com.doitnext.http.router.exampleclasses");
+		servlet.setEndpointResolver(endpointResolver);
+		servlet.setMethodInvoker(methodInvoker);
+		servlet.setErrorHandler(errorHandler);
+		servlet.afterPropertiesSet();
+		// Nothing is allocated for events that are not being recorded
+		Assert.assertNull(RouteMatchEvent.beginIfEnabled());
+		Assert.assertNull(RoutingFailureEvent.createIfEnabled());
+		
+		File file = File.createTempFile("router", ".jfr");
+		Recording recording = new Recording();
+		try {
+			for(String name : new String[] {"RouteMatch", "ArgumentBinding", "HandlerInvocation", "ResponseSerialization", "RoutingFailure"})
+				recording.enable("com.doitnext.http.router." + name).withThreshold(Duration.ZERO);
+			recording.start();
+			MockHttpServletRequest request = new MockHttpServletRequest();
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			setUpRequest(new Object[] {"GET", "/mocker", "/sports-api/teams", "city=Atlanta", "application/json", null, null}, request);
+			servlet.handleRequest(request, response);
+			Assert.assertEquals(200, response.getStatus());
+			request = new MockHttpServletRequest();
+			response = new MockHttpServletResponse();
+			setUpRequest(new Object[] {"GET", "/mocker", "/sports-api/nowhere", "", "application/json", null, null}, request);
+			servlet.handleRequest(request, response);
+			Assert.assertEquals(404, response.getStatus());
+			recording.stop();
+			recording.dump(file.toPath());
+
+			// The first event of each type, the 404 serializing an error after the 200
+			Map<String, RecordedEvent> events = new HashMap<String, RecordedEvent>();
+			for(RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+				String name = event.getEventType().getName().substring("com.doitnext.http.router.".length());
+				if(!events.containsKey(name))
+					events.put(name, event);
+			}
+			Assert.assertEquals("GET /sports-api/teams", events.get("RouteMatch").getString("route"));
+			Assert.assertEquals("GET /sports-api/teams", events.get("ArgumentBinding").getString("route"));
+			Assert.assertFalse(events.get("HandlerInvocation").getBoolean("threw"));
+			RecordedEvent serialization = events.get("ResponseSerialization");
+			Assert.assertTrue(serialization.getLong("bytes") > 0);
+			Assert.assertFalse(serialization.getBoolean("error"));
+			RecordedEvent failure = events.get("RoutingFailure");
+			Assert.assertEquals(404, failure.getInt("status"));
+			Assert.assertEquals("/sports-api/nowhere", failure.getString("path"));
+		} finally {
+			recording.close();
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testHandles404And405() throws Exception {
+		RestRouterServlet servlet = new RestRouterServlet();
+		servlet.setPathPrefix("/sports-api");
+		servlet.setRestPackageRoot("com.doitnext.http.router.exampleclasses");
+		servlet.setEndpointResolver(endpointResolver);
+		servlet.setMethodInvoker(methodInvoker);
+		servlet.setErrorHandler(errorHandler);
+		servlet.afterPropertiesSet();
+		
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		setUpRequest(new Object[] {"DELETE", "/mocker", "/sports-api/teams", "", "application/json", null}, request);
+		servlet.handleRequest(request, response);
+		Assert.assertEquals(405, response.getStatus());
+		Assert.assertEquals("GET, POST, PUT", response.getHeader("Allow"));
+
+		request = new MockHttpServletRequest();
+		response = new MockHttpServletResponse();
+		setUpRequest(new Object[] {"GET", "/mocker", "/sports-api/nowhere", "", "application/json", null}, request);
+		servlet.handleRequest(request, response);
+		Assert.assertEquals(404, response.getStatus());
+	}
+
+	@Test
+	public void testRouteResolutionCache() throws Exception {
+		RestRouterServlet servlet = new RestRouterServlet();
+		servlet.setPathPrefix("/sports-api");
+		servlet.setRestPackageRoot("com.doitnext.http.router.exampleclasses");
+		servlet.setEndpointResolver(endpointResolver);
+		servlet.setMethodInvoker(methodInvoker);
+		servlet.setErrorHandler(errorHandler);
+		servlet.setRouteCacheSize(16);
+		servlet.afterPropertiesSet();
+		RouteResolutionCache cache = servlet.getRouteResolutionCache();
+		Assert.assertNotNull(cache);
+
+		Object[] testCase = {"GET", "/mocker", "/sports-api/teams/favorites/user01/path/to/resource",
+				"", "application/json; model=hashmap", null};
+		for(int x = 0; x < 3; x++) {
+			MockHttpServletRequest request = new MockHttpServletRequest();
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			setUpRequest(testCase, request);
+			servlet.handleRequest(request, response);
+			Assert.assertEquals(200, response.getStatus());
+			Assert.assertTrue(response.getContentAsString().contains("path/to/resource"));
+		}
+		Assert.assertEquals(1, cache.getMisses());
+		Assert.assertEquals(2, cache.getHits());
+		Assert.assertEquals(1, cache.size());
+
+		// Failed routing decisions are not cached
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		setUpRequest(new Object[] {"DELETE", "/mocker", "/sports-api/teams", "", "application/json", null}, request);
+		servlet.handleRequest(request, response);
+		Assert.assertEquals(405, response.getStatus());
+		Assert.assertEquals(1, cache.size());
+
+		servlet.routesUpdated(ImmutableSortedSet.copyOf(servlet.getRoutes()));
+		Assert.assertNotSame(cache, servlet.getRouteResolutionCache());
+		Assert.assertEquals(0, servlet.getRouteResolutionCache().size());
+	}
+
+	@Test
+	public void testRoutesBuiltWithServletInvoker() throws Exception {
+		RestRouterServlet servlet = new RestRouterServlet();
+		servlet.setPathPrefix("/sports-api");
+		servlet.setRestPackageRoot("com.doitnext.http.router.exampleclasses");
+		servlet.setEndpointResolver(endpointResolver);
+		servlet.setMethodInvoker(new CoalescingInvoker(methodInvoker));
+		servlet.afterPropertiesSet();
+		
+		Assert.assertSame(methodInvoker, endpointResolver.getMethodInvoker());
+		Assert.assertFalse(servlet.getRoutes().isEmpty());
+		for(Route route : servlet.getRoutes()) {
+			Assert.assertSame(methodInvoker, route.getInvoker());
+			Assert.assertNotNull(route.toString(), route.getBindingPlan());
+		}
+	}
+
 	private void setUpRequest(Object[] testCase, MockHttpServletRequest request) {
 		String httpMethod = (String)testCase[0];
 		String pathPrefix = (String)testCase[1];
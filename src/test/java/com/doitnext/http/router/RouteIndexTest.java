@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+
+import com.doitnext.http.router.exampleclasses.TestCollectionImpl;
+import com.doitnext.http.router.responsehandlers.DefaultSuccessHandler;
+import com.doitnext.http.router.responsehandlers.ResponseHandler;
+import com.doitnext.pathutils.Path;
+import com.google.common.collect.ImmutableSortedSet;
+
+public class RouteIndexTest {
+	private ImmutableSortedSet<Route> routes;
+
+	@Before
+	public void init() {
+		DefaultEndpointResolver resolver = new DefaultEndpointResolver();
+		ApplicationContext applicationContext = mock(ApplicationContext.class);
+		resolver.setApplicationContext(applicationContext);
+		when(applicationContext.getBean("testCollection1", TestCollectionImpl.class))
+			.thenReturn(new TestCollectionImpl());
+		Map<MethodReturnKey, ResponseHandler> successHandlers = new HashMap<MethodReturnKey, ResponseHandler>();
+		ResponseHandler successHandler = new DefaultSuccessHandler();
+		successHandlers.put(new MethodReturnKey("", "application/json"), successHandler);
+		successHandlers.put(new MethodReturnKey("hashmap", "application/json"), successHandler);
+		resolver.setSuccessHandlers(successHandlers);
+		routes = resolver.resolveEndpoints("/sports-api", "com.doitnext.http.router.exampleclasses");
+	}
+
+	@Test
+	public void testMatchesLinearScan() {
+		RouteIndex index = new RouteIndex(routes);
+		Assert.assertEquals(routes.size(), index.size());
+		String paths[] = {
+				"/sports-api/teams",
+				"/sports-api/teams/",
+				"/sports-api/teams?city=Atlanta",
+				"/sports-api/teams/FOOTBALL/Cardinals",
+				"/sports-api/teams/FOOTBALL/Cardinals?verbose=true",
+				"/sports-api/teams/football/Cardinals",
+				"/sports-api/teams/conflict/FOOTBALL/Cardinals",
+				"/sports-api/teams/favorites/user01/path/to/resource",
+				"/sports-api/teams/favorites/user01",
+				"/sports-api/teams/rawCall",
+				"/sports-api/teams/queryAndTerminus?item1=foo&item2=bar",
+				"/sports-api/teams/_healthCheck",
+				"/sports-api//teams/rawCall",
+				"/teams",
+				"/",
+				"",
+				null
+		};
+		for(String path : paths) {
+			List<PathMatch> expected = linearScan(path);
+			List<PathMatch> actual = index.match(path);
+			Assert.assertEquals(path, expected.size(), actual.size());
+			for(int x = 0; x < expected.size(); x++) {
+				Assert.assertSame(path, expected.get(x).getRoute(), actual.get(x).getRoute());
+				Assert.assertEquals(path, expected.get(x).getMatchedPath().toString(),
+						actual.get(x).getMatchedPath().toString());
+			}
+		}
+	}
+
+	@Test
+	public void testCandidatesAreNarrowed() {
+		RouteIndex index = new RouteIndex(routes);
+		Assert.assertTrue(index.candidates("/sports-api/teams/rawCall").cardinality() < routes.size());
+		Assert.assertTrue(index.candidates("/nowhere/at/all").isEmpty());
+	}
+
+	@Test
+	public void testEmptyIndex() {
+		RouteIndex index = new RouteIndex(ImmutableSortedSet.<Route>of());
+		Assert.assertEquals(0, index.size());
+		Assert.assertTrue(index.match("/sports-api/teams").isEmpty());
+	}
+
+	@Test
+	public void testSplitSegments() {
+		Assert.assertEquals(3, RouteIndex.splitSegments("/a/b/c").size());
+		Assert.assertEquals(3, RouteIndex.splitSegments("a//b/c/").size());
+		Assert.assertEquals(2, RouteIndex.splitSegments("/a/b?x=/y/z").size());
+		Assert.assertEquals(0, RouteIndex.splitSegments("?a/b").size());
+	}
+
+	private List<PathMatch> linearScan(String pathString) {
+		List<PathMatch> result = new ArrayList<PathMatch>();
+		if(pathString == null)
+			return result;
+		for(Route route : routes) {
+			Path path = route.getPathTemplate().match(pathString);
+			if(path != null)
+				result.add(new PathMatch(route, path));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router;
+
+import static org.mockito.Mockito.mock;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.doitnext.http.router.RouteResolutionCache.Key;
+import com.doitnext.http.router.annotations.enums.HttpMethod;
+
+public class RouteResolutionCacheTest {
+
+	@Test
+	public void testHitsAndMisses() {
+		RouteResolutionCache cache = new RouteResolutionCache(4);
+		Key key = new Key(HttpMethod.GET, "/teams", "application/json", null);
+		PathMatch match = mock(PathMatch.class);
+		Assert.assertNull(cache.get(key));
+		cache.put(key, match);
+		Assert.assertSame(match, cache.get(new Key(HttpMethod.GET, "/teams", "application/json", null)));
+		Assert.assertNull(cache.get(new Key(HttpMethod.POST, "/teams", "application/json", null)));
+		Assert.assertNull(cache.get(new Key(HttpMethod.GET, "/teams", "application/json", "text/plain")));
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(3, cache.getMisses());
+		Assert.assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testClockEviction() {
+		RouteResolutionCache cache = new RouteResolutionCache(3);
+		Key keys[] = new Key[4];
+		for(int x = 0; x < keys.length; x++)
+			keys[x] = new Key(HttpMethod.GET, "/teams/" + x, "application/json", null);
+		for(int x = 0; x < 3; x++)
+			cache.put(keys[x], mock(PathMatch.class));
+		// Referencing the first entry gives it a second chance
+		Assert.assertNotNull(cache.get(keys[0]));
+		cache.put(keys[3], mock(PathMatch.class));
+		Assert.assertEquals(3, cache.size());
+		Assert.assertNotNull(cache.get(keys[0]));
+		Assert.assertNull(cache.get(keys[1]));
+		Assert.assertNotNull(cache.get(keys[2]));
+		Assert.assertNotNull(cache.get(keys[3]));
+	}
+
+	@Test
+	public void testCapacityBound() {
+		RouteResolutionCache cache = new RouteResolutionCache(8);
+		for(int x = 0; x < 100; x++) {
+			Key key = new Key(HttpMethod.GET, "/teams/" + x, null, null);
+			cache.put(key, mock(PathMatch.class));
+			cache.get(key);
+		}
+		Assert.assertEquals(8, cache.size());
+		Assert.assertEquals(8, cache.getCapacity());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCapacity() {
+		new RouteResolutionCache(0);
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+
+import com.doitnext.http.router.annotations.enums.HttpMethod;
+import com.doitnext.http.router.exampleclasses.TestCollectionImpl;
+import com.doitnext.http.router.responsehandlers.DefaultSuccessHandler;
+import com.doitnext.http.router.responsehandlers.ResponseHandler;
+import com.google.common.collect.ImmutableSortedSet;
+
+public class RouteTableTest {
+	private ImmutableSortedSet<Route> routes;
+
+	@Before
+	public void init() {
+		DefaultEndpointResolver resolver = new DefaultEndpointResolver();
+		ApplicationContext applicationContext = mock(ApplicationContext.class);
+		resolver.setApplicationContext(applicationContext);
+		when(applicationContext.getBean("testCollection1", TestCollectionImpl.class))
+			.thenReturn(new TestCollectionImpl());
+		Map<MethodReturnKey, ResponseHandler> successHandlers = new HashMap<MethodReturnKey, ResponseHandler>();
+		ResponseHandler successHandler = new DefaultSuccessHandler();
+		successHandlers.put(new MethodReturnKey("", "application/json"), successHandler);
+		successHandlers.put(new MethodReturnKey("hashmap", "application/json"), successHandler);
+		resolver.setSuccessHandlers(successHandlers);
+		routes = resolver.resolveEndpoints("/sports-api", "com.doitnext.http.router.exampleclasses");
+	}
+
+	@Test
+	public void testMatchIsPartitionedByMethod() {
+		RouteTable table = new RouteTable(routes);
+		Assert.assertSame(routes, table.getRoutes());
+		for(HttpMethod method : HttpMethod.values()) {
+			List<PathMatch> matches = table.match(method, "/sports-api/teams/FOOTBALL/Cardinals");
+			for(PathMatch pm : matches)
+				Assert.assertEquals(method, pm.getRoute().getHttpMethod());
+		}
+		Assert.assertEquals(1, table.match(HttpMethod.GET, "/sports-api/teams/FOOTBALL/Cardinals").size());
+		Assert.assertEquals(1, table.match(HttpMethod.DELETE, "/sports-api/teams/FOOTBALL/Cardinals").size());
+		Assert.assertTrue(table.match(HttpMethod.PUT, "/sports-api/teams/FOOTBALL/Cardinals").isEmpty());
+		Assert.assertNull(table.getIndex(HttpMethod.TRACE));
+		Assert.assertTrue(table.match(HttpMethod.TRACE, "/sports-api/teams").isEmpty());
+	}
+
+	@Test
+	public void testAllowedMethods() {
+		RouteTable table = new RouteTable(routes);
+		Assert.assertEquals(Arrays.asList("GET", "POST", "PUT"),
+				table.getAllowedMethods("/sports-api/teams"));
+		Assert.assertEquals(Arrays.asList("DELETE", "GET"),
+				table.getAllowedMethods("/sports-api/teams/FOOTBALL/Cardinals"));
+		// The cached list is returned when a single template matches
+		Assert.assertSame(table.getAllowedMethods("/sports-api/teams"),
+				table.getAllowedMethods("/sports-api/teams"));
+		Assert.assertTrue(table.getAllowedMethods("/sports-api/nowhere").isEmpty());
+	}
+
+	@Test
+	public void testTemplateKey() {
+		Route getTeam = null;
+		Route deleteTeam = null;
+		Route conflict = null;
+		for(Route route : routes) {
+			String name = route.getImplMethod().getName();
+			if(name.equals("getTeam"))
+				getTeam = route;
+			else if(name.equals("deleteTeam"))
+				deleteTeam = route;
+			else if(route.getPathTemplate().getLexicalPath().contains("conflict"))
+				conflict = route;
+		}
+		Assert.assertEquals(RouteTable.templateKey(getTeam.getPathTemplate()),
+				RouteTable.templateKey(deleteTeam.getPathTemplate()));
+		Assert.assertFalse(RouteTable.templateKey(getTeam.getPathTemplate()).equals(
+				RouteTable.templateKey(conflict.getPathTemplate())));
+		Assert.assertEquals("", RouteTable.templateKey(null));
+	}
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router;
+
+import java.lang.reflect.Method;
+
+import com.doitnext.http.router.annotations.enums.HttpMethod;
+import com.doitnext.http.router.responsehandlers.DefaultErrorHandler;
+import com.doitnext.http.router.responsehandlers.DefaultSuccessHandler;
+import com.doitnext.pathutils.PathTemplateParser;
+
+/**
+ * Builds routes for tests that invoke handler methods without resolving endpoints.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class TestRoutes {
+
+	private TestRoutes() {
+	}
+
+	/**
+	 * @param path the path template of the route.
+	 * @param implInstance the object whose method the route calls.
+	 * @param implMethod the method the route calls.
+	 * @param invoker the invoker of the route.
+	 * @return a GET route producing JSON with the default success and error handlers.
+	 * @throws Exception if the path template cannot be parsed.
+	 */
+	public static Route route(String path, Object implInstance, Method implMethod, MethodInvoker invoker) throws Exception {
+		return new Route(HttpMethod.GET, null, null, null, "application/json",
+				new PathTemplateParser("/", "?").parse(path), implInstance.getClass(), implMethod,
+				invoker, implInstance, new DefaultSuccessHandler(), new DefaultErrorHandler(), false);
+	}
+
+	/**
+	 * @return a match of a {@link #route(String, Object, Method, MethodInvoker)} without path parameters.
+	 */
+	public static PathMatch pathMatch(String path, Object implInstance, Method implMethod, MethodInvoker invoker) throws Exception {
+		return new PathMatch(route(path, implInstance, implMethod, invoker), null);
+	}
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.argumentbinders;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.doitnext.http.router.exceptions.TypeConversionException;
+import com.doitnext.http.router.typeconverters.StringConversionUtil;
+
+public class QueryParameterBinderTest {
+
+	/**
+	 * Doubles every int it converts.
+	 */
+	private static class DoublingConverter extends StringConversionUtil {
+		@Override
+		public Object convert(String value, Class<?> classz) throws TypeConversionException {
+			Object result = super.convert(value, classz);
+			return (result instanceof Integer) ? (Integer)result * 2 : result;
+		}
+	}
+
+	private static BindingContext context(String queryString) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setQueryString(queryString);
+		return new BindingContext(null, request, new MockHttpServletResponse());
+	}
+
+	@Test
+	public void testBindsResolvedConverters() throws Exception {
+		StringConversionUtil converter = new StringConversionUtil();
+		BindingContext context = context("limit=5&id=1&id=2");
+		Assert.assertEquals(5, new QueryParameterBinder("limit", int.class, converter).bind(context));
+		Assert.assertArrayEquals(new long[] {1, 2}, 
+				(long[])new QueryParameterBinder("id", long[].class, converter).bind(context));
+		Assert.assertNull(new QueryParameterBinder("offset", int.class, converter).bind(context));
+	}
+
+	@Test
+	public void testSubclassConvertIsUsed() throws Exception {
+		DoublingConverter converter = new DoublingConverter();
+		Assert.assertNull(converter.resolveConverter(int.class));
+		Assert.assertNull(converter.resolveArrayConverter(int[].class));
+		BindingContext context = context("limit=5&id=1&id=2");
+		Assert.assertEquals(10, new QueryParameterBinder("limit", int.class, converter).bind(context));
+		Assert.assertArrayEquals(new int[] {2, 4}, 
+				(int[])new QueryParameterBinder("id", int[].class, converter).bind(context));
+	}
+}
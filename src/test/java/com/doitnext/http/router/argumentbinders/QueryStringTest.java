@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.argumentbinders;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class QueryStringTest {
+
+	@Test
+	public void testParse() {
+		QueryString qs = new QueryString("city=Dallas&teamType=FOOTBALL&bogusBooger&=x&city=Los+Angeles&empty=", null);
+		Assert.assertEquals(4, qs.size());
+		Assert.assertArrayEquals(new String[] {"Dallas", "Los Angeles"}, qs.getValues("city"));
+		Assert.assertEquals("Dallas", qs.getValue("city"));
+		Assert.assertEquals("FOOTBALL", qs.getValue("teamType"));
+		Assert.assertEquals("", qs.getValue("empty"));
+		Assert.assertNull(qs.getValue("bogusBooger"));
+		Assert.assertNull(qs.getValues("teamName"));
+		Assert.assertNull(qs.getValue("ity"));
+	}
+
+	@Test
+	public void testNoQueryString() {
+		QueryString qs = new QueryString(null, null);
+		Assert.assertEquals(0, qs.size());
+		Assert.assertNull(qs.getValues("city"));
+		Assert.assertEquals(0, new QueryString("", null).size());
+		Assert.assertEquals(0, new QueryString("&&&", null).size());
+	}
+
+	@Test
+	public void testDecoding() {
+		QueryString qs = new QueryString("na%6De=S%C3%A3o+Paulo&pct=100%25&bad=%zz%4&eq=a=b", StandardCharsets.UTF_8);
+		Assert.assertEquals("São Paulo", qs.getValue("name"));
+		Assert.assertEquals("100%", qs.getValue("pct"));
+		Assert.assertEquals("%zz%4", qs.getValue("bad"));
+		Assert.assertEquals("a=b", qs.getValue("eq"));
+
+		qs = new QueryString("name=S%E3o", StandardCharsets.ISO_8859_1);
+		Assert.assertEquals("São", qs.getValue("name"));
+	}
+
+	@Test
+	public void testManyArguments() {
+		StringBuilder sb = new StringBuilder();
+		for(int x = 0; x < 50; x++)
+			sb.append("p").append(x).append('=').append(x).append('&');
+		QueryString qs = new QueryString(sb.toString(), null);
+		Assert.assertEquals(50, qs.size());
+		Assert.assertEquals("49", qs.getValue("p49"));
+	}
+
+	@Test
+	public void testPairsWithoutValues() {
+		StringBuilder sb = new StringBuilder();
+		for(int x = 0; x < 4000; x++)
+			sb.append("a&");
+		sb.append("x=1&b&y=2=3&c");
+		QueryString qs = new QueryString(sb.toString(), null);
+		Assert.assertEquals(2, qs.size());
+		Assert.assertEquals("1", qs.getValue("x"));
+		Assert.assertEquals("2=3", qs.getValue("y"));
+		Assert.assertNull(qs.getValue("a"));
+		Assert.assertNull(qs.getValue("c"));
+	}
+}
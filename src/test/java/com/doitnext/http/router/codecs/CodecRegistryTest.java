@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.codecs;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.doitnext.http.router.exampleclasses.TestTeamPojo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+public class CodecRegistryTest {
+
+	@Test
+	public void testDefaultMapper() {
+		ObjectMapper mapper = CodecRegistry.createDefaultMapper();
+		Assert.assertTrue(mapper.isEnabled(DeserializationFeature.READ_ENUMS_USING_TO_STRING));
+		Assert.assertTrue(mapper.isEnabled(SerializationFeature.WRITE_ENUMS_USING_TO_STRING));
+		Assert.assertNotSame(mapper, CodecRegistry.createDefaultMapper());
+		Assert.assertSame(CodecRegistry.getDefault(), CodecRegistry.getDefault());
+	}
+
+	@Test
+	public void testWritersAndReadersAreCached() throws Exception {
+		CodecRegistry registry = new CodecRegistry(CodecRegistry.createDefaultMapper());
+		Assert.assertSame(registry.getWriter(), registry.getWriter());
+		Assert.assertSame(registry.getWriter(TestTeamPojo.class), registry.getWriter(TestTeamPojo.class));
+		Assert.assertNotSame(registry.getWriter(TestTeamPojo.class), registry.getWriter(String.class));
+		Assert.assertSame(registry.getReader(TestTeamPojo.class), registry.getReader(TestTeamPojo.class));
+
+		TestTeamPojo team = new TestTeamPojo(TestTeamPojo.Type.FOOTBALL, "Jets");
+		team.setCity("New York");
+		byte json[] = registry.getWriter(TestTeamPojo.class).writeValueAsBytes(team);
+		Assert.assertTrue(Arrays.equals(registry.getWriter().writeValueAsBytes(team), json));
+		TestTeamPojo actual = registry.getReader(TestTeamPojo.class).readValue(new ByteArrayInputStream(json));
+		Assert.assertEquals(team, actual);
+	}
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.formatclasses;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.doitnext.http.router.annotations.RestCollection;
+import com.doitnext.http.router.annotations.RestMethod;
+import com.doitnext.http.router.annotations.enums.HttpMethod;
+import com.doitnext.http.router.codecs.CodecRegistry;
+
+/**
+ * A collection served in the binary JSON compatible formats as well as in JSON.
+ * 
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+@RestCollection(value = "scoresCollection", pathprefix = "/scores", 
+	alternateReturnFormats = {CodecRegistry.SMILE, CodecRegistry.CBOR})
+public class ScoresCollection {
+
+	@RestMethod(method = HttpMethod.GET, template = "")
+	public List<Integer> getScores() {
+		return Collections.emptyList();
+	}
+
+	@RestMethod(method = HttpMethod.GET, template = "/latest", returnType = "score")
+	public Integer getLatestScore() {
+		return 0;
+	}
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.limits;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.doitnext.http.router.DefaultInvoker;
+import com.doitnext.http.router.Route;
+import com.doitnext.http.router.TestRoutes;
+import com.doitnext.http.router.annotations.ConcurrencyLimit;
+import com.doitnext.http.router.limits.ConcurrencyLimits.Permit;
+
+/**
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class ConcurrencyLimitsTest {
+
+	@ConcurrencyLimit(3)
+	public static class LimitedCollection {
+		@ConcurrencyLimit(2)
+		public String getLimited() {
+			return null;
+		}
+
+		public String getShared() {
+			return null;
+		}
+	}
+
+	public static class UnlimitedCollection {
+		public String getUnlimited() {
+			return null;
+		}
+	}
+
+	@Test
+	public void testFixedLimit() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("fixed", 2, 1, false);
+		Assert.assertTrue(limiter.tryAcquire());
+		Assert.assertTrue(limiter.tryAcquire());
+		Assert.assertFalse(limiter.tryAcquire());
+		Assert.assertEquals(2, limiter.getInFlight());
+		limiter.release(1000);
+		Assert.assertTrue(limiter.tryAcquire());
+		Assert.assertEquals(3, limiter.getAccepted());
+		Assert.assertEquals(1, limiter.getRejected());
+		Assert.assertEquals(2, limiter.getLimit());
+		Assert.assertEquals("fixed", limiter.getName());
+		Assert.assertFalse(limiter.isAdaptive());
+	}
+
+	@Test
+	public void testAdaptiveLimit() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter("adaptive", 100, 5, true);
+		Assert.assertTrue(limiter.isAdaptive());
+		Assert.assertEquals(5, limiter.getMinimum());
+		Assert.assertEquals(100, limiter.getMaximum());
+		// Steady latency keeps the limit at the maximum
+		for(int x = 0; x < 200; x++)
+			cycle(limiter, 80, 1000000);
+		Assert.assertEquals(100, limiter.getLimit());
+		// Requests slowing down shrink the limit, but never below the minimum
+		int smallest = limiter.getLimit();
+		for(int x = 0; x < 500; x++) {
+			cycle(limiter, 80, 100000000);
+			smallest = Math.min(smallest, limiter.getLimit());
+		}
+		Assert.assertTrue(smallest < 100);
+		Assert.assertTrue(smallest >= 5);
+		// Once the slower latency becomes the norm the limit grows back
+		for(int x = 0; x < 500; x++)
+			cycle(limiter, 80, 100000000);
+		Assert.assertEquals(100, limiter.getLimit());
+	}
+
+	/**
+	 * Acquires up to inFlight permits and releases them all with the given latency.
+	 */
+	private static void cycle(ConcurrencyLimiter limiter, int inFlight, long rttNanos) {
+		int acquired = 0;
+		while(acquired < inFlight && limiter.tryAcquire())
+			acquired++;
+		for(int x = 0; x < acquired; x++)
+			limiter.release(rttNanos);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidLimit() {
+		new ConcurrencyLimiter("invalid", 1, 2, true);
+	}
+
+	@Test
+	public void testRouteAndCollectionLimits() throws Exception {
+		ConcurrencyLimits limits = new ConcurrencyLimits();
+		Route limited = route(LimitedCollection.class, "getLimited");
+		Route shared = route(LimitedCollection.class, "getShared");
+		Route unlimited = route(UnlimitedCollection.class, "getUnlimited");
+
+		Permit first = limits.tryAcquire(limited);
+		Permit second = limits.tryAcquire(limited);
+		Assert.assertNotNull(first);
+		Assert.assertNotNull(second);
+		// The method limit is reached
+		Assert.assertNull(limits.tryAcquire(limited));
+		// The collection limit is not
+		Permit third = limits.tryAcquire(shared);
+		Assert.assertNotNull(third);
+		Assert.assertNull(limits.tryAcquire(shared));
+		for(int x = 0; x < 10; x++)
+			Assert.assertNotNull(limits.tryAcquire(unlimited));
+
+		Assert.assertEquals(2, limits.getLimiters().size());
+		for(ConcurrencyLimiter limiter : limits.getLimiters()) {
+			if(limiter.getName().endsWith("getLimited")) {
+				Assert.assertEquals(2, limiter.getInFlight());
+				Assert.assertEquals(1, limiter.getRejected());
+			} else {
+				Assert.assertEquals(LimitedCollection.class.getName(), limiter.getName());
+				Assert.assertEquals(3, limiter.getInFlight());
+				Assert.assertEquals(1, limiter.getRejected());
+			}
+		}
+		first.release();
+		second.release();
+		third.release();
+		for(ConcurrencyLimiter limiter : limits.getLimiters())
+			Assert.assertEquals(0, limiter.getInFlight());
+		Assert.assertNotNull(limits.tryAcquire(limited));
+	}
+
+	@Test
+	public void testPermitHandoff() throws Exception {
+		ConcurrencyLimits limits = new ConcurrencyLimits();
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		Assert.assertNull(Permit.claim(request));
+		Permit permit = limits.tryAcquire(route(LimitedCollection.class, "getLimited"));
+		permit.hold(request);
+		Assert.assertSame(permit, Permit.claim(request));
+		// Only one thread may claim the permit
+		Assert.assertNull(Permit.claim(request));
+	}
+
+	private static Route route(Class<?> implClass, String methodName) throws Exception {
+		return TestRoutes.route("/limited", implClass.getDeclaredConstructor().newInstance(), implClass.getMethod(methodName), 
+				new DefaultInvoker());
+	}
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.limits;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.doitnext.http.router.DefaultInvoker;
+import com.doitnext.http.router.Route;
+import com.doitnext.http.router.TestRoutes;
+import com.doitnext.http.router.annotations.RateLimit;
+
+/**
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class RateLimitsTest {
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	public static class LimitedCollection {
+		@RateLimit(value = 2, period = 1, unit = TimeUnit.HOURS)
+		public String getLimited() {
+			return null;
+		}
+
+		public String getUnlimited() {
+			return null;
+		}
+	}
+
+	@Test
+	public void testBucketRefills() {
+		RateLimiter limiter = new RateLimiter("refill", 10, SECOND, 3, 100);
+		Assert.assertEquals(SECOND / 10, limiter.getInterval());
+		long now = 1000L;
+		// A full bucket allows the burst
+		for(int x = 0; x < 3; x++)
+			Assert.assertEquals(0, limiter.tryAcquire("client", now));
+		long wait = limiter.tryAcquire("client", now);
+		Assert.assertEquals(SECOND / 10, wait);
+		// Rejected requests do not take tokens
+		Assert.assertEquals(wait, limiter.tryAcquire("client", now));
+		Assert.assertEquals(0, limiter.tryAcquire("client", now + wait));
+		Assert.assertTrue(limiter.tryAcquire("client", now + wait) > 0);
+		// Other clients have their own bucket
+		Assert.assertEquals(0, limiter.tryAcquire("other", now));
+		// An idle bucket refills up to the burst only
+		now += 10 * SECOND;
+		for(int x = 0; x < 3; x++)
+			Assert.assertEquals(0, limiter.tryAcquire("client", now));
+		Assert.assertTrue(limiter.tryAcquire("client", now) > 0);
+
+		Assert.assertEquals(8, limiter.getAccepted());
+		Assert.assertEquals(4, limiter.getRejected());
+		Assert.assertEquals(2, limiter.getBucketCount());
+	}
+
+	@Test
+	public void testBucketsBounded() {
+		RateLimiter limiter = new RateLimiter("bounded", 1, SECOND, 1, 8);
+		long now = 1000L;
+		for(int x = 0; x < 100; x++) {
+			Assert.assertEquals(0, limiter.tryAcquire("client" + x, now));
+			Assert.assertTrue(limiter.getBucketCount() <= 8);
+		}
+		Assert.assertTrue(limiter.getEvictions() > 0);
+	}
+
+	@Test
+	public void testFullBucketsEvictedFirst() {
+		RateLimiter limiter = new RateLimiter("bounded", 1, SECOND, 1, 8);
+		long now = 1000L;
+		for(int x = 0; x < 7; x++)
+			Assert.assertEquals(0, limiter.tryAcquire("idle" + x, now));
+		now += 10 * SECOND;
+		Assert.assertEquals(0, limiter.tryAcquire("busy", now));
+		Assert.assertEquals(8, limiter.getBucketCount());
+		Assert.assertEquals(0, limiter.tryAcquire("new", now));
+		Assert.assertTrue(limiter.getBucketCount() < 8);
+		// The bucket still refilling is kept
+		Assert.assertTrue(limiter.tryAcquire("busy", now) > 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidLimit() {
+		new RateLimiter("invalid", 0, SECOND, 1, 1);
+	}
+
+	@Test
+	public void testRouteLimits() throws Exception {
+		RateLimits limits = new RateLimits();
+		Route limited = route("getLimited");
+		Route unlimited = route("getUnlimited");
+		MockHttpServletRequest first = new MockHttpServletRequest();
+		first.setRemoteAddr("10.0.0.1");
+		MockHttpServletRequest second = new MockHttpServletRequest();
+		second.setRemoteAddr("10.0.0.2");
+
+		Assert.assertEquals(0, limits.tryAcquire(limited, first));
+		Assert.assertEquals(0, limits.tryAcquire(limited, first));
+		long wait = limits.tryAcquire(limited, first);
+		Assert.assertTrue(wait > TimeUnit.MINUTES.toNanos(29));
+		Assert.assertEquals(0, limits.tryAcquire(limited, second));
+		for(int x = 0; x < 10; x++)
+			Assert.assertEquals(0, limits.tryAcquire(unlimited, first));
+
+		Assert.assertEquals(1, limits.getLimiters().size());
+		RateLimiter limiter = limits.getLimiters().get(0);
+		Assert.assertEquals(LimitedCollection.class.getName() + ".getLimited", limiter.getName());
+		Assert.assertEquals(2, limiter.getBucketCount());
+		Assert.assertEquals(1, limiter.getRejected());
+	}
+
+	@Test
+	public void testForwardedForKey() {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setRemoteAddr("10.0.0.1");
+		Assert.assertEquals("10.0.0.1", new RemoteAddressKeyExtractor().getClientKey(request));
+		ClientKeyExtractor extractor = new RemoteAddressKeyExtractor("X-Forwarded-For");
+		Assert.assertEquals("10.0.0.1", extractor.getClientKey(request));
+		request.addHeader("X-Forwarded-For", "192.168.1.7, 10.0.0.1");
+		Assert.assertEquals("192.168.1.7", extractor.getClientKey(request));
+	}
+
+	private static Route route(String methodName) throws Exception {
+		return TestRoutes.route("/limited", new LimitedCollection(), LimitedCollection.class.getMethod(methodName), 
+				new DefaultInvoker());
+	}
+}
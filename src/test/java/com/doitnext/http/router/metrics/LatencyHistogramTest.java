@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.metrics;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void testBuckets() {
+		long values[] = {0, 1, 31, 32, 33, 63, 64, 1000, 123456789L, TimeUnit.MINUTES.toNanos(30)};
+		int lastIndex = -1;
+		for(long value : values) {
+			int index = LatencyHistogram.indexOf(value);
+			Assert.assertTrue(index >= lastIndex);
+			lastIndex = index;
+			long highest = LatencyHistogram.highestValueAt(index);
+			Assert.assertTrue(highest >= value);
+			// Within about 3% of the value
+			Assert.assertTrue(String.format("%d in bucket up to %d", value, highest), highest - value <= value / 32);
+			if(index > 0)
+				Assert.assertTrue(LatencyHistogram.highestValueAt(index - 1) < value);
+		}
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(Long.MAX_VALUE);
+		Assert.assertEquals(1, histogram.getCountAtOrBelow(histogram.getHighestTrackableValue()));
+		Assert.assertEquals(Long.MAX_VALUE, histogram.getMax());
+	}
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals(0, histogram.getValueAtPercentile(99));
+		for(long x = 1; x <= 1000; x++)
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(x));
+		Assert.assertEquals(1000, histogram.getCount());
+		Assert.assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), histogram.getMax());
+		Assert.assertEquals(TimeUnit.MICROSECONDS.toNanos(500500), histogram.getSum());
+		assertNear(TimeUnit.MICROSECONDS.toNanos(500), histogram.getValueAtPercentile(50));
+		assertNear(TimeUnit.MICROSECONDS.toNanos(990), histogram.getValueAtPercentile(99));
+		Assert.assertEquals(histogram.getMax(), histogram.getValueAtPercentile(100));
+		long below = histogram.getCountAtOrBelow(TimeUnit.MICROSECONDS.toNanos(250));
+		Assert.assertTrue(below >= 250 && below <= 260);
+	}
+
+	private static void assertNear(long expected, long actual) {
+		Assert.assertTrue(String.format("%d not near %d", actual, expected), 
+				actual >= expected && actual - expected <= expected / 32);
+	}
+
+	@Test
+	public void testConcurrentRecording() throws Exception {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		final int threads = 8;
+		final int samples = 10000;
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		for(int t = 0; t < threads; t++) {
+			final long latency = (t + 1) * 1000L;
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for(int x = 0; x < samples; x++)
+							histogram.record(latency);
+					} catch(InterruptedException e) {
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		start.countDown();
+		Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+		Assert.assertEquals(threads * samples, histogram.getCount());
+		Assert.assertEquals(threads * samples, histogram.getCountAtOrBelow(histogram.getMax()));
+		Assert.assertEquals(threads * 1000L, histogram.getMax());
+	}
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.doitnext.http.router.metrics.PhaseTimer.Phase;
+
+/**
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class PhaseTimerTest {
+
+	@Test
+	public void testLaps() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		Assert.assertNull(PhaseTimer.get(request));
+		PhaseTimer timer = PhaseTimer.start(request, true);
+		Assert.assertSame(timer, PhaseTimer.get(request));
+		Assert.assertNull(PhaseTimer.get(null));
+
+		Thread.sleep(2);
+		timer.lap(Phase.MATCH);
+		Thread.sleep(2);
+		// Time between a lap and a mark belongs to no phase
+		timer.mark();
+		timer.lap(Phase.NEGOTIATE);
+		Thread.sleep(2);
+		timer.lap(Phase.INVOKE);
+		Thread.sleep(2);
+		timer.lap(Phase.INVOKE);
+		Assert.assertTrue(timer.getNanos(Phase.MATCH) >= 2000000);
+		Assert.assertTrue(timer.getNanos(Phase.NEGOTIATE) < 2000000);
+		Assert.assertTrue(timer.getNanos(Phase.INVOKE) >= 4000000);
+		Assert.assertEquals(0, timer.getNanos(Phase.BIND));
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		timer.beginResponse(response);
+		String header = (String)response.getHeader("Server-Timing");
+		Assert.assertTrue(header, header.matches("match;dur=\\d+\\.\\d{3}, negotiate;dur=\\d+\\.\\d{3}, invoke;dur=\\d+\\.\\d{3}"));
+	}
+
+	@Test
+	public void testRecordPhases() throws Exception {
+		PhaseTimer timer = PhaseTimer.start(new MockHttpServletRequest(), false);
+		timer.lap(Phase.MATCH);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		timer.beginResponse(response);
+		Assert.assertNull(response.getHeader("Server-Timing"));
+
+		RouteMetrics metrics = new RouteMetrics();
+		Assert.assertNull(metrics.getPhaseLatencies(Phase.MATCH));
+		metrics.recordPhases(timer);
+		metrics.recordPhases(timer);
+		for(Phase phase : Phase.values())
+			Assert.assertEquals(2, metrics.getPhaseLatencies(phase).getCount());
+		Assert.assertEquals(timer.getNanos(Phase.MATCH), metrics.getPhaseLatencies(Phase.MATCH).getMax());
+	}
+}
@@ -15,6 +15,10 @@
  */
 package com.doitnext.http.router.requestdeserializers;
 
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+
 import org.junit.Test;
 import org.junit.Assert;
 
@@ -38,4 +42,18 @@ public class DefaultJsonDeserializerTest {
 		DefaultJsonDeserializer ds = new DefaultJsonDeserializer();
 		ds.deserialize(null, null, null, null);
 	}
+
+	@Test
+	public void testResolveReader() throws Exception {
+		Assert.assertNotNull(new DefaultJsonDeserializer().resolveReader(HashMap.class, ""));
+		Assert.assertNotNull(new SmileDeserializer().resolveReader(HashMap.class, ""));
+		DefaultJsonDeserializer custom = new DefaultJsonDeserializer() {
+			@Override
+			public Object deserialize(InputStream inputStream, Class<?> returnType,
+					String requestType, String encoding) throws DeserializationException {
+				return Collections.emptyMap();
+			}
+		};
+		Assert.assertNull(custom.resolveReader(HashMap.class, ""));
+	}
 }
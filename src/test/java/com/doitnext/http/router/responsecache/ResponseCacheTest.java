@@ -0,0 +1,288 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.responsecache;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.doitnext.http.router.DefaultInvoker;
+import com.doitnext.http.router.MethodInvoker;
+import com.doitnext.http.router.OffloadDispatcher;
+import com.doitnext.http.router.PathMatch;
+import com.doitnext.http.router.TestRoutes;
+import com.doitnext.http.router.annotations.Cached;
+import com.doitnext.http.router.annotations.QueryParameter;
+import com.doitnext.http.router.annotations.enums.HttpMethod;
+
+/**
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class ResponseCacheTest {
+
+	public static class Values {
+		int calls = 0;
+
+		@Cached(ttl = 1, unit = TimeUnit.HOURS, queryParameters = {"q"})
+		public String getValue(@QueryParameter(name = "q") String q, @QueryParameter(name = "other") String other) {
+			return String.format("%s-%d", q, ++calls);
+		}
+
+		@Cached(ttl = 0, staleWhileRevalidate = 1, unit = TimeUnit.HOURS)
+		public String getStale() {
+			return String.format("stale-%d", ++calls);
+		}
+
+		@Cached(ttl = 0)
+		public String getExpired() {
+			return String.format("expired-%d", ++calls);
+		}
+
+		public String getUncached() {
+			return String.format("uncached-%d", ++calls);
+		}
+
+		@Cached(ttl = 1, unit = TimeUnit.HOURS)
+		public String getFailure() {
+			++calls;
+			throw new IllegalStateException("Failed");
+		}
+	}
+
+	public static class OtherValues {
+		@Cached(ttl = 1, unit = TimeUnit.HOURS)
+		public String getValue() {
+			return "other";
+		}
+	}
+
+	private MethodInvoker invoker = new DefaultInvoker();
+	private Values values;
+
+	@Before
+	public void init() {
+		values = new Values();
+	}
+
+	@Test
+	public void testFreshHits() throws Exception {
+		ResponseCache cache = new ResponseCache(1024 * 1024);
+		PathMatch pm = pathMatch(values, "getValue", String.class, String.class);
+		Assert.assertEquals("\"a-1\"", get(cache, pm, "q=a&other=1", null).getContentAsString());
+		// Query parameters not named by the annotation do not select the response
+		MockHttpServletResponse response = get(cache, pm, "other=2&q=a", null);
+		Assert.assertEquals("\"a-1\"", response.getContentAsString());
+		Assert.assertEquals(200, response.getStatus());
+		Assert.assertEquals("application/json;charset=UTF-8", response.getContentType());
+		Assert.assertEquals(5, response.getContentLength());
+		Assert.assertEquals("\"b-2\"", get(cache, pm, "q=b", null).getContentAsString());
+		Assert.assertEquals(2, values.calls);
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(2, cache.getMisses());
+		Assert.assertEquals(2, cache.size());
+
+		// If-None-Match
+		String etag = (String)response.getHeader("ETag");
+		Assert.assertNotNull(etag);
+		response = get(cache, pm, "q=a", etag);
+		Assert.assertEquals(304, response.getStatus());
+		Assert.assertEquals(0, response.getContentAsByteArray().length);
+		Assert.assertEquals(200, get(cache, pm, "q=a", "\"other\"").getStatus());
+		Assert.assertEquals(304, get(cache, pm, "q=a", "*").getStatus());
+
+		// Invalidation by collection
+		PathMatch other = pathMatch(new OtherValues(), "getValue");
+		get(cache, other, null, null);
+		Assert.assertEquals(3, cache.size());
+		cache.invalidate(Values.class);
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals("\"a-3\"", get(cache, pm, "q=a", null).getContentAsString());
+		cache.invalidateAll();
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(0, cache.getWeight());
+	}
+
+	@Test
+	public void testStaleWhileRevalidate() throws Exception {
+		ResponseCache cache = new ResponseCache(1024 * 1024);
+		PathMatch pm = pathMatch(values, "getStale");
+		Assert.assertEquals("\"stale-1\"", get(cache, pm, null, null).getContentAsString());
+		// Served stale, then refreshed
+		Assert.assertEquals("\"stale-1\"", get(cache, pm, null, null).getContentAsString());
+		Assert.assertEquals(2, values.calls);
+		Assert.assertEquals("\"stale-2\"", get(cache, pm, null, null).getContentAsString());
+		Assert.assertEquals(2, cache.getStaleHits());
+		Assert.assertEquals(2, cache.getRefreshes());
+
+		// Without a stale window an expired response is not served
+		pm = pathMatch(values, "getExpired");
+		Assert.assertEquals("\"expired-4\"", get(cache, pm, null, null).getContentAsString());
+		Assert.assertEquals("\"expired-5\"", get(cache, pm, null, null).getContentAsString());
+	}
+
+	@Test
+	public void testStaleResponseCommittedBeforeRefresh() throws Exception {
+		final boolean committed[] = new boolean[2];
+		final MockHttpServletResponse clientResponse[] = new MockHttpServletResponse[1];
+		invoker = new MethodInvoker() {
+			final MethodInvoker delegate = new DefaultInvoker();
+
+			@Override
+			public InvokeResult invokeMethod(HttpMethod method, PathMatch pm, HttpServletRequest req,
+					HttpServletResponse resp) throws ServletException {
+				if(clientResponse[0] != null)
+					committed[values.calls - 1] = clientResponse[0].isCommitted();
+				return delegate.invokeMethod(method, pm, req, resp);
+			}
+		};
+		ResponseCache cache = new ResponseCache(1024 * 1024);
+		PathMatch pm = pathMatch(values, "getStale");
+		get(cache, pm, null, null);
+		String ifNoneMatch[] = {null, "*"};
+		for(int x = 0; x < ifNoneMatch.length; x++) {
+			MockHttpServletRequest request = new MockHttpServletRequest("GET", "/values");
+			request.setPathInfo("/values");
+			if(ifNoneMatch[x] != null)
+				request.addHeader("If-None-Match", ifNoneMatch[x]);
+			clientResponse[0] = new MockHttpServletResponse();
+			Assert.assertTrue(cache.handle(invoker, HttpMethod.GET, pm, request, clientResponse[0]));
+			Assert.assertTrue(committed[x]);
+		}
+		Assert.assertEquals(304, clientResponse[0].getStatus());
+		Assert.assertEquals(2, cache.getRefreshes());
+	}
+
+	@Test
+	public void testRefreshDispatched() throws Exception {
+		final CountDownLatch refreshing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final boolean blocking[] = new boolean[1];
+		invoker = new MethodInvoker() {
+			final MethodInvoker delegate = new DefaultInvoker();
+
+			@Override
+			public InvokeResult invokeMethod(HttpMethod method, PathMatch pm, HttpServletRequest req,
+					HttpServletResponse resp) throws ServletException {
+				if(blocking[0]) {
+					refreshing.countDown();
+					try {
+						release.await(5, TimeUnit.SECONDS);
+					} catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return delegate.invokeMethod(method, pm, req, resp);
+			}
+		};
+		OffloadDispatcher dispatcher = new OffloadDispatcher(OffloadDispatcher.newPlatformThreadPool(1, 1));
+		try {
+			ResponseCache cache = new ResponseCache(1024 * 1024);
+			cache.setRefreshDispatcher(dispatcher);
+			Assert.assertSame(dispatcher, cache.getRefreshDispatcher());
+			PathMatch pm = pathMatch(values, "getStale");
+			get(cache, pm, null, null);
+
+			HttpServletRequest request = mock(HttpServletRequest.class);
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			AsyncContext asyncContext = mock(AsyncContext.class);
+			when(request.getPathInfo()).thenReturn("/values");
+			when(request.isAsyncSupported()).thenReturn(true);
+			when(request.startAsync(request, response)).thenReturn(asyncContext);
+			blocking[0] = true;
+			// Answered while the refresh is still running
+			Assert.assertTrue(cache.handle(invoker, HttpMethod.GET, pm, request, response));
+			Assert.assertEquals("\"stale-1\"", response.getContentAsString());
+			Assert.assertTrue(response.isCommitted());
+			Assert.assertTrue(refreshing.await(5, TimeUnit.SECONDS));
+			Assert.assertEquals(0, cache.getRefreshes());
+			verify(asyncContext, never()).complete();
+			release.countDown();
+			verify(asyncContext, timeout(5000)).complete();
+			Assert.assertEquals(1, cache.getRefreshes());
+			Assert.assertEquals(1, dispatcher.getDispatched());
+		} finally {
+			dispatcher.shutdown();
+		}
+	}
+
+	@Test
+	public void testNotCached() throws Exception {
+		ResponseCache cache = new ResponseCache(1024 * 1024);
+		PathMatch pm = pathMatch(values, "getUncached");
+		Assert.assertEquals("\"uncached-1\"", get(cache, pm, null, null).getContentAsString());
+		Assert.assertEquals("\"uncached-2\"", get(cache, pm, null, null).getContentAsString());
+
+		pm = pathMatch(values, "getFailure");
+		MockHttpServletResponse response = get(cache, pm, null, null);
+		Assert.assertEquals(500, response.getStatus());
+		Assert.assertTrue(response.getContentAsString().contains("Failed"));
+		Assert.assertEquals(500, get(cache, pm, null, null).getStatus());
+		Assert.assertEquals(4, values.calls);
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		ResponseCache cache = new ResponseCache(1024);
+		PathMatch pm = pathMatch(values, "getValue", String.class, String.class);
+		for(int x = 0; x < 20; x++)
+			get(cache, pm, "q=" + x, null);
+		Assert.assertTrue(cache.getWeight() <= cache.getMaxBytes());
+		Assert.assertTrue(cache.size() < 20);
+		Assert.assertEquals(20 - cache.size(), cache.getEvictions());
+		// The most recent response is still cached
+		get(cache, pm, "q=19", null);
+		Assert.assertEquals(1, cache.getHits());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSize() {
+		new ResponseCache(0);
+	}
+
+	private MockHttpServletResponse get(ResponseCache cache, PathMatch pm, String queryString, 
+			String ifNoneMatch) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/values");
+		request.setPathInfo("/values");
+		request.setQueryString(queryString);
+		if(ifNoneMatch != null)
+			request.addHeader("If-None-Match", ifNoneMatch);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		Assert.assertTrue(cache.handle(invoker, HttpMethod.GET, pm, request, response));
+		return response;
+	}
+
+	private PathMatch pathMatch(Object impl, String methodName, Class<?>... parameterTypes) throws Exception {
+		return TestRoutes.pathMatch("/values", impl, impl.getClass().getMethod(methodName, parameterTypes), invoker);
+	}
+}
@@ -15,11 +15,18 @@
  */
 package com.doitnext.http.router.responseformatter;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.util.Date;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.Mockito;
 
+import com.doitnext.http.router.codecs.CodecRegistry;
+import com.doitnext.http.router.requestdeserializers.CborDeserializer;
+import com.doitnext.http.router.requestdeserializers.DefaultJsonDeserializer;
+import com.doitnext.http.router.requestdeserializers.SmileDeserializer;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
@@ -109,4 +116,33 @@ public class JacksonResponseFormatterTest {
 		Assert.assertEquals(testPojo, actual);		
 	}
 
+	@Test
+	public void testToStream() throws Exception {
+		ResponseFormatter formatter = new JacksonResponseFormatter();
+		ByteArrayOutputStream out = Mockito.spy(new ByteArrayOutputStream());
+		formatter.formatResponseUtf8(testPojo, null, null, out);
+		Mockito.verify(out, Mockito.never()).close();
+		
+		TestPojo actual = mapper.readValue(out.toByteArray(), TestPojo.class);
+		Assert.assertEquals(testPojo, actual);
+	}
+
+	@Test
+	public void testBinaryFormats() throws Exception {
+		JacksonResponseFormatter formatters[] = {new SmileResponseFormatter(), new CborResponseFormatter()};
+		DefaultJsonDeserializer deserializers[] = {new SmileDeserializer(), new CborDeserializer()};
+		String formats[] = {CodecRegistry.SMILE, CodecRegistry.CBOR};
+		for(int x = 0; x < formatters.length; x++) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			// A JSON writer is not used to write a binary format
+			formatters[x].writeResponse(testPojo, CodecRegistry.getDefault().getWriter(TestPojo.class), out);
+			Assert.assertFalse(out.toString("UTF-8").startsWith("{"));
+			Assert.assertEquals(formats[x], deserializers[x].getRequestFormat());
+			Object actual = deserializers[x].deserialize(new ByteArrayInputStream(out.toByteArray()), 
+					TestPojo.class, null, null);
+			Assert.assertEquals(testPojo, actual);
+			Assert.assertArrayEquals(out.toByteArray(), formatters[x].formatResponseUtf8(testPojo, null, null));
+		}
+	}
+
 }
@@ -17,6 +17,8 @@ package com.doitnext.http.router.responsehandlers;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -91,4 +93,48 @@ public class DefaultSuccessHandlerTest {
 		Assert.assertTrue(handled);
 	}
 
+	@Test
+	public void testContentLengthBelowThreshold() throws UnsupportedEncodingException {
+		DefaultSuccessHandler h = new DefaultSuccessHandler();
+		Assert.assertEquals(DefaultSuccessHandler.DEFAULT_STREAMING_THRESHOLD, h.getStreamingThreshold());
+		h.setStreamingThreshold(12);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		Assert.assertTrue(h.handleResponse(null, null, response, "Hidey Ho!!"));
+		Assert.assertEquals("\"Hidey Ho!!\"", response.getContentAsString());
+		Assert.assertEquals(12, response.getContentLength());
+		Assert.assertEquals("application/json;charset=UTF-8", response.getContentType());
+	}
+
+	@Test
+	public void testStreamingAboveThreshold() throws UnsupportedEncodingException {
+		DefaultSuccessHandler h = new DefaultSuccessHandler();
+		h.setStreamingThreshold(11);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		List<String> responseData = new ArrayList<String>();
+		for(int x = 0; x < 1000; x++)
+			responseData.add("Hidey Ho!!");
+		Assert.assertTrue(h.handleResponse(null, null, response, responseData));
+		Assert.assertEquals(0, response.getContentLength());
+		Assert.assertEquals(13001, response.getContentAsString().length());
+		Assert.assertTrue(response.getContentAsString().startsWith("[\"Hidey Ho!!\",\"Hidey"));
+	}
+
+	@Test
+	public void testFailureBeforeThreshold() throws UnsupportedEncodingException {
+		DefaultSuccessHandler h = new DefaultSuccessHandler();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		Assert.assertTrue(h.handleResponse(null, null, response, new FailingBean()));
+		Assert.assertEquals(500, response.getStatus());
+		Assert.assertEquals("", response.getContentAsString());
+	}
+
+	public static class FailingBean {
+		public String getName() {
+			return "Hidey Ho!!";
+		}
+
+		public String getValue() {
+			throw new IllegalStateException("No value");
+		}
+	}
 }
@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.responsehandlers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.doitnext.http.router.DefaultInvoker;
+import com.doitnext.http.router.PathMatch;
+import com.doitnext.http.router.Route;
+import com.doitnext.http.router.annotations.RestMethod;
+import com.doitnext.http.router.annotations.enums.HttpMethod;
+import com.doitnext.http.router.codecs.CodecRegistry;
+import com.doitnext.pathutils.PathTemplateParser;
+
+/**
+ * @author Steve Owens (steve@doitnext.com)
+ *
+ */
+public class ResponseCompressorTest {
+
+	public static class Uncompressed {
+		@RestMethod(method = HttpMethod.GET, template = "", compress = false)
+		public List<String> getNames() {
+			return null;
+		}
+	}
+
+	@Test
+	public void testSelectEncoding() {
+		Assert.assertNull(ResponseCompressor.selectEncoding(null));
+		Assert.assertNull(ResponseCompressor.selectEncoding(""));
+		Assert.assertNull(ResponseCompressor.selectEncoding("identity"));
+		Assert.assertNull(ResponseCompressor.selectEncoding("br"));
+		Assert.assertEquals("gzip", ResponseCompressor.selectEncoding("gzip, deflate, br"));
+		Assert.assertEquals("gzip", ResponseCompressor.selectEncoding("deflate, gzip"));
+		Assert.assertEquals("gzip", ResponseCompressor.selectEncoding("x-gzip"));
+		Assert.assertEquals("deflate", ResponseCompressor.selectEncoding("deflate"));
+		Assert.assertEquals("deflate", ResponseCompressor.selectEncoding("gzip;q=0.5, deflate"));
+		Assert.assertEquals("deflate", ResponseCompressor.selectEncoding("gzip;q=0, *"));
+		Assert.assertEquals("gzip", ResponseCompressor.selectEncoding("*"));
+		Assert.assertNull(ResponseCompressor.selectEncoding("gzip;q=0, deflate;q=0"));
+		Assert.assertNull(ResponseCompressor.selectEncoding("*;q=0"));
+	}
+
+	@Test
+	public void testCompressedResponses() throws Exception {
+		List<String> names = names(2000);
+		String expected = CodecRegistry.getDefault().getWriter().writeValueAsString(names);
+		// Buffered bodies and bodies that outgrow the buffer and are streamed
+		int thresholds[] = {DefaultSuccessHandler.DEFAULT_STREAMING_THRESHOLD, 1024};
+		String encodings[] = {"gzip", "deflate"};
+		for(int threshold : thresholds) {
+			for(String encoding : encodings) {
+				ResponseCompressor compressor = new ResponseCompressor();
+				DefaultSuccessHandler handler = new DefaultSuccessHandler();
+				handler.setResponseCompressor(compressor);
+				handler.setStreamingThreshold(threshold);
+				MockHttpServletRequest request = new MockHttpServletRequest();
+				request.addHeader("Accept-Encoding", encoding);
+				MockHttpServletResponse response = new MockHttpServletResponse();
+				Assert.assertTrue(handler.handleResponse(null, request, response, names));
+				Assert.assertEquals(encoding, response.getHeader("Content-Encoding"));
+				Assert.assertEquals("Accept-Encoding", response.getHeader("Vary"));
+				byte body[] = response.getContentAsByteArray();
+				Assert.assertEquals(expected, inflate(encoding, body));
+				Assert.assertEquals(1, compressor.getCompressedResponses());
+				Assert.assertEquals(expected.length(), compressor.getUncompressedBytes());
+				Assert.assertEquals(body.length, compressor.getCompressedBytes());
+				Assert.assertTrue(compressor.getCompressionRatio() < 0.5);
+				if(threshold > expected.length())
+					Assert.assertEquals(body.length, response.getContentLength());
+			}
+		}
+	}
+
+	@Test
+	public void testDeflatersPooled() throws Exception {
+		ResponseCompressor compressor = new ResponseCompressor(1);
+		Assert.assertEquals(1, compressor.getMaxIdleCodecs());
+		Assert.assertEquals(0, compressor.getIdleCodecs());
+		String text = CodecRegistry.getDefault().getWriter().writeValueAsString(names(200));
+		// Two bodies at once need two deflaters, only one is kept
+		ByteArrayOutputStream first = new ByteArrayOutputStream();
+		ByteArrayOutputStream second = new ByteArrayOutputStream();
+		CompressingOutputStream out1 = compressor.open(first, "gzip");
+		CompressingOutputStream out2 = compressor.open(second, "gzip");
+		out1.write(text.getBytes("UTF-8"));
+		out2.write(text.getBytes("UTF-8"));
+		out1.close();
+		out2.close();
+		Assert.assertEquals(1, compressor.getIdleCodecs());
+		Assert.assertEquals(text, inflate("gzip", first.toByteArray()));
+		Assert.assertEquals(text, inflate("gzip", second.toByteArray()));
+
+		// The kept deflater is reset for the next body, abandoned bodies return theirs
+		for(int x = 0; x < 3; x++) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			CompressingOutputStream out = compressor.open(bytes, "gzip");
+			Assert.assertEquals(0, compressor.getIdleCodecs());
+			out.write(text.getBytes("UTF-8"));
+			if(x == 1) {
+				out.abandon();
+			} else {
+				out.close();
+				Assert.assertEquals(text, inflate("gzip", bytes.toByteArray()));
+			}
+			Assert.assertEquals(1, compressor.getIdleCodecs());
+		}
+		compressor.open(new ByteArrayOutputStream(), "deflate").close();
+		Assert.assertEquals(2, compressor.getIdleCodecs());
+	}
+
+	@Test
+	public void testUncompressedResponses() throws Exception {
+		ResponseCompressor compressor = new ResponseCompressor();
+		compressor.setFastMode(true);
+		Assert.assertTrue(compressor.isFastMode());
+		DefaultSuccessHandler handler = new DefaultSuccessHandler();
+		handler.setResponseCompressor(compressor);
+
+		// Too small to compress
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("Accept-Encoding", "gzip");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		handler.handleResponse(null, request, response, names(2));
+		Assert.assertNull(response.getHeader("Content-Encoding"));
+		Assert.assertEquals("Accept-Encoding", response.getHeader("Vary"));
+
+		// Not acceptable to the client
+		response = new MockHttpServletResponse();
+		handler.handleResponse(null, new MockHttpServletRequest(), response, names(2000));
+		Assert.assertNull(response.getHeader("Content-Encoding"));
+		Assert.assertEquals("Accept-Encoding", response.getHeader("Vary"));
+
+		// Route opted out
+		Method implMethod = Uncompressed.class.getMethod("getNames");
+		Route route = new Route(HttpMethod.GET, null, null, null, "application/json", 
+				new PathTemplateParser("/", "?").parse("/names"), Uncompressed.class, implMethod, 
+				new DefaultInvoker(), new Uncompressed(), handler, new DefaultErrorHandler(), false);
+		response = new MockHttpServletResponse();
+		handler.handleResponse(new PathMatch(route, null), request, response, names(2000));
+		Assert.assertNull(response.getHeader("Content-Encoding"));
+		Assert.assertNull(response.getHeader("Vary"));
+		Assert.assertEquals(0, compressor.getCompressedResponses());
+		Assert.assertEquals(1.0, compressor.getCompressionRatio(), 0);
+	}
+
+	@Test
+	public void testCompressedErrors() throws Exception {
+		ResponseCompressor compressor = new ResponseCompressor();
+		compressor.setMinimumSize(0);
+		Assert.assertEquals(0, compressor.getMinimumSize());
+		DefaultErrorHandler handler = new DefaultErrorHandler();
+		handler.setResponseCompressor(compressor);
+		Assert.assertSame(compressor, handler.getResponseCompressor());
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("Accept-Encoding", "deflate");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		Assert.assertTrue(handler.handleResponse(null, request, response, new IllegalStateException("Oops")));
+		Assert.assertEquals("deflate", response.getHeader("Content-Encoding"));
+		Assert.assertTrue(inflate("deflate", response.getContentAsByteArray()).contains("Oops"));
+		Assert.assertTrue(compressor.getCompressionNanos() > 0);
+	}
+
+	private static List<String> names(int count) {
+		List<String> names = new ArrayList<String>();
+		for(int x = 0; x < count; x++)
+			names.add("Team " + x);
+		return names;
+	}
+
+	private static String inflate(String encoding, byte body[]) throws Exception {
+		InputStream in = "gzip".equals(encoding) ? new GZIPInputStream(new ByteArrayInputStream(body))
+				: new InflaterInputStream(new ByteArrayInputStream(body));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		IOUtils.copy(in, out);
+		return out.toString("UTF-8");
+	}
+}
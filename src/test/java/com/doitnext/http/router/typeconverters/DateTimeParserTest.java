@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2013 Steve Owens (DoItNext.com) http://www.doitnext.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doitnext.http.router.typeconverters;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DateTimeParserTest {
+	private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+	private DateTimeParser parser = new DateTimeParser(Locale.US, NEW_YORK);
+
+	@Test
+	public void testIso() throws Exception {
+		Assert.assertEquals(OffsetDateTime.of(2013, 6, 1, 0, 0, 0, 0, ZoneOffset.ofHours(-4)),
+				parser.parse("2013-06-01"));
+		Assert.assertEquals(OffsetDateTime.of(2013, 1, 1, 12, 30, 0, 0, ZoneOffset.ofHours(-5)),
+				parser.parse("2013-01-01T12:30"));
+		Assert.assertEquals(OffsetDateTime.of(2013, 6, 1, 12, 30, 15, 250000000, ZoneOffset.UTC),
+				parser.parse("2013-06-01T12:30:15.25Z"));
+		Assert.assertEquals(OffsetDateTime.of(2013, 6, 1, 12, 30, 15, 123456789, ZoneOffset.ofHoursMinutes(5, 30)),
+				parser.parse(" 2013-06-01 12:30:15.123456789+05:30 "));
+		Assert.assertEquals(OffsetDateTime.of(2013, 6, 1, 12, 30, 15, 0, ZoneOffset.ofHours(-2)),
+				parser.parse("2013-06-01t12:30:15-0200"));
+		Assert.assertEquals(OffsetDateTime.of(2013, 6, 1, 12, 30, 15, 0, ZoneOffset.ofHours(2)),
+				parser.parse("2013-06-01T12:30:15+02"));
+		Assert.assertNull(parser.parseIso("June 1, 2013"));
+		Assert.assertNull(parser.parseIso("2013-06-01T12"));
+		Assert.assertNull(parser.parseIso("2013-06-01T12:30:15."));
+		Assert.assertNull(parser.parseIso("2013-06-01T12:30+2"));
+		assertUnparseable("2013-13-01");
+		assertUnparseable("2013-02-30T12:00");
+		assertUnparseable("2013-06-01T12:30+19:00");
+	}
+
+	@Test
+	public void testLocaleFormats() throws Exception {
+		TimeZone timeZone = TimeZone.getTimeZone(NEW_YORK);
+		Date now = new Date((System.currentTimeMillis() / 1000) * 1000);
+		int styles[] = {DateFormat.FULL, DateFormat.LONG, DateFormat.MEDIUM};
+		for(int dateStyle : styles) {
+			for(int timeStyle : styles) {
+				DateFormat format = DateFormat.getDateTimeInstance(dateStyle, timeStyle, Locale.US);
+				format.setTimeZone(timeZone);
+				String text = format.format(now);
+				Assert.assertEquals(text, format.parse(text).toInstant(), parser.parse(text).toInstant());
+			}
+		}
+		// Texts come from the JDK's own formats since its locale data differs between releases
+		OffsetDateTime afternoon = OffsetDateTime.of(2013, 1, 2, 15, 4, 0, 0, ZoneOffset.ofHours(-5));
+		DateFormat shortFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT, Locale.US);
+		shortFormat.setTimeZone(timeZone);
+		String shortText = shortFormat.format(Date.from(afternoon.toInstant()));
+		Assert.assertEquals(afternoon, parser.parse(shortText));
+		DateFormat dateFormat = DateFormat.getDateInstance(DateFormat.MEDIUM, Locale.US);
+		dateFormat.setTimeZone(timeZone);
+		Assert.assertEquals(OffsetDateTime.of(2013, 1, 2, 0, 0, 0, 0, ZoneOffset.ofHours(-5)),
+				parser.parse(dateFormat.format(Date.from(afternoon.toInstant())).toLowerCase(Locale.US)));
+		OffsetDateTime time = OffsetDateTime.of(1970, 1, 1, 15, 4, 5, 0, ZoneOffset.ofHours(-5));
+		DateFormat timeFormat = DateFormat.getTimeInstance(DateFormat.MEDIUM, Locale.US);
+		timeFormat.setTimeZone(timeZone);
+		Assert.assertEquals(time, parser.parse(timeFormat.format(Date.from(time.toInstant()))));
+		assertUnparseable("hey fred");
+		assertUnparseable(shortText.replace("3:04", "25:04"));
+		assertUnparseable("");
+	}
+
+	@Test
+	public void testParseLocalDate() throws Exception {
+		Assert.assertEquals(LocalDate.of(2013, 6, 1), parser.parseLocalDate("2013-06-01"));
+		Assert.assertEquals(LocalDate.of(2013, 6, 1), parser.parseLocalDate("2013-06-01T23:00:00-04:00"));
+		Assert.assertEquals(LocalDate.of(2013, 6, 1), parser.parseLocalDate("June 1, 2013"));
+		try {
+			parser.parseLocalDate("2013-02-29");
+			Assert.fail("Expected ParseException");
+		} catch(ParseException e) {
+		}
+	}
+
+	private void assertUnparseable(String text) {
+		try {
+			parser.parse(text);
+			Assert.fail(String.format("Expected '%s' to be unparseable", text));
+		} catch(ParseException e) {
+			Assert.assertEquals(String.format("Unable to parse '%s' as a date", text), e.getMessage());
+		}
+	}
+}
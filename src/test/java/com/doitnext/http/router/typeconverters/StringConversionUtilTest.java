@@ -17,6 +17,10 @@ package com.doitnext.http.router.typeconverters;
 
 import java.text.DateFormat;
 import java.text.ParseException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
 import java.util.Date;
 
 import org.junit.Assert;
@@ -51,6 +55,11 @@ public class StringConversionUtilTest {
 				{ 'c', char.class, null, "c", null},
 				{ (short)2, short.class, null, "2", null},
 				{ (byte)0x20, byte.class, null, "32", null},
+				{ Instant.parse("2013-06-01T12:30:00Z"), Instant.class, null, "2013-06-01T12:30:00Z", null},
+				{ OffsetDateTime.parse("2013-06-01T12:30:00+02:00"), OffsetDateTime.class, null, "2013-06-01T12:30+02:00", null},
+				{ LocalDate.of(2013, 6, 1), LocalDate.class, null, "2013-06-01", null},
+				{ Date.from(Instant.parse("2013-06-01T12:30:00Z")), Date.class, null, "2013-06-01T12:30:00Z", null},
+				{ null, LocalDate.class, TypeConversionException.class, "2013-06-31", "Unable to convert value '2013-06-31' into java.time.LocalDate"},
 				{ null, char.class, TypeConversionException.class, "hi", "Unable to convert value 'hi' into char"},
 				{ null, Date.class, TypeConversionException.class, "hey fred", "Unable to convert value 'hey fred' into java.util.Date"},
 				{ null, StringBuffer.class, UnsupportedConversionException.class, "Hi", "Unable to convert from java.lang.String to java.lang.StringBuffer."}
@@ -80,4 +89,50 @@ public class StringConversionUtilTest {
 		Assert.assertTrue(converter.supports(int.class));
 		Assert.assertFalse(converter.supports(this.getClass()));
 	}
+
+	@Test
+	public void testArrays() throws Exception {
+		StringConversionUtil converter = new StringConversionUtil();
+		String values[] = {"1", "2", "3"};
+		Assert.assertArrayEquals(new int[]{1, 2, 3}, (int[])converter.convertArray(values, int[].class));
+		Assert.assertArrayEquals(new long[]{1, 2, 3}, (long[])converter.convertArray(values, long[].class));
+		Assert.assertArrayEquals(new short[]{1, 2, 3}, (short[])converter.convertArray(values, short[].class));
+		Assert.assertArrayEquals(new byte[]{1, 2, 3}, (byte[])converter.convertArray(values, byte[].class));
+		Assert.assertArrayEquals(new double[]{1, 2, 3}, (double[])converter.convertArray(values, double[].class), 0);
+		Assert.assertArrayEquals(new float[]{1, 2, 3}, (float[])converter.convertArray(values, float[].class), 0);
+		Assert.assertArrayEquals(new char[]{'1', '2', '3'}, (char[])converter.convertArray(values, char[].class));
+		Assert.assertArrayEquals(values, (String[])converter.convertArray(values, String[].class));
+		Assert.assertTrue(Arrays.equals(new boolean[]{true, false}, 
+				(boolean[])converter.convertArray(new String[]{"true", "no"}, boolean[].class)));
+		Assert.assertEquals(0, ((int[])converter.convertArray(new String[0], int[].class)).length);
+		try {
+			converter.convertArray(new String[]{"1", "x"}, int[].class);
+			Assert.fail("Expected TypeConversionException");
+		} catch(TypeConversionException e) {
+			Assert.assertEquals("Unable to convert values [1, x] into int", e.getMessage());
+		}
+		try {
+			converter.convertArray(values, StringBuffer[].class);
+			Assert.fail("Expected UnsupportedConversionException");
+		} catch(UnsupportedConversionException e) {
+		}
+		Assert.assertNull(converter.getArrayConverter(int.class));
+		Assert.assertNull(converter.getArrayConverter(StringBuffer[].class));
+	}
+
+	@Test
+	public void testResolvedConverters() throws Exception {
+		StringConversionUtil converter = new StringConversionUtil();
+		Assert.assertEquals(42, ((IntConverter)converter.getConverter(int.class)).convertInt("42"));
+		Assert.assertEquals(42L, ((LongConverter)converter.getConverter(long.class)).convertLong("42"));
+		Assert.assertSame(converter.getConverter(int.class), converter.getArrayConverter(int[].class));
+		Assert.assertNull(converter.getConverter(StringBuffer.class));
+		Assert.assertEquals(7, StringConversionUtil.applyConverter(converter.getConverter(int.class), "7", int.class));
+		try {
+			StringConversionUtil.applyConverter(converter.getConverter(char.class), "hi", char.class);
+			Assert.fail("Expected TypeConversionException");
+		} catch(TypeConversionException e) {
+			Assert.assertEquals("Unable to convert value 'hi' into char", e.getMessage());
+		}
+	}
 }